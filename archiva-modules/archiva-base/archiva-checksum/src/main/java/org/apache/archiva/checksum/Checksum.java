@@ -22,8 +22,13 @@
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.NullOutputStream;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -36,6 +41,14 @@
 {
     private static final int BUFFER_SIZE = 32768;
 
+    /**
+     * Files of at least this size are read from their channel in large buffers instead of a stream.
+     */
+    static final long CHANNEL_READ_THRESHOLD =
+        Long.getLong( "archiva.checksum.channelReadThreshold", 8L * 1024 * 1024 );
+
+    private static final int CHANNEL_BUFFER_SIZE = 1024 * 1024;
+
     public static void update( List<Checksum> checksums, InputStream stream )
         throws IOException
     {
@@ -51,6 +64,46 @@ public static void update( List<Checksum> checksums, InputStream stream )
         }
     }
 
+    /**
+     * Update the checksums with the content of the file, reading the file only once. Files smaller than
+     * {@link #CHANNEL_READ_THRESHOLD} go through the stream path, larger ones are read from the file channel
+     * into a 1 MB buffer handed to each digest in turn.
+     *
+     * @param checksums the checksums to update
+     * @param file      the file to read
+     * @throws IOException if the file cannot be read
+     */
+    public static void update( List<Checksum> checksums, File file )
+        throws IOException
+    {
+        update( checksums, file, CHANNEL_READ_THRESHOLD );
+    }
+
+    static void update( List<Checksum> checksums, File file, long channelReadThreshold )
+        throws IOException
+    {
+        try (FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ))
+        {
+            long size = channel.size();
+            if ( size < channelReadThreshold )
+            {
+                update( checksums, Channels.newInputStream( channel ) );
+                return;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate( CHANNEL_BUFFER_SIZE );
+            while ( channel.read( buffer ) >= 0 )
+            {
+                buffer.flip();
+                for ( Checksum checksum : checksums )
+                {
+                    checksum.update( buffer.duplicate() );
+                }
+                buffer.clear();
+            }
+        }
+    }
+
     private final MessageDigest md;
 
     private ChecksumAlgorithm checksumAlgorithm;
@@ -88,7 +141,20 @@ public void reset()
 
     public Checksum update( byte[] buffer, int offset, int size )
     {
-        md.update( buffer, 0, size );
+        md.update( buffer, offset, size );
+        return this;
+    }
+
+    /**
+     * Update the checksum with the remaining bytes of the given buffer. The position of the
+     * buffer is moved to its limit.
+     *
+     * @param buffer the buffer to read from, can be a direct buffer.
+     * @return this checksum
+     */
+    public Checksum update( ByteBuffer buffer )
+    {
+        md.update( buffer );
         return this;
     }
 
@@ -26,11 +26,16 @@
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -53,16 +58,103 @@
 
     private static final Pattern METADATA_PATTERN = Pattern.compile( "maven-metadata-\\S*.xml" );
 
+    private static final Pattern HEX_PATTERN = Pattern.compile( "[a-fA-F0-9]+" );
+
+    private static final Pattern GNU_CHECKSUM_PATTERN = Pattern.compile( "([a-fA-F0-9]+)\\s+\\*?(.+)" );
+
+    private static final Map<ChecksumAlgorithm, Pattern> BSD_CHECKSUM_PATTERNS = new EnumMap<>( ChecksumAlgorithm.class );
+
+    static
+    {
+        for ( ChecksumAlgorithm algorithm : ChecksumAlgorithm.values() )
+        {
+            BSD_CHECKSUM_PATTERNS.put( algorithm, Pattern.compile(
+                algorithm.getType() + "\\s*\\(([^)]*)\\)\\s*=\\s*([a-fA-F0-9]+)" ) );
+        }
+    }
+
+    private static final int EXPECTED_CHECKSUM_CACHE_SIZE = 10000;
+
+    /**
+     * Parsed content of checksum files, keyed by their path. An entry is only used as long as the
+     * checksum file keeps its modification time, length and file key.
+     */
+    private static final Map<String, ExpectedChecksum> EXPECTED_CHECKSUMS =
+        Collections.synchronizedMap( new LinkedHashMap<String, ExpectedChecksum>( 256, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, ExpectedChecksum> eldest )
+            {
+                return size() > EXPECTED_CHECKSUM_CACHE_SIZE;
+            }
+        } );
+
+    private static final int COMPUTED_CHECKSUM_CACHE_SIZE = 1000;
+
+    /**
+     * Checksums computed while a reference file was written, keyed by the path of the reference file. An entry is
+     * only used as long as the reference file keeps its modification time, length and file key.
+     */
+    private static final Map<String, ComputedChecksums> COMPUTED_CHECKSUMS =
+        Collections.synchronizedMap( new LinkedHashMap<String, ComputedChecksums>( 64, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, ComputedChecksums> eldest )
+            {
+                return size() > COMPUTED_CHECKSUM_CACHE_SIZE;
+            }
+        } );
+
     private final File referenceFile;
 
+    private final Map<ChecksumAlgorithm, String> knownChecksums;
+
     /**
      * Construct a ChecksummedFile object.
      *
      * @param referenceFile
      */
     public ChecksummedFile( final File referenceFile )
+    {
+        this( referenceFile, Collections.<ChecksumAlgorithm, String>emptyMap() );
+    }
+
+    /**
+     * Construct a ChecksummedFile object for a reference file whose checksums have already been computed,
+     * e.g. while it was written. The known checksums are used instead of reading the file again, also to validate
+     * its checksum files.
+     *
+     * @param referenceFile
+     * @param knownChecksums the hex encoded checksums of the current content of the reference file
+     */
+    public ChecksummedFile( final File referenceFile, final Map<ChecksumAlgorithm, String> knownChecksums )
     {
         this.referenceFile = referenceFile;
+        this.knownChecksums = knownChecksums;
+    }
+
+    /**
+     * Remembers the checksums of the current content of a file, e.g. computed while the file was uploaded, so that
+     * later calculations of these checksums, like the ones of the repository consumers, do not read the file again.
+     * The checksums are forgotten as soon as the file is modified. Validations never use them: they check the
+     * content on disk.
+     *
+     * @param referenceFile the file the checksums were computed for
+     * @param checksums     the hex encoded checksums of the current content of the file
+     */
+    public static void registerChecksums( File referenceFile, Map<ChecksumAlgorithm, String> checksums )
+    {
+        String key = referenceFile.getAbsolutePath();
+        try
+        {
+            BasicFileAttributes attributes =
+                Files.readAttributes( referenceFile.toPath(), BasicFileAttributes.class );
+            COMPUTED_CHECKSUMS.put( key, new ComputedChecksums( attributes, checksums ) );
+        }
+        catch ( IOException e )
+        {
+            COMPUTED_CHECKSUMS.remove( key );
+        }
     }
 
     /**
@@ -75,13 +167,52 @@ public ChecksummedFile( final File referenceFile )
     public String calculateChecksum( ChecksumAlgorithm checksumAlgorithm )
         throws IOException
     {
+        Map<ChecksumAlgorithm, String> known = getKnownChecksums();
+        if ( known.containsKey( checksumAlgorithm ) )
+        {
+            return known.get( checksumAlgorithm );
+        }
+        return hashChecksum( checksumAlgorithm );
+    }
+
+    /**
+     * Calculate the checksum by reading the reference file, even if the checksum is known or was registered.
+     *
+     * @param checksumAlgorithm the algorithm to use.
+     * @return the checksum string of the current content of the file.
+     * @throws IOException if unable to read the file.
+     */
+    public String hashChecksum( ChecksumAlgorithm checksumAlgorithm )
+        throws IOException
+    {
+        return hashChecksums( new ChecksumAlgorithm[]{ checksumAlgorithm } ).get( checksumAlgorithm );
+    }
+
+    /**
+     * Calculate the checksums of all given algorithms by reading the reference file once, even if they are known
+     * or were registered.
+     *
+     * @param algorithms the algorithms to use.
+     * @return the checksum string of the current content of the file for each algorithm.
+     * @throws IOException if unable to read the file.
+     */
+    public Map<ChecksumAlgorithm, String> hashChecksums( ChecksumAlgorithm[] algorithms )
+        throws IOException
+    {
+        List<Checksum> checksums = new ArrayList<>( algorithms.length );
+        for ( ChecksumAlgorithm checksumAlgorithm : algorithms )
+        {
+            checksums.add( new Checksum( checksumAlgorithm ) );
+        }
 
-        try (InputStream fis = Files.newInputStream( referenceFile.toPath() ))
+        // Parse file once, for all checksums.
+        Checksum.update( checksums, referenceFile );
+        Map<ChecksumAlgorithm, String> result = new EnumMap<>( ChecksumAlgorithm.class );
+        for ( Checksum checksum : checksums )
         {
-            Checksum checksum = new Checksum( checksumAlgorithm );
-            checksum.update( fis );
-            return checksum.getChecksum();
+            result.put( checksum.getAlgorithm(), checksum.getChecksum() );
         }
+        return result;
     }
 
     /**
@@ -94,9 +225,164 @@ public String calculateChecksum( ChecksumAlgorithm checksumAlgorithm )
     public File createChecksum( ChecksumAlgorithm checksumAlgorithm )
         throws IOException
     {
-        File checksumFile = new File( referenceFile.getAbsolutePath() + "." + checksumAlgorithm.getExt() );
+        return writeChecksumFile( checksumAlgorithm, calculateChecksum( checksumAlgorithm ) );
+    }
+
+    /**
+     * Calculate the checksums of all given algorithms, reading the reference file at most once.
+     *
+     * @param algorithms the algorithms to use.
+     * @return the checksum string for each algorithm.
+     * @throws IOException if unable to calculate the checksums.
+     */
+    public Map<ChecksumAlgorithm, String> calculateChecksums( ChecksumAlgorithm[] algorithms )
+        throws IOException
+    {
+        return calculateChecksums( algorithms, getKnownChecksums() );
+    }
+
+    private Map<ChecksumAlgorithm, String> calculateChecksums( ChecksumAlgorithm[] algorithms,
+                                                               Map<ChecksumAlgorithm, String> known )
+        throws IOException
+    {
+        Map<ChecksumAlgorithm, String> result = new EnumMap<>( ChecksumAlgorithm.class );
+        List<ChecksumAlgorithm> missing = new ArrayList<>( algorithms.length );
+        for ( ChecksumAlgorithm checksumAlgorithm : algorithms )
+        {
+            if ( known.containsKey( checksumAlgorithm ) )
+            {
+                result.put( checksumAlgorithm, known.get( checksumAlgorithm ) );
+            }
+            else
+            {
+                missing.add( checksumAlgorithm );
+            }
+        }
+
+        if ( !missing.isEmpty() )
+        {
+            result.putAll( hashChecksums( missing.toArray( new ChecksumAlgorithm[missing.size()] ) ) );
+        }
+        return result;
+    }
+
+    /**
+     * Returns the checksums of all given algorithms, reading the reference file at most once. If
+     * <code>trustChecksumFiles</code> is set, the checksum of an algorithm is taken from its checksum file instead,
+     * as long as that file is not older than the reference file and holds a well formed checksum. Otherwise the
+     * checksums are calculated and existing checksum files that do not match are reported.
+     *
+     * @param algorithms         the algorithms to use.
+     * @param trustChecksumFiles whether up to date checksum files are used instead of reading the reference file.
+     * @return the checksum string for each algorithm.
+     * @throws IOException if unable to calculate the checksums.
+     */
+    public Map<ChecksumAlgorithm, String> getChecksums( ChecksumAlgorithm[] algorithms, boolean trustChecksumFiles )
+        throws IOException
+    {
+        Map<ChecksumAlgorithm, String> stored = new EnumMap<>( ChecksumAlgorithm.class );
+        long referenceModified = referenceFile.lastModified();
+        for ( ChecksumAlgorithm checksumAlgorithm : algorithms )
+        {
+            File checksumFile = getChecksumFile( checksumAlgorithm );
+            if ( checksumFile.isFile() && ( !trustChecksumFiles || checksumFile.lastModified() >= referenceModified ) )
+            {
+                try
+                {
+                    String checksum = getExpectedChecksum( checksumAlgorithm );
+                    if ( isWellFormed( checksumAlgorithm, checksum ) )
+                    {
+                        stored.put( checksumAlgorithm, checksum.toLowerCase() );
+                    }
+                }
+                catch ( IOException e )
+                {
+                    log.debug( "Ignoring unreadable checksum file {}: {}", checksumFile, e.getMessage() );
+                }
+            }
+        }
+
+        if ( !trustChecksumFiles )
+        {
+            // validating the checksum files, registered checksums are not used
+            Map<ChecksumAlgorithm, String> result = calculateChecksums( algorithms, knownChecksums );
+            for ( Map.Entry<ChecksumAlgorithm, String> entry : stored.entrySet() )
+            {
+                if ( !entry.getValue().equalsIgnoreCase( result.get( entry.getKey() ) ) )
+                {
+                    log.warn( "Checksum file {} does not match the content of {}",
+                              getChecksumFile( entry.getKey() ).getName(), referenceFile );
+                }
+            }
+            return result;
+        }
+
+        List<ChecksumAlgorithm> missing = new ArrayList<>( algorithms.length );
+        for ( ChecksumAlgorithm checksumAlgorithm : algorithms )
+        {
+            if ( !stored.containsKey( checksumAlgorithm ) )
+            {
+                missing.add( checksumAlgorithm );
+            }
+        }
+        if ( !missing.isEmpty() )
+        {
+            stored.putAll( calculateChecksums( missing.toArray( new ChecksumAlgorithm[missing.size()] ) ) );
+        }
+        return stored;
+    }
+
+    private static boolean isWellFormed( ChecksumAlgorithm checksumAlgorithm, String checksum )
+    {
+        int length = checksumAlgorithm == ChecksumAlgorithm.MD5 ? 32 : 40;
+        return checksum != null && checksum.length() == length && HEX_PATTERN.matcher( checksum ).matches();
+    }
+
+    /**
+     * Returns the checksums given on construction, or else the ones registered for the current content of the
+     * reference file.
+     */
+    private Map<ChecksumAlgorithm, String> getKnownChecksums()
+    {
+        if ( !knownChecksums.isEmpty() )
+        {
+            return knownChecksums;
+        }
+
+        ComputedChecksums computed = COMPUTED_CHECKSUMS.get( referenceFile.getAbsolutePath() );
+        if ( computed != null )
+        {
+            try
+            {
+                if ( computed.stamp.isCurrent(
+                    Files.readAttributes( referenceFile.toPath(), BasicFileAttributes.class ) ) )
+                {
+                    return computed.checksums;
+                }
+            }
+            catch ( IOException e )
+            {
+                // the file is gone, reading it will report the problem
+            }
+            COMPUTED_CHECKSUMS.remove( referenceFile.getAbsolutePath() );
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Writes the given checksum value into the checksum file of the reference file, replacing any previous content.
+     *
+     * @param checksumAlgorithm the hash the value was computed with.
+     * @param checksum          the hex encoded checksum.
+     * @return the checksum File that was written.
+     * @throws IOException if there was a problem writing the checksum file.
+     */
+    public File writeChecksumFile( ChecksumAlgorithm checksumAlgorithm, String checksum )
+        throws IOException
+    {
+        File checksumFile = getChecksumFile( checksumAlgorithm );
+        EXPECTED_CHECKSUMS.remove( checksumFile.getAbsolutePath() );
         Files.deleteIfExists( checksumFile.toPath() );
-        String checksum = calculateChecksum( checksumAlgorithm );
         Files.write( checksumFile.toPath(), //
                      ( checksum + "  " + referenceFile.getName() ).getBytes(), //
                      StandardOpenOption.CREATE_NEW );
@@ -134,79 +420,65 @@ public boolean isValidChecksum( ChecksumAlgorithm algorithm )
 
     /**
      * Of any checksum files present, validate that the reference file conforms
-     * the to the checksum.
+     * the to the checksum. The reference file is read unless its checksums were given on construction, checksums
+     * registered for it are not used.
      *
      * @param algorithms the algorithms to check for.
      * @return true if the checksums report that the the reference file is valid, false if invalid.
      */
     public boolean isValidChecksums( ChecksumAlgorithm algorithms[] )
     {
-
-        try (InputStream fis = Files.newInputStream( referenceFile.toPath() ))
+        List<ChecksumAlgorithm> present = new ArrayList<>( algorithms.length );
+        for ( ChecksumAlgorithm checksumAlgorithm : algorithms )
         {
-            List<Checksum> checksums = new ArrayList<>( algorithms.length );
-            // Create checksum object for each algorithm.
-            for ( ChecksumAlgorithm checksumAlgorithm : algorithms )
+            // Only check algorithm if checksum file exists.
+            if ( getChecksumFile( checksumAlgorithm ).exists() )
             {
-                File checksumFile = getChecksumFile( checksumAlgorithm );
-
-                // Only add algorithm if checksum file exists.
-                if ( checksumFile.exists() )
-                {
-                    checksums.add( new Checksum( checksumAlgorithm ) );
-                }
+                present.add( checksumAlgorithm );
             }
+        }
 
-            // Any checksums?
-            if ( checksums.isEmpty() )
-            {
-                // No checksum objects, no checksum files, default to is invalid.
-                return false;
-            }
+        // Any checksums?
+        if ( present.isEmpty() )
+        {
+            // No checksum files, default to is invalid.
+            return false;
+        }
 
-            // Parse file once, for all checksums.
-            try
-            {
-                Checksum.update( checksums, fis );
-            }
-            catch ( IOException e )
-            {
-                log.warn( "Unable to update checksum:{}", e.getMessage() );
-                return false;
-            }
+        Map<ChecksumAlgorithm, String> actualChecksums;
+        try
+        {
+            actualChecksums =
+                calculateChecksums( present.toArray( new ChecksumAlgorithm[present.size()] ), knownChecksums );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to update checksum:{}", e.getMessage() );
+            return false;
+        }
 
-            boolean valid = true;
+        boolean valid = true;
 
-            // check the checksum files
-            try
+        // check the checksum files
+        try
+        {
+            for ( ChecksumAlgorithm checksumAlgorithm : present )
             {
-                for ( Checksum checksum : checksums )
-                {
-                    ChecksumAlgorithm checksumAlgorithm = checksum.getAlgorithm();
-                    File checksumFile = getChecksumFile( checksumAlgorithm );
-
-                    String rawChecksum = FileUtils.readFileToString( checksumFile );
-                    String expectedChecksum = parseChecksum( rawChecksum, checksumAlgorithm, referenceFile.getName() );
+                String expectedChecksum = getExpectedChecksum( checksumAlgorithm );
 
-                    if ( !StringUtils.equalsIgnoreCase( expectedChecksum, checksum.getChecksum() ) )
-                    {
-                        valid = false;
-                    }
+                if ( !StringUtils.equalsIgnoreCase( expectedChecksum, actualChecksums.get( checksumAlgorithm ) ) )
+                {
+                    valid = false;
                 }
             }
-            catch ( IOException e )
-            {
-                log.warn( "Unable to read / parse checksum: {}", e.getMessage() );
-                return false;
-            }
-
-            return valid;
         }
         catch ( IOException e )
         {
             log.warn( "Unable to read / parse checksum: {}", e.getMessage() );
             return false;
         }
+
+        return valid;
     }
 
     /**
@@ -217,24 +489,17 @@ public boolean isValidChecksums( ChecksumAlgorithm algorithms[] )
      */
     public boolean fixChecksums( ChecksumAlgorithm[] algorithms )
     {
-        List<Checksum> checksums = new ArrayList<>( algorithms.length );
-        // Create checksum object for each algorithm.
-        for ( ChecksumAlgorithm checksumAlgorithm : algorithms )
-        {
-            checksums.add( new Checksum( checksumAlgorithm ) );
-        }
-
         // Any checksums?
-        if ( checksums.isEmpty() )
+        if ( algorithms.length == 0 )
         {
             // No checksum objects, no checksum files, default to is valid.
             return true;
         }
 
-        try (InputStream fis = Files.newInputStream( referenceFile.toPath() ))
+        Map<ChecksumAlgorithm, String> actualChecksums;
+        try
         {
-            // Parse file once, for all checksums.
-            Checksum.update( checksums, fis );
+            actualChecksums = calculateChecksums( algorithms );
         }
         catch ( IOException e )
         {
@@ -245,22 +510,21 @@ public boolean fixChecksums( ChecksumAlgorithm[] algorithms )
         boolean valid = true;
 
         // check the hash files
-        for ( Checksum checksum : checksums )
+        for ( ChecksumAlgorithm checksumAlgorithm : algorithms )
         {
-            ChecksumAlgorithm checksumAlgorithm = checksum.getAlgorithm();
             try
             {
                 File checksumFile = getChecksumFile( checksumAlgorithm );
-                String actualChecksum = checksum.getChecksum();
+                String actualChecksum = actualChecksums.get( checksumAlgorithm );
 
                 if ( checksumFile.exists() )
                 {
-                    String rawChecksum = FileUtils.readFileToString( checksumFile );
-                    String expectedChecksum = parseChecksum( rawChecksum, checksumAlgorithm, referenceFile.getName() );
+                    String expectedChecksum = getExpectedChecksum( checksumAlgorithm );
 
                     if ( !StringUtils.equalsIgnoreCase( expectedChecksum, actualChecksum ) )
                     {
                         // create checksum (again)
+                        EXPECTED_CHECKSUMS.remove( checksumFile.getAbsolutePath() );
                         FileUtils.writeStringToFile( checksumFile, actualChecksum + "  " + referenceFile.getName() );
                     }
                 }
@@ -280,6 +544,47 @@ public boolean fixChecksums( ChecksumAlgorithm[] algorithms )
 
     }
 
+    /**
+     * Returns the checksum stored in the checksum file of the given algorithm, without computing the checksum
+     * of the reference file.
+     *
+     * @param checksumAlgorithm the algorithm of the checksum file
+     * @return the stored checksum, or <code>null</code> if there is no checksum file
+     * @throws IOException if the checksum file cannot be read or parsed
+     */
+    public String readChecksum( ChecksumAlgorithm checksumAlgorithm )
+        throws IOException
+    {
+        if ( !getChecksumFile( checksumAlgorithm ).isFile() )
+        {
+            return null;
+        }
+        return getExpectedChecksum( checksumAlgorithm );
+    }
+
+    /**
+     * Reads and parses the checksum file of the given algorithm, reusing the previous result if the checksum
+     * file did not change since.
+     */
+    private String getExpectedChecksum( ChecksumAlgorithm checksumAlgorithm )
+        throws IOException
+    {
+        File checksumFile = getChecksumFile( checksumAlgorithm );
+        String key = checksumFile.getAbsolutePath();
+        BasicFileAttributes attributes = Files.readAttributes( checksumFile.toPath(), BasicFileAttributes.class );
+
+        ExpectedChecksum cached = EXPECTED_CHECKSUMS.get( key );
+        if ( cached != null && cached.stamp.isCurrent( attributes ) )
+        {
+            return cached.checksum;
+        }
+
+        String rawChecksum = FileUtils.readFileToString( checksumFile );
+        String expectedChecksum = parseChecksum( rawChecksum, checksumAlgorithm, referenceFile.getName() );
+        EXPECTED_CHECKSUMS.put( key, new ExpectedChecksum( attributes, expectedChecksum ) );
+        return expectedChecksum;
+    }
+
     private boolean isValidChecksumPattern( String filename, String path )
     {
         // check if it is a remote metadata file
@@ -312,8 +617,7 @@ public String parseChecksum( String rawChecksumString, ChecksumAlgorithm expecte
         String trimmedChecksum = rawChecksumString.replace( '\n', ' ' ).trim();
 
         // Free-BSD / openssl
-        String regex = expectedHash.getType() + "\\s*\\(([^)]*)\\)\\s*=\\s*([a-fA-F0-9]+)";
-        Matcher m = Pattern.compile( regex ).matcher( trimmedChecksum );
+        Matcher m = BSD_CHECKSUM_PATTERNS.get( expectedHash ).matcher( trimmedChecksum );
         if ( m.matches() )
         {
             String filename = m.group( 1 );
@@ -327,7 +631,7 @@ public String parseChecksum( String rawChecksumString, ChecksumAlgorithm expecte
         else
         {
             // GNU tools
-            m = Pattern.compile( "([a-fA-F0-9]+)\\s+\\*?(.+)" ).matcher( trimmedChecksum );
+            m = GNU_CHECKSUM_PATTERN.matcher( trimmedChecksum );
             if ( m.matches() )
             {
                 String filename = m.group( 2 );
@@ -342,4 +646,57 @@ public String parseChecksum( String rawChecksumString, ChecksumAlgorithm expecte
         }
         return trimmedChecksum;
     }
+
+    /**
+     * The state of a file that tells whether it changed since.
+     */
+    private static class FileStamp
+    {
+        private final FileTime lastModified;
+
+        private final long length;
+
+        private final Object fileKey;
+
+        FileStamp( BasicFileAttributes attributes )
+        {
+            this.lastModified = attributes.lastModifiedTime();
+            this.length = attributes.size();
+            this.fileKey = attributes.fileKey();
+        }
+
+        boolean isCurrent( BasicFileAttributes attributes )
+        {
+            return lastModified.equals( attributes.lastModifiedTime() ) && length == attributes.size()
+                && ( fileKey == null ? attributes.fileKey() == null : fileKey.equals( attributes.fileKey() ) );
+        }
+    }
+
+    private static class ExpectedChecksum
+    {
+        private final FileStamp stamp;
+
+        private final String checksum;
+
+        ExpectedChecksum( BasicFileAttributes attributes, String checksum )
+        {
+            this.stamp = new FileStamp( attributes );
+            this.checksum = checksum;
+        }
+    }
+
+    private static class ComputedChecksums
+    {
+        private final FileStamp stamp;
+
+        private final Map<ChecksumAlgorithm, String> checksums;
+
+        ComputedChecksums( BasicFileAttributes attributes, Map<ChecksumAlgorithm, String> checksums )
+        {
+            this.stamp = new FileStamp( attributes );
+            this.checksums = checksums.isEmpty()
+                ? Collections.<ChecksumAlgorithm, String>emptyMap()
+                : Collections.unmodifiableMap( new EnumMap<>( checksums ) );
+        }
+    }
 }
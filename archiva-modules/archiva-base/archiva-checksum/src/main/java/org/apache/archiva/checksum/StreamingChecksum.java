@@ -0,0 +1,198 @@
+package org.apache.archiva.checksum;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * StreamingChecksum - computes the checksums of several algorithms while the content passes
+ * through once, e.g. while an uploaded or downloaded file is written to disk.
+ * <p>
+ * Instances are not thread safe. The copy buffers are direct buffers shared through a small pool.
+ * </p>
+ */
+public class StreamingChecksum
+{
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final int MAX_POOLED_BUFFERS = 32;
+
+    private static final BlockingQueue<ByteBuffer> BUFFER_POOL = new ArrayBlockingQueue<>( MAX_POOLED_BUFFERS );
+
+    private final List<Checksum> checksums;
+
+    private Map<ChecksumAlgorithm, String> results;
+
+    private long length;
+
+    public StreamingChecksum( ChecksumAlgorithm... algorithms )
+    {
+        this.checksums = new ArrayList<>( algorithms.length );
+        for ( ChecksumAlgorithm algorithm : algorithms )
+        {
+            checksums.add( new Checksum( algorithm ) );
+        }
+    }
+
+    public StreamingChecksum update( byte[] buffer, int offset, int size )
+    {
+        for ( Checksum checksum : checksums )
+        {
+            checksum.update( buffer, offset, size );
+        }
+        length += size;
+        return this;
+    }
+
+    /**
+     * Update all checksums with the remaining bytes of the buffer. The position of the buffer is not changed.
+     */
+    public StreamingChecksum update( ByteBuffer buffer )
+    {
+        for ( Checksum checksum : checksums )
+        {
+            checksum.update( buffer.duplicate() );
+        }
+        length += buffer.remaining();
+        return this;
+    }
+
+    /**
+     * Copies the stream into the target file and computes the checksums on the way. The target file is
+     * created or truncated, the stream is not closed.
+     *
+     * @param stream the content to write
+     * @param target the file to write to
+     * @return the number of bytes written
+     * @throws IOException if reading from the stream or writing the file fails
+     */
+    public long copy( InputStream stream, File target )
+        throws IOException
+    {
+        ReadableByteChannel in = Channels.newChannel( stream );
+        ByteBuffer buffer = acquireBuffer();
+        long written = 0;
+        try (FileChannel out = FileChannel.open( target.toPath(), StandardOpenOption.CREATE,
+                                                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ))
+        {
+            while ( in.read( buffer ) >= 0 )
+            {
+                buffer.flip();
+                update( buffer );
+                while ( buffer.hasRemaining() )
+                {
+                    written += out.write( buffer );
+                }
+                buffer.clear();
+            }
+        }
+        finally
+        {
+            releaseBuffer( buffer );
+        }
+        return written;
+    }
+
+    /**
+     * @return the number of bytes that went through this checksum since creation or the last reset.
+     */
+    public long getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Finishes the computation and returns the hex encoded checksum of each algorithm. After this call
+     * the checksums must not be updated anymore without a {@link #reset()}.
+     */
+    public Map<ChecksumAlgorithm, String> getChecksums()
+    {
+        if ( results == null )
+        {
+            Map<ChecksumAlgorithm, String> values = new EnumMap<>( ChecksumAlgorithm.class );
+            for ( Checksum checksum : checksums )
+            {
+                values.put( checksum.getAlgorithm(), checksum.getChecksum() );
+            }
+            results = Collections.unmodifiableMap( values );
+        }
+        return results;
+    }
+
+    public String getChecksum( ChecksumAlgorithm algorithm )
+    {
+        return getChecksums().get( algorithm );
+    }
+
+    public void reset()
+    {
+        for ( Checksum checksum : checksums )
+        {
+            checksum.reset();
+        }
+        results = null;
+        length = 0;
+    }
+
+    /**
+     * Writes a checksum file next to the reference file for each algorithm.
+     *
+     * @param referenceFile the file the checksums were computed for
+     * @return the checksum files written
+     * @throws IOException if a checksum file cannot be written
+     */
+    public List<File> writeChecksumFiles( File referenceFile )
+        throws IOException
+    {
+        ChecksummedFile checksummedFile = new ChecksummedFile( referenceFile );
+        List<File> files = new ArrayList<>( checksums.size() );
+        for ( Map.Entry<ChecksumAlgorithm, String> entry : getChecksums().entrySet() )
+        {
+            files.add( checksummedFile.writeChecksumFile( entry.getKey(), entry.getValue() ) );
+        }
+        return files;
+    }
+
+    static ByteBuffer acquireBuffer()
+    {
+        ByteBuffer buffer = BUFFER_POOL.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect( BUFFER_SIZE );
+    }
+
+    static void releaseBuffer( ByteBuffer buffer )
+    {
+        buffer.clear();
+        BUFFER_POOL.offer( buffer );
+    }
+}
@@ -20,10 +20,13 @@
  */
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import junit.framework.TestCase;
+import org.apache.archiva.common.utils.FileUtil;
 import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -85,6 +88,26 @@ public void testUpdateMany()
         assertEquals( "Checksum MD5", "21c2c5ca87ec018adacb2e2fb3432219", checksumMd5.getChecksum() );
     }
 
+    @Test
+    public void testUpdateFileFromChannelAndStreamed()
+        throws IOException
+    {
+        File file = new File( FileUtil.getBasedir(), "src/test/resources/examples/redback-authz-open.jar" );
+
+        Checksum streamedSha1 = new Checksum( ChecksumAlgorithm.SHA1 );
+        Checksum streamedMd5 = new Checksum( ChecksumAlgorithm.MD5 );
+        Checksum.update( Arrays.asList( streamedSha1, streamedMd5 ), file, Long.MAX_VALUE );
+
+        Checksum channelSha1 = new Checksum( ChecksumAlgorithm.SHA1 );
+        Checksum channelMd5 = new Checksum( ChecksumAlgorithm.MD5 );
+        Checksum.update( Arrays.asList( channelSha1, channelMd5 ), file, 0 );
+
+        assertEquals( "Checksum SHA1", "2bb14b388973351b0a4dfe11d171965f59cc61a1", streamedSha1.getChecksum() );
+        assertEquals( "Checksum MD5", "f42047fe2e177ac04d0df7aa44d408be", streamedMd5.getChecksum() );
+        assertEquals( "Checksum SHA1", "2bb14b388973351b0a4dfe11d171965f59cc61a1", channelSha1.getChecksum() );
+        assertEquals( "Checksum MD5", "f42047fe2e177ac04d0df7aa44d408be", channelMd5.getChecksum() );
+    }
+
     @Test
     public void testUpdateWholeUpdatePartial()
     {
@@ -27,6 +27,8 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * ChecksummedFileTest
@@ -159,6 +161,95 @@ public void testGetChecksumFile()
         assertEquals( "test.jar.sha1", checksummedFile.getChecksumFile( ChecksumAlgorithm.SHA1 ).getName() );
     }
 
+    @Test
+    public void testReadChecksum()
+        throws IOException
+    {
+        File jarFile = createTestableJar( "examples/redback-authz-open.jar", true, false );
+
+        ChecksummedFile checksummedFile = new ChecksummedFile( jarFile );
+        assertEquals( "2bb14b388973351b0a4dfe11d171965f59cc61a1",
+                      checksummedFile.readChecksum( ChecksumAlgorithm.SHA1 ) );
+        assertNull( checksummedFile.readChecksum( ChecksumAlgorithm.MD5 ) );
+    }
+
+    @Test
+    public void testRegisteredChecksums()
+        throws IOException
+    {
+        File jarFile = createTestableJar( "examples/redback-authz-open.jar", false, false );
+
+        String registered = StringUtils.repeat( "0", 40 );
+        ChecksummedFile.registerChecksums( jarFile,
+                                           Collections.singletonMap( ChecksumAlgorithm.SHA1, registered ) );
+
+        ChecksummedFile checksummedFile = new ChecksummedFile( jarFile );
+        assertEquals( registered, checksummedFile.calculateChecksum( ChecksumAlgorithm.SHA1 ) );
+        assertEquals( "f42047fe2e177ac04d0df7aa44d408be", checksummedFile.calculateChecksum( ChecksumAlgorithm.MD5 ) );
+
+        // registered checksums are forgotten once the file changes
+        FileUtils.writeStringToFile( jarFile, "changed", true );
+        assertFalse( registered.equals( checksummedFile.calculateChecksum( ChecksumAlgorithm.SHA1 ) ) );
+    }
+
+    @Test
+    public void testValidationIgnoresRegisteredChecksums()
+        throws IOException
+    {
+        File jarFile = createTestableJar( "examples/redback-authz-open.jar", false, false );
+
+        String registered = StringUtils.repeat( "0", 40 );
+        ChecksummedFile.registerChecksums( jarFile,
+                                           Collections.singletonMap( ChecksumAlgorithm.SHA1, registered ) );
+        ChecksummedFile checksummedFile = new ChecksummedFile( jarFile );
+        checksummedFile.writeChecksumFile( ChecksumAlgorithm.SHA1, registered );
+
+        assertEquals( "2bb14b388973351b0a4dfe11d171965f59cc61a1",
+                      checksummedFile.hashChecksum( ChecksumAlgorithm.SHA1 ) );
+        assertFalse( checksummedFile.isValidChecksum( ChecksumAlgorithm.SHA1 ) );
+    }
+
+    @Test
+    public void testGetChecksumsTrustsUpToDateChecksumFiles()
+        throws IOException
+    {
+        File jarFile = createTestableJar( "examples/redback-authz-open.jar", false, false );
+        ChecksummedFile checksummedFile = new ChecksummedFile( jarFile );
+
+        String stored = StringUtils.repeat( "a", 40 );
+        File sha1File = checksummedFile.writeChecksumFile( ChecksumAlgorithm.SHA1, stored );
+        assertTrue( jarFile.setLastModified( sha1File.lastModified() - 60000 ) );
+
+        ChecksumAlgorithm[] algorithms = new ChecksumAlgorithm[]{ ChecksumAlgorithm.MD5, ChecksumAlgorithm.SHA1 };
+        Map<ChecksumAlgorithm, String> checksums = checksummedFile.getChecksums( algorithms, true );
+        assertEquals( stored, checksums.get( ChecksumAlgorithm.SHA1 ) );
+        assertEquals( "f42047fe2e177ac04d0df7aa44d408be", checksums.get( ChecksumAlgorithm.MD5 ) );
+
+        // verification always reads the file
+        checksums = checksummedFile.getChecksums( algorithms, false );
+        assertEquals( "2bb14b388973351b0a4dfe11d171965f59cc61a1", checksums.get( ChecksumAlgorithm.SHA1 ) );
+
+        // a checksum file older than the artifact is outdated
+        assertTrue( jarFile.setLastModified( sha1File.lastModified() + 60000 ) );
+        checksums = checksummedFile.getChecksums( algorithms, true );
+        assertEquals( "2bb14b388973351b0a4dfe11d171965f59cc61a1", checksums.get( ChecksumAlgorithm.SHA1 ) );
+    }
+
+    @Test
+    public void testGetChecksumsIgnoresMalformedChecksumFiles()
+        throws IOException
+    {
+        File jarFile = createTestableJar( "examples/redback-authz-open.jar", false, false );
+        ChecksummedFile checksummedFile = new ChecksummedFile( jarFile );
+
+        File md5File = checksummedFile.writeChecksumFile( ChecksumAlgorithm.MD5, "not a checksum" );
+        assertTrue( jarFile.setLastModified( md5File.lastModified() - 60000 ) );
+
+        Map<ChecksumAlgorithm, String> checksums =
+            checksummedFile.getChecksums( new ChecksumAlgorithm[]{ ChecksumAlgorithm.MD5 }, true );
+        assertEquals( "f42047fe2e177ac04d0df7aa44d408be", checksums.get( ChecksumAlgorithm.MD5 ) );
+    }
+
     @Test
     public void testIsValidChecksum()
         throws IOException
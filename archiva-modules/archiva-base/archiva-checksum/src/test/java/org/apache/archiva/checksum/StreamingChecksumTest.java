@@ -0,0 +1,113 @@
+package org.apache.archiva.checksum;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * StreamingChecksumTest
+ */
+public class StreamingChecksumTest
+    extends AbstractChecksumTestCase
+{
+    @Test
+    public void testCopyComputesAllChecksums()
+        throws IOException
+    {
+        File source = getTestResource( "examples/redback-authz-open.jar" );
+        File target = new File( getTestOutputDir(), source.getName() );
+
+        StreamingChecksum checksum = new StreamingChecksum( ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 );
+        long written;
+        try (InputStream is = Files.newInputStream( source.toPath() ))
+        {
+            written = checksum.copy( is, target );
+        }
+
+        assertEquals( source.length(), written );
+        assertEquals( source.length(), checksum.getLength() );
+        assertTrue( FileUtils.contentEquals( source, target ) );
+
+        Map<ChecksumAlgorithm, String> checksums = checksum.getChecksums();
+        assertEquals( "2bb14b388973351b0a4dfe11d171965f59cc61a1", checksums.get( ChecksumAlgorithm.SHA1 ) );
+        assertEquals( "f42047fe2e177ac04d0df7aa44d408be", checksums.get( ChecksumAlgorithm.MD5 ) );
+        // digest is only computed once
+        assertEquals( checksums, checksum.getChecksums() );
+    }
+
+    @Test
+    public void testWriteChecksumFiles()
+        throws IOException
+    {
+        File source = getTestResource( "examples/redback-authz-open.jar" );
+        File target = new File( getTestOutputDir(), source.getName() );
+
+        StreamingChecksum checksum = new StreamingChecksum( ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 );
+        try (InputStream is = Files.newInputStream( source.toPath() ))
+        {
+            checksum.copy( is, target );
+        }
+        checksum.writeChecksumFiles( target );
+
+        ChecksummedFile checksummedFile = new ChecksummedFile( target );
+        assertTrue( checksummedFile.getChecksumFile( ChecksumAlgorithm.SHA1 ).exists() );
+        assertTrue( checksummedFile.getChecksumFile( ChecksumAlgorithm.MD5 ).exists() );
+        assertTrue( checksummedFile.isValidChecksums(
+            new ChecksumAlgorithm[]{ ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 } ) );
+    }
+
+    @Test
+    public void testUpdatePartialBuffers()
+    {
+        byte[] buf = "eatagramovabits".getBytes();
+        StreamingChecksum checksum = new StreamingChecksum( ChecksumAlgorithm.SHA1 );
+        checksum.update( buf, 0, 5 );
+        checksum.update( buf, 5, 5 );
+        checksum.update( buf, 10, buf.length - 10 );
+
+        assertEquals( "066c2cbbc8cdaecb8ff97dcb84502462d6f575f3", checksum.getChecksum( ChecksumAlgorithm.SHA1 ) );
+
+        checksum.reset();
+        assertEquals( 0, checksum.getLength() );
+        assertEquals( "da39a3ee5e6b4b0d3255bfef95601890afd80709", checksum.getChecksum( ChecksumAlgorithm.SHA1 ) );
+    }
+
+    @Test
+    public void testKnownChecksumsAreUsed()
+        throws IOException
+    {
+        File testfile = getTestResource( "examples/redback-authz-open.jar" );
+        StreamingChecksum checksum = new StreamingChecksum( ChecksumAlgorithm.SHA1 );
+        checksum.update( new byte[]{ 1, 2, 3 }, 0, 3 );
+
+        ChecksummedFile checksummedFile = new ChecksummedFile( testfile, checksum.getChecksums() );
+        assertEquals( checksum.getChecksum( ChecksumAlgorithm.SHA1 ),
+                      checksummedFile.calculateChecksum( ChecksumAlgorithm.SHA1 ) );
+        assertEquals( "f42047fe2e177ac04d0df7aa44d408be",
+                      checksummedFile.calculateChecksum( ChecksumAlgorithm.MD5 ) );
+    }
+}
@@ -35,5 +35,5 @@
      */
     public static final List<String> DEFAULT_EXCLUSIONS =
         Arrays.asList( "**/maven-metadata.xml", "**/maven-metadata-*.xml", "**/*.sha1", "**/*.asc", "**/*.md5",
-                       "**/*.pgp", "**/.index/**", "**/.indexer/**" );
+                       "**/*.pgp", "**/.index/**", "**/.indexer/**", "**/.archiva/**" );
 }
@@ -0,0 +1,36 @@
+package org.apache.archiva.consumers;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * A {@link RepositoryContentConsumer} that keeps what it made of processed files pending and stores it later, e.g. in
+ * batches. Scans keeping a scan journal ask it to store what is pending before recording the directories of these files
+ * as scanned, so a scan resuming an interrupted one doesn't skip files whose results were never stored.
+ */
+public interface FlushableConsumer
+{
+    /**
+     * Stores what is pending for the files processed so far.
+     *
+     * @throws ConsumerException if the pending results could not be stored.
+     */
+    void flush()
+        throws ConsumerException;
+}
@@ -0,0 +1,37 @@
+package org.apache.archiva.consumers;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * A {@link RepositoryContentConsumer} that also wants to know about files removed from the repository since the last
+ * scan, e.g. to drop what it stored about them. Removed files are only reported by scans keeping a scan journal, and
+ * only if the consumer would have wanted the file.
+ */
+public interface RemovedContentConsumer
+{
+    /**
+     * Event indicating a file the consumer processed in an earlier scan no longer exists.
+     *
+     * @param path the relative file path (in the repository) that was removed.
+     * @throws ConsumerException if there was a problem processing the removal.
+     */
+    void processRemovedFile( String path )
+        throws ConsumerException;
+}
@@ -27,6 +27,7 @@
 import org.apache.archiva.consumers.AbstractMonitoredConsumer;
 import org.apache.archiva.consumers.ConsumerException;
 import org.apache.archiva.consumers.KnownRepositoryContentConsumer;
+import org.apache.archiva.consumers.ThreadSafeConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Scope;
@@ -39,6 +40,7 @@
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * ArtifactMissingChecksumsConsumer - Create missing and/or fix invalid checksums for the artifact.
@@ -47,7 +49,7 @@
 @Scope( "prototype" )
 public class ArtifactMissingChecksumsConsumer
     extends AbstractMonitoredConsumer
-    implements KnownRepositoryContentConsumer
+    implements KnownRepositoryContentConsumer, ThreadSafeConsumer
     // it's prototype bean so we assume configuration won't change during a run
     //, RegistryListener
 {
@@ -62,14 +64,15 @@
 
     private FileTypes filetypes;
 
-    private ChecksummedFile checksum;
-
     private static final String TYPE_CHECKSUM_NOT_FILE = "checksum-bad-not-file";
 
     private static final String TYPE_CHECKSUM_CANNOT_CALC = "checksum-calc-failure";
 
     private static final String TYPE_CHECKSUM_CANNOT_CREATE = "checksum-create-failure";
 
+    private static final ChecksumAlgorithm[] ALGORITHMS =
+        new ChecksumAlgorithm[]{ ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 };
+
     private File repositoryDir;
 
     private List<String> includes = new ArrayList<>( 0 );
@@ -139,8 +142,30 @@ public List<String> getIncludes()
     public void processFile( String path )
         throws ConsumerException
     {
-        createFixChecksum( path, ChecksumAlgorithm.SHA1 );
-        createFixChecksum( path, ChecksumAlgorithm.MD5 );
+        File artifactFile = new File( this.repositoryDir, path );
+
+        // read the artifact only once for all algorithms, checking and fixing then works on the computed values
+        ChecksummedFile checksummedFile = new ChecksummedFile( artifactFile );
+        Map<ChecksumAlgorithm, String> checksums;
+        try
+        {
+            // existing checksum files are validated against the content, not against checksums registered for it
+            checksums = hasChecksumFile( checksummedFile )
+                ? checksummedFile.hashChecksums( ALGORITHMS )
+                : checksummedFile.calculateChecksums( ALGORITHMS );
+        }
+        catch ( IOException e )
+        {
+            log.error( "Cannot calculate checksum for file {} :", artifactFile, e );
+            triggerConsumerError( TYPE_CHECKSUM_CANNOT_CALC, "Cannot calculate checksum for file " + artifactFile +
+                ": " + e.getMessage() );
+            return;
+        }
+
+        for ( ChecksumAlgorithm checksumAlgorithm : ALGORITHMS )
+        {
+            createFixChecksum( path, checksumAlgorithm, checksums );
+        }
     }
 
     @Override
@@ -150,14 +175,27 @@ public void processFile( String path, boolean executeOnEntireRepo )
         processFile( path );
     }
 
-    private void createFixChecksum( String path, ChecksumAlgorithm checksumAlgorithm )
+    private static boolean hasChecksumFile( ChecksummedFile checksummedFile )
+    {
+        for ( ChecksumAlgorithm checksumAlgorithm : ALGORITHMS )
+        {
+            if ( checksummedFile.getChecksumFile( checksumAlgorithm ).exists() )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void createFixChecksum( String path, ChecksumAlgorithm checksumAlgorithm,
+                                    Map<ChecksumAlgorithm, String> checksums )
     {
         File artifactFile = new File( this.repositoryDir, path );
         File checksumFile = new File( this.repositoryDir, path + "." + checksumAlgorithm.getExt() );
 
         if ( checksumFile.exists() )
         {
-            checksum = new ChecksummedFile( artifactFile );
+            ChecksummedFile checksum = new ChecksummedFile( artifactFile, checksums );
             try
             {
                 if ( !checksum.isValidChecksum( checksumAlgorithm ) )
@@ -176,7 +214,7 @@ private void createFixChecksum( String path, ChecksumAlgorithm checksumAlgorithm
         }
         else if ( !checksumFile.exists() )
         {
-            checksum = new ChecksummedFile( artifactFile );
+            ChecksummedFile checksum = new ChecksummedFile( artifactFile, checksums );
             try
             {
                 checksum.createChecksum( checksumAlgorithm );
@@ -20,24 +20,21 @@
  */
 
 import org.apache.archiva.admin.model.beans.ManagedRepository;
-import org.apache.archiva.common.plexusbridge.DigesterUtils;
-import org.apache.archiva.common.plexusbridge.PlexusSisuBridge;
-import org.apache.archiva.common.plexusbridge.PlexusSisuBridgeException;
+import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.checksum.ChecksummedFile;
 import org.apache.archiva.consumers.AbstractMonitoredConsumer;
 import org.apache.archiva.consumers.ConsumerException;
 import org.apache.archiva.consumers.KnownRepositoryContentConsumer;
-import org.codehaus.plexus.digest.ChecksumFile;
-import org.codehaus.plexus.digest.Digester;
-import org.codehaus.plexus.digest.DigesterException;
+import org.apache.archiva.consumers.ThreadSafeConsumer;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.PostConstruct;
-import javax.inject.Inject;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
@@ -52,7 +49,7 @@
 @Scope( "prototype" )
 public class ValidateChecksumConsumer
     extends AbstractMonitoredConsumer
-    implements KnownRepositoryContentConsumer
+    implements KnownRepositoryContentConsumer, ThreadSafeConsumer
 {
     private Logger log = LoggerFactory.getLogger( ValidateChecksumConsumer.class );
 
@@ -68,16 +65,6 @@
 
     private String description = "Validate checksums against file.";
 
-    private ChecksumFile checksum;
-
-    private List<Digester> allDigesters;
-
-    @Inject
-    private PlexusSisuBridge plexusSisuBridge;
-
-    @Inject
-    private DigesterUtils digesterUtils;
-
     private File repositoryDir;
 
     private List<String> includes;
@@ -137,29 +124,55 @@ public void processFile( String path )
         throws ConsumerException
     {
         File checksumFile = new File( this.repositoryDir, path );
+        File referenceFile = new File( FilenameUtils.removeExtension( checksumFile.getAbsolutePath() ) );
+        if ( !referenceFile.exists() )
+        {
+            log.error( "File not found during checksum validation: {}", referenceFile );
+            triggerConsumerError( CHECKSUM_NOT_FOUND, "File not found during checksum validation: " + referenceFile );
+            return;
+        }
+
+        // large files are read through mapped windows, the parsed checksum file content is cached
+        ChecksumAlgorithm algorithm = ChecksumAlgorithm.getByExtension( checksumFile );
+        ChecksummedFile checksummedFile = new ChecksummedFile( referenceFile );
+        String expectedChecksum;
         try
         {
-            if ( !checksum.isValidChecksum( checksumFile ) )
-            {
-                log.warn( "The checksum for {} is invalid.", checksumFile );
-                triggerConsumerWarning( NOT_VALID_CHECKSUM, "The checksum for " + checksumFile + " is invalid." );
-            }
+            expectedChecksum = checksummedFile.readChecksum( algorithm );
         }
-        catch ( FileNotFoundException e )
+        catch ( IOException e )
         {
-            log.error( "File not found during checksum validation: ", e );
-            triggerConsumerError( CHECKSUM_NOT_FOUND, "File not found during checksum validation: " + e.getMessage() );
+            if ( checksumFile.canRead() )
+            {
+                // the checksum file was read but doesn't hold a checksum of the file
+                log.error( "Digester failure during checksum validation on {}: {}", checksumFile, e.getMessage() );
+                triggerConsumerError( CHECKSUM_DIGESTER_FAILURE,
+                                      "Digester failure during checksum validation on " + checksumFile );
+            }
+            else
+            {
+                log.error( "Checksum I/O error during validation on {}: {}", checksumFile, e.getMessage() );
+                triggerConsumerError( CHECKSUM_IO_ERROR, "Checksum I/O error during validation on " + checksumFile );
+            }
+            return;
         }
-        catch ( DigesterException e )
+
+        String actualChecksum;
+        try
         {
-            log.error( "Digester failure during checksum validation on {}", checksumFile );
-            triggerConsumerError( CHECKSUM_DIGESTER_FAILURE,
-                                  "Digester failure during checksum validation on " + checksumFile );
+            actualChecksum = checksummedFile.hashChecksum( algorithm );
         }
         catch ( IOException e )
         {
-            log.error( "Checksum I/O error during validation on {}", checksumFile );
+            log.error( "Checksum I/O error during validation on {}: {}", checksumFile, e.getMessage() );
             triggerConsumerError( CHECKSUM_IO_ERROR, "Checksum I/O error during validation on " + checksumFile );
+            return;
+        }
+
+        if ( !StringUtils.equalsIgnoreCase( expectedChecksum, actualChecksum ) )
+        {
+            log.warn( "The checksum for {} is invalid.", checksumFile );
+            triggerConsumerWarning( NOT_VALID_CHECKSUM, "The checksum for " + checksumFile + " is invalid." );
         }
     }
 
@@ -172,14 +185,12 @@ public void processFile( String path, boolean executeOnEntireReDpo )
 
     @PostConstruct
     public void initialize()
-        throws PlexusSisuBridgeException
     {
-        checksum = plexusSisuBridge.lookup( ChecksumFile.class );
-        List<Digester> allDigesters = new ArrayList<>( digesterUtils.getAllDigesters() );
-        includes = new ArrayList<>( allDigesters.size() );
-        for ( Digester digester : allDigesters )
+        ChecksumAlgorithm[] algorithms = ChecksumAlgorithm.values();
+        includes = new ArrayList<>( algorithms.length );
+        for ( ChecksumAlgorithm algorithm : algorithms )
         {
-            includes.add( "**/*" + digester.getFilenameExtension() );
+            includes.add( "**/*." + algorithm.getExt() );
         }
     }
 }
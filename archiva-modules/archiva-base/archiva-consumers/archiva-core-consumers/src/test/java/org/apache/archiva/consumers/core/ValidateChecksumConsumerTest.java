@@ -0,0 +1,105 @@
+package org.apache.archiva.consumers.core;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.admin.model.beans.ManagedRepository;
+import org.apache.archiva.consumers.ConsumerMonitor;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Date;
+
+import static org.mockito.Mockito.*;
+
+public class ValidateChecksumConsumerTest
+    extends TestCase
+{
+    private static final String PATH = "org/example/example/1.0/example-1.0.jar";
+
+    // sha1 of "content"
+    private static final String SHA1 = "040f06fd774092478d450774f5ba30c5da78acc8";
+
+    private ValidateChecksumConsumer consumer;
+
+    private ConsumerMonitor monitor;
+
+    private File repositoryDir;
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        repositoryDir = new File( "target/validate-checksums" );
+        FileUtils.deleteDirectory( repositoryDir );
+        FileUtils.writeStringToFile( new File( repositoryDir, PATH ), "content" );
+
+        consumer = new ValidateChecksumConsumer();
+        consumer.initialize();
+        monitor = mock( ConsumerMonitor.class );
+        consumer.addConsumerMonitor( monitor );
+
+        ManagedRepository repository = new ManagedRepository();
+        repository.setId( "test-repo" );
+        repository.setLocation( repositoryDir.getPath() );
+        consumer.beginScan( repository, new Date() );
+    }
+
+    @Test
+    public void testValidChecksum()
+        throws Exception
+    {
+        FileUtils.writeStringToFile( new File( repositoryDir, PATH + ".sha1" ), SHA1 + "  example-1.0.jar" );
+
+        consumer.processFile( PATH + ".sha1" );
+
+        verifyZeroInteractions( monitor );
+    }
+
+    @Test
+    public void testInvalidChecksum()
+        throws Exception
+    {
+        FileUtils.writeStringToFile( new File( repositoryDir, PATH + ".sha1" ),
+                                     "0000000000000000000000000000000000000000" );
+
+        consumer.processFile( PATH + ".sha1" );
+
+        verify( monitor ).consumerWarning( same( consumer ), eq( "checksum-not-valid" ), anyString() );
+        verify( monitor, never() ).consumerError( same( consumer ), anyString(), anyString() );
+    }
+
+    @Test
+    public void testChecksumOfAnotherFile()
+        throws Exception
+    {
+        FileUtils.writeStringToFile( new File( repositoryDir, PATH + ".sha1" ), SHA1 + "  other-1.0.jar" );
+
+        consumer.processFile( PATH + ".sha1" );
+
+        // not a checksum of the file rather than an invalid checksum
+        verify( monitor ).consumerError( same( consumer ), eq( "checksum-digester-failure" ), anyString() );
+        verify( monitor, never() ).consumerWarning( same( consumer ), anyString(), anyString() );
+    }
+}
@@ -26,15 +26,19 @@
 import org.apache.archiva.configuration.FileTypes;
 import org.apache.archiva.consumers.AbstractMonitoredConsumer;
 import org.apache.archiva.consumers.ConsumerException;
+import org.apache.archiva.consumers.FlushableConsumer;
 import org.apache.archiva.consumers.KnownRepositoryContentConsumer;
+import org.apache.archiva.consumers.RemovedContentConsumer;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
 import org.apache.archiva.metadata.model.ProjectMetadata;
 import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
+import org.apache.archiva.metadata.repository.MetadataResolutionException;
 import org.apache.archiva.metadata.repository.RepositorySession;
 import org.apache.archiva.metadata.repository.RepositorySessionFactory;
 import org.apache.archiva.metadata.repository.storage.ReadMetadataRequest;
+import org.apache.archiva.metadata.repository.storage.RepositoryPathTranslator;
 import org.apache.archiva.metadata.repository.storage.RepositoryStorage;
 import org.apache.archiva.metadata.repository.storage.RepositoryStorageMetadataInvalidException;
 import org.apache.archiva.metadata.repository.storage.RepositoryStorageMetadataNotFoundException;
@@ -50,17 +54,22 @@
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Take an artifact off of disk and put it into the metadata repository.
+ * Take an artifact off of disk and put it into the metadata repository, and take it out again once it was removed from
+ * the disk.
  */
 @Service ("knownRepositoryContentConsumer#create-archiva-metadata")
 @Scope ("prototype")
 public class ArchivaMetadataCreationConsumer
     extends AbstractMonitoredConsumer
-    implements KnownRepositoryContentConsumer, RegistryListener
+    implements KnownRepositoryContentConsumer, RemovedContentConsumer, FlushableConsumer, RegistryListener
 {
     private String id = "create-archiva-metadata";
 
@@ -90,10 +99,36 @@
     @Named (value = "repositoryStorage#maven2")
     private RepositoryStorage repositoryStorage;
 
+    @Inject
+    @Named (value = "repositoryPathTranslator#maven2")
+    private RepositoryPathTranslator pathTranslator;
+
     private static final Logger log = LoggerFactory.getLogger( ArchivaMetadataCreationConsumer.class );
 
     private String repoId;
 
+    /**
+     * Number of artifacts stored together while scanning an entire repository, 1 stores every artifact on its own.
+     */
+    private int batchSize = Integer.getInteger( "archiva.metadata.batchSize", 100 );
+
+    /**
+     * Milliseconds after which the artifacts read since the last store are stored, even if there are less than
+     * {@link #batchSize}.
+     */
+    private long batchMaxTime = Long.getLong( "archiva.metadata.batchMaxTime", 10000L );
+
+    /**
+     * Session storing the batches of the current scan.
+     */
+    private RepositorySession batchSession;
+
+    private final Map<String, VersionUpdate> pendingUpdates = new LinkedHashMap<>();
+
+    private int pendingArtifacts;
+
+    private long batchStarted;
+
     @Override
     public String getId()
     {
@@ -137,76 +172,223 @@ public void beginScan( ManagedRepository repository, Date whenGathered, boolean
     public void processFile( String path )
         throws ConsumerException
     {
+        processFile( path, false );
+    }
 
-        RepositorySession repositorySession = repositorySessionFactory.createSession();
-        try
+    @Override
+    public void processFile( String path, boolean executeOnEntireRepo )
+        throws ConsumerException
+    {
+        // note that we do minimal processing including checksums and POM information for performance of
+        // the initial scan. Any request for this information will be intercepted and populated on-demand
+        // or picked up by subsequent scans
+
+        if ( !executeOnEntireRepo || batchSize <= 1 )
         {
-            // note that we do minimal processing including checksums and POM information for performance of
-            // the initial scan. Any request for this information will be intercepted and populated on-demand
-            // or picked up by subsequent scans
+            Map<String, VersionUpdate> updates = new LinkedHashMap<>();
+            if ( readArtifact( path, updates ) )
+            {
+                RepositorySession repositorySession = repositorySessionFactory.createSession();
+                try
+                {
+                    store( repositorySession, updates.values() );
+                }
+                finally
+                {
+                    repositorySession.close();
+                }
+            }
+            return;
+        }
 
-            ArtifactMetadata artifact = repositoryStorage.readArtifactMetadataFromPath( repoId, path );
+        if ( pendingArtifacts == 0 )
+        {
+            batchStarted = System.currentTimeMillis();
+        }
+        if ( readArtifact( path, pendingUpdates ) )
+        {
+            pendingArtifacts++;
+        }
+        if ( pendingArtifacts >= batchSize || System.currentTimeMillis() - batchStarted >= batchMaxTime )
+        {
+            flush();
+        }
+    }
 
-            ProjectMetadata project = new ProjectMetadata();
-            project.setNamespace( artifact.getNamespace() );
-            project.setId( artifact.getProject() );
+    /**
+     * Reads the metadata of an artifact and adds it to the update of its project version. The POM of a version is only
+     * read for the first of its artifacts.
+     *
+     * @return whether the artifact was added
+     */
+    private boolean readArtifact( String path, Map<String, VersionUpdate> updates )
+    {
+        try
+        {
+            ArtifactMetadata artifact = repositoryStorage.readArtifactMetadataFromPath( repoId, path );
+            artifact.setWhenGathered( whenGathered );
 
             String projectVersion = VersionUtil.getBaseVersion( artifact.getVersion() );
+            String key = artifact.getNamespace() + ":" + artifact.getProject() + ":" + projectVersion;
 
-            MetadataRepository metadataRepository = repositorySession.getRepository();
+            VersionUpdate update = updates.get( key );
+            if ( update == null )
+            {
+                update = new VersionUpdate( artifact.getNamespace(), artifact.getProject(), projectVersion,
+                                            readProjectVersion( path, artifact, projectVersion ) );
+                updates.put( key, update );
+            }
+            update.artifacts.add( artifact );
+            return true;
+        }
+        catch ( RepositoryStorageRuntimeException e )
+        {
+            log.warn(
+                "Error occurred persisting metadata for artifact:{} (repository:{}); message: {}",
+                path, repoId, e.getMessage(), e );
+            return false;
+        }
+    }
 
-            boolean createVersionMetadata = false;
+    /**
+     * @return the version metadata to store, or <code>null</code> if the POM is invalid and the version metadata is
+     *         left as it is
+     */
+    private ProjectVersionMetadata readProjectVersion( String path, ArtifactMetadata artifact, String projectVersion )
+    {
+        try
+        {
+            ReadMetadataRequest readMetadataRequest =
+                new ReadMetadataRequest().repositoryId( repoId ).namespace( artifact.getNamespace() ).projectId(
+                    artifact.getProject() ).projectVersion( projectVersion );
+            return repositoryStorage.readProjectVersionMetadata( readMetadataRequest );
+        }
+        catch ( RepositoryStorageMetadataNotFoundException e )
+        {
+            log.warn( "Missing or invalid POM for artifact:{} (repository:{}); creating empty metadata", path,
+                      repoId );
+
+            ProjectVersionMetadata versionMetadata = new ProjectVersionMetadata();
+            versionMetadata.setId( projectVersion );
+            versionMetadata.setIncomplete( true );
+            return versionMetadata;
+        }
+        catch ( RepositoryStorageMetadataInvalidException e )
+        {
+            log.warn( "Error occurred resolving POM for artifact:{} (repository:{}); message: {}",
+                      new Object[]{ path, repoId, e.getMessage() } );
+            return null;
+        }
+    }
 
-            // FIXME: maybe not too efficient since it may have already been read and stored for this artifact
-            ProjectVersionMetadata versionMetadata = null;
-            try
+    /**
+     * Stores the updates and saves the session. If that fails, the updates are reverted and stored again one project
+     * version at a time, so a single failing version doesn't lose the others.
+     */
+    private void store( RepositorySession repositorySession, Collection<VersionUpdate> updates )
+    {
+        try
+        {
+            for ( VersionUpdate update : updates )
             {
-                ReadMetadataRequest readMetadataRequest =
-                    new ReadMetadataRequest().repositoryId( repoId ).namespace( artifact.getNamespace() ).projectId(
-                        artifact.getProject() ).projectVersion( projectVersion );
-                versionMetadata = repositoryStorage.readProjectVersionMetadata( readMetadataRequest );
-                createVersionMetadata = true;
+                update.store( repositorySession.getRepository(), repoId );
             }
-            catch ( RepositoryStorageMetadataNotFoundException e )
+            repositorySession.save();
+        }
+        catch ( MetadataRepositoryException | RuntimeException e )
+        {
+            repositorySession.revert();
+            if ( updates.size() == 1 )
             {
-                log.warn( "Missing or invalid POM for artifact:{} (repository:{}); creating empty metadata", path,
-                          repoId );
+                log.warn( "Error occurred persisting metadata for artifacts:{} (repository:{}); message: {}",
+                          updates.iterator().next().getArtifactIds(), repoId, e.getMessage(), e );
+                return;
+            }
 
-                versionMetadata = new ProjectVersionMetadata();
-                versionMetadata.setId( projectVersion );
-                versionMetadata.setIncomplete( true );
-                createVersionMetadata = true;
+            log.warn( "Error occurred persisting metadata for {} project versions (repository:{}), storing them one "
+                          + "by one; message: {}", updates.size(), repoId, e.getMessage() );
+            for ( VersionUpdate update : updates )
+            {
+                store( repositorySession, Collections.singletonList( update ) );
             }
-            catch ( RepositoryStorageMetadataInvalidException e )
+        }
+    }
+
+    /**
+     * Stores the pending updates of the scan in one go.
+     */
+    @Override
+    public void flush()
+    {
+        if ( pendingUpdates.isEmpty() )
+        {
+            return;
+        }
+        if ( batchSession == null )
+        {
+            batchSession = repositorySessionFactory.createSession();
+        }
+        long start = System.currentTimeMillis();
+        store( batchSession, pendingUpdates.values() );
+        log.debug( "Stored metadata of {} artifacts in {} project versions (repository:{}) in {} ms",
+                   pendingArtifacts, pendingUpdates.size(), repoId, System.currentTimeMillis() - start );
+
+        pendingUpdates.clear();
+        pendingArtifacts = 0;
+    }
+
+    /**
+     * Removes the metadata of a removed artifact. The artifacts pending in the batch are stored first, whatever their
+     * number: one of them may be the artifact removed, and storing it after the removal would bring it back.
+     */
+    @Override
+    public void processRemovedFile( String path )
+        throws ConsumerException
+    {
+        flush();
+
+        RepositorySession repositorySession = repositorySessionFactory.createSession();
+        try
+        {
+            ArtifactMetadata artifact = pathTranslator.getArtifactForPath( repoId, path );
+            String projectVersion = VersionUtil.getBaseVersion( artifact.getVersion() );
+
+            MetadataRepository metadataRepository = repositorySession.getRepository();
+
+            // depending on the metadata store this removes every artifact of the version, put the others back
+            List<ArtifactMetadata> others = new ArrayList<>();
+            for ( ArtifactMetadata other : metadataRepository.getArtifacts( repoId, artifact.getNamespace(),
+                                                                            artifact.getProject(), projectVersion ) )
             {
-                log.warn( "Error occurred resolving POM for artifact:{} (repository:{}); message: {}",
-                          new Object[]{ path, repoId, e.getMessage() } );
+                if ( !other.getId().equals( artifact.getId() ) && other.getVersion().equals( artifact.getVersion() ) )
+                {
+                    others.add( other );
+                }
             }
 
-            // read the metadata and update it if it is newer or doesn't exist
-            artifact.setWhenGathered( whenGathered );
-            metadataRepository.updateArtifact( repoId, project.getNamespace(), project.getId(), projectVersion,
-                                               artifact );
-            if ( createVersionMetadata )
+            metadataRepository.removeArtifact( artifact, projectVersion );
+            for ( ArtifactMetadata other : others )
             {
-                metadataRepository.updateProjectVersion( repoId, project.getNamespace(), project.getId(),
-                                                         versionMetadata );
+                metadataRepository.updateArtifact( repoId, other.getNamespace(), other.getProject(), projectVersion,
+                                                   other );
             }
-            metadataRepository.updateProject( repoId, project );
             repositorySession.save();
         }
+        catch ( IllegalArgumentException e )
+        {
+            // not an artifact path, nothing was stored for it
+            log.debug( "Not removing metadata for {} (repository:{}): {}", path, repoId, e.getMessage() );
+        }
         catch ( MetadataRepositoryException e )
         {
-            log.warn(
-                "Error occurred persisting metadata for artifact:{} (repository:{}); message: {}" ,
-                path, repoId, e.getMessage(), e );
+            log.warn( "Error occurred removing metadata for artifact:{} (repository:{}); message: {}", path, repoId,
+                      e.getMessage(), e );
             repositorySession.revert();
         }
-        catch ( RepositoryStorageRuntimeException e )
+        catch ( MetadataResolutionException e )
         {
-            log.warn(
-                "Error occurred persisting metadata for artifact:{} (repository:{}); message: {}",
-                path, repoId, e.getMessage(), e );
+            log.warn( "Error occurred removing metadata for artifact:{} (repository:{}); message: {}", path, repoId,
+                      e.getMessage(), e );
             repositorySession.revert();
         }
         finally
@@ -215,17 +397,21 @@ public void processFile( String path )
         }
     }
 
-    @Override
-    public void processFile( String path, boolean executeOnEntireRepo )
-        throws ConsumerException
-    {
-        processFile( path );
-    }
-
     @Override
     public void completeScan()
     {
-        /* do nothing */
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            if ( batchSession != null )
+            {
+                batchSession.close();
+                batchSession = null;
+            }
+        }
     }
 
     @Override
@@ -254,6 +440,16 @@ private void initIncludes()
         includes = new ArrayList<String>( filetypes.getFileTypePatterns( FileTypes.ARTIFACTS ) );
     }
 
+    public void setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+    }
+
+    public void setBatchMaxTime( long batchMaxTime )
+    {
+        this.batchMaxTime = batchMaxTime;
+    }
+
     @PostConstruct
     public void initialize()
     {
@@ -261,4 +457,54 @@ public void initialize()
 
         initIncludes();
     }
+
+    /**
+     * The artifacts read for a project version, stored with the version and project metadata.
+     */
+    private static class VersionUpdate
+    {
+        private final ProjectMetadata project = new ProjectMetadata();
+
+        private final String projectVersion;
+
+        private final ProjectVersionMetadata versionMetadata;
+
+        private final List<ArtifactMetadata> artifacts = new ArrayList<>();
+
+        VersionUpdate( String namespace, String projectId, String projectVersion,
+                       ProjectVersionMetadata versionMetadata )
+        {
+            this.project.setNamespace( namespace );
+            this.project.setId( projectId );
+            this.projectVersion = projectVersion;
+            this.versionMetadata = versionMetadata;
+        }
+
+        void store( MetadataRepository metadataRepository, String repoId )
+            throws MetadataRepositoryException
+        {
+            // read the metadata and update it if it is newer or doesn't exist
+            for ( ArtifactMetadata artifact : artifacts )
+            {
+                metadataRepository.updateArtifact( repoId, project.getNamespace(), project.getId(), projectVersion,
+                                                   artifact );
+            }
+            if ( versionMetadata != null )
+            {
+                metadataRepository.updateProjectVersion( repoId, project.getNamespace(), project.getId(),
+                                                         versionMetadata );
+            }
+            metadataRepository.updateProject( repoId, project );
+        }
+
+        List<String> getArtifactIds()
+        {
+            List<String> ids = new ArrayList<>( artifacts.size() );
+            for ( ArtifactMetadata artifact : artifacts )
+            {
+                ids.add( artifact.getId() );
+            }
+            return ids;
+        }
+    }
 }
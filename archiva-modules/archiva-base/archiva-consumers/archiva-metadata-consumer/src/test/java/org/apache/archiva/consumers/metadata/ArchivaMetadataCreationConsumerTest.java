@@ -0,0 +1,251 @@
+package org.apache.archiva.consumers.metadata;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.admin.model.beans.ManagedRepository;
+import org.apache.archiva.configuration.ArchivaConfiguration;
+import org.apache.archiva.configuration.FileTypes;
+import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.model.ProjectMetadata;
+import org.apache.archiva.metadata.model.ProjectVersionMetadata;
+import org.apache.archiva.metadata.repository.MetadataRepository;
+import org.apache.archiva.metadata.repository.MetadataRepositoryException;
+import org.apache.archiva.metadata.repository.RepositorySession;
+import org.apache.archiva.metadata.repository.RepositorySessionFactory;
+import org.apache.archiva.metadata.repository.storage.ReadMetadataRequest;
+import org.apache.archiva.metadata.repository.storage.RepositoryPathTranslator;
+import org.apache.archiva.metadata.repository.storage.RepositoryStorage;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * ArchivaMetadataCreationConsumerTest - when the consumer stores the artifacts of a scan, with the metadata repository
+ * mocked.
+ */
+public class ArchivaMetadataCreationConsumerTest
+    extends TestCase
+{
+    private static final String REPO_ID = "test-repo";
+
+    private static final String NAMESPACE = "org.example";
+
+    @Mock
+    private ArchivaConfiguration configuration;
+
+    @Mock
+    private FileTypes filetypes;
+
+    @Mock
+    private RepositorySessionFactory repositorySessionFactory;
+
+    @Mock
+    private RepositoryStorage repositoryStorage;
+
+    @Mock
+    private RepositoryPathTranslator pathTranslator;
+
+    @InjectMocks
+    private ArchivaMetadataCreationConsumer consumer;
+
+    private RepositorySession session;
+
+    private MetadataRepository metadataRepository;
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        MockitoAnnotations.initMocks( this );
+
+        metadataRepository = mock( MetadataRepository.class );
+        session = mock( RepositorySession.class );
+        when( session.getRepository() ).thenReturn( metadataRepository );
+        when( repositorySessionFactory.createSession() ).thenReturn( session );
+        when( repositoryStorage.readProjectVersionMetadata( any( ReadMetadataRequest.class ) ) ).thenReturn(
+            new ProjectVersionMetadata() );
+
+        ManagedRepository repository = new ManagedRepository();
+        repository.setId( REPO_ID );
+        consumer.beginScan( repository, new Date(), true );
+        consumer.setBatchSize( 3 );
+        consumer.setBatchMaxTime( Long.MAX_VALUE );
+    }
+
+    /**
+     * Has the consumer process an artifact of an entire repository scan.
+     *
+     * @return the path of the artifact
+     */
+    private String process( String project, String version )
+        throws Exception
+    {
+        String path = NAMESPACE.replace( '.', '/' ) + "/" + project + "/" + version + "/" + project + "-" + version
+            + ".jar";
+        when( repositoryStorage.readArtifactMetadataFromPath( REPO_ID, path ) ).thenReturn(
+            createArtifact( project, version ) );
+        consumer.processFile( path, true );
+        return path;
+    }
+
+    private static ArtifactMetadata createArtifact( String project, String version )
+    {
+        ArtifactMetadata artifact = new ArtifactMetadata();
+        artifact.setRepositoryId( REPO_ID );
+        artifact.setNamespace( NAMESPACE );
+        artifact.setProject( project );
+        artifact.setVersion( version );
+        artifact.setProjectVersion( version );
+        artifact.setId( project + "-" + version + ".jar" );
+        return artifact;
+    }
+
+    @Test
+    public void testBatchStoredOnceFull()
+        throws Exception
+    {
+        process( "lib", "1.0" );
+        process( "lib", "1.1" );
+
+        verifyZeroInteractions( metadataRepository );
+        verify( session, never() ).save();
+
+        process( "lib", "1.2" );
+
+        verify( metadataRepository, times( 3 ) ).updateArtifact( eq( REPO_ID ), eq( NAMESPACE ), eq( "lib" ),
+                                                                 anyString(), any( ArtifactMetadata.class ) );
+        verify( metadataRepository, times( 3 ) ).updateProjectVersion( eq( REPO_ID ), eq( NAMESPACE ), eq( "lib" ),
+                                                                       any( ProjectVersionMetadata.class ) );
+        verify( session ).save();
+    }
+
+    @Test
+    public void testBatchStoredOnceTooOld()
+        throws Exception
+    {
+        consumer.setBatchMaxTime( 0 );
+
+        process( "lib", "1.0" );
+
+        verify( metadataRepository ).updateArtifact( eq( REPO_ID ), eq( NAMESPACE ), eq( "lib" ), eq( "1.0" ),
+                                                     any( ArtifactMetadata.class ) );
+        verify( session ).save();
+    }
+
+    @Test
+    public void testBatchStoredOnCompleteScan()
+        throws Exception
+    {
+        process( "lib", "1.0" );
+        process( "app", "2.0" );
+        verify( session, never() ).save();
+
+        consumer.completeScan( true );
+
+        verify( metadataRepository, times( 2 ) ).updateProject( eq( REPO_ID ), any( ProjectMetadata.class ) );
+        verify( metadataRepository, times( 2 ) ).updateArtifact( eq( REPO_ID ), eq( NAMESPACE ), anyString(),
+                                                                 anyString(), any( ArtifactMetadata.class ) );
+        verify( session ).save();
+        verify( session ).close();
+    }
+
+    @Test
+    public void testBatchStoredOnFlush()
+        throws Exception
+    {
+        process( "lib", "1.0" );
+        verify( session, never() ).save();
+
+        consumer.flush();
+
+        verify( session ).save();
+
+        // nothing pending anymore
+        consumer.flush();
+        verify( session ).save();
+    }
+
+    @Test
+    public void testBatchStoredBeforeRemoval()
+        throws Exception
+    {
+        String path = process( "lib", "1.0" );
+        ArtifactMetadata removed = createArtifact( "lib", "1.0" );
+        when( pathTranslator.getArtifactForPath( REPO_ID, path ) ).thenReturn( removed );
+        when( metadataRepository.getArtifacts( REPO_ID, NAMESPACE, "lib", "1.0" ) ).thenReturn(
+            Collections.<ArtifactMetadata>emptyList() );
+
+        consumer.processRemovedFile( path );
+
+        InOrder inOrder = inOrder( metadataRepository, session );
+        inOrder.verify( metadataRepository ).updateArtifact( eq( REPO_ID ), eq( NAMESPACE ), eq( "lib" ), eq( "1.0" ),
+                                                             any( ArtifactMetadata.class ) );
+        inOrder.verify( session ).save();
+        inOrder.verify( metadataRepository ).removeArtifact( removed, "1.0" );
+        inOrder.verify( session ).save();
+    }
+
+    @Test
+    public void testFailingVersionStoredAlone()
+        throws Exception
+    {
+        doThrow( new MetadataRepositoryException( "failing version" ) ).when( metadataRepository ).updateArtifact(
+            eq( REPO_ID ), eq( NAMESPACE ), eq( "bad" ), anyString(), any( ArtifactMetadata.class ) );
+
+        process( "good", "1.0" );
+        process( "bad", "1.0" );
+        consumer.completeScan( true );
+
+        // the batch is reverted, then each version is stored on its own
+        verify( metadataRepository, times( 2 ) ).updateArtifact( eq( REPO_ID ), eq( NAMESPACE ), eq( "good" ),
+                                                                 eq( "1.0" ), any( ArtifactMetadata.class ) );
+        verify( metadataRepository, times( 2 ) ).updateArtifact( eq( REPO_ID ), eq( NAMESPACE ), eq( "bad" ),
+                                                                 eq( "1.0" ), any( ArtifactMetadata.class ) );
+        verify( session, times( 2 ) ).revert();
+        verify( session ).save();
+    }
+
+    @Test
+    public void testSingleFileStoredAtOnce()
+        throws Exception
+    {
+        String path = NAMESPACE.replace( '.', '/' ) + "/lib/1.0/lib-1.0.jar";
+        when( repositoryStorage.readArtifactMetadataFromPath( REPO_ID, path ) ).thenReturn(
+            createArtifact( "lib", "1.0" ) );
+
+        consumer.processFile( path );
+
+        verify( metadataRepository ).updateArtifact( eq( REPO_ID ), eq( NAMESPACE ), eq( "lib" ), eq( "1.0" ),
+                                                     any( ArtifactMetadata.class ) );
+        verify( session ).save();
+        verify( session ).close();
+    }
+}
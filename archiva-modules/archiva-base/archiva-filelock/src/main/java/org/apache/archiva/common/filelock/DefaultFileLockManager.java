@@ -19,7 +19,6 @@
  * under the License.
  */
 
-import org.apache.commons.lang.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -31,19 +30,28 @@
 import java.nio.channels.ClosedChannelException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
 
 /**
- * @author Olivier Lamy
- * @since 2.0.0
+ * File lock manager where the read locks of a file are shared and the write lock is exclusive.
+ * <p>
+ * Inside the JVM each locked file has a {@link StampedLock}, waiting threads are parked until the lock
+ * is available or the timeout is reached. The entries are reference counted and removed once no thread
+ * holds or waits for the lock of the file. To protect the file against other processes, the writer
+ * holds an exclusive file system lock and the readers share one file system lock as long as at least
+ * one of them holds the read lock.
+ * </p>
+ * <p>
+ * The locks are not reentrant: a thread asking for the write lock of a file it has already locked
+ * waits until the timeout is reached.
+ * </p>
  */
 @Service("fileLockManager#default")
 public class DefaultFileLockManager
     implements FileLockManager
 {
-    // TODO currently we create lock for read and write!!
-    // the idea could be to store lock here with various clients read/write
-    // only read could be a more simple lock and acquire a write lock means waiting the end of all reading threads
-    private static final ConcurrentMap<File, Lock> lockFiles = new ConcurrentHashMap<File, Lock>( 64 );
+    private static final ConcurrentMap<File, LockEntry> lockFiles = new ConcurrentHashMap<File, LockEntry>( 64 );
 
     private boolean skipLocking = true;
 
@@ -61,84 +69,41 @@ public Lock readFileLock( File file )
             return new Lock( file );
 
         }
-        StopWatch stopWatch = new StopWatch();
-        boolean acquired = false;
         mkdirs( file.getParentFile() );
 
-        Lock lock = null;
-
-        stopWatch.start();
-
-        while ( !acquired )
+        LockEntry entry = acquireEntry( file );
+        long stamp = 0;
+        boolean acquired = false;
+        try
         {
-            // Make sure that not a bad lock is returned, if a exception was thrown.
-            lock = null;
-
-            if ( timeout > 0 )
-            {
-                long delta = stopWatch.getTime();
-                log.debug( "delta {}, timeout {}", delta, timeout );
-                if ( delta > timeout )
-                {
-                    log.warn( "Cannot acquire read lock within {} millis. Will skip the file: {}", timeout, file );
-                    // we could not get the lock within the timeout period, so  throw  FileLockTimeoutException
-                    throw new FileLockTimeoutException();
-                }
-            }
-
-            Lock current = lockFiles.get( file );
-
-            if ( current != null )
-            {
-                log.trace( "read lock file exist continue wait" );
-                continue;
-            }
+            stamp = awaitLock( entry, false );
 
-            try
+            Lock lock;
+            synchronized ( entry )
             {
-                lock = new Lock( file, false );
-                createNewFileQuietly( file );
-                lock.openLock( false, timeout > 0 );
-                // We are not returning an existing lock. If the lock is not
-                // exclusive, another thread may release the lock and the client
-                // knows nothing about it.
-                // The only atomic operation is the putIfAbsent operation, so if
-                // this returns null everything is OK, otherwise we should start at
-                // the beginning.
-                current = lockFiles.putIfAbsent( file, lock );
-                if ( current == null )
+                if ( entry.readers == 0 )
                 {
-                    // Success
-                    acquired = true;
-                } else {
-                    // We try again
-                    lock.close();
-                    lock=null;
+                    // the first reader takes the file system lock shared by all readers
+                    entry.sharedLock = openLock( file, false );
                 }
+                entry.readers++;
+                lock = new Lock( file, entry.sharedLock );
             }
-            catch ( FileNotFoundException e )
+            lock.setLockEntry( entry, stamp );
+            acquired = true;
+            return lock;
+        }
+        finally
+        {
+            if ( !acquired )
             {
-                // can happen if an other thread has deleted the file
-                // close RandomAccessFile!!!
-                if ( lock != null )
+                if ( stamp != 0 )
                 {
-                    closeQuietly( lock.getRandomAccessFile() );
+                    entry.stampedLock.unlockRead( stamp );
                 }
-                log.debug( "read Lock skip: {} try to create file", e.getMessage() );
-                createNewFileQuietly( file );
-            }
-            catch ( IOException e )
-            {
-                throw new FileLockException( e.getMessage(), e );
-            }
-            catch ( IllegalStateException e )
-            {
-                log.trace( "openLock {}:{}", e.getClass(), e.getMessage() );
+                releaseEntry( entry );
             }
         }
-
-        return lock;
-
     }
 
 
@@ -153,84 +118,114 @@ public Lock writeFileLock( File file )
 
         mkdirs( file.getParentFile() );
 
-        StopWatch stopWatch = new StopWatch();
+        LockEntry entry = acquireEntry( file );
+        long stamp = 0;
         boolean acquired = false;
+        try
+        {
+            stamp = awaitLock( entry, true );
 
-        Lock lock = null;
-
-        stopWatch.start();
-
-        while ( !acquired )
+            Lock lock = openLock( file, true );
+            lock.setLockEntry( entry, stamp );
+            acquired = true;
+            return lock;
+        }
+        finally
         {
-            // Make sure that not a bad lock is returned, if a exception was thrown.
-            lock = null;
-            if ( timeout > 0 )
+            if ( !acquired )
             {
-                long delta = stopWatch.getTime();
-                log.debug( "delta {}, timeout {}", delta, timeout );
-                if ( delta > timeout )
+                if ( stamp != 0 )
                 {
-                    log.warn( "Cannot acquire read lock within {} millis. Will skip the file: {}", timeout, file );
-                    // we could not get the lock within the timeout period, so throw FileLockTimeoutException
-                    throw new FileLockTimeoutException();
+                    entry.stampedLock.unlockWrite( stamp );
                 }
+                releaseEntry( entry );
             }
+        }
+    }
 
-            Lock current = lockFiles.get( file );
-
-            try
-            {
-
-                if ( current != null )
-                {
-                    log.trace( "write lock file exist continue wait" );
-
-                    continue;
-                }
-                lock = new Lock( file, true );
-                createNewFileQuietly( file );
-                lock.openLock( true, timeout > 0 );
-                // We are not returning an existing lock. If the lock is not
-                // exclusive, another thread may release the lock and the client
-                // knows nothing about it.
-                // The only atomic operation is the putIfAbsent operation, so if
-                // this returns null everything is OK, otherwise we should start at
-                // the beginning.
-                current = lockFiles.putIfAbsent( file, lock );
-                if ( current == null )
-                {
-                    // Success
-                    acquired = true;
-                } else {
-                    // We try again
-                    lock.close();
-                    lock=null;
-                }
-            }
-            catch ( FileNotFoundException e )
-            {
-                // can happen if an other thread has deleted the file
-                // close RandomAccessFile!!!
-                if ( lock != null )
-                {
-                    closeQuietly( lock.getRandomAccessFile() );
-                }
-                log.debug( "write Lock skip: {} try to create file", e.getMessage() );
-                createNewFileQuietly( file );
-            }
-            catch ( IOException e )
+    private long awaitLock( LockEntry entry, boolean write )
+        throws FileLockException, FileLockTimeoutException
+    {
+        StampedLock stampedLock = entry.stampedLock;
+        long stamp;
+        try
+        {
+            if ( timeout > 0 )
             {
-                throw new FileLockException( e.getMessage(), e );
+                stamp = write
+                    ? stampedLock.tryWriteLock( timeout, TimeUnit.MILLISECONDS )
+                    : stampedLock.tryReadLock( timeout, TimeUnit.MILLISECONDS );
             }
-            catch ( IllegalStateException e )
+            else
             {
-                log.trace( "openLock {}:{}", e.getClass(), e.getMessage() );
+                stamp = write ? stampedLock.writeLockInterruptibly() : stampedLock.readLockInterruptibly();
             }
         }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new FileLockException( "Interrupted while waiting for the lock of " + entry.file, e );
+        }
 
-        return lock;
+        if ( stamp == 0 )
+        {
+            log.warn( "Cannot acquire {} lock within {} millis. Will skip the file: {}", write ? "write" : "read",
+                      timeout, entry.file );
+            // we could not get the lock within the timeout period, so throw FileLockTimeoutException
+            throw new FileLockTimeoutException();
+        }
+        return stamp;
+    }
 
+    private Lock openLock( File file, boolean write )
+        throws FileLockException
+    {
+        Lock lock = null;
+        try
+        {
+            createNewFileQuietly( file );
+            lock = new Lock( file, write );
+            lock.openLock( write, timeout > 0 );
+            return lock;
+        }
+        catch ( FileNotFoundException e )
+        {
+            // can happen if an other process has deleted the file
+            throw new FileLockException( e.getMessage(), e );
+        }
+        catch ( IOException e )
+        {
+            // close RandomAccessFile!!!
+            closeQuietly( lock.getRandomAccessFile() );
+            throw new FileLockException( e.getMessage(), e );
+        }
+        catch ( IllegalStateException e )
+        {
+            // the file is locked in this JVM without going through this manager
+            closeQuietly( lock.getRandomAccessFile() );
+            throw new FileLockException( e.getMessage(), e );
+        }
+    }
 
+    private LockEntry acquireEntry( final File file )
+    {
+        return lockFiles.compute( file, ( key, current ) -> {
+            LockEntry entry = current == null ? new LockEntry( key ) : current;
+            entry.references++;
+            return entry;
+        } );
+    }
+
+    private void releaseEntry( final LockEntry entry )
+    {
+        // the entry may already be gone if the lock files were cleared in between
+        lockFiles.computeIfPresent( entry.file, ( key, current ) -> {
+            if ( current != entry )
+            {
+                return current;
+            }
+            return --current.references == 0 ? null : current;
+        } );
     }
 
     private void closeQuietly( RandomAccessFile randomAccessFile )
@@ -275,10 +270,48 @@ public void release( Lock lock )
         {
             return;
         }
+        LockEntry entry = lock.getLockEntry();
+        if ( entry == null )
+        {
+            log.debug( "skip releasing lock not held: {}", lock );
+            return;
+        }
+        long stamp = lock.getStamp();
+        lock.setLockEntry( null, 0 );
         try
         {
-            lockFiles.remove( lock.getFile() );
-            lock.close();
+            if ( lock.isWrite().get() )
+            {
+                try
+                {
+                    lock.close();
+                }
+                finally
+                {
+                    entry.stampedLock.unlockWrite( stamp );
+                }
+            }
+            else
+            {
+                try
+                {
+                    synchronized ( entry )
+                    {
+                        // the last reader releases the shared file system lock, this has to happen
+                        // before an other reader could open a new one
+                        if ( --entry.readers == 0 )
+                        {
+                            Lock sharedLock = entry.sharedLock;
+                            entry.sharedLock = null;
+                            sharedLock.close();
+                        }
+                    }
+                }
+                finally
+                {
+                    entry.stampedLock.unlockRead( stamp );
+                }
+            }
         }
         catch ( ClosedChannelException e )
         {
@@ -289,6 +322,10 @@ public void release( Lock lock )
         {
             throw new FileLockException( e.getMessage(), e );
         }
+        finally
+        {
+            releaseEntry( entry );
+        }
     }
 
     @Override
@@ -325,4 +362,34 @@ public void setSkipLocking( boolean skipLocking )
     {
         this.skipLocking = skipLocking;
     }
+
+    /**
+     * Lock state of a file shared by all threads holding or waiting for its lock.
+     */
+    static final class LockEntry
+    {
+        final File file;
+
+        final StampedLock stampedLock = new StampedLock();
+
+        /**
+         * number of threads holding or waiting for the lock, only changed while the table maps the file
+         */
+        int references;
+
+        /**
+         * number of threads holding the read lock, guarded by this
+         */
+        int readers;
+
+        /**
+         * file system lock shared by the readers, guarded by this
+         */
+        Lock sharedLock;
+
+        LockEntry( File file )
+        {
+            this.file = file;
+        }
+    }
 }
@@ -49,6 +49,10 @@
 
     private FileChannel fileChannel;
 
+    private DefaultFileLockManager.LockEntry lockEntry;
+
+    private long stamp;
+
     public Lock( File file )
     {
         this.file = file;
@@ -63,6 +67,17 @@ public Lock( File file, boolean write )
         fileChannel = randomAccessFile.getChannel();
     }
 
+    /**
+     * Read lock sharing the file system lock of other readers, the file system lock is released by the
+     * lock manager once the last reader is gone.
+     */
+    Lock( File file, Lock sharedLock )
+    {
+        this.file = file;
+        this.write = new AtomicBoolean( false );
+        this.fileLock = sharedLock.fileLock;
+    }
+
     public File getFile()
     {
         return file;
@@ -114,7 +129,10 @@ protected void close()
         IOException ioException = null;
         try
         {
-            this.fileLock.release();
+            if ( this.fileLock != null )
+            {
+                this.fileLock.release();
+            }
         }
         catch ( IOException e )
         {
@@ -149,8 +167,28 @@ protected RandomAccessFile getRandomAccessFile()
         return randomAccessFile;
     }
 
+    DefaultFileLockManager.LockEntry getLockEntry()
+    {
+        return lockEntry;
+    }
+
+    long getStamp()
+    {
+        return stamp;
+    }
+
+    void setLockEntry( DefaultFileLockManager.LockEntry lockEntry, long stamp )
+    {
+        this.lockEntry = lockEntry;
+        this.stamp = stamp;
+    }
+
     private void closeQuietly( Closeable closeable )
     {
+        if ( closeable == null )
+        {
+            return;
+        }
         try
         {
             closeable.close();
@@ -0,0 +1,239 @@
+package org.apache.archiva.common.filelock;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Readers of a file share the lock, writers get it exclusively.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = { "classpath*:/META-INF/spring-context.xml" })
+public class DefaultFileLockManagerSharedLockTest
+{
+
+    final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Inject
+    @Named(value = "fileLockManager#default")
+    FileLockManager fileLockManager;
+
+    ExecutorService executor;
+
+    @Before
+    public void initialize()
+    {
+        fileLockManager.setSkipLocking( false );
+
+        fileLockManager.setTimeout( 10000 );
+
+        fileLockManager.clearLockFiles();
+
+        executor = Executors.newFixedThreadPool( 64 );
+    }
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testReadersShareLock()
+        throws Exception
+    {
+        final File file = new File( System.getProperty( "buildDirectory" ), "shared/foo.txt" );
+        final int readers = 8;
+        // every reader waits until all readers hold the lock, which fails if reading is exclusive
+        final CountDownLatch allReading = new CountDownLatch( readers );
+
+        List<Future<Boolean>> results = new ArrayList<>();
+        for ( int i = 0; i < readers; i++ )
+        {
+            results.add( executor.submit( new Callable<Boolean>()
+            {
+                @Override
+                public Boolean call()
+                    throws Exception
+                {
+                    Lock lock = fileLockManager.readFileLock( file );
+                    try
+                    {
+                        allReading.countDown();
+                        return allReading.await( 5, TimeUnit.SECONDS );
+                    }
+                    finally
+                    {
+                        fileLockManager.release( lock );
+                    }
+                }
+            } ) );
+        }
+
+        for ( Future<Boolean> result : results )
+        {
+            Assert.assertTrue( result.get() );
+        }
+    }
+
+    @Test
+    public void testWriterWaitsForReaders()
+        throws Exception
+    {
+        File file = new File( System.getProperty( "buildDirectory" ), "shared/bar.txt" );
+        fileLockManager.setTimeout( 500 );
+
+        Lock readLock = fileLockManager.readFileLock( file );
+        try
+        {
+            fileLockManager.writeFileLock( file );
+            Assert.fail( "write lock must not be granted while the file is read" );
+        }
+        catch ( FileLockTimeoutException e )
+        {
+            // expected
+        }
+        finally
+        {
+            fileLockManager.release( readLock );
+        }
+
+        Lock writeLock = fileLockManager.writeFileLock( file );
+        Assert.assertTrue( writeLock.isValid() );
+        fileLockManager.release( writeLock );
+    }
+
+    /**
+     * Many threads reading and writing a few hot files, no reader may ever see a writer of the same file.
+     */
+    @Test
+    public void testContention()
+        throws Exception
+    {
+        final int files = 10;
+        final int threads = 64;
+        final int iterations = 50;
+
+        final File[] hotFiles = new File[files];
+        final AtomicInteger[] activeReaders = new AtomicInteger[files];
+        final AtomicInteger[] activeWriters = new AtomicInteger[files];
+        for ( int i = 0; i < files; i++ )
+        {
+            hotFiles[i] = new File( System.getProperty( "buildDirectory" ), "contention/file-" + i + ".txt" );
+            activeReaders[i] = new AtomicInteger();
+            activeWriters[i] = new AtomicInteger();
+        }
+        final AtomicInteger violations = new AtomicInteger();
+        final AtomicInteger maxConcurrentReaders = new AtomicInteger();
+
+        List<Future<Integer>> results = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        for ( int t = 0; t < threads; t++ )
+        {
+            final int thread = t;
+            results.add( executor.submit( new Callable<Integer>()
+            {
+                @Override
+                public Integer call()
+                    throws Exception
+                {
+                    int done = 0;
+                    for ( int i = 0; i < iterations; i++ )
+                    {
+                        int index = ( thread + i ) % files;
+                        // one write for nine reads, like downloads of popular artifacts
+                        if ( ( thread * iterations + i ) % 10 == 0 )
+                        {
+                            Lock lock = fileLockManager.writeFileLock( hotFiles[index] );
+                            try
+                            {
+                                if ( activeWriters[index].incrementAndGet() != 1
+                                    || activeReaders[index].get() != 0 )
+                                {
+                                    violations.incrementAndGet();
+                                }
+                                Thread.sleep( 1 );
+                                activeWriters[index].decrementAndGet();
+                            }
+                            finally
+                            {
+                                fileLockManager.release( lock );
+                            }
+                        }
+                        else
+                        {
+                            Lock lock = fileLockManager.readFileLock( hotFiles[index] );
+                            try
+                            {
+                                int current = activeReaders[index].incrementAndGet();
+                                maxConcurrentReaders.accumulateAndGet( current, Math::max );
+                                if ( activeWriters[index].get() != 0 )
+                                {
+                                    violations.incrementAndGet();
+                                }
+                                Thread.sleep( 1 );
+                                activeReaders[index].decrementAndGet();
+                            }
+                            finally
+                            {
+                                fileLockManager.release( lock );
+                            }
+                        }
+                        done++;
+                    }
+                    return done;
+                }
+            } ) );
+        }
+
+        int done = 0;
+        for ( Future<Integer> result : results )
+        {
+            done += result.get();
+        }
+        logger.info( "{} lock operations on {} files with {} threads in {} ms, max concurrent readers {}",
+                     done, files, threads, System.currentTimeMillis() - start, maxConcurrentReaders.get() );
+
+        Assert.assertEquals( threads * iterations, done );
+        Assert.assertEquals( 0, violations.get() );
+    }
+
+}
@@ -28,7 +28,9 @@
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -64,6 +66,13 @@
      */
     public static final String FIX = "fix";
 
+    /**
+     * Prefix of the request properties holding a checksum computed while the file was transferred,
+     * followed by the checksum file extension (e.g. <code>checksum.sha1</code>). Known checksums are
+     * used instead of reading the local file again.
+     */
+    public static final String CHECKSUM_PROPERTY_PREFIX = "checksum.";
+
     private ChecksumAlgorithm[] algorithms = new ChecksumAlgorithm[]{ ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 };
 
     private List<String> options = new ArrayList<>( 3 );
@@ -108,7 +117,7 @@ public void applyPolicy( String policySetting, Properties request, File localFil
 
         if ( FAIL.equals( policySetting ) )
         {
-            ChecksummedFile checksum = new ChecksummedFile( localFile );
+            ChecksummedFile checksum = new ChecksummedFile( localFile, getKnownChecksums( request ) );
             if ( checksum.isValidChecksums( algorithms ) )
             {
                 return;
@@ -131,7 +140,7 @@ public void applyPolicy( String policySetting, Properties request, File localFil
 
         if ( FIX.equals( policySetting ) )
         {
-            ChecksummedFile checksum = new ChecksummedFile( localFile );
+            ChecksummedFile checksum = new ChecksummedFile( localFile, getKnownChecksums( request ) );
             if ( checksum.fixChecksums( algorithms ) )
             {
                 log.debug( "Checksum policy set to FIX, checksum files have been updated." );
@@ -149,6 +158,20 @@ public void applyPolicy( String policySetting, Properties request, File localFil
             "Unable to process checksum policy of [" + policySetting + "], please file a bug report." );
     }
 
+    private Map<ChecksumAlgorithm, String> getKnownChecksums( Properties request )
+    {
+        Map<ChecksumAlgorithm, String> checksums = new EnumMap<>( ChecksumAlgorithm.class );
+        for ( ChecksumAlgorithm algorithm : algorithms )
+        {
+            String value = request.getProperty( CHECKSUM_PROPERTY_PREFIX + algorithm.getExt() );
+            if ( StringUtils.isNotEmpty( value ) )
+            {
+                checksums.put( algorithm, value );
+            }
+        }
+        return checksums;
+    }
+
     @Override
     public String getDefaultOption()
     {
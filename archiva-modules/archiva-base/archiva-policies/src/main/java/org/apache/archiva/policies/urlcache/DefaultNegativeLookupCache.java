@@ -0,0 +1,372 @@
+package org.apache.archiva.policies.urlcache;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DefaultNegativeLookupCache - keeps a bounded set of 64 bit path hashes with their expiry time for each remote
+ * repository, in primitive arrays. The entries are kept in insertion order, so expired entries are purged from the head when new ones
+ * are added and the oldest entries are evicted first when the limit of a repository is reached.
+ * <p>
+ * The limit of entries per remote repository is set with the system property
+ * <code>archiva.proxy.negativeCache.maxEntries</code> (default 10000).
+ * </p>
+ *
+ * @since 3.0
+ */
+@Service( "negativeLookupCache#default" )
+public class DefaultNegativeLookupCache
+    implements NegativeLookupCache
+{
+    private final ConcurrentMap<String, MissingPaths> repositories = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private int maxEntries = Integer.getInteger( "archiva.proxy.negativeCache.maxEntries", 10000 );
+
+    @Override
+    public void cacheMissing( String repositoryId, String path, int ttlSeconds )
+    {
+        if ( ttlSeconds <= 0 )
+        {
+            return;
+        }
+        MissingPaths missingPaths = repositories.get( repositoryId );
+        if ( missingPaths == null )
+        {
+            missingPaths = new MissingPaths();
+            MissingPaths previous = repositories.putIfAbsent( repositoryId, missingPaths );
+            if ( previous != null )
+            {
+                missingPaths = previous;
+            }
+        }
+        long now = currentTimeMillis();
+        missingPaths.add( hash( path ), now + TimeUnit.SECONDS.toMillis( ttlSeconds ), now );
+    }
+
+    @Override
+    public boolean isMissing( String repositoryId, String path )
+    {
+        MissingPaths missingPaths = repositories.get( repositoryId );
+        if ( missingPaths != null && missingPaths.contains( hash( path ), currentTimeMillis() ) )
+        {
+            hits.incrementAndGet();
+            return true;
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    @Override
+    public void clear( String repositoryId )
+    {
+        repositories.remove( repositoryId );
+    }
+
+    @Override
+    public void clear()
+    {
+        repositories.clear();
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    @Override
+    public int getSize()
+    {
+        int size = 0;
+        for ( MissingPaths missingPaths : repositories.values() )
+        {
+            size += missingPaths.size();
+        }
+        return size;
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public void setMaxEntries( int maxEntries )
+    {
+        this.maxEntries = maxEntries;
+    }
+
+    protected long currentTimeMillis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the path, collisions are unlikely enough to store the hash instead of the path.
+     */
+    static long hash( String path )
+    {
+        long hash = 0xcbf29ce484222325L;
+        for ( int i = 0; i < path.length(); i++ )
+        {
+            char c = path.charAt( i );
+            hash ^= c & 0xff;
+            hash *= 0x100000001b3L;
+            hash ^= c >>> 8;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * The missing paths of a repository, kept in primitive arrays rather than a map of boxed hashes and expiry times:
+     * an open addressing table from the path hash to its expiry time, and a ring of the entries in insertion order.
+     * Each entry carries a sequence number, so the ring records of entries added again or removed since are stale
+     * and skipped when they reach the head of the ring.
+     */
+    private class MissingPaths
+    {
+        private long[] keys = new long[16];
+
+        // 0 for a free slot of the table
+        private long[] expiries = new long[16];
+
+        private long[] sequences = new long[16];
+
+        private int size;
+
+        private long[] ringHashes = new long[16];
+
+        private long[] ringSequences = new long[16];
+
+        private int ringHead;
+
+        private int ringLength;
+
+        private long nextSequence;
+
+        synchronized void add( long hash, long expiry, long now )
+        {
+            // added again at the end of the ring, so the entries stay ordered by insertion time
+            long sequence = nextSequence++;
+            put( hash, expiry, sequence );
+            offer( hash, sequence );
+
+            while ( ringLength > 0 )
+            {
+                long headHash = ringHashes[ringHead];
+                int slot = indexOf( headHash );
+                if ( expiries[slot] == 0 || sequences[slot] != ringSequences[ringHead] )
+                {
+                    // the entry was added again or removed since
+                    poll();
+                }
+                else if ( size > maxEntries || expiries[slot] <= now )
+                {
+                    poll();
+                    remove( headHash );
+                    evictions.incrementAndGet();
+                }
+                else
+                {
+                    break;
+                }
+            }
+        }
+
+        synchronized boolean contains( long hash, long now )
+        {
+            long expiry = expiries[indexOf( hash )];
+            if ( expiry == 0 )
+            {
+                return false;
+            }
+            if ( expiry <= now )
+            {
+                remove( hash );
+                evictions.incrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        synchronized int size()
+        {
+            return size;
+        }
+
+        /**
+         * @return the slot of the table holding the hash, or the free slot where it goes
+         */
+        private int indexOf( long hash )
+        {
+            int mask = keys.length - 1;
+            int slot = home( hash, mask );
+            while ( expiries[slot] != 0 && keys[slot] != hash )
+            {
+                slot = ( slot + 1 ) & mask;
+            }
+            return slot;
+        }
+
+        private void put( long hash, long expiry, long sequence )
+        {
+            int slot = indexOf( hash );
+            if ( expiries[slot] == 0 )
+            {
+                if ( ( size + 1 ) * 2 > keys.length )
+                {
+                    resizeTable( keys.length * 2 );
+                    slot = indexOf( hash );
+                }
+                keys[slot] = hash;
+                size++;
+            }
+            expiries[slot] = expiry;
+            sequences[slot] = sequence;
+        }
+
+        private void remove( long hash )
+        {
+            int mask = keys.length - 1;
+            int free = indexOf( hash );
+            if ( expiries[free] == 0 )
+            {
+                return;
+            }
+            expiries[free] = 0;
+            size--;
+
+            // move back the next entries of the probe sequence, lookups stop at the first free slot
+            int slot = free;
+            while ( true )
+            {
+                slot = ( slot + 1 ) & mask;
+                if ( expiries[slot] == 0 )
+                {
+                    return;
+                }
+                int home = home( keys[slot], mask );
+                boolean reachable = free < slot ? home > free && home <= slot : home > free || home <= slot;
+                if ( !reachable )
+                {
+                    keys[free] = keys[slot];
+                    expiries[free] = expiries[slot];
+                    sequences[free] = sequences[slot];
+                    expiries[slot] = 0;
+                    free = slot;
+                }
+            }
+        }
+
+        private void resizeTable( int capacity )
+        {
+            long[] oldKeys = keys;
+            long[] oldExpiries = expiries;
+            long[] oldSequences = sequences;
+            keys = new long[capacity];
+            expiries = new long[capacity];
+            sequences = new long[capacity];
+            for ( int i = 0; i < oldKeys.length; i++ )
+            {
+                if ( oldExpiries[i] != 0 )
+                {
+                    int slot = indexOf( oldKeys[i] );
+                    keys[slot] = oldKeys[i];
+                    expiries[slot] = oldExpiries[i];
+                    sequences[slot] = oldSequences[i];
+                }
+            }
+        }
+
+        private void offer( long hash, long sequence )
+        {
+            if ( ringLength == ringHashes.length )
+            {
+                // drop the stale records, growing the ring only when most of them are current
+                copyRing( ringLength > 2 * size ? ringHashes.length : ringHashes.length * 2 );
+                if ( ringLength == ringHashes.length )
+                {
+                    copyRing( ringHashes.length * 2 );
+                }
+            }
+            int tail = ( ringHead + ringLength ) & ( ringHashes.length - 1 );
+            ringHashes[tail] = hash;
+            ringSequences[tail] = sequence;
+            ringLength++;
+        }
+
+        private void poll()
+        {
+            ringHead = ( ringHead + 1 ) & ( ringHashes.length - 1 );
+            ringLength--;
+        }
+
+        private void copyRing( int capacity )
+        {
+            long[] copiedHashes = new long[capacity];
+            long[] copiedSequences = new long[capacity];
+            int length = 0;
+            for ( int i = 0; i < ringLength; i++ )
+            {
+                int index = ( ringHead + i ) & ( ringHashes.length - 1 );
+                int slot = indexOf( ringHashes[index] );
+                if ( expiries[slot] != 0 && sequences[slot] == ringSequences[index] )
+                {
+                    copiedHashes[length] = ringHashes[index];
+                    copiedSequences[length] = ringSequences[index];
+                    length++;
+                }
+            }
+            ringHashes = copiedHashes;
+            ringSequences = copiedSequences;
+            ringHead = 0;
+            ringLength = length;
+        }
+    }
+
+    private static int home( long hash, int mask )
+    {
+        return (int) ( hash ^ ( hash >>> 32 ) ) & mask;
+    }
+}
@@ -0,0 +1,77 @@
+package org.apache.archiva.policies.urlcache;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Cache of the resources recently not found on a remote repository, so repeated requests of missing
+ * resources (sources, javadoc, snapshots...) do not reach the remote repository again until the entry expires.
+ *
+ * @since 3.0
+ */
+public interface NegativeLookupCache
+{
+    /**
+     * Remember a resource as missing on the remote repository.
+     *
+     * @param repositoryId the id of the remote repository
+     * @param path         the path of the resource on the remote repository
+     * @param ttlSeconds   seconds the resource is remembered as missing, nothing is stored if not positive
+     */
+    void cacheMissing( String repositoryId, String path, int ttlSeconds );
+
+    /**
+     * Test if a resource is known to be missing on the remote repository.
+     *
+     * @param repositoryId the id of the remote repository
+     * @param path         the path of the resource on the remote repository
+     * @return true if the resource was not found on the remote repository and the entry did not expire yet.
+     */
+    boolean isMissing( String repositoryId, String path );
+
+    /**
+     * Forget the missing resources of the remote repository.
+     */
+    void clear( String repositoryId );
+
+    /**
+     * Forget all missing resources.
+     */
+    void clear();
+
+    /**
+     * @return the number of lookups which found the resource missing
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of lookups of resources not known as missing
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of entries removed as they expired or to respect the size limit
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the number of resources currently known as missing
+     */
+    int getSize();
+}
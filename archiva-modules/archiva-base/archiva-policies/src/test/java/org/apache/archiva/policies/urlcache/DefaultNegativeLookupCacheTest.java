@@ -0,0 +1,158 @@
+package org.apache.archiva.policies.urlcache;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * DefaultNegativeLookupCacheTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class DefaultNegativeLookupCacheTest
+    extends TestCase
+{
+    private static final String PATH = "org/apache/archiva/archiva-common/2.0/archiva-common-2.0-sources.jar";
+
+    private long now = 1000000L;
+
+    private DefaultNegativeLookupCache cache = new DefaultNegativeLookupCache()
+    {
+        @Override
+        protected long currentTimeMillis()
+        {
+            return now;
+        }
+    };
+
+    @Test
+    public void testMissingUntilExpired()
+    {
+        assertFalse( cache.isMissing( "central", PATH ) );
+
+        cache.cacheMissing( "central", PATH, 60 );
+        assertTrue( cache.isMissing( "central", PATH ) );
+        assertFalse( cache.isMissing( "other", PATH ) );
+        assertFalse( cache.isMissing( "central", PATH + ".sha1" ) );
+
+        now += 59999;
+        assertTrue( cache.isMissing( "central", PATH ) );
+
+        now += 1;
+        assertFalse( cache.isMissing( "central", PATH ) );
+        assertEquals( 0, cache.getSize() );
+
+        assertEquals( 2, cache.getHitCount() );
+        assertEquals( 4, cache.getMissCount() );
+        assertEquals( 1, cache.getEvictionCount() );
+    }
+
+    @Test
+    public void testDisabledWithoutTtl()
+    {
+        cache.cacheMissing( "central", PATH, 0 );
+        assertFalse( cache.isMissing( "central", PATH ) );
+        assertEquals( 0, cache.getSize() );
+    }
+
+    @Test
+    public void testSizeLimitEvictsOldest()
+    {
+        cache.setMaxEntries( 2 );
+        cache.cacheMissing( "central", "a", 60 );
+        cache.cacheMissing( "central", "b", 60 );
+        cache.cacheMissing( "central", "c", 60 );
+
+        assertEquals( 2, cache.getSize() );
+        assertEquals( 1, cache.getEvictionCount() );
+        assertFalse( cache.isMissing( "central", "a" ) );
+        assertTrue( cache.isMissing( "central", "b" ) );
+        assertTrue( cache.isMissing( "central", "c" ) );
+    }
+
+    @Test
+    public void testAddedAgainEvictedLast()
+    {
+        cache.setMaxEntries( 2 );
+        cache.cacheMissing( "central", "a", 60 );
+        cache.cacheMissing( "central", "b", 60 );
+        cache.cacheMissing( "central", "a", 60 );
+        cache.cacheMissing( "central", "c", 60 );
+
+        assertEquals( 2, cache.getSize() );
+        assertEquals( 1, cache.getEvictionCount() );
+        assertTrue( cache.isMissing( "central", "a" ) );
+        assertFalse( cache.isMissing( "central", "b" ) );
+        assertTrue( cache.isMissing( "central", "c" ) );
+    }
+
+    @Test
+    public void testManyEntries()
+    {
+        cache.setMaxEntries( 1000 );
+        for ( int i = 0; i < 5000; i++ )
+        {
+            cache.cacheMissing( "central", PATH + i, 60 );
+            if ( i % 3 == 0 )
+            {
+                // stale records of entries added again
+                cache.cacheMissing( "central", PATH + ( i / 2 ), 60 );
+            }
+        }
+
+        assertEquals( 1000, cache.getSize() );
+        for ( int i = 4500; i < 5000; i++ )
+        {
+            assertTrue( cache.isMissing( "central", PATH + i ) );
+        }
+        for ( int i = 0; i < 1000; i++ )
+        {
+            assertFalse( cache.isMissing( "central", PATH + i ) );
+        }
+    }
+
+    @Test
+    public void testExpiredEntriesPurgedOnAdd()
+    {
+        cache.cacheMissing( "central", "a", 1 );
+        cache.cacheMissing( "central", "b", 1 );
+        now += 1000;
+        cache.cacheMissing( "central", "c", 1 );
+
+        assertEquals( 1, cache.getSize() );
+        assertEquals( 2, cache.getEvictionCount() );
+    }
+
+    @Test
+    public void testClear()
+    {
+        cache.cacheMissing( "central", PATH, 60 );
+        cache.cacheMissing( "other", PATH, 60 );
+
+        cache.clear( "central" );
+        assertFalse( cache.isMissing( "central", PATH ) );
+        assertTrue( cache.isMissing( "other", PATH ) );
+
+        cache.clear();
+        assertEquals( 0, cache.getSize() );
+    }
+}
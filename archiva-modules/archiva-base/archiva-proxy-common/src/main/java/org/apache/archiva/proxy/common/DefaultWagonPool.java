@@ -0,0 +1,392 @@
+package org.apache.archiva.proxy.common;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.wagon.ConnectionException;
+import org.apache.maven.wagon.Wagon;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default {@link WagonPool}. The number of connections per key is bounded, idle connections are reused
+ * most recently used first and disconnected once they were idle longer than the maximum idle time. Connections
+ * returned as not reusable, e.g. after a failed transfer, are disconnected.
+ * <p>
+ * A wagon can't tell whether its connection is still open, so the maximum idle time must stay below the keep-alive
+ * timeout of the remote servers: idle connections are swept every 10 seconds and whenever a connection is borrowed or
+ * returned, and never handed out once they reached that age.
+ * </p>
+ * <p>
+ * The limits can be changed with the system properties <code>archiva.proxy.wagonPool.maxConnections</code>
+ * (per key, default 10), <code>archiva.proxy.wagonPool.maxIdleTime</code> (milliseconds, default 30000, 0 disables
+ * the reuse of connections) and <code>archiva.proxy.wagonPool.maxWaitTime</code> (milliseconds, default 60000).
+ * </p>
+ *
+ * @since 3.0
+ */
+@Service( "wagonPool#default" )
+public class DefaultWagonPool
+    implements WagonPool
+{
+    private Logger log = LoggerFactory.getLogger( getClass() );
+
+    private int maxConnections = Integer.getInteger( "archiva.proxy.wagonPool.maxConnections", 10 );
+
+    private long maxIdleTime = Long.getLong( "archiva.proxy.wagonPool.maxIdleTime", 30000L );
+
+    private long maxWaitTime = Long.getLong( "archiva.proxy.wagonPool.maxWaitTime", 60000L );
+
+    private final ConcurrentMap<WagonPoolKey, RemotePool> pools = new ConcurrentHashMap<>();
+
+    private final AtomicLong lastEviction = new AtomicLong( System.currentTimeMillis() );
+
+    private final AtomicLong borrowCount = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong creationCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final AtomicLong borrowWaitTime = new AtomicLong();
+
+    @Override
+    public PooledWagon borrowWagon( WagonPoolKey key, WagonConnector connector )
+        throws WagonFactoryException
+    {
+        evictIdleWagonsIfDue();
+
+        RemotePool pool = pools.get( key );
+        if ( pool == null )
+        {
+            RemotePool created = new RemotePool( key, maxConnections );
+            pool = pools.putIfAbsent( key, created );
+            if ( pool == null )
+            {
+                pool = created;
+            }
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+        try
+        {
+            acquired = pool.permits.tryAcquire( maxWaitTime, TimeUnit.MILLISECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new WagonFactoryException( "Interrupted while waiting for a connection to " + key.getUrl(), e );
+        }
+        finally
+        {
+            borrowWaitTime.addAndGet( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+        }
+        if ( !acquired )
+        {
+            throw new WagonFactoryException(
+                "No connection to " + key.getUrl() + " released within " + maxWaitTime + " ms", null );
+        }
+        borrowCount.incrementAndGet();
+
+        boolean borrowed = false;
+        try
+        {
+            IdleWagon idle;
+            while ( ( idle = pool.idle.pollFirst() ) != null )
+            {
+                if ( !isExpired( idle, System.currentTimeMillis() ) )
+                {
+                    hitCount.incrementAndGet();
+                    borrowed = true;
+                    return new BorrowedWagon( this, pool, idle.wagon, true );
+                }
+                evictionCount.incrementAndGet();
+                disconnect( idle.wagon );
+            }
+
+            Wagon wagon = connector.connect();
+            if ( wagon == null )
+            {
+                return null;
+            }
+            creationCount.incrementAndGet();
+            borrowed = true;
+            return new BorrowedWagon( this, pool, wagon, false );
+        }
+        finally
+        {
+            if ( !borrowed )
+            {
+                pool.permits.release();
+            }
+        }
+    }
+
+    @Override
+    public void returnWagon( PooledWagon wagon, boolean reusable )
+    {
+        BorrowedWagon borrowed = (BorrowedWagon) wagon;
+        if ( !borrowed.returned.compareAndSet( false, true ) )
+        {
+            log.debug( "wagon of {} already returned", wagon.getKey() );
+            return;
+        }
+        RemotePool pool = borrowed.pool;
+        try
+        {
+            if ( reusable && maxIdleTime > 0 && pools.get( pool.key ) == pool
+                && wagon.getWagon().getRepository() != null )
+            {
+                pool.idle.offerFirst( new IdleWagon( wagon.getWagon(), System.currentTimeMillis() ) );
+                if ( pools.get( pool.key ) != pool )
+                {
+                    // the pool was invalidated in the meantime
+                    drain( pool );
+                }
+            }
+            else
+            {
+                disconnect( wagon.getWagon() );
+            }
+        }
+        finally
+        {
+            pool.permits.release();
+        }
+        evictIdleWagonsIfDue();
+    }
+
+    @Override
+    @PreDestroy
+    public void invalidate()
+    {
+        for ( RemotePool pool : pools.values() )
+        {
+            pools.remove( pool.key, pool );
+            drain( pool );
+        }
+    }
+
+    /**
+     * Disconnects the connections which were idle for too long, so that they don't wait for the remote server to
+     * close them while no wagon is borrowed.
+     */
+    @Scheduled( fixedDelay = 10000 )
+    public void evictIdleWagons()
+    {
+        long now = System.currentTimeMillis();
+        lastEviction.set( now );
+        for ( RemotePool pool : pools.values() )
+        {
+            for ( Iterator<IdleWagon> iterator = pool.idle.descendingIterator(); iterator.hasNext(); )
+            {
+                IdleWagon idle = iterator.next();
+                if ( isExpired( idle, now ) && pool.idle.removeFirstOccurrence( idle ) )
+                {
+                    evictionCount.incrementAndGet();
+                    disconnect( idle.wagon );
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs {@link #evictIdleWagons()} at most every half of the maximum idle time, when a wagon is borrowed or
+     * returned.
+     */
+    private void evictIdleWagonsIfDue()
+    {
+        long now = System.currentTimeMillis();
+        long last = lastEviction.get();
+        if ( now - last >= maxIdleTime / 2 && lastEviction.compareAndSet( last, now ) )
+        {
+            evictIdleWagons();
+        }
+    }
+
+    private boolean isExpired( IdleWagon idle, long now )
+    {
+        // connections which failed a transfer are not returned as reusable, those closed since by the remote server
+        // can't be detected, hence the maximum idle time below the keep-alive timeout of the servers
+        return now - idle.since >= maxIdleTime || idle.wagon.getRepository() == null;
+    }
+
+    private void drain( RemotePool pool )
+    {
+        IdleWagon idle;
+        while ( ( idle = pool.idle.pollFirst() ) != null )
+        {
+            evictionCount.incrementAndGet();
+            disconnect( idle.wagon );
+        }
+    }
+
+    private void disconnect( Wagon wagon )
+    {
+        try
+        {
+            wagon.disconnect();
+        }
+        catch ( ConnectionException | RuntimeException e )
+        {
+            log.warn( "Unable to disconnect wagon: {}", e.getMessage(), e );
+        }
+    }
+
+    @Override
+    public long getBorrowCount()
+    {
+        return borrowCount.get();
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getCreationCount()
+    {
+        return creationCount.get();
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    @Override
+    public long getBorrowWaitTime()
+    {
+        return borrowWaitTime.get();
+    }
+
+    @Override
+    public int getIdleCount()
+    {
+        int count = 0;
+        for ( RemotePool pool : pools.values() )
+        {
+            count += pool.idle.size();
+        }
+        return count;
+    }
+
+    @Override
+    public int getActiveCount()
+    {
+        int count = 0;
+        for ( RemotePool pool : pools.values() )
+        {
+            count += pool.maxConnections - pool.permits.availablePermits();
+        }
+        return count;
+    }
+
+    public int getMaxConnections()
+    {
+        return maxConnections;
+    }
+
+    public void setMaxConnections( int maxConnections )
+    {
+        this.maxConnections = maxConnections;
+    }
+
+    public long getMaxIdleTime()
+    {
+        return maxIdleTime;
+    }
+
+    public void setMaxIdleTime( long maxIdleTime )
+    {
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    public long getMaxWaitTime()
+    {
+        return maxWaitTime;
+    }
+
+    public void setMaxWaitTime( long maxWaitTime )
+    {
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    private static class RemotePool
+    {
+        final WagonPoolKey key;
+
+        final int maxConnections;
+
+        final Semaphore permits;
+
+        final ConcurrentLinkedDeque<IdleWagon> idle = new ConcurrentLinkedDeque<>();
+
+        RemotePool( WagonPoolKey key, int maxConnections )
+        {
+            this.key = key;
+            this.maxConnections = maxConnections;
+            this.permits = new Semaphore( maxConnections, true );
+        }
+    }
+
+    private static class IdleWagon
+    {
+        final Wagon wagon;
+
+        final long since;
+
+        IdleWagon( Wagon wagon, long since )
+        {
+            this.wagon = wagon;
+            this.since = since;
+        }
+    }
+
+    private static class BorrowedWagon
+        extends PooledWagon
+    {
+        final RemotePool pool;
+
+        final AtomicBoolean returned = new AtomicBoolean();
+
+        BorrowedWagon( WagonPool wagonPool, RemotePool pool, Wagon wagon, boolean reused )
+        {
+            super( wagonPool, pool.key, wagon, reused );
+            this.pool = pool;
+        }
+    }
+}
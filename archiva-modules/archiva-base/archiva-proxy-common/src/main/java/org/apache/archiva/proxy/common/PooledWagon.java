@@ -0,0 +1,74 @@
+package org.apache.archiva.proxy.common;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.wagon.Wagon;
+
+/**
+ * A wagon borrowed from the {@link WagonPool}.
+ *
+ * @since 3.0
+ */
+public class PooledWagon
+{
+    private final WagonPool pool;
+
+    private final WagonPoolKey key;
+
+    private final Wagon wagon;
+
+    private final boolean reused;
+
+    protected PooledWagon( WagonPool pool, WagonPoolKey key, Wagon wagon, boolean reused )
+    {
+        this.pool = pool;
+        this.key = key;
+        this.wagon = wagon;
+        this.reused = reused;
+    }
+
+    public Wagon getWagon()
+    {
+        return wagon;
+    }
+
+    public WagonPoolKey getKey()
+    {
+        return key;
+    }
+
+    /**
+     * @return <code>true</code> if the connection was already used for a previous transfer
+     */
+    public boolean isReused()
+    {
+        return reused;
+    }
+
+    /**
+     * Returns the wagon to the pool.
+     *
+     * @param reusable <code>false</code> if the connection may be broken and must not be used again
+     */
+    public void release( boolean reusable )
+    {
+        pool.returnWagon( this, reusable );
+    }
+}
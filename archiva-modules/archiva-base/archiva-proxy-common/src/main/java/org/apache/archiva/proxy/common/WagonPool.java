@@ -0,0 +1,105 @@
+package org.apache.archiva.proxy.common;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.wagon.Wagon;
+
+/**
+ * Pool of connected wagons, so the connection to a remote repository can be reused for the next
+ * transfers instead of connecting for each of them.
+ *
+ * @since 3.0
+ */
+public interface WagonPool
+{
+    /**
+     * Connects a new wagon for the pool.
+     */
+    interface WagonConnector
+    {
+        /**
+         * @return the connected wagon or <code>null</code> if the connection failed
+         */
+        Wagon connect()
+            throws WagonFactoryException;
+    }
+
+    /**
+     * Borrows a connected wagon. An idle connection of the key is reused if there is a usable one, otherwise
+     * a new one is created with the connector. If the maximum number of connections of the key are in use, the
+     * call waits until one is released.
+     *
+     * @param key       the key of the connection
+     * @param connector creates the connection if no idle one is available
+     * @return the wagon, or <code>null</code> if no connection could be made
+     * @throws WagonFactoryException if the wagon can't be created or no connection is released in time
+     */
+    PooledWagon borrowWagon( WagonPoolKey key, WagonConnector connector )
+        throws WagonFactoryException;
+
+    /**
+     * Gives back a borrowed wagon.
+     *
+     * @param wagon    the borrowed wagon
+     * @param reusable <code>false</code> if the connection may be broken and must not be used again
+     */
+    void returnWagon( PooledWagon wagon, boolean reusable );
+
+    /**
+     * Disconnects all idle connections, the borrowed ones are disconnected when they are returned. Used when
+     * the configuration of remote repositories or network proxies changes.
+     */
+    void invalidate();
+
+    /**
+     * @return the number of borrowed wagons
+     */
+    long getBorrowCount();
+
+    /**
+     * @return the number of borrowed wagons which reused an idle connection
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of connections created
+     */
+    long getCreationCount();
+
+    /**
+     * @return the number of idle connections disconnected because they expired or were invalidated
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the time in milliseconds spent waiting for a free connection
+     */
+    long getBorrowWaitTime();
+
+    /**
+     * @return the number of currently idle connections
+     */
+    int getIdleCount();
+
+    /**
+     * @return the number of currently borrowed connections
+     */
+    int getActiveCount();
+}
@@ -0,0 +1,125 @@
+package org.apache.archiva.proxy.common;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Key of the pooled connections: connections are only shared between transfers to the same remote
+ * repository using the same protocol, network proxy and http headers.
+ *
+ * @since 3.0
+ */
+public class WagonPoolKey
+{
+    private final String repositoryId;
+
+    private final String url;
+
+    private final String protocol;
+
+    private final String networkProxy;
+
+    private final Map<String, String> headers;
+
+    /**
+     * @param repositoryId the id of the remote repository
+     * @param url          the url of the remote repository
+     * @param protocol     the wagon protocol
+     * @param networkProxy the network proxy used for the connection (id or address), may be <code>null</code>
+     * @param headers      the extra http headers sent to the remote repository, may be <code>null</code>
+     */
+    public WagonPoolKey( String repositoryId, String url, String protocol, String networkProxy,
+                         Map<String, String> headers )
+    {
+        this.repositoryId = repositoryId;
+        this.url = url;
+        this.protocol = protocol;
+        this.networkProxy = networkProxy;
+        this.headers = headers == null || headers.isEmpty()
+            ? Collections.<String, String>emptyMap()
+            : Collections.unmodifiableMap( new HashMap<>( headers ) );
+    }
+
+    public String getRepositoryId()
+    {
+        return repositoryId;
+    }
+
+    public String getUrl()
+    {
+        return url;
+    }
+
+    public String getProtocol()
+    {
+        return protocol;
+    }
+
+    public String getNetworkProxy()
+    {
+        return networkProxy;
+    }
+
+    public Map<String, String> getHeaders()
+    {
+        return headers;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( !( o instanceof WagonPoolKey ) )
+        {
+            return false;
+        }
+
+        WagonPoolKey that = (WagonPoolKey) o;
+
+        return Objects.equals( repositoryId, that.repositoryId ) && Objects.equals( url, that.url )
+            && Objects.equals( protocol, that.protocol ) && Objects.equals( networkProxy, that.networkProxy )
+            && headers.equals( that.headers );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash( repositoryId, url, protocol, networkProxy, headers );
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder( "WagonPoolKey{" );
+        sb.append( "repositoryId='" ).append( repositoryId ).append( '\'' );
+        sb.append( ", url='" ).append( url ).append( '\'' );
+        sb.append( ", protocol='" ).append( protocol ).append( '\'' );
+        sb.append( ", networkProxy='" ).append( networkProxy ).append( '\'' );
+        sb.append( '}' );
+        return sb.toString();
+    }
+}
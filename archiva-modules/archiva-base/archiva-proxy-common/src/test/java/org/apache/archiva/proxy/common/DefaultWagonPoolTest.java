@@ -0,0 +1,217 @@
+package org.apache.archiva.proxy.common;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.apache.maven.wagon.Wagon;
+import org.apache.maven.wagon.WagonException;
+import org.apache.maven.wagon.providers.file.FileWagon;
+import org.apache.maven.wagon.repository.Repository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Collections;
+
+/**
+ * DefaultWagonPoolTest
+ */
+@RunWith ( ArchivaBlockJUnit4ClassRunner.class )
+public class DefaultWagonPoolTest
+    extends TestCase
+{
+    private DefaultWagonPool pool;
+
+    private WagonPoolKey key;
+
+    private WagonPool.WagonConnector connector;
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        pool = new DefaultWagonPool();
+        final String url = new File( System.getProperty( "java.io.tmpdir" ) ).toURI().toString();
+        key = new WagonPoolKey( "remote", url, "file", null, Collections.<String, String>emptyMap() );
+        connector = new WagonPool.WagonConnector()
+        {
+            @Override
+            public Wagon connect()
+                throws WagonFactoryException
+            {
+                try
+                {
+                    Wagon wagon = new FileWagon();
+                    wagon.connect( new Repository( "remote", url ) );
+                    return wagon;
+                }
+                catch ( WagonException e )
+                {
+                    throw new WagonFactoryException( e.getMessage(), e );
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testIdleConnectionIsReused()
+        throws Exception
+    {
+        PooledWagon first = pool.borrowWagon( key, connector );
+        assertFalse( first.isReused() );
+        first.release( true );
+
+        PooledWagon second = pool.borrowWagon( key, connector );
+        assertTrue( second.isReused() );
+        assertSame( first.getWagon(), second.getWagon() );
+        assertEquals( 1, pool.getActiveCount() );
+        second.release( true );
+
+        assertEquals( 2, pool.getBorrowCount() );
+        assertEquals( 1, pool.getHitCount() );
+        assertEquals( 1, pool.getCreationCount() );
+        assertEquals( 1, pool.getIdleCount() );
+        assertEquals( 0, pool.getActiveCount() );
+    }
+
+    @Test
+    public void testBrokenConnectionIsNotReused()
+        throws Exception
+    {
+        PooledWagon first = pool.borrowWagon( key, connector );
+        first.release( false );
+
+        PooledWagon second = pool.borrowWagon( key, connector );
+        assertNotSame( first.getWagon(), second.getWagon() );
+        second.release( true );
+
+        assertEquals( 0, pool.getHitCount() );
+        assertEquals( 2, pool.getCreationCount() );
+    }
+
+    @Test
+    public void testDifferentKeysDontShareConnections()
+        throws Exception
+    {
+        WagonPoolKey otherKey = new WagonPoolKey( "remote", key.getUrl(), "file", null,
+                                                  Collections.singletonMap( "X-Header", "value" ) );
+        pool.borrowWagon( key, connector ).release( true );
+
+        PooledWagon other = pool.borrowWagon( otherKey, connector );
+        assertFalse( other.isReused() );
+        other.release( true );
+
+        assertEquals( 2, pool.getIdleCount() );
+    }
+
+    @Test
+    public void testMaxConnections()
+        throws Exception
+    {
+        pool.setMaxConnections( 1 );
+        pool.setMaxWaitTime( 100 );
+
+        PooledWagon borrowed = pool.borrowWagon( key, connector );
+        try
+        {
+            pool.borrowWagon( key, connector );
+            fail( "no connection should be available" );
+        }
+        catch ( WagonFactoryException e )
+        {
+            // expected
+        }
+        assertTrue( pool.getBorrowWaitTime() >= 100 );
+
+        borrowed.release( true );
+        pool.borrowWagon( key, connector ).release( true );
+        assertEquals( 1, pool.getCreationCount() );
+    }
+
+    @Test
+    public void testIdleConnectionsExpire()
+        throws Exception
+    {
+        pool.setMaxIdleTime( 10 );
+
+        pool.borrowWagon( key, connector ).release( true );
+        Thread.sleep( 50 );
+
+        PooledWagon wagon = pool.borrowWagon( key, connector );
+        assertFalse( wagon.isReused() );
+        wagon.release( true );
+
+        assertEquals( 1, pool.getEvictionCount() );
+    }
+
+    @Test
+    public void testIdleConnectionsAreEvictedWithoutBorrowing()
+        throws Exception
+    {
+        pool.setMaxIdleTime( 10 );
+
+        pool.borrowWagon( key, connector ).release( true );
+        Thread.sleep( 50 );
+
+        pool.evictIdleWagons();
+        assertEquals( 0, pool.getIdleCount() );
+        assertEquals( 1, pool.getEvictionCount() );
+    }
+
+    @Test
+    public void testIdleConnectionsAreEvictedOnReturn()
+        throws Exception
+    {
+        pool.setMaxIdleTime( 10 );
+
+        PooledWagon first = pool.borrowWagon( key, connector );
+        PooledWagon second = pool.borrowWagon( key, connector );
+        first.release( true );
+        Thread.sleep( 50 );
+
+        second.release( true );
+        assertEquals( 1, pool.getIdleCount() );
+        assertEquals( 1, pool.getEvictionCount() );
+    }
+
+    @Test
+    public void testInvalidate()
+        throws Exception
+    {
+        PooledWagon idle = pool.borrowWagon( key, connector );
+        idle.release( true );
+        PooledWagon borrowed = pool.borrowWagon( key, connector );
+        PooledWagon created = pool.borrowWagon( key, connector );
+
+        pool.invalidate();
+        assertEquals( 0, pool.getIdleCount() );
+
+        // connections borrowed before the invalidation are not pooled again
+        borrowed.release( true );
+        created.release( true );
+        assertEquals( 0, pool.getIdleCount() );
+
+        assertFalse( pool.borrowWagon( key, connector ).isReused() );
+    }
+}
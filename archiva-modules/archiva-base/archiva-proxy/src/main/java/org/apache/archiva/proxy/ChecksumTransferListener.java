@@ -0,0 +1,98 @@
+package org.apache.archiva.proxy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.checksum.StreamingChecksum;
+import org.apache.maven.wagon.events.TransferEvent;
+import org.apache.maven.wagon.events.TransferListener;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * ChecksumTransferListener - computes the checksums of a resource while wagon downloads it, so the
+ * downloaded file does not have to be read again to validate or create its checksum files.
+ */
+public class ChecksumTransferListener
+    implements TransferListener
+{
+    private final StreamingChecksum checksum;
+
+    public ChecksumTransferListener( ChecksumAlgorithm... algorithms )
+    {
+        this.checksum = new StreamingChecksum( algorithms );
+    }
+
+    @Override
+    public void transferInitiated( TransferEvent transferEvent )
+    {
+        // do nothing
+    }
+
+    @Override
+    public void transferStarted( TransferEvent transferEvent )
+    {
+        // a new transfer of the resource starts with new content
+        checksum.reset();
+    }
+
+    @Override
+    public void transferProgress( TransferEvent transferEvent, byte[] buffer, int length )
+    {
+        checksum.update( buffer, 0, length );
+    }
+
+    @Override
+    public void transferCompleted( TransferEvent transferEvent )
+    {
+        // do nothing
+    }
+
+    @Override
+    public void transferError( TransferEvent transferEvent )
+    {
+        // do nothing
+    }
+
+    @Override
+    public void debug( String message )
+    {
+        // do nothing
+    }
+
+    /**
+     * Returns the checksums of the downloaded file. As not every wagon reports the transferred bytes,
+     * the checksums are only returned if all bytes of the file went through this listener.
+     *
+     * @param downloadedFile the file the resource was downloaded to
+     * @return the checksums, or an empty map if they are not known for this file
+     */
+    public Map<ChecksumAlgorithm, String> getChecksums( File downloadedFile )
+    {
+        if ( checksum.getLength() == 0 || !downloadedFile.isFile()
+            || downloadedFile.length() != checksum.getLength() )
+        {
+            return Collections.emptyMap();
+        }
+        return checksum.getChecksums();
+    }
+}
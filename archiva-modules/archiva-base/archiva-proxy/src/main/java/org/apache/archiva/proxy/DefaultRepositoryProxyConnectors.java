@@ -24,6 +24,7 @@
 import org.apache.archiva.admin.model.beans.ProxyConnectorRuleType;
 import org.apache.archiva.admin.model.beans.RemoteRepository;
 import org.apache.archiva.admin.model.networkproxy.NetworkProxyAdmin;
+import org.apache.archiva.checksum.ChecksumAlgorithm;
 import org.apache.archiva.common.filelock.FileLockException;
 import org.apache.archiva.common.filelock.FileLockManager;
 import org.apache.archiva.common.filelock.FileLockTimeoutException;
@@ -31,12 +32,14 @@
 import org.apache.archiva.configuration.ArchivaConfiguration;
 import org.apache.archiva.configuration.Configuration;
 import org.apache.archiva.configuration.ConfigurationNames;
+import org.apache.archiva.configuration.ManagedRepositoryConfiguration;
 import org.apache.archiva.configuration.NetworkProxyConfiguration;
 import org.apache.archiva.configuration.ProxyConnectorConfiguration;
 import org.apache.archiva.configuration.ProxyConnectorRuleConfiguration;
 import org.apache.archiva.model.ArtifactReference;
 import org.apache.archiva.model.Keys;
 import org.apache.archiva.model.RepositoryURL;
+import org.apache.archiva.policies.ChecksumPolicy;
 import org.apache.archiva.policies.DownloadErrorPolicy;
 import org.apache.archiva.policies.DownloadPolicy;
 import org.apache.archiva.policies.PolicyConfigurationException;
@@ -44,10 +47,14 @@
 import org.apache.archiva.policies.PostDownloadPolicy;
 import org.apache.archiva.policies.PreDownloadPolicy;
 import org.apache.archiva.policies.ProxyDownloadException;
+import org.apache.archiva.policies.urlcache.NegativeLookupCache;
 import org.apache.archiva.policies.urlcache.UrlFailureCache;
+import org.apache.archiva.proxy.common.PooledWagon;
 import org.apache.archiva.proxy.common.WagonFactory;
 import org.apache.archiva.proxy.common.WagonFactoryException;
 import org.apache.archiva.proxy.common.WagonFactoryRequest;
+import org.apache.archiva.proxy.common.WagonPool;
+import org.apache.archiva.proxy.common.WagonPoolKey;
 import org.apache.archiva.proxy.model.ProxyConnector;
 import org.apache.archiva.proxy.model.ProxyFetchResult;
 import org.apache.archiva.proxy.model.RepositoryProxyConnectors;
@@ -83,6 +90,7 @@
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.File;
@@ -90,14 +98,25 @@
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * DefaultRepositoryProxyConnectors
@@ -110,6 +129,16 @@
 {
     private Logger log = LoggerFactory.getLogger( DefaultRepositoryProxyConnectors.class );
 
+    private static final ChecksumAlgorithm[] CHECKSUM_ALGORITHMS =
+        new ChecksumAlgorithm[]{ ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 };
+
+    /**
+     * proxy fetch strategy of a managed repository asking all remote repositories at once if they have an artifact
+     */
+    public static final String PROXY_FETCH_STRATEGY_PARALLEL = "parallel";
+
+    private static final int MAX_PROBE_THREADS = 32;
+
     @Inject
     @Named(value = "archivaConfiguration#default")
     private ArchivaConfiguration archivaConfiguration;
@@ -134,13 +163,29 @@
     @Inject
     private UrlFailureCache urlFailureCache;
 
+    @Inject
+    @Named(value = "negativeLookupCache#default")
+    private NegativeLookupCache negativeLookupCache;
+
     private ConcurrentMap<String, List<ProxyConnector>> proxyConnectorMap = new ConcurrentHashMap<>();
 
     private ConcurrentMap<String, ProxyInfo> networkProxyMap = new ConcurrentHashMap<>();
 
+    /**
+     * concurrent requests of the same artifact wait for the running fetch instead of downloading it again
+     */
+    private final InFlightFetches<ProxyDownloadException> artifactFetches =
+        new InFlightFetches<>( ProxyDownloadException.class );
+
+    private final InFlightFetches<RuntimeException> resourceFetches = new InFlightFetches<>( RuntimeException.class );
+
     @Inject
     private WagonFactory wagonFactory;
 
+    @Inject
+    @Named(value = "wagonPool#default")
+    private WagonPool wagonPool;
+
     @Inject
     @Named(value = "archivaTaskScheduler#repository")
     private ArchivaTaskScheduler scheduler;
@@ -152,6 +197,32 @@
     @Named(value = "fileLockManager#default")
     private FileLockManager fileLockManager;
 
+    /**
+     * checks the existence of a resource on the remote repositories for the parallel fetch strategy, if all threads
+     * are busy the check runs in the requesting thread. Checks are only rejected once the executor is shut down.
+     */
+    private final ExecutorService probeExecutor =
+        new ThreadPoolExecutor( 0, MAX_PROBE_THREADS, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                                new ThreadFactory()
+                                {
+                                    private final AtomicInteger count = new AtomicInteger();
+
+                                    @Override
+                                    public Thread newThread( Runnable runnable )
+                                    {
+                                        Thread thread =
+                                            new Thread( runnable, "archiva-proxy-probe-" + count.incrementAndGet() );
+                                        thread.setDaemon( true );
+                                        return thread;
+                                    }
+                                }, ( runnable, executor ) -> {
+                                    if ( executor.isShutdown() )
+                                    {
+                                        throw new RejectedExecutionException( "probe executor is shut down" );
+                                    }
+                                    runnable.run();
+                                } );
+
     @PostConstruct
     public void initialize()
     {
@@ -160,6 +231,12 @@ public void initialize()
 
     }
 
+    @PreDestroy
+    public void shutdown()
+    {
+        probeExecutor.shutdownNow();
+    }
+
     @SuppressWarnings("unchecked")
     private void initConnectorsAndNetworkProxies()
     {
@@ -302,7 +379,14 @@ private List<ProxyConnectorRuleConfiguration> findProxyConnectorRules( String so
     }
 
     @Override
-    public File fetchFromProxies( ManagedRepositoryContent repository, ArtifactReference artifact )
+    public File fetchFromProxies( final ManagedRepositoryContent repository, final ArtifactReference artifact )
+        throws ProxyDownloadException
+    {
+        return artifactFetches.fetch( "artifact:" + repository.getId() + ":" + Keys.toKey( artifact ),
+                                      () -> doFetchFromProxies( repository, artifact ) );
+    }
+
+    private File doFetchFromProxies( ManagedRepositoryContent repository, ArtifactReference artifact )
         throws ProxyDownloadException
     {
         File localFile = toLocalFile( repository, artifact );
@@ -314,52 +398,70 @@ public File fetchFromProxies( ManagedRepositoryContent repository, ArtifactRefer
 
         List<ProxyConnector> connectors = getProxyConnectors( repository );
         Map<String, Exception> previousExceptions = new LinkedHashMap<>();
-        for ( ProxyConnector connector : connectors )
+        // an existing file is only checked for updates, the policies may decide without asking the remote repositories
+        Map<ProxyConnector, Future<Boolean>> probes = isParallelFetch( repository, connectors ) && !localFile.exists()
+            ? probeConnectors( connectors, remote -> toRemotePath( remote, artifact ) )
+            : Collections.<ProxyConnector, Future<Boolean>>emptyMap();
+        try
         {
-            if ( connector.isDisabled() )
+            for ( ProxyConnector connector : connectors )
             {
-                continue;
-            }
+                if ( connector.isDisabled() )
+                {
+                    continue;
+                }
 
-            RemoteRepositoryContent targetRepository = connector.getTargetRepository();
-            requestProperties.setProperty( "remoteRepositoryId", targetRepository.getId() );
+                RemoteRepositoryContent targetRepository = connector.getTargetRepository();
+                requestProperties.setProperty( "remoteRepositoryId", targetRepository.getId() );
 
-            String targetPath = targetRepository.toPath( artifact );
+                String targetPath = toRemotePath( targetRepository, artifact );
 
-            if ( SystemUtils.IS_OS_WINDOWS )
-            {
-                // toPath use system PATH_SEPARATOR so on windows url are \ which doesn't work very well :-)
-                targetPath = FilenameUtils.separatorsToUnix( targetPath );
-            }
+                Boolean found = getProbeResult( probes.get( connector ) );
+                if ( Boolean.FALSE.equals( found ) )
+                {
+                    log.debug( "Artifact {} not found on repository \"{}\".", Keys.toKey( artifact ),
+                               targetRepository.getRepository().getId() );
+                    continue;
+                }
+                if ( Boolean.TRUE.equals( found ) )
+                {
+                    // this connector wins, the other remote repositories don't need to answer anymore
+                    cancelProbes( probes );
+                }
 
-            try
-            {
-                File downloadedFile =
-                    transferFile( connector, targetRepository, targetPath, repository, localFile, requestProperties,
-                                  true );
+                try
+                {
+                    File downloadedFile =
+                        transferFile( connector, targetRepository, targetPath, repository, localFile, requestProperties,
+                                      true );
 
-                if ( fileExists( downloadedFile ) )
+                    if ( fileExists( downloadedFile ) )
+                    {
+                        log.debug( "Successfully transferred: {}", downloadedFile.getAbsolutePath() );
+                        return downloadedFile;
+                    }
+                }
+                catch ( NotFoundException e )
                 {
-                    log.debug( "Successfully transferred: {}", downloadedFile.getAbsolutePath() );
-                    return downloadedFile;
+                    log.debug( "Artifact {} not found on repository \"{}\".", Keys.toKey( artifact ),
+                               targetRepository.getRepository().getId() );
+                }
+                catch ( NotModifiedException e )
+                {
+                    log.debug( "Artifact {} not updated on repository \"{}\".", Keys.toKey( artifact ),
+                               targetRepository.getRepository().getId() );
+                }
+                catch ( ProxyException | RepositoryAdminException e )
+                {
+                    validatePolicies( this.downloadErrorPolicies, connector.getPolicies(), requestProperties, artifact,
+                                      targetRepository, localFile, e, previousExceptions );
                 }
-            }
-            catch ( NotFoundException e )
-            {
-                log.debug( "Artifact {} not found on repository \"{}\".", Keys.toKey( artifact ),
-                           targetRepository.getRepository().getId() );
-            }
-            catch ( NotModifiedException e )
-            {
-                log.debug( "Artifact {} not updated on repository \"{}\".", Keys.toKey( artifact ),
-                           targetRepository.getRepository().getId() );
-            }
-            catch ( ProxyException | RepositoryAdminException e )
-            {
-                validatePolicies( this.downloadErrorPolicies, connector.getPolicies(), requestProperties, artifact,
-                                  targetRepository, localFile, e, previousExceptions );
             }
         }
+        finally
+        {
+            cancelProbes( probes );
+        }
 
         if ( !previousExceptions.isEmpty() )
         {
@@ -373,7 +475,13 @@ public File fetchFromProxies( ManagedRepositoryContent repository, ArtifactRefer
     }
 
     @Override
-    public File fetchFromProxies( ManagedRepositoryContent repository, String path )
+    public File fetchFromProxies( final ManagedRepositoryContent repository, final String path )
+    {
+        return resourceFetches.fetch( "resource:" + repository.getId() + ":" + path,
+                                      () -> doFetchFromProxies( repository, path ) );
+    }
+
+    private File doFetchFromProxies( ManagedRepositoryContent repository, String path )
     {
         File localFile = new File( repository.getRepoRoot(), path );
 
@@ -388,57 +496,80 @@ public File fetchFromProxies( ManagedRepositoryContent repository, String path )
         requestProperties.setProperty( "managedRepositoryId", repository.getId() );
 
         List<ProxyConnector> connectors = getProxyConnectors( repository );
-        for ( ProxyConnector connector : connectors )
+        Map<ProxyConnector, Future<Boolean>> probes = isParallelFetch( repository, connectors )
+            ? probeConnectors( connectors, remote -> path )
+            : Collections.<ProxyConnector, Future<Boolean>>emptyMap();
+        try
         {
-            if ( connector.isDisabled() )
+            for ( ProxyConnector connector : connectors )
             {
-                continue;
-            }
+                if ( connector.isDisabled() )
+                {
+                    continue;
+                }
 
-            RemoteRepositoryContent targetRepository = connector.getTargetRepository();
-            requestProperties.setProperty( "remoteRepositoryId", targetRepository.getId() );
+                RemoteRepositoryContent targetRepository = connector.getTargetRepository();
+                requestProperties.setProperty( "remoteRepositoryId", targetRepository.getId() );
 
-            String targetPath = path;
+                String targetPath = path;
 
-            try
-            {
-                File downloadedFile =
-                    transferFile( connector, targetRepository, targetPath, repository, localFile, requestProperties,
-                                  false );
+                Boolean found = getProbeResult( probes.get( connector ) );
+                if ( Boolean.FALSE.equals( found ) )
+                {
+                    log.debug( "Resource {} not found on repository \"{}\".", path,
+                               targetRepository.getRepository().getId() );
+                    continue;
+                }
+                if ( Boolean.TRUE.equals( found ) )
+                {
+                    // this connector wins, the other remote repositories don't need to answer anymore
+                    cancelProbes( probes );
+                }
 
-                if ( fileExists( downloadedFile ) )
+                try
                 {
-                    log.debug( "Successfully transferred: {}", downloadedFile.getAbsolutePath() );
-                    return downloadedFile;
+                    File downloadedFile =
+                        transferFile( connector, targetRepository, targetPath, repository, localFile, requestProperties,
+                                      false );
+
+                    if ( fileExists( downloadedFile ) )
+                    {
+                        log.debug( "Successfully transferred: {}", downloadedFile.getAbsolutePath() );
+                        return downloadedFile;
+                    }
+                }
+                catch ( NotFoundException e )
+                {
+                    log.debug( "Resource {} not found on repository \"{}\".", path,
+                               targetRepository.getRepository().getId() );
+                }
+                catch ( NotModifiedException e )
+                {
+                    log.debug( "Resource {} not updated on repository \"{}\".", path,
+                               targetRepository.getRepository().getId() );
+                }
+                catch ( ProxyException e )
+                {
+                    log.warn(
+                        "Transfer error from repository {} for resource {}, continuing to next repository. Error message: {}",
+                        targetRepository.getRepository().getId(), path, e.getMessage() );
+                    log.debug( MarkerFactory.getDetachedMarker( "transfer.error" ),
+                               "Transfer error from repository \"{}"
+                                   + "\" for resource {}, continuing to next repository. Error message: {}",
+                               targetRepository.getRepository().getId(), path, e.getMessage(), e );
+                }
+                catch ( RepositoryAdminException e )
+                {
+                    log.debug( MarkerFactory.getDetachedMarker( "transfer.error" ),
+                               "Transfer error from repository {} for resource {}, continuing to next repository. Error message: {}",
+                               targetRepository.getRepository().getId(), path, e.getMessage(), e );
+                    log.debug( MarkerFactory.getDetachedMarker( "transfer.error" ), "Full stack trace", e );
                 }
             }
-            catch ( NotFoundException e )
-            {
-                log.debug( "Resource {} not found on repository \"{}\".", path,
-                           targetRepository.getRepository().getId() );
-            }
-            catch ( NotModifiedException e )
-            {
-                log.debug( "Resource {} not updated on repository \"{}\".", path,
-                           targetRepository.getRepository().getId() );
-            }
-            catch ( ProxyException e )
-            {
-                log.warn(
-                    "Transfer error from repository {} for resource {}, continuing to next repository. Error message: {}",
-                    targetRepository.getRepository().getId(), path, e.getMessage() );
-                log.debug( MarkerFactory.getDetachedMarker( "transfer.error" ),
-                           "Transfer error from repository \"{}"
-                               + "\" for resource {}, continuing to next repository. Error message: {}",
-                           targetRepository.getRepository().getId(), path, e.getMessage(), e );
-            }
-            catch ( RepositoryAdminException e )
-            {
-                log.debug( MarkerFactory.getDetachedMarker( "transfer.error" ),
-                           "Transfer error from repository {} for resource {}, continuing to next repository. Error message: {}",
-                           targetRepository.getRepository().getId(), path, e.getMessage(), e );
-                log.debug( MarkerFactory.getDetachedMarker( "transfer.error" ), "Full stack trace", e );
-            }
+        }
+        finally
+        {
+            cancelProbes( probes );
         }
 
         log.debug( "Exhausted all target repositories, resource {} not found.", path );
@@ -447,7 +578,14 @@ public File fetchFromProxies( ManagedRepositoryContent repository, String path )
     }
 
     @Override
-    public ProxyFetchResult fetchMetadataFromProxies( ManagedRepositoryContent repository, String logicalPath )
+    public ProxyFetchResult fetchMetadataFromProxies( final ManagedRepositoryContent repository,
+                                                      final String logicalPath )
+    {
+        return resourceFetches.fetch( "metadata:" + repository.getId() + ":" + logicalPath,
+                                      () -> doFetchMetadataFromProxies( repository, logicalPath ) );
+    }
+
+    private ProxyFetchResult doFetchMetadataFromProxies( ManagedRepositoryContent repository, String logicalPath )
     {
         File localFile = new File( repository.getRepoRoot(), logicalPath );
 
@@ -528,6 +666,148 @@ public ProxyFetchResult fetchMetadataFromProxies( ManagedRepositoryContent repos
         return new ProxyFetchResult( null, false );
     }
 
+    private String toRemotePath( RemoteRepositoryContent remoteRepository, ArtifactReference artifact )
+    {
+        String targetPath = remoteRepository.toPath( artifact );
+
+        if ( SystemUtils.IS_OS_WINDOWS )
+        {
+            // toPath use system PATH_SEPARATOR so on windows url are \ which doesn't work very well :-)
+            targetPath = FilenameUtils.separatorsToUnix( targetPath );
+        }
+        return targetPath;
+    }
+
+    private boolean isParallelFetch( ManagedRepositoryContent repository, List<ProxyConnector> connectors )
+    {
+        if ( connectors.size() < 2 )
+        {
+            return false;
+        }
+        ManagedRepositoryConfiguration repositoryConfiguration =
+            archivaConfiguration.getConfiguration().findManagedRepositoryById( repository.getId() );
+        return repositoryConfiguration != null && PROXY_FETCH_STRATEGY_PARALLEL.equals(
+            repositoryConfiguration.getProxyFetchStrategy() );
+    }
+
+    /**
+     * Asks all enabled remote repositories at once if they have the resource. The connectors are still used in their
+     * configured order, the probes only allow to skip the remote repositories which don't have the resource without
+     * waiting for them one after the other.
+     *
+     * @param connectors the connectors of the managed repository
+     * @param remotePath the path of the resource on a remote repository
+     * @return the running probes of the connectors
+     */
+    private Map<ProxyConnector, Future<Boolean>> probeConnectors( List<ProxyConnector> connectors,
+                                                                  Function<RemoteRepositoryContent, String> remotePath )
+    {
+        Map<ProxyConnector, Future<Boolean>> probes = new HashMap<>( connectors.size() );
+        for ( final ProxyConnector connector : connectors )
+        {
+            final RemoteRepositoryContent remoteRepository = connector.getTargetRepository();
+            final String path = remotePath.apply( remoteRepository );
+            if ( connector.isDisabled() || !isPathAllowed( connector, path ) || negativeLookupCache.isMissing(
+                remoteRepository.getId(), path ) )
+            {
+                // disabled, excluded or recently not found, there is nothing to ask
+                continue;
+            }
+            try
+            {
+                probes.put( connector, probeExecutor.submit( () -> probe( connector, remoteRepository, path ) ) );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                // a saturated executor runs the probe in this thread, only a shut down executor rejects it while
+                // Archiva stops, fetch without probe
+                log.debug( "Unable to check {} on remote repository {}: {}", path, remoteRepository.getId(),
+                           e.getMessage() );
+            }
+        }
+        return probes;
+    }
+
+    /**
+     * @return <code>TRUE</code> or <code>FALSE</code> if the remote repository has the resource or not,
+     * <code>null</code> if it could not be checked
+     */
+    private Boolean probe( ProxyConnector connector, RemoteRepositoryContent remoteRepository, String remotePath )
+    {
+        PooledWagon pooledWagon = null;
+        boolean reusable = false;
+        try
+        {
+            pooledWagon = borrowWagon( connector, remoteRepository );
+            if ( pooledWagon == null )
+            {
+                return null;
+            }
+            boolean exists = pooledWagon.getWagon().resourceExists(
+                addParameters( remotePath, remoteRepository.getRepository() ) );
+            reusable = true;
+            if ( !exists )
+            {
+                urlFailureCache.cacheFailure( toUrl( remoteRepository, remotePath ) );
+                cacheMissing( remoteRepository, remotePath );
+            }
+            return exists;
+        }
+        catch ( Exception e )
+        {
+            // not supported by the wagon, or the remote repository isn't reachable: let the transfer find it out
+            log.debug( "Unable to check {} on remote repository {}: {}", remotePath, remoteRepository.getId(),
+                       e.getMessage() );
+            return null;
+        }
+        finally
+        {
+            if ( pooledWagon != null )
+            {
+                pooledWagon.release( reusable && !Thread.currentThread().isInterrupted() );
+            }
+        }
+    }
+
+    private void cacheMissing( RemoteRepositoryContent remoteRepository, String remotePath )
+    {
+        negativeLookupCache.cacheMissing( remoteRepository.getId(), remotePath,
+                                          remoteRepository.getRepository().getNegativeCacheTtl() );
+    }
+
+    /**
+     * @return whether the probe found the resource on the remote repository, <code>null</code> if there was no probe
+     * or it could not tell
+     */
+    private Boolean getProbeResult( Future<Boolean> probe )
+    {
+        if ( probe == null )
+        {
+            return null;
+        }
+        try
+        {
+            return probe.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch ( ExecutionException | CancellationException e )
+        {
+            return null;
+        }
+    }
+
+    private void cancelProbes( Map<ProxyConnector, Future<Boolean>> probes )
+    {
+        for ( Future<Boolean> probe : probes.values() )
+        {
+            probe.cancel( true );
+        }
+    }
+
     /**
      * @param connector
      * @param remoteRepository
@@ -539,44 +819,28 @@ public ProxyFetchResult fetchMetadataFromProxies( ManagedRepositoryContent repos
      * @param resource
      * @param workingDirectory
      * @param repository
+     * @param checksumListener listener computing the checksums of the resource while it is downloaded
      * @throws ProxyException
      * @throws NotModifiedException
      * @throws org.apache.archiva.admin.model.RepositoryAdminException
      */
     protected void transferResources( ProxyConnector connector, RemoteRepositoryContent remoteRepository, File tmpMd5,
                                       File tmpSha1, File tmpResource, String url, String remotePath, File resource,
-                                      File workingDirectory, ManagedRepositoryContent repository )
+                                      File workingDirectory, ManagedRepositoryContent repository,
+                                      ChecksumTransferListener checksumListener )
         throws ProxyException, NotModifiedException, RepositoryAdminException
     {
-        Wagon wagon = null;
+        PooledWagon pooledWagon = null;
+        boolean reusable = false;
         try
         {
-            RepositoryURL repoUrl = remoteRepository.getURL();
-            String protocol = repoUrl.getProtocol();
-            NetworkProxy networkProxy = null;
-            if ( StringUtils.isNotBlank( connector.getProxyId() ) )
-            {
-                networkProxy = networkProxyAdmin.getNetworkProxy( connector.getProxyId() );
-            }
-            WagonFactoryRequest wagonFactoryRequest = new WagonFactoryRequest( "wagon#" + protocol,
-                                                                               remoteRepository.getRepository().getExtraHeaders() ).networkProxy(
-                networkProxy );
-            wagon = wagonFactory.getWagon( wagonFactoryRequest );
-            if ( wagon == null )
-            {
-                throw new ProxyException( "Unsupported target repository protocol: " + protocol );
-            }
-
-            if ( wagon == null )
-            {
-                throw new ProxyException( "Unsupported target repository protocol: " + protocol );
-            }
+            pooledWagon = borrowWagon( connector, remoteRepository );
 
-            boolean connected = connectToRepository( connector, wagon, remoteRepository );
-            if ( connected )
+            if ( pooledWagon != null )
             {
+                Wagon wagon = pooledWagon.getWagon();
                 transferArtifact( wagon, remoteRepository, remotePath, repository, resource, workingDirectory,
-                                  tmpResource );
+                                  tmpResource, checksumListener );
 
                 // TODO: these should be used to validate the download based on the policies, not always downloaded
                 // to
@@ -586,14 +850,19 @@ protected void transferResources( ProxyConnector connector, RemoteRepositoryCont
                 transferChecksum( wagon, remoteRepository, remotePath, repository, resource, workingDirectory, ".md5",
                                   tmpMd5 );
             }
+            reusable = true;
         }
         catch ( NotFoundException e )
         {
+            // the remote repository answered, the connection can be used again
+            reusable = true;
             urlFailureCache.cacheFailure( url );
+            cacheMissing( remoteRepository, remotePath );
             throw e;
         }
         catch ( NotModifiedException e )
         {
+            reusable = true;
             // Do not cache url here.
             throw e;
         }
@@ -608,26 +877,64 @@ protected void transferResources( ProxyConnector connector, RemoteRepositoryCont
         }
         finally
         {
-            if ( wagon != null )
+            if ( pooledWagon != null )
             {
-                try
-                {
-                    wagon.disconnect();
-                }
-                catch ( ConnectionException e )
-                {
-                    log.warn( "Unable to disconnect wagon.", e );
-                }
+                pooledWagon.release( reusable );
             }
         }
     }
 
+    /**
+     * Borrows a wagon connected to the remote repository, reusing the connection of a previous transfer if there is
+     * one.
+     *
+     * @return the wagon, or <code>null</code> if the connection failed
+     */
+    private PooledWagon borrowWagon( final ProxyConnector connector, final RemoteRepositoryContent remoteRepository )
+        throws RepositoryAdminException, WagonFactoryException
+    {
+        RepositoryURL repoUrl = remoteRepository.getURL();
+        final String protocol = repoUrl.getProtocol();
+        NetworkProxy networkProxy = null;
+        if ( StringUtils.isNotBlank( connector.getProxyId() ) )
+        {
+            networkProxy = networkProxyAdmin.getNetworkProxy( connector.getProxyId() );
+        }
+        final WagonFactoryRequest wagonFactoryRequest =
+            new WagonFactoryRequest( "wagon#" + protocol, remoteRepository.getRepository().getExtraHeaders() )
+                .networkProxy( networkProxy );
+
+        WagonPoolKey poolKey = new WagonPoolKey( remoteRepository.getId(), repoUrl.toString(), protocol,
+                                                 networkProxy == null
+                                                     ? null
+                                                     : networkProxy.getId() + "@" + networkProxy.getHost() + ":"
+                                                         + networkProxy.getPort(),
+                                                 remoteRepository.getRepository().getExtraHeaders() );
+        return wagonPool.borrowWagon( poolKey, () -> {
+            Wagon wagon = wagonFactory.getWagon( wagonFactoryRequest );
+            if ( wagon == null )
+            {
+                throw new WagonFactoryException( "Unsupported target repository protocol: " + protocol, null );
+            }
+            return connectToRepository( connector, wagon, remoteRepository ) ? wagon : null;
+        } );
+    }
+
     private void transferArtifact( Wagon wagon, RemoteRepositoryContent remoteRepository, String remotePath,
                                    ManagedRepositoryContent repository, File resource, File tmpDirectory,
-                                   File destFile )
+                                   File destFile, ChecksumTransferListener checksumListener )
         throws ProxyException
     {
-        transferSimpleFile( wagon, remoteRepository, remotePath, repository, resource, destFile );
+        // compute the checksums while the bytes are written, the checksum policy won't have to read the file again
+        wagon.addTransferListener( checksumListener );
+        try
+        {
+            transferSimpleFile( wagon, remoteRepository, remotePath, repository, resource, destFile );
+        }
+        finally
+        {
+            wagon.removeTransferListener( checksumListener );
+        }
     }
 
     private long getLastModified( File file )
@@ -717,12 +1024,7 @@ private File transferFile( ProxyConnector connector, RemoteRepositoryContent rem
                                boolean executeConsumers )
         throws ProxyException, NotModifiedException, RepositoryAdminException
     {
-        String url = remoteRepository.getURL().getUrl();
-        if ( !url.endsWith( "/" ) )
-        {
-            url = url + "/";
-        }
-        url = url + remotePath;
+        String url = toUrl( remoteRepository, remotePath );
         requestProperties.setProperty( "url", url );
 
         // Is a whitelist defined?
@@ -763,16 +1065,33 @@ private File transferFile( ProxyConnector connector, RemoteRepositoryContent rem
             return null;
         }
 
+        if ( negativeLookupCache.isMissing( remoteRepository.getId(), remotePath ) )
+        {
+            throw new NotFoundException( "Resource [" + url + "] was recently not found, transfer not attempted." );
+        }
+
         File workingDirectory = createWorkingDirectory( repository );
         File tmpResource = new File( workingDirectory, resource.getName() );
         File tmpMd5 = new File( workingDirectory, resource.getName() + ".md5" );
         File tmpSha1 = new File( workingDirectory, resource.getName() + ".sha1" );
 
+        ChecksumTransferListener checksumListener = new ChecksumTransferListener( CHECKSUM_ALGORITHMS );
+        for ( ChecksumAlgorithm algorithm : CHECKSUM_ALGORITHMS )
+        {
+            requestProperties.remove( ChecksumPolicy.CHECKSUM_PROPERTY_PREFIX + algorithm.getExt() );
+        }
+
         try
         {
 
             transferResources( connector, remoteRepository, tmpMd5, tmpSha1, tmpResource, url, remotePath, resource,
-                               workingDirectory, repository );
+                               workingDirectory, repository, checksumListener );
+
+            for ( Entry<ChecksumAlgorithm, String> entry : checksumListener.getChecksums( tmpResource ).entrySet() )
+            {
+                requestProperties.setProperty( ChecksumPolicy.CHECKSUM_PROPERTY_PREFIX + entry.getKey().getExt(),
+                                               entry.getValue() );
+            }
 
             // Handle post-download policies.
             try
@@ -1242,6 +1561,29 @@ private boolean matchesPattern( String path, List<String> patterns )
         return false;
     }
 
+    private String toUrl( RemoteRepositoryContent remoteRepository, String remotePath )
+    {
+        String url = remoteRepository.getURL().getUrl();
+        if ( !url.endsWith( "/" ) )
+        {
+            url = url + "/";
+        }
+        return url + remotePath;
+    }
+
+    /**
+     * @return true if the path is not excluded by the whitelist or blacklist of the connector
+     */
+    private boolean isPathAllowed( ProxyConnector connector, String path )
+    {
+        if ( CollectionUtils.isNotEmpty( connector.getWhitelist() ) && !matchesPattern( path,
+                                                                                       connector.getWhitelist() ) )
+        {
+            return false;
+        }
+        return !matchesPattern( path, connector.getBlacklist() );
+    }
+
     /**
      * TODO: Ensure that list is correctly ordered based on configuration. See MRM-477
      */
@@ -1270,6 +1612,14 @@ public void afterConfigurationChange( Registry registry, String propertyName, Ob
         {
             initConnectorsAndNetworkProxies();
         }
+
+        if ( ConfigurationNames.isNetworkProxy( propertyName ) //
+            || ConfigurationNames.isRemoteRepositories( propertyName ) )
+        {
+            // pooled connections may use an outdated url, credentials or network proxy
+            wagonPool.invalidate();
+            negativeLookupCache.clear();
+        }
     }
 
     protected String addParameters( String path, RemoteRepository remoteRepository )
@@ -1301,6 +1651,32 @@ public void beforeConfigurationChange( Registry registry, String propertyName, O
         /* do nothing */
     }
 
+    /**
+     * @return the number of fetches of artifacts, resources and metadata started since startup, running or not,
+     * without the requests which joined a fetch already running for the same content: see
+     * {@link InFlightFetches#getFetchCount()}
+     */
+    public long getFetchCount()
+    {
+        return artifactFetches.getFetchCount() + resourceFetches.getFetchCount();
+    }
+
+    /**
+     * @return the number of requests which got the result of a concurrent fetch of the same content
+     */
+    public long getCoalescedFetchCount()
+    {
+        return artifactFetches.getCoalescedCount() + resourceFetches.getCoalescedCount();
+    }
+
+    /**
+     * @return the number of fetches currently running
+     */
+    public int getInFlightFetchCount()
+    {
+        return artifactFetches.getInFlightCount() + resourceFetches.getInFlightCount();
+    }
+
     public ArchivaConfiguration getArchivaConfiguration()
     {
         return archivaConfiguration;
@@ -1341,6 +1717,26 @@ public void setUrlFailureCache( UrlFailureCache urlFailureCache )
         this.urlFailureCache = urlFailureCache;
     }
 
+    public NegativeLookupCache getNegativeLookupCache()
+    {
+        return negativeLookupCache;
+    }
+
+    public void setNegativeLookupCache( NegativeLookupCache negativeLookupCache )
+    {
+        this.negativeLookupCache = negativeLookupCache;
+    }
+
+    public WagonPool getWagonPool()
+    {
+        return wagonPool;
+    }
+
+    public void setWagonPool( WagonPool wagonPool )
+    {
+        this.wagonPool = wagonPool;
+    }
+
     public WagonFactory getWagonFactory()
     {
         return wagonFactory;
@@ -0,0 +1,146 @@
+package org.apache.archiva.proxy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InFlightFetches - registry of the proxy fetches currently running. A caller asking for a resource
+ * another thread is already fetching waits for that fetch and gets the same result or the same exception,
+ * instead of downloading the same content again.
+ *
+ * @param <E> the checked exception thrown by the fetches
+ */
+public class InFlightFetches<E extends Exception>
+{
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final Class<E> exceptionType;
+
+    private final AtomicLong fetches = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public InFlightFetches( Class<E> exceptionType )
+    {
+        this.exceptionType = exceptionType;
+    }
+
+    /**
+     * A fetch of a resource.
+     */
+    public interface Fetch<T, E extends Exception>
+    {
+        T fetch()
+            throws E;
+    }
+
+    /**
+     * Runs the fetch, unless a fetch with the same key is already running. In that case the result of the
+     * running fetch is returned.
+     *
+     * @param key   the key of the fetched resource
+     * @param fetch the fetch to run
+     * @return the result of the fetch
+     * @throws E the exception thrown by the fetch
+     */
+    @SuppressWarnings( "unchecked" )
+    public <T> T fetch( String key, Fetch<T, ? extends E> fetch )
+        throws E
+    {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent( key, future );
+        if ( running != null )
+        {
+            coalesced.incrementAndGet();
+            try
+            {
+                return (T) running.get();
+            }
+            catch ( InterruptedException e )
+            {
+                // don't wait any longer, fetch it on our own
+                Thread.currentThread().interrupt();
+                return fetch.fetch();
+            }
+            catch ( ExecutionException e )
+            {
+                Throwable cause = e.getCause();
+                if ( exceptionType.isInstance( cause ) )
+                {
+                    throw exceptionType.cast( cause );
+                }
+                if ( cause instanceof RuntimeException )
+                {
+                    throw (RuntimeException) cause;
+                }
+                throw (Error) cause;
+            }
+        }
+
+        fetches.incrementAndGet();
+        try
+        {
+            T result = fetch.fetch();
+            future.complete( result );
+            return result;
+        }
+        catch ( Exception | Error e )
+        {
+            future.completeExceptionally( e );
+            throw e;
+        }
+        finally
+        {
+            inFlight.remove( key, future );
+        }
+    }
+
+    /**
+     * @return the number of fetches started by the first request for their key since this registry was created,
+     * whether they are still running, completed or failed. The requests which got the result of such a fetch are
+     * counted by {@link #getCoalescedCount()} instead, the ones still running by {@link #getInFlightCount()}.
+     */
+    public long getFetchCount()
+    {
+        return fetches.get();
+    }
+
+    /**
+     * @return the number of requests which waited for the fetch of an other request instead of starting one, also
+     * the ones which fetched on their own once interrupted while waiting
+     */
+    public long getCoalescedCount()
+    {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of fetches currently running
+     */
+    public int getInFlightCount()
+    {
+        return inFlight.size();
+    }
+}
@@ -25,6 +25,7 @@
 import org.apache.archiva.policies.ChecksumPolicy;
 import org.apache.archiva.policies.ReleasesPolicy;
 import org.apache.archiva.policies.SnapshotsPolicy;
+import org.apache.archiva.policies.urlcache.NegativeLookupCache;
 import org.apache.archiva.policies.urlcache.UrlFailureCache;
 import org.apache.maven.wagon.ResourceDoesNotExistException;
 import org.easymock.EasyMock;
@@ -33,6 +34,7 @@
 import java.io.File;
 import javax.inject.Inject;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
@@ -140,6 +142,55 @@ public void testGetWithCacheFailuresOff()
         assertNoTempFiles( expectedFile );
     }
 
+    @Test
+    public void testGetWithNegativeLookupCache()
+        throws Exception
+    {
+        String path = "org/apache/maven/test/get-in-second-proxy/1.0/get-in-second-proxy-1.0.jar";
+        File expectedFile = new File( managedDefaultDir.getAbsoluteFile(), path );
+        setupTestableManagedRepository( path );
+
+        assertNotExistsInManagedDefaultRepo( expectedFile );
+
+        ArtifactReference artifact = managedDefaultRepository.toArtifactReference( path );
+
+        // Configure Repository (usually done within archiva.xml configuration)
+        saveRemoteRepositoryConfig( "badproxied1", "Bad Proxied 1", "test://bad.machine.com/repo/", "default" );
+        saveRemoteRepositoryConfig( "badproxied2", "Bad Proxied 2", "test://bad.machine.com/anotherrepo/", "default" );
+        config.getConfiguration().findRemoteRepositoryById( "badproxied1" ).setNegativeCacheTtl( 600 );
+        config.getConfiguration().findRemoteRepositoryById( "badproxied2" ).setNegativeCacheTtl( 600 );
+
+        // Configure Connector (usually done within archiva.xml configuration)
+        saveConnector( ID_DEFAULT_MANAGED, "badproxied1", ChecksumPolicy.FIX, ReleasesPolicy.ALWAYS,
+                       SnapshotsPolicy.ALWAYS, CachedFailuresPolicy.NO, false );
+        saveConnector( ID_DEFAULT_MANAGED, "badproxied2", ChecksumPolicy.FIX, ReleasesPolicy.ALWAYS,
+                       SnapshotsPolicy.ALWAYS, CachedFailuresPolicy.NO, false );
+
+        wagonMock.get( EasyMock.eq( path ), EasyMock.anyObject( File.class ) );
+        EasyMock.expectLastCall().andThrow( new ResourceDoesNotExistException( "resource does not exist." ) ).times( 2 );
+
+        wagonMockControl.replay();
+
+        File downloadedFile = proxyHandler.fetchFromProxies( managedDefaultRepository, artifact );
+
+        wagonMockControl.verify();
+
+        // Second attempt to download same artifact does not reach the remote repositories
+        NegativeLookupCache negativeLookupCache =
+            ( (DefaultRepositoryProxyConnectors) proxyHandler ).getNegativeLookupCache();
+        long hits = negativeLookupCache.getHitCount();
+        wagonMockControl.reset();
+        wagonMockControl.replay();
+
+        downloadedFile = proxyHandler.fetchFromProxies( managedDefaultRepository, artifact );
+
+        wagonMockControl.verify();
+        assertEquals( hits + 2, negativeLookupCache.getHitCount() );
+
+        assertNotDownloaded( downloadedFile );
+        assertNoTempFiles( expectedFile );
+    }
+
     @Test
     public void testGetWhenInBothProxiedButFirstCacheFailure()
         throws Exception
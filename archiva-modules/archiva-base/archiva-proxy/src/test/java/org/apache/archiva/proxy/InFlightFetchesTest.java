@@ -0,0 +1,159 @@
+package org.apache.archiva.proxy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * InFlightFetchesTest
+ */
+public class InFlightFetchesTest
+{
+    @Test
+    public void testConcurrentFetchesAreCoalesced()
+        throws Exception
+    {
+        final InFlightFetches<ProxyException> fetches = new InFlightFetches<>( ProxyException.class );
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final AtomicInteger remoteCalls = new AtomicInteger();
+        final Object content = new Object();
+
+        ExecutorService executor = Executors.newFixedThreadPool( 5 );
+        try
+        {
+            Future<Object> first = executor.submit( () -> fetches.fetch( "repo:path", () -> {
+                remoteCalls.incrementAndGet();
+                started.countDown();
+                await( release );
+                return content;
+            } ) );
+            assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+
+            Future<?>[] followers = new Future<?>[4];
+            for ( int i = 0; i < followers.length; i++ )
+            {
+                followers[i] = executor.submit( () -> fetches.fetch( "repo:path", () -> {
+                    remoteCalls.incrementAndGet();
+                    return new Object();
+                } ) );
+            }
+            while ( fetches.getCoalescedCount() < followers.length )
+            {
+                Thread.sleep( 10 );
+            }
+            release.countDown();
+
+            assertSame( content, first.get() );
+            for ( Future<?> follower : followers )
+            {
+                assertSame( content, follower.get() );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertEquals( 1, remoteCalls.get() );
+        assertEquals( 1, fetches.getFetchCount() );
+        assertEquals( 4, fetches.getCoalescedCount() );
+        assertEquals( 0, fetches.getInFlightCount() );
+    }
+
+    @Test
+    public void testExceptionIsShared()
+        throws Exception
+    {
+        final InFlightFetches<ProxyException> fetches = new InFlightFetches<>( ProxyException.class );
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final ProxyException failure = new ProxyException( "remote failure" );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            Future<Object> first = executor.submit( () -> fetches.fetch( "repo:path", () -> {
+                started.countDown();
+                await( release );
+                throw failure;
+            } ) );
+            assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+            Future<Object> follower = executor.submit( () -> fetches.fetch( "repo:path", () -> new Object() ) );
+            while ( fetches.getCoalescedCount() < 1 )
+            {
+                Thread.sleep( 10 );
+            }
+            release.countDown();
+
+            for ( Future<Object> future : Arrays.asList( first, follower ) )
+            {
+                try
+                {
+                    future.get();
+                    fail( "exception of the fetch expected" );
+                }
+                catch ( ExecutionException e )
+                {
+                    assertSame( failure, e.getCause() );
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSequentialFetchesAreNotCoalesced()
+        throws Exception
+    {
+        InFlightFetches<ProxyException> fetches = new InFlightFetches<>( ProxyException.class );
+        assertEquals( "a", fetches.fetch( "repo:path", () -> "a" ) );
+        assertEquals( "b", fetches.fetch( "repo:path", () -> "b" ) );
+        assertEquals( 2, fetches.getFetchCount() );
+        assertEquals( 0, fetches.getCoalescedCount() );
+    }
+
+    private static void await( CountDownLatch latch )
+        throws ProxyException
+    {
+        try
+        {
+            latch.await();
+        }
+        catch ( InterruptedException e )
+        {
+            throw new ProxyException( "interrupted", e );
+        }
+    }
+}
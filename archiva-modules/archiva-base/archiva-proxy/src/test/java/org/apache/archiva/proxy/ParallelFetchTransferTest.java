@@ -0,0 +1,146 @@
+package org.apache.archiva.proxy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.model.ArtifactReference;
+import org.apache.archiva.policies.urlcache.NegativeLookupCache;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * ParallelFetchTransferTest - the parallel proxy fetch strategy must resolve the same artifacts
+ * as the sequential one, in the configured connector order.
+ */
+public class ParallelFetchTransferTest
+    extends AbstractProxyTestCase
+{
+    private void useParallelStrategy()
+    {
+        config.getConfiguration().findManagedRepositoryById( ID_DEFAULT_MANAGED ).setProxyFetchStrategy(
+            DefaultRepositoryProxyConnectors.PROXY_FETCH_STRATEGY_PARALLEL );
+    }
+
+    @Test
+    public void testGetWhenInBothProxiedRepos()
+        throws Exception
+    {
+        String path = "org/apache/maven/test/get-in-both-proxies/1.0/get-in-both-proxies-1.0.jar";
+        setupTestableManagedRepository( path );
+        useParallelStrategy();
+
+        File expectedFile = new File( managedDefaultDir, path );
+        ArtifactReference artifact = managedDefaultRepository.toArtifactReference( path );
+
+        assertNotExistsInManagedDefaultRepo( expectedFile );
+
+        saveConnector( ID_DEFAULT_MANAGED, ID_PROXIED1, false );
+        saveConnector( ID_DEFAULT_MANAGED, ID_PROXIED2, false );
+
+        File downloadedFile = proxyHandler.fetchFromProxies( managedDefaultRepository, artifact );
+
+        // the first connector wins even if the second one answered its probe first
+        File proxied1File = new File( REPOPATH_PROXIED1, path );
+        assertFileEquals( expectedFile, downloadedFile, proxied1File );
+        assertNoTempFiles( expectedFile );
+    }
+
+    @Test
+    public void testGetInSecondProxiedRepo()
+        throws Exception
+    {
+        String path = "org/apache/maven/test/get-in-second-proxy/1.0/get-in-second-proxy-1.0.jar";
+        setupTestableManagedRepository( path );
+        useParallelStrategy();
+
+        File expectedFile = new File( managedDefaultDir, path );
+        ArtifactReference artifact = managedDefaultRepository.toArtifactReference( path );
+
+        assertNotExistsInManagedDefaultRepo( expectedFile );
+
+        saveConnector( ID_DEFAULT_MANAGED, ID_PROXIED1, false );
+        saveConnector( ID_DEFAULT_MANAGED, ID_PROXIED2, false );
+
+        File downloadedFile = proxyHandler.fetchFromProxies( managedDefaultRepository, artifact );
+
+        File proxied2File = new File( REPOPATH_PROXIED2, path );
+        assertFileEquals( expectedFile, downloadedFile, proxied2File );
+        assertNoTempFiles( expectedFile );
+    }
+
+    @Test
+    public void testSkipNegativelyCachedProxiedRepo()
+        throws Exception
+    {
+        String path = "org/apache/maven/test/get-in-both-proxies/1.0/get-in-both-proxies-1.0.jar";
+        setupTestableManagedRepository( path );
+        useParallelStrategy();
+
+        File expectedFile = new File( managedDefaultDir, path );
+        ArtifactReference artifact = managedDefaultRepository.toArtifactReference( path );
+
+        assertNotExistsInManagedDefaultRepo( expectedFile );
+
+        saveConnector( ID_DEFAULT_MANAGED, ID_PROXIED1, false );
+        saveConnector( ID_DEFAULT_MANAGED, ID_PROXIED2, false );
+
+        NegativeLookupCache negativeLookupCache =
+            ( (DefaultRepositoryProxyConnectors) proxyHandler ).getNegativeLookupCache();
+        negativeLookupCache.cacheMissing( ID_PROXIED1, path, 600 );
+        try
+        {
+            File downloadedFile = proxyHandler.fetchFromProxies( managedDefaultRepository, artifact );
+
+            // recently not found on the first repository, which isn't asked again
+            File proxied2File = new File( REPOPATH_PROXIED2, path );
+            assertFileEquals( expectedFile, downloadedFile, proxied2File );
+            assertNoTempFiles( expectedFile );
+        }
+        finally
+        {
+            negativeLookupCache.clear();
+        }
+    }
+
+    @Test
+    public void testNotFoundInAnyProxies()
+        throws Exception
+    {
+        String path = "org/apache/maven/test/does-not-exist/1.0/does-not-exist-1.0.jar";
+        setupTestableManagedRepository( path );
+        useParallelStrategy();
+
+        File expectedFile = new File( managedDefaultDir, path );
+        ArtifactReference artifact = managedDefaultRepository.toArtifactReference( path );
+
+        assertNotExistsInManagedDefaultRepo( expectedFile );
+
+        saveConnector( ID_DEFAULT_MANAGED, ID_PROXIED1, false );
+        saveConnector( ID_DEFAULT_MANAGED, ID_PROXIED2, false );
+
+        File downloadedFile = proxyHandler.fetchFromProxies( managedDefaultRepository, artifact );
+
+        assertNull( "File returned was: " + downloadedFile + "; should have got a not found exception",
+                    downloadedFile );
+        assertNoTempFiles( expectedFile );
+    }
+}
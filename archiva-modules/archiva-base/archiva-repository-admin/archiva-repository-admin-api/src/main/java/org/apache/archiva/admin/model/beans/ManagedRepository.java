@@ -75,6 +75,18 @@
      */
     private boolean skipPackedIndexCreation;
 
+    /**
+     * sequential or parallel, <code>null</code> keeps the strategy already configured (sequential for a new one)
+     * @since 3.0
+     */
+    private String proxyFetchStrategy;
+
+    /**
+     * number of threads scanning the repository, 0 keeps the number already configured (1 for a new one)
+     * @since 3.0
+     */
+    private int scanParallelism;
+
     public ManagedRepository()
     {
         // no op
@@ -252,6 +264,26 @@ public void setSkipPackedIndexCreation( boolean skipPackedIndexCreation )
         this.skipPackedIndexCreation = skipPackedIndexCreation;
     }
 
+    public String getProxyFetchStrategy()
+    {
+        return proxyFetchStrategy;
+    }
+
+    public void setProxyFetchStrategy( String proxyFetchStrategy )
+    {
+        this.proxyFetchStrategy = proxyFetchStrategy;
+    }
+
+    public int getScanParallelism()
+    {
+        return scanParallelism;
+    }
+
+    public void setScanParallelism( int scanParallelism )
+    {
+        this.scanParallelism = scanParallelism;
+    }
+
     @Override
     public String toString()
     {
@@ -271,6 +303,8 @@ public String toString()
         sb.append( ", stageRepoNeeded=" ).append( stageRepoNeeded );
         sb.append( ", resetStats=" ).append( resetStats );
         sb.append( ", skipPackedIndexCreation=" ).append( skipPackedIndexCreation );
+        sb.append( ", proxyFetchStrategy='" ).append( proxyFetchStrategy ).append( '\'' );
+        sb.append( ", scanParallelism=" ).append( scanParallelism );
         sb.append( '}' );
         return sb.toString();
     }
@@ -71,6 +71,13 @@
 
     private int remoteDownloadTimeout = 300;
 
+    /**
+     * time in seconds a resource not found on the remote repository is remembered as missing, 0 to disable,
+     * -1 keeps the time already configured (disabled for a new one)
+     * @since 3.0
+     */
+    private int negativeCacheTtl = -1;
+
     /**
      * @since 1.4-M2
      */
@@ -226,6 +233,16 @@ public void setRemoteDownloadTimeout( int remoteDownloadTimeout )
         this.remoteDownloadTimeout = remoteDownloadTimeout;
     }
 
+    public int getNegativeCacheTtl()
+    {
+        return negativeCacheTtl;
+    }
+
+    public void setNegativeCacheTtl( int negativeCacheTtl )
+    {
+        this.negativeCacheTtl = negativeCacheTtl;
+    }
+
     public boolean isDownloadRemoteIndexOnStartup()
     {
         return downloadRemoteIndexOnStartup;
@@ -358,6 +375,7 @@ public String toString()
         sb.append( ", extraParameters=" ).append( extraParameters );
         sb.append( ", extraHeaders=" ).append( extraHeaders );
         sb.append( ", checkPath=").append(checkPath);
+        sb.append( ", negativeCacheTtl=" ).append( negativeCacheTtl );
         sb.append( '}' );
         return sb.toString();
     }
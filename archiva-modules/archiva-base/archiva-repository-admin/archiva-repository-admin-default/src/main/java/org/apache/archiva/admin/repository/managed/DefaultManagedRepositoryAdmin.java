@@ -182,6 +182,8 @@ public List<ManagedRepository> getManagedRepositories()
                                        repoConfig.isStageRepoNeeded() );
             repo.setDescription( repoConfig.getDescription() );
             repo.setSkipPackedIndexCreation( repoConfig.isSkipPackedIndexCreation() );
+            repo.setProxyFetchStrategy( repoConfig.getProxyFetchStrategy() );
+            repo.setScanParallelism( repoConfig.getScanParallelism() );
             managedRepos.add( repo );
         }
 
@@ -233,7 +235,9 @@ public Boolean addManagedRepository( ManagedRepository managedRepository, boolea
                                   managedRepository.getDaysOlder(), managedRepository.getRetentionCount(),
                                   managedRepository.isDeleteReleasedSnapshots(), managedRepository.getDescription(),
                                   managedRepository.isSkipPackedIndexCreation(), managedRepository.isScanned(),
-                                  auditInformation, getArchivaConfiguration().getConfiguration() ) != null;
+                                  managedRepository.getProxyFetchStrategy(),
+                                  managedRepository.getScanParallelism(), auditInformation,
+                                  getArchivaConfiguration().getConfiguration() ) != null;
 
         createIndexContext( managedRepository );
         return res;
@@ -247,6 +251,7 @@ private ManagedRepositoryConfiguration addManagedRepository( String repoId, Stri
                                                                  String indexDir, int daysOlder, int retentionCount,
                                                                  boolean deteleReleasedSnapshots, String description,
                                                                  boolean skipPackedIndexCreation, boolean scanned,
+                                                                 String proxyFetchStrategy, int scanParallelism,
                                                                  AuditInformation auditInformation,
                                                                  Configuration config )
         throws RepositoryAdminException
@@ -271,6 +276,11 @@ private ManagedRepositoryConfiguration addManagedRepository( String repoId, Stri
         repository.setDescription( description );
         repository.setSkipPackedIndexCreation( skipPackedIndexCreation );
         repository.setStageRepoNeeded( stageRepoNeeded );
+        if ( StringUtils.isNotEmpty( proxyFetchStrategy ) )
+        {
+            repository.setProxyFetchStrategy( proxyFetchStrategy );
+        }
+        repository.setScanParallelism( Math.max( 1, scanParallelism ) );
 
         try
         {
@@ -496,6 +506,18 @@ public Boolean updateManagedRepository( ManagedRepository managedRepository, boo
 
         ManagedRepositoryConfiguration stagingRepository = getStageRepoConfig( toremove );
 
+        // clients not knowing the proxy fetch strategy or the scan parallelism send none: keep the configured ones
+        String proxyFetchStrategy = managedRepository.getProxyFetchStrategy();
+        if ( StringUtils.isEmpty( proxyFetchStrategy ) && toremove != null )
+        {
+            proxyFetchStrategy = toremove.getProxyFetchStrategy();
+        }
+        int scanParallelism = managedRepository.getScanParallelism();
+        if ( scanParallelism <= 0 && toremove != null )
+        {
+            scanParallelism = toremove.getScanParallelism();
+        }
+
         // TODO remove content from old if path has changed !!!!!
 
         if ( stagingRepository != null )
@@ -511,7 +533,8 @@ public Boolean updateManagedRepository( ManagedRepository managedRepository, boo
                                   managedRepository.getDaysOlder(), managedRepository.getRetentionCount(),
                                   managedRepository.isDeleteReleasedSnapshots(), managedRepository.getDescription(),
                                   managedRepository.isSkipPackedIndexCreation(), managedRepository.isScanned(),
-                                  auditInformation, getArchivaConfiguration().getConfiguration() );
+                                  proxyFetchStrategy, scanParallelism, auditInformation,
+                                  getArchivaConfiguration().getConfiguration() );
 
         // Save the repository configuration.
         RepositorySession repositorySession = getRepositorySessionFactory().createSession();
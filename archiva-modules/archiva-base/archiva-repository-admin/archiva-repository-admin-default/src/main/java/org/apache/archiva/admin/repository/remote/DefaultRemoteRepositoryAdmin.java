@@ -139,6 +139,7 @@ public List<RemoteRepository> getRemoteRepositories()
             remoteRepository.setExtraHeaders( repositoryConfiguration.getExtraHeaders() );
             remoteRepository.setExtraParameters( repositoryConfiguration.getExtraParameters() );
             remoteRepository.setCheckPath(repositoryConfiguration.getCheckPath());
+            remoteRepository.setNegativeCacheTtl( repositoryConfiguration.getNegativeCacheTtl() );
             remoteRepositories.add( remoteRepository );
         }
         return remoteRepositories;
@@ -254,7 +255,13 @@ public Boolean updateRemoteRepository( RemoteRepository remoteRepository, AuditI
 
         configuration.removeRemoteRepository( remoteRepositoryConfiguration );
 
+        int negativeCacheTtl = remoteRepositoryConfiguration.getNegativeCacheTtl();
         remoteRepositoryConfiguration = getRemoteRepositoryConfiguration( remoteRepository );
+        // clients not knowing the negative cache send no time to live: keep the configured one
+        if ( remoteRepository.getNegativeCacheTtl() < 0 )
+        {
+            remoteRepositoryConfiguration.setNegativeCacheTtl( negativeCacheTtl );
+        }
         configuration.addRemoteRepository( remoteRepositoryConfiguration );
         saveConfiguration( configuration );
 
@@ -380,6 +387,10 @@ private RemoteRepositoryConfiguration getRemoteRepositoryConfiguration( RemoteRe
         remoteRepositoryConfiguration.setExtraHeaders( remoteRepository.getExtraHeaders() );
         remoteRepositoryConfiguration.setExtraParameters( remoteRepository.getExtraParameters() );
         remoteRepositoryConfiguration.setCheckPath(remoteRepository.getCheckPath());
+        if ( remoteRepository.getNegativeCacheTtl() >= 0 )
+        {
+            remoteRepositoryConfiguration.setNegativeCacheTtl( remoteRepository.getNegativeCacheTtl() );
+        }
         return remoteRepositoryConfiguration;
     }
 
@@ -27,11 +27,11 @@
 import org.apache.archiva.consumers.KnownRepositoryContentConsumer;
 import org.apache.archiva.consumers.RepositoryContentConsumer;
 import org.apache.commons.collections.CollectionUtils;
-import org.codehaus.plexus.util.DirectoryWalker;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -58,6 +58,19 @@
     @Override
     public RepositoryScanStatistics scan( ManagedRepository repository, long changesSince )
         throws RepositoryScannerException
+    {
+        return scan( repository, changesSince, false );
+    }
+
+    @Override
+    public RepositoryScanStatistics scanWithJournal( ManagedRepository repository, long changesSince )
+        throws RepositoryScannerException
+    {
+        return scan( repository, changesSince, true );
+    }
+
+    private RepositoryScanStatistics scan( ManagedRepository repository, long changesSince, boolean journaled )
+        throws RepositoryScannerException
     {
         List<KnownRepositoryContentConsumer> knownContentConsumers = null;
         try
@@ -66,7 +79,8 @@ public RepositoryScanStatistics scan( ManagedRepository repository, long changes
             List<InvalidRepositoryContentConsumer> invalidContentConsumers = repositoryContentConsumers.getSelectedInvalidConsumers();
             List<String> ignoredPatterns = filetypes.getFileTypePatterns( FileTypes.IGNORED );
 
-            return scan( repository, knownContentConsumers, invalidContentConsumers, ignoredPatterns, changesSince );
+            return scan( repository, knownContentConsumers, invalidContentConsumers, ignoredPatterns, changesSince,
+                         journaled );
         }
         catch ( RepositoryAdminException e )
         {
@@ -83,6 +97,16 @@ public RepositoryScanStatistics scan( ManagedRepository repository,
                                           List<InvalidRepositoryContentConsumer> invalidContentConsumers,
                                           List<String> ignoredContentPatterns, long changesSince )
         throws RepositoryScannerException
+    {
+        return scan( repository, knownContentConsumers, invalidContentConsumers, ignoredContentPatterns, changesSince,
+                     false );
+    }
+
+    private RepositoryScanStatistics scan( ManagedRepository repository,
+                                           List<KnownRepositoryContentConsumer> knownContentConsumers,
+                                           List<InvalidRepositoryContentConsumer> invalidContentConsumers,
+                                           List<String> ignoredContentPatterns, long changesSince, boolean journaled )
+        throws RepositoryScannerException
     {
         if ( repository == null )
         {
@@ -115,16 +139,25 @@ public RepositoryScanStatistics scan( ManagedRepository repository,
             allExcludes.addAll( ignoredContentPatterns );
         }
 
+        // the journal is not content
+        allExcludes.add( ScanJournal.FILE_NAME + "*" );
+
         // Scan All Content. (intentional)
         allIncludes.add( "**/*" );
 
-        // Setup Directory Walker
-        DirectoryWalker dirWalker = new DirectoryWalker();
-
-        dirWalker.setBaseDir( repositoryBase );
-
-        dirWalker.setIncludes( allIncludes );
-        dirWalker.setExcludes( allExcludes );
+        ScanJournal journal = null;
+        if ( journaled )
+        {
+            try
+            {
+                journal = ScanJournal.open( repositoryBase );
+            }
+            catch ( IOException e )
+            {
+                throw new RepositoryScannerException( "Unable to open the scan journal of " + repositoryBase.getPath()
+                                                          + ": " + e.getMessage(), e );
+            }
+        }
 
         // Setup the Scan Instance
         RepositoryScannerInstance scannerInstance =
@@ -133,26 +166,57 @@ public RepositoryScanStatistics scan( ManagedRepository repository,
         inProgressScans.add( scannerInstance );
 
         RepositoryScanStatistics stats;
+        boolean completed = false;
         try
         {
-            dirWalker.addDirectoryWalkListener( scannerInstance );
+            // Setup Directory Walker
+            RepositoryDirectoryWalker dirWalker =
+                new RepositoryDirectoryWalker( repositoryBase, repository.getScanParallelism() );
+
+            dirWalker.setIncludes( allIncludes );
+            dirWalker.setExcludes( allExcludes );
+            dirWalker.setJournal( journal );
 
             // Execute scan.
-            dirWalker.scan();
+            dirWalker.walk( scannerInstance );
 
             stats = scannerInstance.getStatistics();
 
             stats.setKnownConsumers( gatherIds( knownContentConsumers ) );
             stats.setInvalidConsumers( gatherIds( invalidContentConsumers ) );
+            completed = true;
         }
         finally
         {
             inProgressScans.remove( scannerInstance );
+            if ( journal != null )
+            {
+                closeJournal( journal, completed );
+            }
         }
 
         return stats;
     }
 
+    private void closeJournal( ScanJournal journal, boolean completed )
+        throws RepositoryScannerException
+    {
+        if ( !completed )
+        {
+            // keep the checkpoint, the next scan continues from there
+            journal.close();
+            return;
+        }
+        try
+        {
+            journal.commit();
+        }
+        catch ( IOException e )
+        {
+            throw new RepositoryScannerException( "Unable to write the scan journal: " + e.getMessage(), e );
+        }
+    }
+
     private List<String> gatherIds( List<? extends RepositoryContentConsumer> consumers )
     {
         List<String> ids = new ArrayList<>();
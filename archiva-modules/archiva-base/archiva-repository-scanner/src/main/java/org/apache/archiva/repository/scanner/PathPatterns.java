@@ -0,0 +1,243 @@
+package org.apache.archiva.repository.scanner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * PathPatterns - ant style path patterns (<code>**&#47;*.jar</code>, <code>.index&#47;**</code>), split into their
+ * path segments and compiled once, matching relative paths with '/' separators the same way as
+ * {@link org.codehaus.plexus.util.SelectorUtils#matchPath(String, String, boolean)}.
+ */
+public class PathPatterns
+{
+    private static final String DEEP = "**";
+
+    private final List<Segment[]> patterns = new ArrayList<>();
+
+    /**
+     * The patterns ending with <code>&#47;**</code> without this last segment, they match the directories whose
+     * whole content is matched.
+     */
+    private final List<Segment[]> subtreePatterns = new ArrayList<>();
+
+    public PathPatterns( List<String> patterns, boolean caseSensitive )
+    {
+        if ( patterns != null )
+        {
+            for ( String pattern : patterns )
+            {
+                String cleanPattern = pattern.replace( '\\', '/' );
+                if ( cleanPattern.endsWith( "/" ) )
+                {
+                    cleanPattern += DEEP;
+                }
+                if ( cleanPattern.startsWith( "/" ) )
+                {
+                    // never matches a relative path
+                    continue;
+                }
+
+                Segment[] segments = compile( cleanPattern, caseSensitive );
+                this.patterns.add( segments );
+
+                int last = segments.length - 1;
+                if ( last > 0 && segments[last].isDeep() )
+                {
+                    Segment[] prefix = new Segment[last];
+                    System.arraycopy( segments, 0, prefix, 0, last );
+                    subtreePatterns.add( prefix );
+                }
+            }
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return patterns.isEmpty();
+    }
+
+    /**
+     * @param relativePath the path relative to the scanned directory, with '/' separators
+     * @return true if one of the patterns matches the path
+     */
+    public boolean matches( String relativePath )
+    {
+        return matchesAny( patterns, split( relativePath ) );
+    }
+
+    /**
+     * @param relativeDirectory the path of a directory relative to the scanned directory, with '/' separators
+     * @return true if one of the patterns matches every path below the directory, so it doesn't have to be walked
+     */
+    public boolean matchesSubtree( String relativeDirectory )
+    {
+        return !relativeDirectory.isEmpty() && matchesAny( subtreePatterns, split( relativeDirectory ) );
+    }
+
+    private static boolean matchesAny( List<Segment[]> patterns, String[] path )
+    {
+        for ( Segment[] pattern : patterns )
+        {
+            if ( matches( pattern, 0, path, 0 ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches( Segment[] pattern, int patternIndex, String[] path, int pathIndex )
+    {
+        int p = patternIndex;
+        int s = pathIndex;
+        while ( p < pattern.length && !pattern[p].isDeep() )
+        {
+            if ( s >= path.length || !pattern[p].matches( path[s] ) )
+            {
+                return false;
+            }
+            p++;
+            s++;
+        }
+
+        if ( p == pattern.length )
+        {
+            return s == path.length;
+        }
+
+        // skip consecutive **
+        while ( p < pattern.length && pattern[p].isDeep() )
+        {
+            p++;
+        }
+        if ( p == pattern.length )
+        {
+            return true;
+        }
+
+        // ** matches zero or more segments
+        for ( int i = s; i < path.length; i++ )
+        {
+            if ( matches( pattern, p, path, i ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Segment[] compile( String pattern, boolean caseSensitive )
+    {
+        String[] tokens = split( pattern );
+        Segment[] segments = new Segment[tokens.length];
+        for ( int i = 0; i < tokens.length; i++ )
+        {
+            segments[i] = new Segment( tokens[i], caseSensitive );
+        }
+        return segments;
+    }
+
+    private static String[] split( String path )
+    {
+        List<String> tokens = new ArrayList<>();
+        int start = 0;
+        while ( start <= path.length() )
+        {
+            int end = path.indexOf( '/', start );
+            if ( end < 0 )
+            {
+                end = path.length();
+            }
+            if ( end > start )
+            {
+                tokens.add( path.substring( start, end ) );
+            }
+            start = end + 1;
+        }
+        return tokens.toArray( new String[tokens.size()] );
+    }
+
+    private static class Segment
+    {
+        private final String text;
+
+        private final Pattern wildcard;
+
+        private final boolean deep;
+
+        private final boolean caseSensitive;
+
+        Segment( String text, boolean caseSensitive )
+        {
+            this.text = text;
+            this.caseSensitive = caseSensitive;
+            this.deep = DEEP.equals( text );
+            if ( !deep && ( text.indexOf( '*' ) >= 0 || text.indexOf( '?' ) >= 0 ) )
+            {
+                StringBuilder regex = new StringBuilder();
+                StringBuilder literal = new StringBuilder();
+                for ( char c : text.toCharArray() )
+                {
+                    if ( c == '*' || c == '?' )
+                    {
+                        if ( literal.length() > 0 )
+                        {
+                            regex.append( Pattern.quote( literal.toString() ) );
+                            literal.setLength( 0 );
+                        }
+                        regex.append( c == '*' ? ".*" : "." );
+                    }
+                    else
+                    {
+                        literal.append( c );
+                    }
+                }
+                if ( literal.length() > 0 )
+                {
+                    regex.append( Pattern.quote( literal.toString() ) );
+                }
+                this.wildcard = Pattern.compile( regex.toString(), caseSensitive
+                    ? 0
+                    : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE );
+            }
+            else
+            {
+                this.wildcard = null;
+            }
+        }
+
+        boolean isDeep()
+        {
+            return deep;
+        }
+
+        boolean matches( String name )
+        {
+            if ( wildcard != null )
+            {
+                return wildcard.matcher( name ).matches();
+            }
+            return caseSensitive ? text.equals( name ) : text.equalsIgnoreCase( name );
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package org.apache.archiva.repository.scanner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * RepositoryDirectoryWalker - walks the files of a repository with NIO, reading the attributes of each entry once and
+ * handing them to the scan. Directories whose whole content is excluded (like <code>.index&#47;**</code>) are not
+ * entered at all.
+ * <p>
+ * With a parallelism above 1 each directory is walked by its own fork/join task. Idle threads steal the directories
+ * still to walk, the scan gets the files of all threads concurrently.
+ * </p>
+ * <p>
+ * With a {@link ScanJournal} the walker records what it finds. An incremental scan then hands the files of directories
+ * unchanged since the journal to the scan as unmodified without listing them, compares the files of the other
+ * directories with the journal and reports the files removed since.
+ * </p>
+ */
+public class RepositoryDirectoryWalker
+{
+    private Logger log = LoggerFactory.getLogger( RepositoryDirectoryWalker.class );
+
+    private final File baseDir;
+
+    private final int parallelism;
+
+    private List<String> includes = new ArrayList<>();
+
+    private List<String> excludes = new ArrayList<>();
+
+    private boolean caseSensitive = true;
+
+    private PathPatterns includePatterns;
+
+    private PathPatterns excludePatterns;
+
+    private ScanJournal journal;
+
+    public RepositoryDirectoryWalker( File baseDir, int parallelism )
+    {
+        this.baseDir = baseDir;
+        this.parallelism = parallelism;
+    }
+
+    public void setIncludes( List<String> includes )
+    {
+        this.includes = includes;
+    }
+
+    public void setExcludes( List<String> excludes )
+    {
+        this.excludes = excludes;
+    }
+
+    public void setCaseSensitive( boolean caseSensitive )
+    {
+        this.caseSensitive = caseSensitive;
+    }
+
+    public void setJournal( ScanJournal journal )
+    {
+        this.journal = journal;
+    }
+
+    /**
+     * Walks the directory tree, returning once every included file went through the scan.
+     *
+     * @param scan the scan getting the files
+     */
+    public void walk( RepositoryScannerInstance scan )
+    {
+        includePatterns = new PathPatterns( includes, caseSensitive );
+        excludePatterns = new PathPatterns( excludes, caseSensitive );
+
+        scan.directoryWalkStarting( baseDir );
+
+        if ( parallelism > 1 || journal != null )
+        {
+            ForkJoinPool pool = new ForkJoinPool( Math.max( 1, parallelism ) );
+            try
+            {
+                pool.invoke( new DirectoryTask( baseDir.toPath(), Collections.emptyList(), scan ) );
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+        else
+        {
+            try
+            {
+                Files.walkFileTree( baseDir.toPath(), EnumSet.of( FileVisitOption.FOLLOW_LINKS ), Integer.MAX_VALUE,
+                                    new ScanFileVisitor( scan ) );
+            }
+            catch ( IOException e )
+            {
+                // the visitor doesn't throw, any problem is only about the base directory itself
+                log.warn( "Unable to walk {}: {}", baseDir, e.getMessage() );
+            }
+        }
+
+        scan.directoryWalkFinished();
+
+        if ( journal != null )
+        {
+            journal.walkFinished();
+        }
+    }
+
+    private String relativePath( Path path )
+    {
+        String relativePath = baseDir.toPath().relativize( path ).toString();
+        return File.separatorChar == '/' ? relativePath : relativePath.replace( File.separatorChar, '/' );
+    }
+
+    private boolean isSelectedFile( Path file )
+    {
+        String relativePath = relativePath( file );
+        return ( includePatterns.isEmpty() || includePatterns.matches( relativePath ) )
+            && !excludePatterns.matches( relativePath );
+    }
+
+    private boolean isExcludedDirectory( Path directory )
+    {
+        return excludePatterns.matchesSubtree( relativePath( directory ) );
+    }
+
+    /**
+     * Reports the files of a directory of the journal, and of all its subdirectories, as removed.
+     */
+    private void reportRemovedDirectory( String path, RepositoryScannerInstance scan )
+    {
+        ScanJournal.DirectoryEntry entry = journal.getPrevious( path );
+        if ( entry == null )
+        {
+            return;
+        }
+        for ( ScanJournal.FileEntry file : entry.getFiles() )
+        {
+            scan.fileRemoved( entry.childPath( file.getName() ) );
+        }
+        for ( String directory : entry.getDirectories() )
+        {
+            reportRemovedDirectory( entry.childPath( directory ), scan );
+        }
+    }
+
+    private class ScanFileVisitor
+        extends SimpleFileVisitor<Path>
+    {
+        private final RepositoryScannerInstance scan;
+
+        ScanFileVisitor( RepositoryScannerInstance scan )
+        {
+            this.scan = scan;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs )
+        {
+            return isExcludedDirectory( dir ) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+        {
+            if ( attrs.isRegularFile() && isSelectedFile( file ) )
+            {
+                scan.directoryWalkStep( file.toFile(), attrs );
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed( Path file, IOException exc )
+        {
+            // unreadable entries and symbolic link loops are left out like the plexus walker did
+            log.debug( "Unable to visit {}: {}", file, exc.getMessage() );
+            return FileVisitResult.CONTINUE;
+        }
+    }
+
+    private class DirectoryTask
+        extends RecursiveAction
+    {
+        private final Path directory;
+
+        /**
+         * File keys of the directories above, to not follow symbolic links back into them.
+         */
+        private final List<Object> parents;
+
+        private final RepositoryScannerInstance scan;
+
+        DirectoryTask( Path directory, List<Object> parents, RepositoryScannerInstance scan )
+        {
+            this.directory = directory;
+            this.parents = parents;
+            this.scan = scan;
+        }
+
+        @Override
+        protected void compute()
+        {
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            String path = relativePath( directory );
+            try
+            {
+                BasicFileAttributes attrs = Files.readAttributes( directory, BasicFileAttributes.class );
+                Object fileKey = attrs.fileKey();
+                if ( fileKey != null && parents.contains( fileKey ) )
+                {
+                    // a symbolic link to a directory above
+                    return;
+                }
+                List<Object> directories = new ArrayList<>( parents );
+                directories.add( fileKey );
+
+                if ( journal == null )
+                {
+                    walkDirectory( directories, null, null, subdirectories );
+                }
+                else
+                {
+                    ScanJournal.DirectoryEntry previous = journal.getPrevious( path );
+                    long lastModified = attrs.lastModifiedTime().toMillis();
+                    if ( previous != null && previous.getLastModified() == lastModified
+                        && scan.getChangesSince() != RepositoryScanner.FRESH_SCAN )
+                    {
+                        replayDirectory( previous, directories, subdirectories );
+                    }
+                    else
+                    {
+                        ScanJournal.DirectoryEntry entry = ScanJournal.newDirectoryEntry( path, lastModified );
+                        walkDirectory( directories, previous, entry, subdirectories );
+                        journal.record( entry, scan );
+                    }
+                }
+            }
+            catch ( NoSuchFileException e )
+            {
+                if ( journal != null )
+                {
+                    reportRemovedDirectory( path, scan );
+                }
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Unable to list {}: {}", directory, e.getMessage() );
+            }
+
+            for ( DirectoryTask task : subdirectories )
+            {
+                task.join();
+            }
+        }
+
+        /**
+         * Lists the directory, handing its files to the scan. With a journal entry to fill, files are compared with
+         * the previous entry and the files and directories that disappeared since are reported as removed.
+         */
+        private void walkDirectory( List<Object> directories, ScanJournal.DirectoryEntry previous,
+                                    ScanJournal.DirectoryEntry entry, List<DirectoryTask> subdirectories )
+            throws IOException
+        {
+            Set<String> names = new HashSet<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream( directory ))
+            {
+                for ( Path child : entries )
+                {
+                    String name = child.getFileName().toString();
+                    names.add( name );
+
+                    BasicFileAttributes attrs;
+                    try
+                    {
+                        attrs = Files.readAttributes( child, BasicFileAttributes.class );
+                    }
+                    catch ( IOException e )
+                    {
+                        log.debug( "Unable to visit {}: {}", child, e.getMessage() );
+                        continue;
+                    }
+
+                    if ( attrs.isRegularFile() )
+                    {
+                        if ( isSelectedFile( child ) )
+                        {
+                            if ( entry == null )
+                            {
+                                scan.directoryWalkStep( child.toFile(), attrs );
+                            }
+                            else
+                            {
+                                long size = attrs.size();
+                                long lastModified = attrs.lastModifiedTime().toMillis();
+                                entry.addFile( name, size, lastModified );
+                                scan.directoryWalkStep( child.toFile(), lastModified,
+                                                        isChanged( previous, name, size, lastModified ) );
+                            }
+                        }
+                    }
+                    else if ( attrs.isDirectory() && !isExcludedDirectory( child ) )
+                    {
+                        if ( entry != null )
+                        {
+                            entry.addDirectory( name );
+                        }
+                        DirectoryTask task = new DirectoryTask( child, directories, scan );
+                        task.fork();
+                        subdirectories.add( task );
+                    }
+                }
+            }
+
+            if ( previous != null )
+            {
+                for ( ScanJournal.FileEntry file : previous.getFiles() )
+                {
+                    if ( !names.contains( file.getName() ) )
+                    {
+                        scan.fileRemoved( previous.childPath( file.getName() ) );
+                    }
+                }
+                for ( String name : previous.getDirectories() )
+                {
+                    if ( !names.contains( name ) )
+                    {
+                        reportRemovedDirectory( previous.childPath( name ), scan );
+                    }
+                }
+            }
+        }
+
+        private boolean isChanged( ScanJournal.DirectoryEntry previous, String name, long size, long lastModified )
+        {
+            if ( scan.getChangesSince() == RepositoryScanner.FRESH_SCAN )
+            {
+                return true;
+            }
+            if ( journal.isEmpty() )
+            {
+                // nothing to compare with yet, same as a scan without journal
+                return lastModified >= scan.getChangesSince();
+            }
+            ScanJournal.FileEntry file = previous != null ? previous.getFile( name ) : null;
+            return file == null || !file.isSame( size, lastModified );
+        }
+
+        /**
+         * Hands the files of a directory unchanged since the journal to the scan, without touching the files.
+         */
+        private void replayDirectory( ScanJournal.DirectoryEntry previous, List<Object> directories,
+                                      List<DirectoryTask> subdirectories )
+        {
+            for ( ScanJournal.FileEntry file : previous.getFiles() )
+            {
+                Path child = directory.resolve( file.getName() );
+                if ( isSelectedFile( child ) )
+                {
+                    scan.directoryWalkStep( child.toFile(), file.getLastModified(), false );
+                }
+            }
+            journal.record( previous, scan );
+
+            for ( String name : previous.getDirectories() )
+            {
+                Path child = directory.resolve( name );
+                if ( !isExcludedDirectory( child ) )
+                {
+                    DirectoryTask task = new DirectoryTask( child, directories, scan );
+                    task.fork();
+                    subdirectories.add( task );
+                }
+            }
+        }
+    }
+}
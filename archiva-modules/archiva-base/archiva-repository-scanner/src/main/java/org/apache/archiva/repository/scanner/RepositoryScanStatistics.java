@@ -69,6 +69,11 @@
      */
     private long newFileCount = 0;
 
+    /**
+     * Field removedFileCount
+     */
+    private long removedFileCount = 0;
+
     /**
      * Field totalSize
      */
@@ -95,16 +100,21 @@ public void triggerFinished()
         this.whenGathered = new java.util.Date( finished );
     }
 
-    public void increaseFileCount()
+    public synchronized void increaseFileCount()
     {
         this.totalFileCount += 1;
     }
 
-    public void increaseNewFileCount()
+    public synchronized void increaseNewFileCount()
     {
         this.newFileCount += 1;
     }
 
+    public synchronized void increaseRemovedFileCount()
+    {
+        this.removedFileCount += 1;
+    }
+
     public void setKnownConsumers( List<String> consumers )
     {
         knownConsumers = consumers;
@@ -190,6 +200,8 @@ public String toDump( ManagedRepository repo )
 
         buf.append( "\n  Total File Count  : " ).append( this.getTotalFileCount() );
 
+        buf.append( "\n  Removed Files     : " ).append( this.getRemovedFileCount() );
+
         long averageMsPerFile = 0;
 
         if ( getTotalFileCount() != 0 )
@@ -219,16 +231,21 @@ public long getDuration()
         return duration;
     }
 
-    public long getTotalFileCount()
+    public synchronized long getTotalFileCount()
     {
         return totalFileCount;
     }
 
-    public long getNewFileCount()
+    public synchronized long getNewFileCount()
     {
         return newFileCount;
     }
 
+    public synchronized long getRemovedFileCount()
+    {
+        return removedFileCount;
+    }
+
     public long getTotalSize()
     {
         return totalSize;
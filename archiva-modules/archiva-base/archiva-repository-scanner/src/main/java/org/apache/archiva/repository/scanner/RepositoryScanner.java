@@ -70,6 +70,24 @@
     RepositoryScanStatistics scan( ManagedRepository repository, long changesSince )
         throws RepositoryScannerException;
 
+    /**
+     * Scan the repository for content changes, keeping a {@link ScanJournal} of the scanned content in the repository.
+     * <p>
+     * Internally, this will use the as-configured known and invalid consumer lists. Once a journal exists, an
+     * incremental scan only lists the directories changed since the last scan, takes a file as changed if its size or
+     * modification time differs from the journal and reports the files removed since to the consumers. An interrupted
+     * scan is resumed by the next one.
+     *
+     * @param repository   the repository to change.
+     * @param changesSince the timestamp to use as a threshold on what is considered new or changed as long as there is
+     *                     no journal yet. (To have all content be taken into consideration regardless of timestamp
+     *                     and journal, use the {@link #FRESH_SCAN} constant)
+     * @return the statistics for this scan.
+     * @throws RepositoryScannerException if there was a fundamental problem with getting the discoverer started.
+     */
+    RepositoryScanStatistics scanWithJournal( ManagedRepository repository, long changesSince )
+        throws RepositoryScannerException;
+
     /**
      * Scan the repository for content changes.
      * <p>
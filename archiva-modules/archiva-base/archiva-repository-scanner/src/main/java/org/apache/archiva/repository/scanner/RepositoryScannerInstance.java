@@ -21,21 +21,25 @@
 
 import org.apache.archiva.admin.model.beans.ManagedRepository;
 import org.apache.archiva.common.utils.BaseFile;
+import org.apache.archiva.consumers.FlushableConsumer;
 import org.apache.archiva.consumers.InvalidRepositoryContentConsumer;
 import org.apache.archiva.consumers.KnownRepositoryContentConsumer;
+import org.apache.archiva.consumers.RemovedContentConsumer;
+import org.apache.archiva.consumers.RepositoryContentConsumer;
+import org.apache.archiva.consumers.ThreadSafeConsumer;
 import org.apache.archiva.consumers.functors.ConsumerWantsFilePredicate;
 import org.apache.archiva.repository.scanner.functors.ConsumerProcessFileClosure;
 import org.apache.archiva.repository.scanner.functors.TriggerBeginScanClosure;
 import org.apache.archiva.repository.scanner.functors.TriggerScanCompletedClosure;
 import org.apache.commons.collections.Closure;
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections.functors.IfClosure;
 import org.apache.commons.lang.SystemUtils;
 import org.codehaus.plexus.util.DirectoryWalkListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -43,6 +47,10 @@
 
 /**
  * RepositoryScannerInstance
+ * <p>
+ * The walk steps can come from several threads at the same time. Consumers marked as {@link ThreadSafeConsumer} then
+ * process files concurrently, the others get one file after the other.
+ * </p>
  */
 public class RepositoryScannerInstance
     implements DirectoryWalkListener
@@ -65,9 +73,7 @@
 
     private long changesSince = 0;
 
-    private ConsumerProcessFileClosure consumerProcessFile;
-
-    private ConsumerWantsFilePredicate consumerWantsFile;
+    private boolean caseSensitive = true;
 
     private Map<String, Long> consumerTimings;
 
@@ -84,13 +90,6 @@ public RepositoryScannerInstance( ManagedRepository repository,
         consumerTimings = new HashMap<>();
         consumerCounts = new HashMap<>();
 
-        this.consumerProcessFile = new ConsumerProcessFileClosure();
-        consumerProcessFile.setExecuteOnEntireRepo( true );
-        consumerProcessFile.setConsumerTimings( consumerTimings );
-        consumerProcessFile.setConsumerCounts( consumerCounts );
-
-        this.consumerWantsFile = new ConsumerWantsFilePredicate( repository );
-
         stats = new RepositoryScanStatistics();
         stats.setRepositoryId( repository.getId() );
 
@@ -102,7 +101,7 @@ public RepositoryScannerInstance( ManagedRepository repository,
 
         if ( SystemUtils.IS_OS_WINDOWS )
         {
-            consumerWantsFile.setCaseSensitive( false );
+            caseSensitive = false;
         }
     }
 
@@ -113,8 +112,6 @@ public RepositoryScannerInstance( ManagedRepository repository,
     {
         this( repository, knownContentConsumers, invalidContentConsumers );
 
-        consumerWantsFile.setChangesSince( changesSince );
-
         this.changesSince = changesSince;
     }
 
@@ -145,27 +142,192 @@ public void directoryWalkStep( int percentage, File file )
     {
         log.debug( "Walk Step: {}, {}", percentage, file );
 
+        processFile( new BaseFile( repository.getLocation(), file ), changesSince );
+    }
+
+    /**
+     * Walk step of a file whose attributes were already read by the walker, they are used instead of asking the file
+     * system again.
+     *
+     * @param file       the file to process
+     * @param attributes the attributes of the file
+     */
+    public void directoryWalkStep( File file, BasicFileAttributes attributes )
+    {
+        log.debug( "Walk Step: {}", file );
+
+        processFile( new ScannedFile( repository.getLocation(), file, attributes.lastModifiedTime().toMillis() ),
+                     changesSince );
+    }
+
+    /**
+     * Walk step of a file the walker compared with the scan journal. Consumers not processing unmodified files only
+     * get it if it changed since the last scan.
+     *
+     * @param file         the file to process
+     * @param lastModified the modification time of the file
+     * @param changed      whether the file is new or changed since the last scan
+     */
+    public void directoryWalkStep( File file, long lastModified, boolean changed )
+    {
+        log.debug( "Walk Step: {}, changed: {}", file, changed );
+
+        processFile( new ScannedFile( repository.getLocation(), file, lastModified ),
+                     changed ? RepositoryScanner.FRESH_SCAN : Long.MAX_VALUE );
+    }
+
+    private void processFile( BaseFile basefile, long changesSince )
+    {
         stats.increaseFileCount();
 
         // consume files regardless - the predicate will check the timestamp
-        BaseFile basefile = new BaseFile( repository.getLocation(), file );
 
         // Timestamp finished points to the last successful scan, not this current one.
-        if ( file.lastModified() >= changesSince )
+        if ( basefile.lastModified() >= changesSince )
         {
             stats.increaseNewFileCount();
         }
 
+        // the closure and the predicate keep the current file, so each step uses its own
+        ConsumerProcessFileClosure consumerProcessFile = new ConsumerProcessFileClosure();
+        consumerProcessFile.setExecuteOnEntireRepo( true );
+        consumerProcessFile.setConsumerTimings( consumerTimings );
+        consumerProcessFile.setConsumerCounts( consumerCounts );
         consumerProcessFile.setBasefile( basefile );
+
+        ConsumerWantsFilePredicate consumerWantsFile = new ConsumerWantsFilePredicate( repository );
+        consumerWantsFile.setCaseSensitive( caseSensitive );
+        consumerWantsFile.setChangesSince( changesSince );
         consumerWantsFile.setBasefile( basefile );
 
-        Closure processIfWanted = IfClosure.getInstance( consumerWantsFile, consumerProcessFile );
-        CollectionUtils.forAllDo( this.knownConsumers, processIfWanted );
+        for ( KnownRepositoryContentConsumer consumer : knownConsumers )
+        {
+            if ( consumerWantsFile.evaluate( consumer ) )
+            {
+                processFile( consumer, consumerProcessFile );
+            }
+        }
 
         if ( consumerWantsFile.getWantedFileCount() <= 0 )
         {
             // Nothing known processed this file.  It is invalid!
-            CollectionUtils.forAllDo( this.invalidConsumers, consumerProcessFile );
+            for ( InvalidRepositoryContentConsumer consumer : invalidConsumers )
+            {
+                processFile( consumer, consumerProcessFile );
+            }
+        }
+    }
+
+    /**
+     * A file found by the last scan no longer exists. It is reported to the known consumers that want to know about
+     * removed files and would have wanted the file.
+     *
+     * @param path the path of the file, relative to the repository
+     */
+    public void fileRemoved( String path )
+    {
+        log.debug( "Removed: {}", path );
+
+        stats.increaseRemovedFileCount();
+
+        ConsumerWantsFilePredicate consumerWantsFile = new ConsumerWantsFilePredicate( repository );
+        consumerWantsFile.setCaseSensitive( caseSensitive );
+        consumerWantsFile.setBasefile( new BaseFile( repository.getLocation(), path ) );
+
+        for ( KnownRepositoryContentConsumer consumer : knownConsumers )
+        {
+            if ( consumer instanceof RemovedContentConsumer && consumerWantsFile.evaluate( consumer ) )
+            {
+                if ( consumer instanceof ThreadSafeConsumer )
+                {
+                    processRemovedFile( consumer, path );
+                }
+                else
+                {
+                    synchronized ( consumer )
+                    {
+                        processRemovedFile( consumer, path );
+                    }
+                }
+            }
+        }
+    }
+
+    private void processRemovedFile( KnownRepositoryContentConsumer consumer, String path )
+    {
+        try
+        {
+            ( (RemovedContentConsumer) consumer ).processRemovedFile( path );
+        }
+        catch ( Exception e )
+        {
+            // like for processed files, a failing consumer doesn't stop the scan
+            log.error( "Consumer [{}] had an error when processing removed file [{}]: {}",
+                       consumer.getId(), path, e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Asks the consumers keeping results pending to store them, before the scan journal records the directories of the
+     * files processed so far as scanned.
+     *
+     * @return whether all of them stored their pending results
+     */
+    boolean flushConsumers()
+    {
+        boolean flushed = true;
+        for ( RepositoryContentConsumer consumer : knownConsumers )
+        {
+            flushed &= flushConsumer( consumer );
+        }
+        for ( RepositoryContentConsumer consumer : invalidConsumers )
+        {
+            flushed &= flushConsumer( consumer );
+        }
+        return flushed;
+    }
+
+    private boolean flushConsumer( RepositoryContentConsumer consumer )
+    {
+        if ( !( consumer instanceof FlushableConsumer ) )
+        {
+            return true;
+        }
+        try
+        {
+            if ( consumer instanceof ThreadSafeConsumer )
+            {
+                ( (FlushableConsumer) consumer ).flush();
+            }
+            else
+            {
+                synchronized ( consumer )
+                {
+                    ( (FlushableConsumer) consumer ).flush();
+                }
+            }
+            return true;
+        }
+        catch ( Exception e )
+        {
+            log.error( "Consumer [{}] had an error when storing its pending results: {}", consumer.getId(),
+                       e.getMessage(), e );
+            return false;
+        }
+    }
+
+    private static void processFile( RepositoryContentConsumer consumer, Closure consumerProcessFile )
+    {
+        if ( consumer instanceof ThreadSafeConsumer )
+        {
+            consumerProcessFile.execute( consumer );
+        }
+        else
+        {
+            synchronized ( consumer )
+            {
+                consumerProcessFile.execute( consumer );
+            }
         }
     }
 
@@ -206,4 +368,25 @@ public long getChangesSince()
     {
         return changesSince;
     }
+
+    /**
+     * A file of the walk, answering the modification time read by the walker.
+     */
+    private static class ScannedFile
+        extends BaseFile
+    {
+        private final long lastModified;
+
+        ScannedFile( String repoDir, File pathFile, long lastModified )
+        {
+            super( repoDir, pathFile );
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public long lastModified()
+        {
+            return lastModified;
+        }
+    }
 }
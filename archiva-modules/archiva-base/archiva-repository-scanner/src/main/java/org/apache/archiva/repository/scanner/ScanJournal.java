@@ -0,0 +1,485 @@
+package org.apache.archiva.repository.scanner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ScanJournal - what the last scan of a repository found: for each directory its modification time, the size and
+ * modification time of its files and the names of its subdirectories. The next scan only lists directories whose
+ * modification time changed since, and finds the files removed in between.
+ * <p>
+ * The journal is kept compressed in the repository itself, as {@link #FILE_NAME}. While a scan runs, the directories
+ * it is done with are also appended to a checkpoint file next to it, once the consumers stored what they keep pending
+ * for the files of these directories. A scan that is interrupted leaves that file behind and the next scan takes these
+ * directories as already scanned, continuing where the interrupted one stopped.
+ * </p>
+ * <p>
+ * Adding, removing or renaming a file changes the modification time of its directory. A file rewritten in place does
+ * not, so a scan of all content should still run from time to time.
+ * </p>
+ */
+public class ScanJournal
+{
+    public static final String FILE_NAME = ".archiva-scan-journal";
+
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    private static final int MAGIC = 0x41534a31;
+
+    /**
+     * Number of directories recorded between two checkpoints.
+     */
+    static final int CHECKPOINT_INTERVAL = 64;
+
+    /**
+     * A directory modified this shortly before it is scanned can change again without its modification time changing
+     * on file systems with a coarse time resolution. It is recorded with an unknown modification time, so the next scan
+     * lists it again.
+     */
+    private static final long RACY_INTERVAL = 2000;
+
+    private static final long UNKNOWN_TIME = -1;
+
+    private Logger log = LoggerFactory.getLogger( ScanJournal.class );
+
+    private final File journalFile;
+
+    private final File checkpointFile;
+
+    private final Map<String, DirectoryEntry> previous = new HashMap<>();
+
+    private final Map<String, DirectoryEntry> current = new ConcurrentHashMap<>();
+
+    private DataOutputStream checkpoint;
+
+    /**
+     * Directories recorded since the last checkpoint.
+     */
+    private final List<DirectoryEntry> uncheckpointed = new ArrayList<>();
+
+    /**
+     * Opens the journal of the repository: reads what the last scan (and an interrupted one after it) recorded and
+     * starts a new checkpoint file for the scan to come.
+     *
+     * @param repositoryDir the base directory of the repository
+     * @return the journal
+     * @throws IOException if the checkpoint file cannot be written
+     */
+    public static ScanJournal open( File repositoryDir )
+        throws IOException
+    {
+        ScanJournal journal = new ScanJournal( repositoryDir );
+        journal.load();
+        return journal;
+    }
+
+    private ScanJournal( File repositoryDir )
+    {
+        this.journalFile = new File( repositoryDir, FILE_NAME );
+        this.checkpointFile = new File( repositoryDir, FILE_NAME + CHECKPOINT_SUFFIX );
+    }
+
+    private void load()
+        throws IOException
+    {
+        if ( journalFile.exists() )
+        {
+            read( journalFile, true );
+        }
+
+        List<DirectoryEntry> resumed = Collections.emptyList();
+        if ( checkpointFile.exists() )
+        {
+            // directories of an interrupted scan, they replace what the last complete scan found
+            resumed = read( checkpointFile, false );
+            log.info( "Resuming interrupted scan of {}, {} directories already scanned", journalFile.getParent(),
+                      resumed.size() );
+        }
+
+        checkpoint = new DataOutputStream(
+            new BufferedOutputStream( Files.newOutputStream( checkpointFile.toPath() ), 65536 ) );
+        checkpoint.writeInt( MAGIC );
+        for ( DirectoryEntry entry : resumed )
+        {
+            writeEntry( checkpoint, entry );
+        }
+        checkpoint.flush();
+    }
+
+    private List<DirectoryEntry> read( File file, boolean compressed )
+        throws IOException
+    {
+        List<DirectoryEntry> entries = new ArrayList<>();
+        InputStream is = new BufferedInputStream( Files.newInputStream( file.toPath() ), 65536 );
+        try (DataInputStream in = new DataInputStream( compressed ? new GZIPInputStream( is ) : is ))
+        {
+            if ( in.readInt() != MAGIC )
+            {
+                log.warn( "Ignoring {}, it is not a scan journal", file );
+                return entries;
+            }
+            while ( in.readBoolean() )
+            {
+                DirectoryEntry entry = readEntry( in );
+                previous.put( entry.getPath(), entry );
+                entries.add( entry );
+            }
+        }
+        catch ( EOFException e )
+        {
+            // the checkpoint file of an interrupted scan just stops, every directory read completely is still used
+            if ( compressed )
+            {
+                log.warn( "Scan journal {} is truncated, using the {} directories read", file, entries.size() );
+            }
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to read scan journal {}, using the {} directories read: {}", file, entries.size(),
+                      e.getMessage() );
+        }
+        return entries;
+    }
+
+    /**
+     * @return whether there is no earlier scan to compare with.
+     */
+    public boolean isEmpty()
+    {
+        return previous.isEmpty();
+    }
+
+    /**
+     * @param path the directory path relative to the repository, with <code>/</code> as separator, empty for the base
+     *             directory
+     * @return what the last scan found in the directory, or <code>null</code> if it didn't scan it
+     */
+    DirectoryEntry getPrevious( String path )
+    {
+        return previous.get( path );
+    }
+
+    /**
+     * Creates the entry recording a directory the current scan lists.
+     *
+     * @param path         the directory path relative to the repository
+     * @param lastModified the modification time of the directory, read before listing it
+     */
+    static DirectoryEntry newDirectoryEntry( String path, long lastModified )
+    {
+        boolean racy = lastModified > System.currentTimeMillis() - RACY_INTERVAL;
+        return new DirectoryEntry( path, racy ? UNKNOWN_TIME : lastModified );
+    }
+
+    /**
+     * Records a directory the current scan is done with, all its files were handed to the consumers. Can be called
+     * from several threads.
+     *
+     * @param entry the directory
+     * @param scan  the scan, asked to flush its consumers before a checkpoint
+     */
+    synchronized void record( DirectoryEntry entry, RepositoryScannerInstance scan )
+    {
+        current.put( entry.getPath(), entry );
+        if ( checkpoint == null )
+        {
+            return;
+        }
+        uncheckpointed.add( entry );
+        if ( uncheckpointed.size() >= CHECKPOINT_INTERVAL )
+        {
+            // the files of these directories went through the consumers, once they stored what they keep pending
+            // the directories are done even if the scan is interrupted
+            if ( scan.flushConsumers() )
+            {
+                writeCheckpoint();
+            }
+            else
+            {
+                log.warn( "Consumers could not store their pending results, an interrupted scan of {} will resume "
+                              + "from the last checkpoint", journalFile.getParent() );
+                closeCheckpoint();
+            }
+        }
+    }
+
+    /**
+     * Checkpoints the directories recorded since the last checkpoint once the walk is finished: the consumers completed
+     * the scan and stored everything.
+     */
+    synchronized void walkFinished()
+    {
+        writeCheckpoint();
+    }
+
+    private void writeCheckpoint()
+    {
+        if ( checkpoint == null )
+        {
+            return;
+        }
+        try
+        {
+            for ( DirectoryEntry entry : uncheckpointed )
+            {
+                writeEntry( checkpoint, entry );
+            }
+            checkpoint.flush();
+            uncheckpointed.clear();
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to write scan checkpoint {}, an interrupted scan will start over: {}", checkpointFile,
+                      e.getMessage() );
+            closeCheckpoint();
+        }
+    }
+
+    /**
+     * Replaces the journal with what the current scan recorded, once the scan is complete.
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    public synchronized void commit()
+        throws IOException
+    {
+        closeCheckpoint();
+
+        File tempFile = new File( journalFile.getParentFile(), FILE_NAME + ".tmp" );
+        try (DataOutputStream out = new DataOutputStream( new BufferedOutputStream(
+            new GZIPOutputStream( Files.newOutputStream( tempFile.toPath() ), 65536 ) ) ))
+        {
+            out.writeInt( MAGIC );
+            for ( DirectoryEntry entry : current.values() )
+            {
+                writeEntry( out, entry );
+            }
+            out.writeBoolean( false );
+        }
+
+        try
+        {
+            Files.move( tempFile.toPath(), journalFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            Files.move( tempFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+        Files.deleteIfExists( checkpointFile.toPath() );
+    }
+
+    /**
+     * Ends a scan that did not complete, keeping the checkpoint for the next scan to resume from. Directories recorded
+     * since the last checkpoint are scanned again by the next scan.
+     */
+    public synchronized void close()
+    {
+        closeCheckpoint();
+    }
+
+    private void closeCheckpoint()
+    {
+        if ( checkpoint != null )
+        {
+            try
+            {
+                checkpoint.close();
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Unable to close scan checkpoint {}: {}", checkpointFile, e.getMessage() );
+            }
+            checkpoint = null;
+        }
+    }
+
+    private static void writeEntry( DataOutputStream out, DirectoryEntry entry )
+        throws IOException
+    {
+        out.writeBoolean( true );
+        out.writeUTF( entry.getPath() );
+        out.writeLong( entry.getLastModified() );
+        out.writeInt( entry.getFiles().size() );
+        for ( FileEntry file : entry.getFiles() )
+        {
+            out.writeUTF( file.getName() );
+            out.writeLong( file.getSize() );
+            out.writeLong( file.getLastModified() );
+        }
+        out.writeInt( entry.getDirectories().size() );
+        for ( String directory : entry.getDirectories() )
+        {
+            out.writeUTF( directory );
+        }
+    }
+
+    private static DirectoryEntry readEntry( DataInputStream in )
+        throws IOException
+    {
+        DirectoryEntry entry = new DirectoryEntry( in.readUTF(), in.readLong() );
+        for ( int i = in.readInt(); i > 0; i-- )
+        {
+            entry.addFile( in.readUTF(), in.readLong(), in.readLong() );
+        }
+        for ( int i = in.readInt(); i > 0; i-- )
+        {
+            entry.addDirectory( in.readUTF() );
+        }
+        return entry;
+    }
+
+    /**
+     * A directory as found by a scan.
+     */
+    static class DirectoryEntry
+    {
+        private final String path;
+
+        private final long lastModified;
+
+        private final List<FileEntry> files = new ArrayList<>();
+
+        private final List<String> directories = new ArrayList<>();
+
+        private Map<String, FileEntry> filesByName;
+
+        DirectoryEntry( String path, long lastModified )
+        {
+            this.path = path;
+            this.lastModified = lastModified;
+        }
+
+        String getPath()
+        {
+            return path;
+        }
+
+        long getLastModified()
+        {
+            return lastModified;
+        }
+
+        List<FileEntry> getFiles()
+        {
+            return files;
+        }
+
+        List<String> getDirectories()
+        {
+            return directories;
+        }
+
+        void addFile( String name, long size, long lastModified )
+        {
+            files.add( new FileEntry( name, size, lastModified ) );
+        }
+
+        void addDirectory( String name )
+        {
+            directories.add( name );
+        }
+
+        /**
+         * Only called by the task walking this directory.
+         */
+        FileEntry getFile( String name )
+        {
+            if ( filesByName == null )
+            {
+                filesByName = new HashMap<>( files.size() * 2 );
+                for ( FileEntry file : files )
+                {
+                    filesByName.put( file.getName(), file );
+                }
+            }
+            return filesByName.get( name );
+        }
+
+        /**
+         * @return the relative path of a file or directory in this directory
+         */
+        String childPath( String name )
+        {
+            return path.isEmpty() ? name : path + '/' + name;
+        }
+    }
+
+    /**
+     * A file as found by a scan.
+     */
+    static class FileEntry
+    {
+        private final String name;
+
+        private final long size;
+
+        private final long lastModified;
+
+        FileEntry( String name, long size, long lastModified )
+        {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        String getName()
+        {
+            return name;
+        }
+
+        long getSize()
+        {
+            return size;
+        }
+
+        long getLastModified()
+        {
+            return lastModified;
+        }
+
+        boolean isSame( long size, long lastModified )
+        {
+            return this.size == size && this.lastModified == lastModified;
+        }
+    }
+}
@@ -60,16 +60,23 @@ public void execute( Object input )
                 consumer.processFile( basefile.getRelativePath(), executeOnEntireRepo );
                 long endTime = System.currentTimeMillis();
 
+                // the maps are shared by the threads of a parallel scan
                 if ( consumerTimings != null )
                 {
-                    Long value = consumerTimings.get( id );
-                    consumerTimings.put( id, ( value != null ? value : 0 ) + endTime - startTime );
+                    synchronized ( consumerTimings )
+                    {
+                        Long value = consumerTimings.get( id );
+                        consumerTimings.put( id, ( value != null ? value : 0 ) + endTime - startTime );
+                    }
                 }
 
                 if ( consumerCounts != null )
                 {
-                    Long value = consumerCounts.get( id );
-                    consumerCounts.put( id, ( value != null ? value : 0 ) + 1 );
+                    synchronized ( consumerCounts )
+                    {
+                        Long value = consumerCounts.get( id );
+                        consumerCounts.put( id, ( value != null ? value : 0 ) + 1 );
+                    }
                 }
             }
             catch ( Exception e )
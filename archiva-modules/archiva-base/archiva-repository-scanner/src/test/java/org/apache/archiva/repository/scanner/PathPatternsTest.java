@@ -0,0 +1,81 @@
+package org.apache.archiva.repository.scanner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.codehaus.plexus.util.SelectorUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * PathPatternsTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class PathPatternsTest
+    extends TestCase
+{
+    private static final String[] PATTERNS =
+        new String[]{ "**/*", "**/.svn/**", ".index/**", "**/*.jar", "a/**/b/*.pom", "**/KEYS", "*.sh", "a/?x/**",
+            "**/", "a/b", "**/a/**/b/**", "**/*-site.xml", "**" };
+
+    private static final String[] PATHS =
+        new String[]{ "a", "a/b", "a/b/c.jar", "x.jar", ".index/x", ".index", ".svn/a", "z/.svn/a/b", "a/c/d/b/e.pom",
+            "a/b/e.pom", "KEYS", "q/KEYS", "x.sh", "q/x.sh", "a/yx/z", "a/yx", "a/zzx/q", "a/q/b/r", "a/b/c",
+            "foo-site.xml", "p/foo-site.xml" };
+
+    @Test
+    public void testMatchesLikeSelectorUtils()
+    {
+        for ( String pattern : PATTERNS )
+        {
+            PathPatterns patterns = new PathPatterns( Collections.singletonList( pattern ), true );
+            for ( String path : PATHS )
+            {
+                assertEquals( pattern + " on " + path, SelectorUtils.matchPath( pattern, path, true ),
+                              patterns.matches( path ) );
+            }
+        }
+    }
+
+    @Test
+    public void testCaseInsensitive()
+    {
+        PathPatterns patterns = new PathPatterns( Arrays.asList( "**/*.JAR", "**/keys" ), false );
+        assertTrue( patterns.matches( "a/b/c.jar" ) );
+        assertTrue( patterns.matches( "KEYS" ) );
+        assertFalse( patterns.matches( "a/b/c.pom" ) );
+    }
+
+    @Test
+    public void testMatchesSubtree()
+    {
+        PathPatterns patterns = new PathPatterns( Arrays.asList( "**/.svn/**", ".index/**", "**/*.jar" ), true );
+        assertTrue( patterns.matchesSubtree( ".index" ) );
+        assertTrue( patterns.matchesSubtree( "a/b/.svn" ) );
+        assertFalse( patterns.matchesSubtree( "a/.index" ) );
+        assertFalse( patterns.matchesSubtree( "a" ) );
+        assertFalse( patterns.matchesSubtree( "a.jar" ) );
+        assertFalse( patterns.matchesSubtree( "" ) );
+    }
+}
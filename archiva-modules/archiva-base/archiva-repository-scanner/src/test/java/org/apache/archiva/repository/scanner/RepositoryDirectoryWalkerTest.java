@@ -0,0 +1,189 @@
+package org.apache.archiva.repository.scanner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.admin.model.beans.ManagedRepository;
+import org.apache.archiva.consumers.ConsumerException;
+import org.apache.archiva.consumers.InvalidRepositoryContentConsumer;
+import org.apache.archiva.consumers.KnownRepositoryContentConsumer;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.apache.commons.io.FileUtils;
+import org.codehaus.plexus.util.DirectoryWalker;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * RepositoryDirectoryWalkerTest - compares the walker with the plexus directory walker on a generated maven
+ * repository. Run with <code>-Dscanner.benchmark.files=500000</code> to compare the walk times on a large repository.
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class RepositoryDirectoryWalkerTest
+    extends TestCase
+{
+    private static final List<String> INCLUDES = Collections.singletonList( "**/*" );
+
+    private static final List<String> EXCLUDES =
+        Arrays.asList( "**/.htaccess", "**/KEYS", "**/*.sh", "**/.svn/**", "**/.git/**", ".index/**", ".indexer/**" );
+
+    private Logger log = LoggerFactory.getLogger( RepositoryDirectoryWalkerTest.class );
+
+    private File repoDir;
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        repoDir = Files.createTempDirectory( "walker-test" ).toFile();
+        generateRepository( repoDir, Integer.getInteger( "scanner.benchmark.files", 2000 ) );
+    }
+
+    @After
+    @Override
+    public void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteQuietly( repoDir );
+        super.tearDown();
+    }
+
+    /**
+     * Generates a maven layout with the given number of files, each version with a jar, a pom and their checksums,
+     * plus excluded index and scm directories.
+     */
+    private static void generateRepository( File dir, int fileCount )
+        throws IOException
+    {
+        String[] extensions = new String[]{ ".jar", ".jar.sha1", ".jar.md5", ".pom", ".pom.sha1", ".pom.md5" };
+        int versions = Math.max( 1, fileCount / extensions.length );
+        for ( int i = 0; i < versions; i++ )
+        {
+            String artifactId = "artifact" + ( i / 5 );
+            String version = "1." + ( i % 5 );
+            File versionDir = new File( dir, "org/example/group" + ( i / 500 ) + "/" + artifactId + "/" + version );
+            versionDir.mkdirs();
+            for ( String extension : extensions )
+            {
+                Files.write( new File( versionDir, artifactId + "-" + version + extension ).toPath(),
+                             new byte[]{ 1 } );
+            }
+        }
+
+        for ( String excluded : new String[]{ ".index/segments", ".indexer/timestamp", "org/example/.svn/entries",
+            ".git/objects/pack", "org/KEYS", "org/example/build.sh" } )
+        {
+            File file = new File( dir, excluded );
+            file.getParentFile().mkdirs();
+            Files.write( file.toPath(), new byte[]{ 1 } );
+        }
+    }
+
+    private RepositoryScannerInstance newScan( final Set<String> paths )
+    {
+        KnownScanConsumer consumer = new KnownScanConsumer()
+        {
+            @Override
+            public void processFile( String path )
+                throws ConsumerException
+            {
+                super.processFile( path );
+                paths.add( path.replace( File.separatorChar, '/' ) );
+            }
+        };
+        consumer.setIncludes( new String[]{ "**/*" } );
+        consumer.setProcessUnmodified( true );
+
+        ManagedRepository repository = new ManagedRepository();
+        repository.setId( "walker-test" );
+        repository.setLocation( repoDir.getAbsolutePath() );
+
+        List<KnownRepositoryContentConsumer> knownConsumers =
+            Arrays.<KnownRepositoryContentConsumer>asList( consumer );
+        List<InvalidRepositoryContentConsumer> invalidConsumers = new ArrayList<>();
+        return new RepositoryScannerInstance( repository, knownConsumers, invalidConsumers,
+                                              RepositoryScanner.FRESH_SCAN );
+    }
+
+    private Set<String> walk( int parallelism )
+    {
+        Set<String> paths = Collections.synchronizedSet( new TreeSet<String>() );
+        RepositoryScannerInstance scan = newScan( paths );
+
+        RepositoryDirectoryWalker walker = new RepositoryDirectoryWalker( repoDir, parallelism );
+        walker.setIncludes( INCLUDES );
+        walker.setExcludes( EXCLUDES );
+
+        long start = System.currentTimeMillis();
+        walker.walk( scan );
+        log.info( "Scanned {} files with parallelism {} in {} ms", paths.size(), parallelism,
+                  System.currentTimeMillis() - start );
+
+        assertEquals( paths.size(), scan.getStatistics().getTotalFileCount() );
+        return paths;
+    }
+
+    private Set<String> walkWithPlexus()
+    {
+        Set<String> paths = new TreeSet<>();
+        RepositoryScannerInstance scan = newScan( paths );
+
+        DirectoryWalker dirWalker = new DirectoryWalker();
+        dirWalker.setBaseDir( repoDir );
+        dirWalker.setIncludes( INCLUDES );
+        dirWalker.setExcludes( EXCLUDES );
+        dirWalker.addDirectoryWalkListener( scan );
+
+        long start = System.currentTimeMillis();
+        dirWalker.scan();
+        log.info( "Scanned {} files with the plexus walker in {} ms", paths.size(),
+                  System.currentTimeMillis() - start );
+        return paths;
+    }
+
+    @Test
+    public void testSameFilesAsPlexusWalker()
+        throws Exception
+    {
+        Set<String> expected = walkWithPlexus();
+
+        assertFalse( expected.isEmpty() );
+        assertFalse( expected.contains( ".index/segments" ) );
+        assertFalse( expected.contains( "org/example/.svn/entries" ) );
+
+        assertEquals( expected, walk( 1 ) );
+        assertEquals( expected, walk( 4 ) );
+    }
+}
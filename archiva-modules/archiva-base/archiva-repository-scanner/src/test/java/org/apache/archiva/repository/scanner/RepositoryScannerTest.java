@@ -256,6 +256,45 @@ public void testDefaultRepositoryScanner()
         assertEquals( "Processed Count (of invalid items):" + badconsumer.getPaths(), 6, badconsumer.getProcessCount() );
     }
 
+    @Test
+    public void testParallelRepositoryScanner()
+        throws Exception
+    {
+        String[] includes =
+            new String[]{ "**/*.jar", "**/*.war", "**/*.pom", "**/maven-metadata.xml", "**/*-site.xml", "**/*.zip",
+                "**/*.tar.gz", "**/*.sha1", "**/*.md5" };
+
+        ManagedRepository repository = createDefaultRepository();
+
+        KnownScanConsumer consumer = new KnownScanConsumer();
+        consumer.setIncludes( includes );
+        InvalidScanConsumer badconsumer = new InvalidScanConsumer();
+
+        RepositoryScanner scanner = lookupRepositoryScanner();
+        RepositoryScanStatistics stats =
+            scanner.scan( repository, Arrays.<KnownRepositoryContentConsumer>asList( consumer ),
+                          Arrays.<InvalidRepositoryContentConsumer>asList( badconsumer ), getIgnoreList(),
+                          RepositoryScanner.FRESH_SCAN );
+
+        repository.setScanParallelism( 4 );
+
+        KnownScanConsumer parallelConsumer = new KnownScanConsumer();
+        parallelConsumer.setIncludes( includes );
+        InvalidScanConsumer parallelBadconsumer = new InvalidScanConsumer();
+
+        RepositoryScanStatistics parallelStats =
+            scanner.scan( repository, Arrays.<KnownRepositoryContentConsumer>asList( parallelConsumer ),
+                          Arrays.<InvalidRepositoryContentConsumer>asList( parallelBadconsumer ), getIgnoreList(),
+                          RepositoryScanner.FRESH_SCAN );
+
+        // consumers without the thread safe marker get one file after the other, so their plain counters match
+        assertEquals( stats.getTotalFileCount(), parallelStats.getTotalFileCount() );
+        assertEquals( stats.getNewFileCount(), parallelStats.getNewFileCount() );
+        assertEquals( consumer.getProcessCount(), parallelConsumer.getProcessCount() );
+        assertEquals( badconsumer.getProcessCount(), parallelBadconsumer.getProcessCount() );
+        assertEquals( 6, parallelBadconsumer.getProcessCount() );
+    }
+
     @Test
     public void testDefaultRepositoryArtifactScanner()
         throws Exception
@@ -0,0 +1,306 @@
+package org.apache.archiva.repository.scanner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.admin.model.beans.ManagedRepository;
+import org.apache.archiva.consumers.ConsumerException;
+import org.apache.archiva.consumers.FlushableConsumer;
+import org.apache.archiva.consumers.InvalidRepositoryContentConsumer;
+import org.apache.archiva.consumers.KnownRepositoryContentConsumer;
+import org.apache.archiva.consumers.RemovedContentConsumer;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * ScanJournalTest - scans a generated repository with a journal, changes it and checks what the next scans report.
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class ScanJournalTest
+    extends TestCase
+{
+    private static final String[] PATHS =
+        { "org/example/lib/1.0/lib-1.0.jar", "org/example/lib/1.0/lib-1.0.pom", "org/example/lib/1.1/lib-1.1.jar",
+            "org/example/lib/1.1/lib-1.1.pom", "org/example/app/2.0/app-2.0.jar", "org/example/app/2.0/app-2.0.pom" };
+
+    private File repoDir;
+
+    private long lastScan;
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        repoDir = Files.createTempDirectory( "journal-test" ).toFile();
+        for ( String path : PATHS )
+        {
+            File file = new File( repoDir, path );
+            file.getParentFile().mkdirs();
+            Files.write( file.toPath(), path.getBytes( "UTF-8" ) );
+        }
+        makeOld( repoDir );
+    }
+
+    @After
+    @Override
+    public void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteQuietly( repoDir );
+        super.tearDown();
+    }
+
+    /**
+     * Moves the modification time of a directory and of everything in it an hour back, as if it didn't change for a
+     * while.
+     */
+    private static void makeOld( File file )
+    {
+        File[] children = file.listFiles();
+        if ( children != null )
+        {
+            for ( File child : children )
+            {
+                makeOld( child );
+            }
+        }
+        file.setLastModified( System.currentTimeMillis() - 3600000 );
+    }
+
+    private RecordingConsumer scan( long changesSince, int parallelism, boolean commit )
+        throws IOException
+    {
+        RecordingConsumer consumer = new RecordingConsumer();
+        consumer.setIncludes( new String[]{ "**/*.jar", "**/*.pom" } );
+
+        ManagedRepository repository = new ManagedRepository();
+        repository.setId( "journal-test" );
+        repository.setLocation( repoDir.getAbsolutePath() );
+
+        List<KnownRepositoryContentConsumer> knownConsumers = Arrays.<KnownRepositoryContentConsumer>asList( consumer );
+        List<InvalidRepositoryContentConsumer> invalidConsumers = new ArrayList<>();
+        RepositoryScannerInstance scan =
+            new RepositoryScannerInstance( repository, knownConsumers, invalidConsumers, changesSince );
+
+        ScanJournal journal = ScanJournal.open( repoDir );
+        RepositoryDirectoryWalker walker = new RepositoryDirectoryWalker( repoDir, parallelism );
+        walker.setIncludes( Collections.singletonList( "**/*" ) );
+        walker.setExcludes( Collections.singletonList( ScanJournal.FILE_NAME + "*" ) );
+        walker.setJournal( journal );
+        walker.walk( scan );
+
+        if ( commit )
+        {
+            journal.commit();
+        }
+        else
+        {
+            journal.close();
+        }
+        consumer.stats = scan.getStatistics();
+        lastScan = System.currentTimeMillis();
+        return consumer;
+    }
+
+    @Test
+    public void testFirstScanWithoutJournalUsesTimestamps()
+        throws Exception
+    {
+        RecordingConsumer consumer = scan( System.currentTimeMillis() - 60000, 1, true );
+
+        assertTrue( consumer.processed.isEmpty() );
+        assertEquals( PATHS.length, consumer.stats.getTotalFileCount() );
+        assertTrue( new File( repoDir, ScanJournal.FILE_NAME ).exists() );
+        assertFalse( new File( repoDir, ScanJournal.FILE_NAME + ".checkpoint" ).exists() );
+    }
+
+    @Test
+    public void testIncrementalScanReportsChanges()
+        throws Exception
+    {
+        RecordingConsumer consumer = scan( RepositoryScanner.FRESH_SCAN, 1, true );
+        assertEquals( PATHS.length, consumer.processed.size() );
+
+        consumer = scan( lastScan, 1, true );
+        assertTrue( consumer.processed.isEmpty() );
+        assertTrue( consumer.removed.isEmpty() );
+        assertEquals( PATHS.length, consumer.stats.getTotalFileCount() );
+        assertEquals( 0, consumer.stats.getNewFileCount() );
+
+        // a new version, a removed version and a rewritten file with an old time stamp
+        File newVersion = new File( repoDir, "org/example/lib/1.2" );
+        newVersion.mkdirs();
+        Files.write( new File( newVersion, "lib-1.2.jar" ).toPath(), new byte[]{ 1 } );
+        FileUtils.deleteDirectory( new File( repoDir, "org/example/lib/1.0" ) );
+        File pom = new File( repoDir, "org/example/app/2.0/app-2.0.pom" );
+        File jar = new File( repoDir, "org/example/app/2.0/app-2.0.jar" );
+        File rewritten = new File( repoDir, "org/example/app/2.0/app-2.0.jar.new" );
+        Files.write( rewritten.toPath(), new byte[]{ 1, 2, 3 } );
+        rewritten.setLastModified( pom.lastModified() );
+        jar.delete();
+        rewritten.renameTo( jar );
+
+        consumer = scan( lastScan, 1, true );
+        assertEquals( new TreeSet<>( Arrays.asList( "org/example/lib/1.2/lib-1.2.jar",
+                                                    "org/example/app/2.0/app-2.0.jar" ) ), consumer.processed );
+        assertEquals( new TreeSet<>( Arrays.asList( "org/example/lib/1.0/lib-1.0.jar",
+                                                    "org/example/lib/1.0/lib-1.0.pom" ) ), consumer.removed );
+        assertEquals( PATHS.length - 1, consumer.stats.getTotalFileCount() );
+        assertEquals( 2, consumer.stats.getNewFileCount() );
+        assertEquals( 2, consumer.stats.getRemovedFileCount() );
+    }
+
+    @Test
+    public void testUnchangedDirectoriesAreNotListed()
+        throws Exception
+    {
+        scan( RepositoryScanner.FRESH_SCAN, 1, true );
+
+        // a file added without changing the directory time stamp isn't seen, the directory is taken from the journal
+        File versionDir = new File( repoDir, "org/example/lib/1.1" );
+        long lastModified = versionDir.lastModified();
+        Files.write( new File( versionDir, "lib-1.1-sources.jar" ).toPath(), new byte[]{ 1 } );
+        versionDir.setLastModified( lastModified );
+
+        RecordingConsumer consumer = scan( lastScan, 4, true );
+        assertTrue( consumer.processed.isEmpty() );
+        assertEquals( PATHS.length, consumer.stats.getTotalFileCount() );
+
+        // a fresh scan lists everything again
+        consumer = scan( RepositoryScanner.FRESH_SCAN, 4, true );
+        assertEquals( PATHS.length + 1, consumer.processed.size() );
+    }
+
+    @Test
+    public void testInterruptedScanIsResumed()
+        throws Exception
+    {
+        scan( RepositoryScanner.FRESH_SCAN, 1, true );
+
+        File newVersion = new File( repoDir, "org/example/lib/1.2" );
+        newVersion.mkdirs();
+        Files.write( new File( newVersion, "lib-1.2.jar" ).toPath(), new byte[]{ 1 } );
+        makeOld( newVersion );
+        newVersion.getParentFile().setLastModified( newVersion.lastModified() );
+
+        // the scan processes the new file but doesn't complete
+        RecordingConsumer consumer = scan( lastScan, 1, false );
+        assertEquals( Collections.singleton( "org/example/lib/1.2/lib-1.2.jar" ), consumer.processed );
+        assertTrue( new File( repoDir, ScanJournal.FILE_NAME + ".checkpoint" ).exists() );
+
+        // the next one takes the directories of the checkpoint as scanned
+        consumer = scan( lastScan, 1, true );
+        assertTrue( consumer.processed.isEmpty() );
+        assertEquals( PATHS.length + 1, consumer.stats.getTotalFileCount() );
+        assertFalse( new File( repoDir, ScanJournal.FILE_NAME + ".checkpoint" ).exists() );
+    }
+
+    @Test
+    public void testCheckpointWaitsForConsumers()
+        throws Exception
+    {
+        FlushingConsumer consumer = new FlushingConsumer();
+        ManagedRepository repository = new ManagedRepository();
+        repository.setId( "journal-test" );
+        repository.setLocation( repoDir.getAbsolutePath() );
+        List<KnownRepositoryContentConsumer> knownConsumers = Arrays.<KnownRepositoryContentConsumer>asList( consumer );
+        List<InvalidRepositoryContentConsumer> invalidConsumers = new ArrayList<>();
+        RepositoryScannerInstance scan =
+            new RepositoryScannerInstance( repository, knownConsumers, invalidConsumers, RepositoryScanner.FRESH_SCAN );
+        long lastModified = System.currentTimeMillis() - 3600000;
+
+        // interrupted before a checkpoint: the consumer may still keep the files of these directories pending
+        ScanJournal journal = ScanJournal.open( repoDir );
+        for ( int i = 1; i < ScanJournal.CHECKPOINT_INTERVAL; i++ )
+        {
+            journal.record( ScanJournal.newDirectoryEntry( "dir" + i, lastModified ), scan );
+        }
+        journal.close();
+        assertEquals( 0, consumer.flushes );
+
+        // the checkpoint comes once the consumer stored what it keeps pending
+        journal = ScanJournal.open( repoDir );
+        assertNull( journal.getPrevious( "dir1" ) );
+        for ( int i = 1; i <= ScanJournal.CHECKPOINT_INTERVAL; i++ )
+        {
+            journal.record( ScanJournal.newDirectoryEntry( "dir" + i, lastModified ), scan );
+        }
+        journal.close();
+        assertEquals( 1, consumer.flushes );
+        journal = ScanJournal.open( repoDir );
+        assertNotNull( journal.getPrevious( "dir1" ) );
+        assertNotNull( journal.getPrevious( "dir" + ScanJournal.CHECKPOINT_INTERVAL ) );
+        journal.close();
+    }
+
+    private static class FlushingConsumer
+        extends KnownScanConsumer
+        implements FlushableConsumer
+    {
+        private int flushes;
+
+        @Override
+        public void flush()
+        {
+            flushes++;
+        }
+    }
+
+    private static class RecordingConsumer
+        extends KnownScanConsumer
+        implements RemovedContentConsumer
+    {
+        private final Set<String> processed = Collections.synchronizedSet( new TreeSet<String>() );
+
+        private final Set<String> removed = Collections.synchronizedSet( new TreeSet<String>() );
+
+        private RepositoryScanStatistics stats;
+
+        @Override
+        public void processFile( String path )
+            throws ConsumerException
+        {
+            super.processFile( path );
+            processed.add( path.replace( File.separatorChar, '/' ) );
+        }
+
+        @Override
+        public void processRemovedFile( String path )
+        {
+            removed.add( path );
+        }
+    }
+}
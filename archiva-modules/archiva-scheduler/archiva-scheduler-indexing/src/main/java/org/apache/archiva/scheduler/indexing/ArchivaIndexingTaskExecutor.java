@@ -26,6 +26,8 @@
 import org.apache.archiva.common.plexusbridge.PlexusSisuBridge;
 import org.apache.archiva.common.plexusbridge.PlexusSisuBridgeException;
 import org.apache.archiva.redback.components.taskqueue.Task;
+import org.apache.archiva.redback.components.taskqueue.TaskQueue;
+import org.apache.archiva.redback.components.taskqueue.TaskQueueException;
 import org.apache.archiva.redback.components.taskqueue.execution.TaskExecutionException;
 import org.apache.archiva.redback.components.taskqueue.execution.TaskExecutor;
 import org.apache.lucene.search.BooleanClause;
@@ -42,17 +44,43 @@
 import org.apache.maven.index.packer.IndexPackingRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import javax.inject.Named;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * ArchivaIndexingTaskExecutor Executes all indexing tasks. Adding, updating and removing artifacts from the index are
  * all performed by this executor. Add and update artifact in index tasks are added in the indexing task queue by the
  * NexusIndexerConsumer while remove artifact from index tasks are added by the LuceneCleanupRemoveIndexedConsumer.
+ * <p>
+ * Added and removed artifacts are committed to the index of a repository in batches: the changes are committed once
+ * {@link #setBatchSize(int) batchSize} artifacts are pending or when no more tasks are waiting in the indexing queue.
+ * Indexing single artifacts does not pack the index after each task anymore, the packing is delayed by
+ * {@link #setPackDelay(long) packDelay} milliseconds so that the changes of consecutive deployments are packed
+ * together as one incremental chunk. The delayed packing only writes that chunk and the index properties, the full
+ * index archives are written when a FINISH task packs the index.
  */
 @Service ( "taskExecutor#indexing" )
 public class ArchivaIndexingTaskExecutor
@@ -70,8 +98,44 @@
     @Inject
     private ManagedRepositoryAdmin managedRepositoryAdmin;
 
+    @Inject
+    @Named( value = "taskQueue#indexing" )
+    private TaskQueue indexingQueue;
+
+    @Inject
+    @Named( value = "taskScheduler#indexPacking" )
+    private TaskScheduler packingScheduler;
+
     private NexusIndexer nexusIndexer;
 
+    /**
+     * Number of pending added or removed artifacts after which the index is committed even if more tasks are queued.
+     */
+    private int batchSize = Integer.getInteger( "archiva.indexing.batchSize", 100 );
+
+    /**
+     * Delay in milliseconds between the first unpacked change of an index and its packing.
+     */
+    private long packDelay = Long.getLong( "archiva.indexing.packDelay", 30000L );
+
+    /**
+     * Pending changes of the indexing contexts, by repository id.
+     */
+    private final ConcurrentMap<String, PendingIndex> pendingIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * Number of tasks known to still wait in the indexing queue, so the queue is not copied for every task.
+     */
+    private int queuedTasks;
+
+    private final AtomicLong committedBatches = new AtomicLong();
+
+    private final AtomicLong committedArtifacts = new AtomicLong();
+
+    private volatile int lastBatchSize;
+
+    private final AtomicLong packs = new AtomicLong();
+
     @PostConstruct
     public void initialize()
         throws PlexusSisuBridgeException
@@ -86,6 +150,25 @@ public void initialize()
 
     }
 
+    @PreDestroy
+    public void shutdown()
+    {
+        for ( PendingIndex pendingIndex : pendingIndexes.values() )
+        {
+            pendingIndex.cancelPack();
+            try
+            {
+                pendingIndex.commit();
+            }
+            catch ( IOException e )
+            {
+                log.warn( "Unable to commit pending changes of index '{}': {}", pendingIndex.context.getId(),
+                          e.getMessage() );
+            }
+        }
+        pendingIndexes.clear();
+    }
+
     /**
      * depending on current {@link Task} you have.
      * If {@link org.apache.archiva.scheduler.indexing.ArtifactIndexingTask.Action#FINISH} &amp;&amp; isExecuteOnEntireRepo:
@@ -106,8 +189,10 @@ public void executeTask( Task task )
         if ( ArtifactIndexingTask.Action.FINISH.equals( indexingTask.getAction() )
             && indexingTask.isExecuteOnEntireRepo() )
         {
+            PendingIndex pendingIndex = getPendingIndex( repository, context );
             try
             {
+                pendingIndex.commit();
                 long start = System.currentTimeMillis();
                 nexusIndexer.scan( context, null, indexingTask.isOnlyUpdate() );
                 long end = System.currentTimeMillis();
@@ -119,7 +204,7 @@ public void executeTask( Task task )
                 throw new TaskExecutionException( "Error scan repository " + repository, e );
             }
             log.debug( "Finishing indexing task on repo: {}", repository.getId() );
-            finishIndexingTask( indexingTask, repository, context );
+            pendingIndex.finish( indexingTask, repository );
         }
         else
         {
@@ -145,6 +230,7 @@ public void executeTask( Task task )
                 throw new TaskExecutionException( "Trying to index an artifact but the context is already closed" );
             }
 
+            PendingIndex pendingIndex = getPendingIndex( repository, context );
             try
             {
                 File artifactFile = indexingTask.getResourceFile();
@@ -156,73 +242,95 @@ public void executeTask( Task task )
                 {
                     ArtifactContext ac = artifactContextProducer.getArtifactContext( context, artifactFile );
 
-                    if ( ac != null )
+                    // the timer packing commits and packs under the same lock, it sees whole changes only
+                    synchronized ( pendingIndex )
                     {
-                        // MRM-1779 pom must be indexed too
-                        // TODO make that configurable?
-                        if ( artifactFile.getPath().endsWith( ".pom" ) )
-                        {
-                            ac.getArtifactInfo().fextension = "pom";
-                            ac.getArtifactInfo().packaging = "pom";
-                            ac.getArtifactInfo().classifier = "pom";
-                        }
-                        if ( indexingTask.getAction().equals( ArtifactIndexingTask.Action.ADD ) )
+                        if ( ac != null )
                         {
-                            //IndexSearcher s = context.getIndexSearcher();
-                            //String uinfo = ac.getArtifactInfo().getUinfo();
-                            //TopDocs d = s.search( new TermQuery( new Term( ArtifactInfo.UINFO, uinfo ) ), 1 );
-
-                            BooleanQuery q = new BooleanQuery();
-                            q.add( nexusIndexer.constructQuery( MAVEN.GROUP_ID, new SourcedSearchExpression(
-                                ac.getArtifactInfo().groupId ) ), BooleanClause.Occur.MUST );
-                            q.add( nexusIndexer.constructQuery( MAVEN.ARTIFACT_ID, new SourcedSearchExpression(
-                                ac.getArtifactInfo().artifactId ) ), BooleanClause.Occur.MUST );
-                            q.add( nexusIndexer.constructQuery( MAVEN.VERSION, new SourcedSearchExpression(
-                                ac.getArtifactInfo().version ) ), BooleanClause.Occur.MUST );
-                            if ( ac.getArtifactInfo().classifier != null )
+                            // MRM-1779 pom must be indexed too
+                            // TODO make that configurable?
+                            if ( artifactFile.getPath().endsWith( ".pom" ) )
                             {
-                                q.add( nexusIndexer.constructQuery( MAVEN.CLASSIFIER, new SourcedSearchExpression(
-                                    ac.getArtifactInfo().classifier ) ), BooleanClause.Occur.MUST );
+                                ac.getArtifactInfo().fextension = "pom";
+                                ac.getArtifactInfo().packaging = "pom";
+                                ac.getArtifactInfo().classifier = "pom";
                             }
-                            if ( ac.getArtifactInfo().packaging != null )
+                            if ( indexingTask.getAction().equals( ArtifactIndexingTask.Action.ADD ) )
                             {
-                                q.add( nexusIndexer.constructQuery( MAVEN.PACKAGING, new SourcedSearchExpression(
-                                    ac.getArtifactInfo().packaging ) ), BooleanClause.Occur.MUST );
-                            }
-                            FlatSearchRequest flatSearchRequest = new FlatSearchRequest( q, context );
-                            FlatSearchResponse flatSearchResponse = nexusIndexer.searchFlat( flatSearchRequest );
-                            if ( flatSearchResponse.getResults().isEmpty() )
-                            {
-                                log.debug( "Adding artifact '{}' to index..", ac.getArtifactInfo() );
-                                nexusIndexer.addArtifactToIndex( ac, context );
+                                //IndexSearcher s = context.getIndexSearcher();
+                                //String uinfo = ac.getArtifactInfo().getUinfo();
+                                //TopDocs d = s.search( new TermQuery( new Term( ArtifactInfo.UINFO, uinfo ) ), 1 );
+
+                                BooleanQuery q = new BooleanQuery();
+                                q.add( nexusIndexer.constructQuery( MAVEN.GROUP_ID, new SourcedSearchExpression(
+                                    ac.getArtifactInfo().groupId ) ), BooleanClause.Occur.MUST );
+                                q.add( nexusIndexer.constructQuery( MAVEN.ARTIFACT_ID, new SourcedSearchExpression(
+                                    ac.getArtifactInfo().artifactId ) ), BooleanClause.Occur.MUST );
+                                q.add( nexusIndexer.constructQuery( MAVEN.VERSION, new SourcedSearchExpression(
+                                    ac.getArtifactInfo().version ) ), BooleanClause.Occur.MUST );
+                                if ( ac.getArtifactInfo().classifier != null )
+                                {
+                                    q.add( nexusIndexer.constructQuery( MAVEN.CLASSIFIER, new SourcedSearchExpression(
+                                        ac.getArtifactInfo().classifier ) ), BooleanClause.Occur.MUST );
+                                }
+                                if ( ac.getArtifactInfo().packaging != null )
+                                {
+                                    q.add( nexusIndexer.constructQuery( MAVEN.PACKAGING, new SourcedSearchExpression(
+                                        ac.getArtifactInfo().packaging ) ), BooleanClause.Occur.MUST );
+                                }
+                                FlatSearchRequest flatSearchRequest = new FlatSearchRequest( q, context );
+                                FlatSearchResponse flatSearchResponse = nexusIndexer.searchFlat( flatSearchRequest );
+                                // artifacts added since the last commit are not searchable yet
+                                if ( flatSearchResponse.getResults().isEmpty() && !pendingIndex.isPending(
+                                    ac.getArtifactInfo().getUinfo() ) )
+                                {
+                                    log.debug( "Adding artifact '{}' to index..", ac.getArtifactInfo() );
+                                    nexusIndexer.addArtifactToIndex( ac, context );
+                                }
+                                else
+                                {
+                                    log.debug( "Updating artifact '{}' in index..", ac.getArtifactInfo() );
+                                    // TODO check if update exists !!
+                                    nexusIndexer.deleteArtifactFromIndex( ac, context );
+                                    nexusIndexer.addArtifactToIndex( ac, context );
+                                }
                             }
                             else
                             {
-                                log.debug( "Updating artifact '{}' in index..", ac.getArtifactInfo() );
-                                // TODO check if update exists !!
+                                log.debug( "Removing artifact '{}' from index..", ac.getArtifactInfo() );
                                 nexusIndexer.deleteArtifactFromIndex( ac, context );
-                                nexusIndexer.addArtifactToIndex( ac, context );
                             }
-
-                            context.updateTimestamp();
-                            context.commit();
-
-
-                        }
-                        else
-                        {
-                            log.debug( "Removing artifact '{}' from index..", ac.getArtifactInfo() );
-                            nexusIndexer.deleteArtifactFromIndex( ac, context );
+                            pendingIndex.changed( ac.getArtifactInfo().getUinfo() );
                         }
                     }
                 }
-                // close the context if not a repo scan request
-                if ( !indexingTask.isExecuteOnEntireRepo() )
+
+                if ( ArtifactIndexingTask.Action.FINISH.equals( indexingTask.getAction() ) )
                 {
-                    log.debug( "Finishing indexing task on resource file : {}", indexingTask.getResourceFile() != null
-                        ? indexingTask.getResourceFile().getPath()
-                        : " none " );
-                    finishIndexingTask( indexingTask, repository, context );
+                    pendingIndex.commit();
+                    // close the context if not a repo scan request
+                    if ( !indexingTask.isExecuteOnEntireRepo() )
+                    {
+                        log.debug( "Finishing indexing task on resource file : {}",
+                                   artifactFile != null ? artifactFile.getPath() : " none " );
+                        pendingIndex.finish( indexingTask, repository );
+                    }
+                }
+                else
+                {
+                    if ( !hasQueuedTasks() )
+                    {
+                        // the queue is drained, nothing is left to batch with for any repository
+                        commitPendingIndexes();
+                    }
+                    else if ( pendingIndex.getUncommitted() >= batchSize )
+                    {
+                        pendingIndex.commit();
+                    }
+                    if ( !indexingTask.isExecuteOnEntireRepo() )
+                    {
+                        pendingIndex.schedulePack( repository );
+                    }
                 }
             }
             catch ( IOException e )
@@ -236,6 +344,55 @@ public void executeTask( Task task )
 
     }
 
+    private synchronized PendingIndex getPendingIndex( ManagedRepository repository, IndexingContext context )
+    {
+        PendingIndex pendingIndex = pendingIndexes.get( repository.getId() );
+        if ( pendingIndex == null || pendingIndex.context != context )
+        {
+            // the context of the repository has been recreated, pending changes of the previous one are gone with it
+            if ( pendingIndex != null )
+            {
+                pendingIndex.cancelPack();
+            }
+            pendingIndex = new PendingIndex( context );
+            pendingIndexes.put( repository.getId(), pendingIndex );
+        }
+        return pendingIndex;
+    }
+
+    private void commitPendingIndexes()
+        throws IOException
+    {
+        for ( PendingIndex pendingIndex : pendingIndexes.values() )
+        {
+            pendingIndex.commit();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if more tasks are waiting in the indexing queue after the current one
+     */
+    private synchronized boolean hasQueuedTasks()
+    {
+        // the task being executed was one of the known queued tasks
+        if ( queuedTasks > 0 )
+        {
+            queuedTasks--;
+        }
+        if ( queuedTasks == 0 && indexingQueue != null )
+        {
+            try
+            {
+                queuedTasks = indexingQueue.getQueueSnapshot().size();
+            }
+            catch ( TaskQueueException e )
+            {
+                log.debug( "Unable to read the indexing queue: {}", e.getMessage() );
+            }
+        }
+        return queuedTasks > 0;
+    }
+
     private void finishIndexingTask( ArtifactIndexingTask indexingTask, ManagedRepository repository,
                                      IndexingContext context )
         throws TaskExecutionException
@@ -251,6 +408,7 @@ private void finishIndexingTask( ArtifactIndexingTask indexingTask, ManagedRepos
                 IndexPackingRequest request = new IndexPackingRequest( context, context.getIndexDirectoryFile() );
                 indexPacker.packIndex( request );
                 context.updateTimestamp( true );
+                packs.incrementAndGet();
 
                 log.debug( "Index file packaged at '{}'.", context.getIndexDirectoryFile() );
             }
@@ -267,6 +425,166 @@ private void finishIndexingTask( ArtifactIndexingTask indexingTask, ManagedRepos
         }
     }
 
+    private void packIncrementally( ManagedRepository repository, IndexingContext context )
+        throws IOException
+    {
+        if ( context.getIndexDirectory() == null )
+        {
+            log.debug( "skip packing of closed index '{}'", context.getId() );
+            return;
+        }
+        if ( repository.isSkipPackedIndexCreation() )
+        {
+            log.debug( "skip packed index creation" );
+            return;
+        }
+        File indexDirectory = context.getIndexDirectoryFile();
+        File packerProperties = new File( indexDirectory, IndexingContext.INDEX_PACKER_PROPERTIES_FILE );
+        if ( readIndexTimestamp( packerProperties ) == null )
+        {
+            // no full packing yet to cut the chunk from
+            indexPacker.packIndex( new IndexPackingRequest( context, indexDirectory ) );
+        }
+        else
+        {
+            // only the incremental chunk and the properties, the full archives are refreshed by the next full packing
+            Date timestamp = new Date();
+            IndexPackingRequest request = new IndexPackingRequest( context, indexDirectory );
+            request.setCreateIncrementalChunks( true );
+            request.setFormats( Collections.<IndexPackingRequest.IndexFormat>emptyList() );
+            indexPacker.packIndex( request );
+            // the packer only moves the timestamp chunks are cut from when writing a full archive, the next chunk
+            // would contain this one again
+            writeIndexTimestamp( packerProperties, timestamp );
+            writeIndexTimestamp( new File( indexDirectory, IndexingContext.INDEX_REMOTE_PROPERTIES_FILE ), timestamp );
+        }
+        context.updateTimestamp( true );
+        packs.incrementAndGet();
+
+        log.debug( "Index incrementally packaged at '{}'.", context.getIndexDirectoryFile() );
+    }
+
+    private Date readIndexTimestamp( File propertiesFile )
+        throws IOException
+    {
+        if ( !propertiesFile.exists() )
+        {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream( propertiesFile.toPath() ))
+        {
+            properties.load( is );
+        }
+        String timestamp = properties.getProperty( IndexingContext.INDEX_TIMESTAMP );
+        if ( timestamp == null )
+        {
+            return null;
+        }
+        try
+        {
+            return getIndexTimeFormat().parse( timestamp );
+        }
+        catch ( ParseException e )
+        {
+            return null;
+        }
+    }
+
+    private void writeIndexTimestamp( File propertiesFile, Date timestamp )
+        throws IOException
+    {
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream( propertiesFile.toPath() ))
+        {
+            properties.load( is );
+        }
+        properties.setProperty( IndexingContext.INDEX_TIMESTAMP, getIndexTimeFormat().format( timestamp ) );
+        try (OutputStream os = Files.newOutputStream( propertiesFile.toPath() ))
+        {
+            properties.store( os, null );
+        }
+    }
+
+    private static DateFormat getIndexTimeFormat()
+    {
+        DateFormat format = new SimpleDateFormat( IndexingContext.INDEX_TIME_FORMAT );
+        format.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+        return format;
+    }
+
+    /**
+     * @return the number of tasks waiting in the indexing queue
+     */
+    public int getQueueSize()
+    {
+        try
+        {
+            return indexingQueue == null ? 0 : indexingQueue.getQueueSnapshot().size();
+        }
+        catch ( TaskQueueException e )
+        {
+            log.debug( "Unable to read the indexing queue: {}", e.getMessage() );
+            return 0;
+        }
+    }
+
+    public long getCommittedBatches()
+    {
+        return committedBatches.get();
+    }
+
+    public long getCommittedArtifacts()
+    {
+        return committedArtifacts.get();
+    }
+
+    public int getLastBatchSize()
+    {
+        return lastBatchSize;
+    }
+
+    public long getPacks()
+    {
+        return packs.get();
+    }
+
+    /**
+     * @return the number of indexes with a scheduled packing
+     */
+    public int getScheduledPacks()
+    {
+        int scheduled = 0;
+        for ( PendingIndex pendingIndex : pendingIndexes.values() )
+        {
+            if ( pendingIndex.isPackScheduled() )
+            {
+                scheduled++;
+            }
+        }
+        return scheduled;
+    }
+
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public void setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+    }
+
+    public long getPackDelay()
+    {
+        return packDelay;
+    }
+
+    public void setPackDelay( long packDelay )
+    {
+        this.packDelay = packDelay;
+    }
+
     public void setIndexPacker( IndexPacker indexPacker )
     {
         this.indexPacker = indexPacker;
@@ -281,4 +599,108 @@ public void setPlexusSisuBridge( PlexusSisuBridge plexusSisuBridge )
     {
         this.plexusSisuBridge = plexusSisuBridge;
     }
+
+    /**
+     * The uncommitted and unpacked changes of an indexing context. Changes, commits and packings of a context are
+     * serialized on it, as the packing runs on the scheduler thread.
+     */
+    private class PendingIndex
+    {
+        private final IndexingContext context;
+
+        private int uncommitted;
+
+        private final Set<String> pendingUinfos = new HashSet<>();
+
+        private ScheduledFuture<?> scheduledPack;
+
+        PendingIndex( IndexingContext context )
+        {
+            this.context = context;
+        }
+
+        synchronized void changed( String uinfo )
+        {
+            uncommitted++;
+            pendingUinfos.add( uinfo );
+        }
+
+        synchronized boolean isPending( String uinfo )
+        {
+            return pendingUinfos.contains( uinfo );
+        }
+
+        synchronized int getUncommitted()
+        {
+            return uncommitted;
+        }
+
+        synchronized void commit()
+            throws IOException
+        {
+            if ( uncommitted == 0 || context.getIndexDirectory() == null )
+            {
+                return;
+            }
+            context.updateTimestamp();
+            context.commit();
+            committedBatches.incrementAndGet();
+            committedArtifacts.addAndGet( uncommitted );
+            lastBatchSize = uncommitted;
+            log.debug( "Committed {} changes to index '{}'", uncommitted, context.getId() );
+            uncommitted = 0;
+            pendingUinfos.clear();
+        }
+
+        synchronized void schedulePack( final ManagedRepository repository )
+        {
+            if ( isPackScheduled() || packingScheduler == null )
+            {
+                return;
+            }
+            scheduledPack = packingScheduler.schedule( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    pack( repository );
+                }
+            }, new Date( System.currentTimeMillis() + packDelay ) );
+        }
+
+        synchronized boolean isPackScheduled()
+        {
+            return scheduledPack != null && !scheduledPack.isDone();
+        }
+
+        synchronized void cancelPack()
+        {
+            if ( scheduledPack != null )
+            {
+                scheduledPack.cancel( false );
+                scheduledPack = null;
+            }
+        }
+
+        synchronized void pack( ManagedRepository repository )
+        {
+            scheduledPack = null;
+            try
+            {
+                commit();
+                packIncrementally( repository, context );
+            }
+            catch ( IOException e )
+            {
+                log.error( "Error occurred while packing index '{}': {}", context.getId(), e.getMessage(), e );
+            }
+        }
+
+        synchronized void finish( ArtifactIndexingTask indexingTask, ManagedRepository repository )
+            throws TaskExecutionException
+        {
+            cancelPack();
+            finishIndexingTask( indexingTask, repository, context );
+        }
+    }
 }
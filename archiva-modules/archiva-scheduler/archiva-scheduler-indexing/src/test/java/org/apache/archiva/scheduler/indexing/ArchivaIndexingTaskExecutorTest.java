@@ -53,6 +53,8 @@
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -343,6 +345,85 @@ public boolean accept( File file, String s )
         assertEquals( 1, response.getTotalHits() );
     }
 
+    @Test
+    public void testDelayedIncrementalPacking()
+        throws Exception
+    {
+        File indexerDirectory = new File( repositoryConfig.getLocation(), ".indexer" );
+
+        File artifactFile = new File( repositoryConfig.getLocation(),
+                                      "org/apache/archiva/archiva-index-methods-jar-test/1.0/archiva-index-methods-jar-test-1.0.jar" );
+
+        // full packing the chunks are cut from
+        ArtifactIndexingTask finishTask =
+            new ArtifactIndexingTask( repositoryConfig, null, ArtifactIndexingTask.Action.FINISH, getIndexingContext() );
+        finishTask.setExecuteOnEntireRepo( false );
+        indexingExecutor.executeTask( finishTask );
+        File fullIndexFile = new File( indexerDirectory, "nexus-maven-repository-index.gz" );
+        assertTrue( fullIndexFile.exists() );
+        assertTrue( fullIndexFile.setLastModified( 1000L ) );
+        Set<String> chunks = listIndexChunks( indexerDirectory );
+
+        long packDelay = indexingExecutor.getPackDelay();
+        long committedArtifacts = indexingExecutor.getCommittedArtifacts();
+        long packs = indexingExecutor.getPacks();
+        indexingExecutor.setPackDelay( 500 );
+        try
+        {
+            ArtifactIndexingTask task =
+                new ArtifactIndexingTask( repositoryConfig, artifactFile, ArtifactIndexingTask.Action.ADD,
+                                          getIndexingContext() );
+            task.setExecuteOnEntireRepo( false );
+
+            indexingExecutor.executeTask( task );
+            indexingExecutor.executeTask( task );
+
+            // nothing else is queued so every change is committed at once, the packing is delayed
+            assertEquals( committedArtifacts + 2, indexingExecutor.getCommittedArtifacts() );
+            assertEquals( 1, indexingExecutor.getLastBatchSize() );
+            assertEquals( 1, indexingExecutor.getScheduledPacks() );
+            assertEquals( packs, indexingExecutor.getPacks() );
+
+            long timeout = System.currentTimeMillis() + 10000;
+            while ( indexingExecutor.getScheduledPacks() > 0 && System.currentTimeMillis() < timeout )
+            {
+                Thread.sleep( 100 );
+            }
+
+            assertEquals( 0, indexingExecutor.getScheduledPacks() );
+            assertEquals( packs + 1, indexingExecutor.getPacks() );
+            assertTrue( new File( indexerDirectory, "nexus-maven-repository-index.properties" ).exists() );
+            // one new chunk, the full index is left to the next full packing
+            Set<String> newChunks = listIndexChunks( indexerDirectory );
+            newChunks.removeAll( chunks );
+            assertEquals( 1, newChunks.size() );
+            assertEquals( 1000L, fullIndexFile.lastModified() );
+        }
+        finally
+        {
+            indexingExecutor.setPackDelay( packDelay );
+        }
+
+        BooleanQuery q = new BooleanQuery();
+        q.add( indexer.constructQuery( MAVEN.ARTIFACT_ID, new StringSearchExpression( "archiva-index-methods-jar-test" ) ),
+               Occur.MUST );
+        FlatSearchResponse response = indexer.searchFlat( new FlatSearchRequest( q, getIndexingContext() ) );
+        assertEquals( 1, response.getTotalHits() );
+    }
+
+    private Set<String> listIndexChunks( File indexerDirectory )
+    {
+        String[] chunks = indexerDirectory.list( new FilenameFilter()
+        {
+            @Override
+            public boolean accept( File dir, String name )
+            {
+                return name.matches( "nexus-maven-repository-index\\.\\d+\\.gz" );
+            }
+        } );
+        return new HashSet<>( Arrays.asList( chunks ) );
+    }
+
     private void unzipIndex( String indexDir, String destDir )
         throws IOException
     {
@@ -147,7 +147,9 @@ public void executeTask( RepositoryTask task )
                     RepositoryScanStatistics stats;
                     try
                     {
-                        stats = repoScanner.scan( arepo, sinceWhen );
+                        // the journal makes the scan incremental and reports removed content, the previous scan
+                        // time is only used until the repository has one
+                        stats = repoScanner.scanWithJournal( arepo, sinceWhen );
                     }
                     catch ( RepositoryScannerException e )
                     {
@@ -176,11 +178,6 @@ public void executeTask( RepositoryTask task )
                     repositorySession.close();
                 }
 
-//                log.info( "Scanning for removed repository content" );
-
-//                metadataRepository.findAllProjects();
-                // FIXME: do something
-
                 log.info( "Finished repository task: {}", task );
 
                 this.task = null;
@@ -0,0 +1,149 @@
+package org.apache.archiva.rest.api.model;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+/**
+ * Statistics of the batched commits and the packings of the indexing task executor.
+ *
+ * @since 3.0
+ */
+@XmlRootElement( name = "indexingStatistics" )
+public class IndexingStatistics
+    implements Serializable
+{
+    private int queueSize;
+
+    private long committedBatches;
+
+    private long committedArtifacts;
+
+    private int lastBatchSize;
+
+    private String averageBatchSize;
+
+    private long packs;
+
+    private int scheduledPacks;
+
+    public IndexingStatistics()
+    {
+        // no op
+    }
+
+    public IndexingStatistics( int queueSize, long committedBatches, long committedArtifacts, int lastBatchSize,
+                               String averageBatchSize, long packs, int scheduledPacks )
+    {
+        this.queueSize = queueSize;
+        this.committedBatches = committedBatches;
+        this.committedArtifacts = committedArtifacts;
+        this.lastBatchSize = lastBatchSize;
+        this.averageBatchSize = averageBatchSize;
+        this.packs = packs;
+        this.scheduledPacks = scheduledPacks;
+    }
+
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+
+    public void setQueueSize( int queueSize )
+    {
+        this.queueSize = queueSize;
+    }
+
+    public long getCommittedBatches()
+    {
+        return committedBatches;
+    }
+
+    public void setCommittedBatches( long committedBatches )
+    {
+        this.committedBatches = committedBatches;
+    }
+
+    public long getCommittedArtifacts()
+    {
+        return committedArtifacts;
+    }
+
+    public void setCommittedArtifacts( long committedArtifacts )
+    {
+        this.committedArtifacts = committedArtifacts;
+    }
+
+    public int getLastBatchSize()
+    {
+        return lastBatchSize;
+    }
+
+    public void setLastBatchSize( int lastBatchSize )
+    {
+        this.lastBatchSize = lastBatchSize;
+    }
+
+    public String getAverageBatchSize()
+    {
+        return averageBatchSize;
+    }
+
+    public void setAverageBatchSize( String averageBatchSize )
+    {
+        this.averageBatchSize = averageBatchSize;
+    }
+
+    public long getPacks()
+    {
+        return packs;
+    }
+
+    public void setPacks( long packs )
+    {
+        this.packs = packs;
+    }
+
+    public int getScheduledPacks()
+    {
+        return scheduledPacks;
+    }
+
+    public void setScheduledPacks( int scheduledPacks )
+    {
+        this.scheduledPacks = scheduledPacks;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( "IndexingStatistics" );
+        sb.append( "{queueSize=" ).append( queueSize );
+        sb.append( ", committedBatches=" ).append( committedBatches );
+        sb.append( ", committedArtifacts=" ).append( committedArtifacts );
+        sb.append( ", lastBatchSize=" ).append( lastBatchSize );
+        sb.append( ", averageBatchSize='" ).append( averageBatchSize ).append( '\'' );
+        sb.append( ", packs=" ).append( packs );
+        sb.append( ", scheduledPacks=" ).append( scheduledPacks );
+        sb.append( '}' );
+        return sb.toString();
+    }
+}
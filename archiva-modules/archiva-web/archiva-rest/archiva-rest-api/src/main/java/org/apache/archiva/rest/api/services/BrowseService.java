@@ -25,6 +25,7 @@
 import org.apache.archiva.redback.authorization.RedbackAuthorization;
 import org.apache.archiva.rest.api.model.ArtifactContent;
 import org.apache.archiva.rest.api.model.ArtifactContentEntry;
+import org.apache.archiva.rest.api.model.ArtifactsPage;
 import org.apache.archiva.rest.api.model.BrowseResult;
 import org.apache.archiva.rest.api.model.Entry;
 import org.apache.archiva.rest.api.model.MetadataAddRequest;
@@ -242,6 +243,27 @@ Boolean artifactAvailable( @PathParam( "g" ) String groupId, @PathParam( "a" ) S
     List<Artifact> getArtifacts( @PathParam("r") String repositoryId )
         throws ArchivaRestServiceException;
 
+    /**
+     * return a page of the artifacts from this repository, without loading all the artifacts of the repository. The
+     * next page is read with the continuation token of the page, or with an offset.
+     *
+     * @param repositoryId
+     * @param offset            the number of artifacts to skip, ignored when a continuation token is given
+     * @param limit             the maximum number of artifacts of the page, 100 when not given
+     * @param continuationToken the continuation token of the previous page
+     * @return
+     * @throws ArchivaRestServiceException
+     * @since 3.0
+     */
+    @Path("artifactsPage/{r}")
+    @GET
+    @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+    @RedbackAuthorization(noPermission = true, noRestriction = true)
+    ArtifactsPage getArtifactsPage( @PathParam("r") String repositoryId, @QueryParam("offset") int offset,
+                                    @QueryParam("limit") int limit,
+                                    @QueryParam("continuationToken") String continuationToken )
+        throws ArchivaRestServiceException;
+
     /**
      * Return List of artifacts from this repository with project version level metadata key matching value. If
      * repository is not provided the search runs in all repositories.
@@ -19,6 +19,8 @@
  */
 
 import org.apache.archiva.rest.api.model.CacheEntry;
+import org.apache.archiva.rest.api.model.IndexingStatistics;
+import org.apache.archiva.rest.api.model.NegativeLookupCacheStatistics;
 import org.apache.archiva.rest.api.model.QueueEntry;
 import org.apache.archiva.rest.api.model.RepositoryScannerStatistics;
 import org.apache.archiva.security.common.ArchivaRoleConstants;
@@ -66,6 +68,26 @@ List<QueueEntry> getQueueEntries()
     List<CacheEntry> getCacheEntries()
         throws ArchivaRestServiceException;
 
+    /**
+     * @since 3.0
+     */
+    @Path( "negativeLookupCacheStatistics" )
+    @GET
+    @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+    @RedbackAuthorization( permissions = ArchivaRoleConstants.OPERATION_MANAGE_CONFIGURATION )
+    NegativeLookupCacheStatistics getNegativeLookupCacheStatistics()
+        throws ArchivaRestServiceException;
+
+    /**
+     * @since 3.0
+     */
+    @Path( "indexingStatistics" )
+    @GET
+    @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+    @RedbackAuthorization( permissions = ArchivaRoleConstants.OPERATION_MANAGE_CONFIGURATION )
+    IndexingStatistics getIndexingStatistics()
+        throws ArchivaRestServiceException;
+
     @Path( "clearCache/{key}" )
     @GET
     @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
@@ -31,6 +31,7 @@
 import org.apache.archiva.metadata.model.MetadataFacet;
 import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.model.ProjectVersionReference;
+import org.apache.archiva.metadata.repository.ArtifactMetadataPage;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
 import org.apache.archiva.metadata.repository.MetadataResolutionException;
@@ -49,6 +50,7 @@
 import org.apache.archiva.repository.metadata.MetadataTools;
 import org.apache.archiva.rest.api.model.ArtifactContent;
 import org.apache.archiva.rest.api.model.ArtifactContentEntry;
+import org.apache.archiva.rest.api.model.ArtifactsPage;
 import org.apache.archiva.rest.api.model.BrowseResult;
 import org.apache.archiva.rest.api.model.BrowseResultEntry;
 import org.apache.archiva.rest.api.model.Entry;
@@ -56,6 +58,7 @@
 import org.apache.archiva.rest.api.model.VersionsList;
 import org.apache.archiva.rest.api.services.ArchivaRestServiceException;
 import org.apache.archiva.rest.api.services.BrowseService;
+import org.apache.archiva.rest.services.utils.ArchiveIndexCache;
 import org.apache.archiva.rest.services.utils.ArtifactContentEntryComparator;
 import org.apache.archiva.security.ArchivaSecurityException;
 import org.apache.archiva.xml.XMLException;
@@ -74,15 +77,11 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.zip.ZipEntry;
 
 /**
  * @author Olivier Lamy
@@ -108,6 +107,16 @@
     @Named( value = "browse#versionMetadata" )
     private Cache<String, ProjectVersionMetadata> versionMetadataCache;
 
+    private static final int DEFAULT_ARTIFACTS_PAGE_SIZE = 100;
+
+    private static final int MAX_ARTIFACTS_PAGE_SIZE = 1000;
+
+    /**
+     * directory indexes of the browsed archives, bounded by their total number of entries
+     */
+    private final ArchiveIndexCache archiveIndexCache =
+        new ArchiveIndexCache( Long.getLong( "archiva.browse.archiveIndexCacheEntries", 500000 ) );
+
     @Override
     public BrowseResult getRootGroups( String repositoryId )
         throws ArchivaRestServiceException
@@ -792,16 +801,10 @@ public ArtifactContent getArtifactContentText( String groupId, String artifactId
                 if ( StringUtils.isNotBlank( path ) )
                 {
                     // zip entry of the path -> path must a real file entry of the archive
-                    JarFile jarFile = new JarFile( file );
-                    ZipEntry zipEntry = jarFile.getEntry( path );
-                    try (InputStream inputStream = jarFile.getInputStream( zipEntry ))
+                    try (InputStream inputStream = archiveIndexCache.getIndex( file ).openEntry( path ))
                     {
                         return new ArtifactContent( IOUtils.toString( inputStream ), repoId );
                     }
-                    finally
-                    {
-                        closeQuietly( jarFile );
-                    }
                 }
                 return new ArtifactContent( FileUtils.readFileToString( file ), repoId );
             }
@@ -954,6 +957,52 @@ public List<Artifact> getArtifacts( String repositoryId )
         }
     }
 
+    @Override
+    public ArtifactsPage getArtifactsPage( String repositoryId, int offset, int limit, String continuationToken )
+        throws ArchivaRestServiceException
+    {
+        List<String> selectedRepos = getSelectedRepos( repositoryId );
+        if ( !selectedRepos.contains( repositoryId ) )
+        {
+            return new ArtifactsPage( Collections.<Artifact>emptyList(), null );
+        }
+
+        int pageSize = limit <= 0 ? DEFAULT_ARTIFACTS_PAGE_SIZE : Math.min( limit, MAX_ARTIFACTS_PAGE_SIZE );
+        RepositorySession repositorySession = repositorySessionFactory.createSession();
+        try
+        {
+            MetadataRepository metadataRepository = repositorySession.getRepository();
+            String token = continuationToken;
+            if ( token == null )
+            {
+                // the skipped artifacts are read page by page too
+                int skipped = 0;
+                while ( skipped < offset )
+                {
+                    ArtifactMetadataPage page = metadataRepository.getArtifacts( repositoryId, token, Math.min(
+                        offset - skipped, MAX_ARTIFACTS_PAGE_SIZE ) );
+                    skipped += page.getArtifacts().size();
+                    token = page.getContinuationToken();
+                    if ( token == null || page.getArtifacts().isEmpty() )
+                    {
+                        return new ArtifactsPage( Collections.<Artifact>emptyList(), null );
+                    }
+                }
+            }
+            ArtifactMetadataPage page = metadataRepository.getArtifacts( repositoryId, token, pageSize );
+            return new ArtifactsPage( buildArtifacts( page.getArtifacts(), repositoryId ),
+                                      page.getContinuationToken() );
+        }
+        catch ( MetadataRepositoryException e )
+        {
+            throw new ArchivaRestServiceException( e.getMessage(), e );
+        }
+        finally
+        {
+            repositorySession.close();
+        }
+    }
+
     @Override
     public List<Artifact> getArtifactsByProjectVersionMetadata( String key, String value, String repositoryId )
         throws ArchivaRestServiceException
@@ -1078,138 +1127,23 @@ public List<Artifact> searchArtifacts( String key, String text, String repositor
     // internals
     //---------------------------
 
-    private void closeQuietly( JarFile jarFile )
-    {
-        if ( jarFile != null )
-        {
-            try
-            {
-                jarFile.close();
-            }
-            catch ( IOException e )
-            {
-                log.warn( "ignore error closing jarFile {}", jarFile.getName() );
-            }
-        }
-    }
-
     protected List<ArtifactContentEntry> readFileEntries(final File file, final String filterPath, final String repoId )
         throws IOException
     {
         String cleanedfilterPath = filterPath==null ? "" : (StringUtils.startsWith(filterPath, "/") ?
                 StringUtils.substringAfter(filterPath, "/") : filterPath);
-        Map<String, ArtifactContentEntry> artifactContentEntryMap = new HashMap<>();
-        int filterDepth = StringUtils.countMatches( cleanedfilterPath, "/" );
-        if (!StringUtils.endsWith(cleanedfilterPath,"/") && !StringUtils.isEmpty(cleanedfilterPath)) {
-            filterDepth++;
-        }
-        JarFile jarFile = new JarFile( file );
-        try
-        {
-            Enumeration<JarEntry> jarEntryEnumeration = jarFile.entries();
-            while ( jarEntryEnumeration.hasMoreElements() )
-            {
-                JarEntry currentEntry = jarEntryEnumeration.nextElement();
-                String cleanedEntryName = StringUtils.endsWith( currentEntry.getName(), "/" ) ? //
-                    StringUtils.substringBeforeLast( currentEntry.getName(), "/" ) : currentEntry.getName();
-                String entryRootPath = getRootPath( cleanedEntryName );
-                int depth = StringUtils.countMatches( cleanedEntryName, "/" );
-                if ( StringUtils.isEmpty( cleanedfilterPath ) //
-                    && !artifactContentEntryMap.containsKey( entryRootPath ) //
-                    && depth == filterDepth )
-                {
-
-                    artifactContentEntryMap.put( entryRootPath,
-                                                 new ArtifactContentEntry( entryRootPath, !currentEntry.isDirectory(),
-                                                                           depth, repoId ) );
-                }
-                else
-                {
-                    if ( StringUtils.startsWith( cleanedEntryName, cleanedfilterPath ) //
-                        && ( depth == filterDepth || ( !currentEntry.isDirectory() && depth == filterDepth ) ) )
-                    {
-                        artifactContentEntryMap.put( cleanedEntryName, new ArtifactContentEntry( cleanedEntryName,
-                                                                                                 !currentEntry.isDirectory(),
-                                                                                                 depth, repoId ) );
-                    }
-                }
-            }
-
-            if ( StringUtils.isNotEmpty( cleanedfilterPath ) )
-            {
-                Map<String, ArtifactContentEntry> filteredArtifactContentEntryMap = new HashMap<>();
-
-                for ( Map.Entry<String, ArtifactContentEntry> entry : artifactContentEntryMap.entrySet() )
-                {
-                    filteredArtifactContentEntryMap.put( entry.getKey(), entry.getValue() );
-                }
-
-                List<ArtifactContentEntry> sorted = getSmallerDepthEntries( filteredArtifactContentEntryMap );
-                if ( sorted == null )
-                {
-                    return Collections.emptyList();
-                }
-                Collections.sort( sorted, ArtifactContentEntryComparator.INSTANCE );
-                return sorted;
-            }
-        }
-        finally
+        List<ArchiveIndexCache.IndexEntry> indexEntries =
+            archiveIndexCache.getIndex( file ).list( cleanedfilterPath );
+        List<ArtifactContentEntry> sorted = new ArrayList<>( indexEntries.size() );
+        for ( ArchiveIndexCache.IndexEntry indexEntry : indexEntries )
         {
-            if ( jarFile != null )
-            {
-                jarFile.close();
-            }
+            sorted.add( new ArtifactContentEntry( indexEntry.getName(), !indexEntry.isDirectory(),
+                                                  indexEntry.getDepth(), repoId ) );
         }
-        List<ArtifactContentEntry> sorted = new ArrayList<>( artifactContentEntryMap.values() );
         Collections.sort( sorted, ArtifactContentEntryComparator.INSTANCE );
         return sorted;
     }
 
-    private List<ArtifactContentEntry> getSmallerDepthEntries( Map<String, ArtifactContentEntry> entries )
-    {
-        int smallestDepth = Integer.MAX_VALUE;
-        Map<Integer, List<ArtifactContentEntry>> perDepthList = new HashMap<>();
-        for ( Map.Entry<String, ArtifactContentEntry> entry : entries.entrySet() )
-        {
-
-            ArtifactContentEntry current = entry.getValue();
-
-            if ( current.getDepth() < smallestDepth )
-            {
-                smallestDepth = current.getDepth();
-            }
-
-            List<ArtifactContentEntry> currentList = perDepthList.get( current.getDepth() );
-
-            if ( currentList == null )
-            {
-                currentList = new ArrayList<>();
-                currentList.add( current );
-                perDepthList.put( current.getDepth(), currentList );
-            }
-            else
-            {
-                currentList.add( current );
-            }
-
-        }
-
-        return perDepthList.get( smallestDepth );
-    }
-
-    /**
-     * @param path
-     * @return org/apache -&gt; org , org -&gt; org
-     */
-    private String getRootPath( String path )
-    {
-        if ( StringUtils.contains( path, '/' ) )
-        {
-            return StringUtils.substringBefore( path, "/" );
-        }
-        return path;
-    }
-
     private List<String> getSelectedRepos( String repositoryId )
         throws ArchivaRestServiceException
     {
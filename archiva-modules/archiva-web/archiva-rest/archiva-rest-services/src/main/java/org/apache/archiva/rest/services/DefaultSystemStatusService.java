@@ -18,6 +18,7 @@
  * under the License.
  */
 
+import org.apache.archiva.policies.urlcache.NegativeLookupCache;
 import org.apache.archiva.redback.components.cache.Cache;
 import org.apache.archiva.redback.components.cache.CacheStatistics;
 import org.apache.archiva.redback.components.taskqueue.TaskQueue;
@@ -26,15 +27,19 @@
 import org.apache.archiva.repository.scanner.RepositoryScannerInstance;
 import org.apache.archiva.rest.api.model.CacheEntry;
 import org.apache.archiva.rest.api.model.ConsumerScanningStatistics;
+import org.apache.archiva.rest.api.model.IndexingStatistics;
+import org.apache.archiva.rest.api.model.NegativeLookupCacheStatistics;
 import org.apache.archiva.rest.api.model.QueueEntry;
 import org.apache.archiva.rest.api.model.RepositoryScannerStatistics;
 import org.apache.archiva.rest.api.services.ArchivaRestServiceException;
 import org.apache.archiva.rest.api.services.SystemStatusService;
 import org.apache.archiva.rest.services.utils.ConsumerScanningStatisticsComparator;
+import org.apache.archiva.scheduler.indexing.ArchivaIndexingTaskExecutor;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.ws.rs.core.Response;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
@@ -63,15 +68,26 @@
 
     private RepositoryScanner scanner;
 
+    private NegativeLookupCache negativeLookupCache;
+
+    private ArchivaIndexingTaskExecutor indexingTaskExecutor;
+
     // display spring scheduled
     //@Inject @Named (value="springScheduler");
 
 
     @Inject
-    public DefaultSystemStatusService( ApplicationContext applicationContext, RepositoryScanner scanner )
+    public DefaultSystemStatusService( ApplicationContext applicationContext, RepositoryScanner scanner,
+                                       @Named( "negativeLookupCache#default" ) NegativeLookupCache negativeLookupCache,
+                                       @Named( "taskExecutor#indexing" )
+                                       ArchivaIndexingTaskExecutor indexingTaskExecutor )
     {
         this.scanner = scanner;
 
+        this.negativeLookupCache = negativeLookupCache;
+
+        this.indexingTaskExecutor = indexingTaskExecutor;
+
         queues = getBeansOfType( applicationContext, TaskQueue.class );
 
         caches = getBeansOfType( applicationContext, Cache.class );
@@ -146,6 +162,31 @@ public List<CacheEntry> getCacheEntries()
         return cacheEntries;
     }
 
+    @Override
+    public NegativeLookupCacheStatistics getNegativeLookupCacheStatistics()
+        throws ArchivaRestServiceException
+    {
+        long hits = negativeLookupCache.getHitCount();
+        long misses = negativeLookupCache.getMissCount();
+        double hitRate = hits + misses == 0 ? 0 : (double) hits / ( hits + misses );
+        return new NegativeLookupCacheStatistics( negativeLookupCache.getSize(), hits, misses,
+                                                  new DecimalFormat( "#%" ).format( hitRate ),
+                                                  negativeLookupCache.getEvictionCount() );
+    }
+
+    @Override
+    public IndexingStatistics getIndexingStatistics()
+        throws ArchivaRestServiceException
+    {
+        long batches = indexingTaskExecutor.getCommittedBatches();
+        long artifacts = indexingTaskExecutor.getCommittedArtifacts();
+        double averageBatchSize = batches == 0 ? 0 : (double) artifacts / batches;
+        return new IndexingStatistics( indexingTaskExecutor.getQueueSize(), batches, artifacts,
+                                       indexingTaskExecutor.getLastBatchSize(),
+                                       new DecimalFormat( "0.#" ).format( averageBatchSize ),
+                                       indexingTaskExecutor.getPacks(), indexingTaskExecutor.getScheduledPacks() );
+    }
+
     @Override
     public Boolean clearCache( String cacheKey )
         throws ArchivaRestServiceException
@@ -169,6 +210,7 @@ public Boolean clearAllCaches()
         {
             cache.clear();
         }
+        negativeLookupCache.clear();
         return Boolean.TRUE;
     }
 
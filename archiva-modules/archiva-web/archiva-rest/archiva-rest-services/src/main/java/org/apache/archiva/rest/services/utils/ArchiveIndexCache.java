@@ -0,0 +1,475 @@
+package org.apache.archiva.rest.services.utils;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * ArchiveIndexCache - keeps the directory tree of browsed archives, read once from the central directory of the
+ * archive, so that listing a directory of the archive only walks its children and reading an entry only reads the
+ * bytes of that entry. The indexes are kept as long as the archive keeps its modification time and length, the cache
+ * is bounded by the total number of indexed entries.
+ *
+ * @since 3.0
+ */
+public class ArchiveIndexCache
+{
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+
+    private final long maxEntries;
+
+    private long cachedEntries;
+
+    private final LinkedHashMap<String, ArchiveIndex> indexes = new LinkedHashMap<>( 16, 0.75f, true );
+
+    public ArchiveIndexCache( long maxEntries )
+    {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the index of the archive, read again if the archive changed since it was indexed
+     */
+    public ArchiveIndex getIndex( File file )
+        throws IOException
+    {
+        String key = file.getAbsolutePath();
+        synchronized ( indexes )
+        {
+            ArchiveIndex index = indexes.get( key );
+            if ( index != null && index.isCurrent() )
+            {
+                return index;
+            }
+        }
+
+        ArchiveIndex index = ArchiveIndex.read( file );
+
+        synchronized ( indexes )
+        {
+            ArchiveIndex previous = indexes.remove( key );
+            if ( previous != null )
+            {
+                cachedEntries -= previous.size();
+            }
+            if ( index.size() <= maxEntries )
+            {
+                indexes.put( key, index );
+                cachedEntries += index.size();
+                for ( Iterator<ArchiveIndex> eldest = indexes.values().iterator();
+                      cachedEntries > maxEntries && eldest.hasNext(); )
+                {
+                    cachedEntries -= eldest.next().size();
+                    eldest.remove();
+                }
+            }
+        }
+        return index;
+    }
+
+    public void clear()
+    {
+        synchronized ( indexes )
+        {
+            indexes.clear();
+            cachedEntries = 0;
+        }
+    }
+
+    public int size()
+    {
+        synchronized ( indexes )
+        {
+            return indexes.size();
+        }
+    }
+
+    /**
+     * The entries of one archive by directory.
+     */
+    public static class ArchiveIndex
+    {
+        private static final Comparator<IndexEntry> BY_NAME = new Comparator<IndexEntry>()
+        {
+            @Override
+            public int compare( IndexEntry entry, IndexEntry other )
+            {
+                return entry.getName().compareTo( other.getName() );
+            }
+        };
+
+        private final File file;
+
+        private final long lastModified;
+
+        private final long length;
+
+        /**
+         * entries by their name as stored in the archive
+         */
+        private final Map<String, IndexEntry> entries;
+
+        /**
+         * entries by the name of their parent directory, the root directory being the empty name
+         */
+        private final TreeMap<String, List<IndexEntry>> children = new TreeMap<>();
+
+        private final int size;
+
+        ArchiveIndex( File file, long lastModified, long length, Map<String, IndexEntry> entries )
+        {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.entries = entries;
+
+            // an entry and a directory of the same name are listed once, the last one wins
+            Map<String, IndexEntry> byPath = new LinkedHashMap<>( entries.size() );
+            for ( IndexEntry entry : entries.values() )
+            {
+                byPath.put( entry.getName(), entry );
+            }
+            for ( IndexEntry entry : byPath.values() )
+            {
+                int slash = entry.getName().lastIndexOf( '/' );
+                String parent = slash < 0 ? "" : entry.getName().substring( 0, slash );
+                List<IndexEntry> siblings = children.get( parent );
+                if ( siblings == null )
+                {
+                    siblings = new ArrayList<>();
+                    children.put( parent, siblings );
+                }
+                siblings.add( entry );
+            }
+            for ( List<IndexEntry> siblings : children.values() )
+            {
+                Collections.sort( siblings, BY_NAME );
+            }
+            this.size = entries.size();
+        }
+
+        boolean isCurrent()
+        {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+
+        /**
+         * Lists the entries of the archive below a path. A path ending with a slash lists the entries of that
+         * directory, a path without lists the entries of all directories with a name starting with the path, the
+         * empty path lists the entries of the root directory.
+         */
+        public List<IndexEntry> list( String path )
+        {
+            if ( path.isEmpty() || path.endsWith( "/" ) )
+            {
+                List<IndexEntry> siblings = children.get( path.isEmpty() ? "" : path.substring( 0, path.length() - 1 ) );
+                return siblings == null ? Collections.<IndexEntry>emptyList() : siblings;
+            }
+
+            List<IndexEntry> listed = new ArrayList<>();
+            for ( Map.Entry<String, List<IndexEntry>> directory : children.subMap( path, true,
+                                                                                    path + Character.MAX_VALUE,
+                                                                                    true ).entrySet() )
+            {
+                if ( directory.getKey().indexOf( '/', path.length() ) < 0 )
+                {
+                    listed.addAll( directory.getValue() );
+                }
+            }
+            Collections.sort( listed, BY_NAME );
+            return listed;
+        }
+
+        /**
+         * Opens an entry of the archive, reading only the bytes of the entry.
+         *
+         * @param name the name of the entry as stored in the archive
+         */
+        public InputStream openEntry( String name )
+            throws IOException
+        {
+            IndexEntry entry = entries.get( name );
+            if ( entry == null || entry.offset < 0 || entry.compressedSize >= Integer.MAX_VALUE || (
+                entry.method != ZipEntry.STORED && entry.method != ZipEntry.DEFLATED ) )
+            {
+                return openJarEntry( name );
+            }
+
+            byte[] data;
+            try (RandomAccessFile archive = new RandomAccessFile( file, "r" ))
+            {
+                byte[] header = new byte[30];
+                archive.seek( entry.offset );
+                archive.readFully( header );
+                if ( readInt( header, 0 ) != LOCAL_FILE_HEADER )
+                {
+                    throw new ZipException( "invalid local header of entry " + name + " in " + file );
+                }
+                archive.seek( entry.offset + 30 + readShort( header, 26 ) + readShort( header, 28 ) );
+                // one more byte for the inflater, like ZipFile does
+                data = new byte[(int) entry.compressedSize + 1];
+                archive.readFully( data, 0, (int) entry.compressedSize );
+            }
+
+            if ( entry.method == ZipEntry.STORED )
+            {
+                return new ByteArrayInputStream( data, 0, (int) entry.compressedSize );
+            }
+            final Inflater inflater = new Inflater( true );
+            return new InflaterInputStream( new ByteArrayInputStream( data ), inflater )
+            {
+                @Override
+                public void close()
+                    throws IOException
+                {
+                    super.close();
+                    inflater.end();
+                }
+            };
+        }
+
+        public int size()
+        {
+            return size;
+        }
+
+        private InputStream openJarEntry( String name )
+            throws IOException
+        {
+            final JarFile jarFile = new JarFile( file );
+            ZipEntry zipEntry = jarFile.getEntry( name );
+            if ( zipEntry == null )
+            {
+                jarFile.close();
+                throw new FileNotFoundException( "no entry " + name + " in " + file );
+            }
+            return new FilterInputStream( jarFile.getInputStream( zipEntry ) )
+            {
+                @Override
+                public void close()
+                    throws IOException
+                {
+                    try
+                    {
+                        super.close();
+                    }
+                    finally
+                    {
+                        jarFile.close();
+                    }
+                }
+            };
+        }
+
+        static ArchiveIndex read( File file )
+            throws IOException
+        {
+            long lastModified = file.lastModified();
+            long length = file.length();
+            Map<String, IndexEntry> entries = readCentralDirectory( file, length );
+            if ( entries == null )
+            {
+                entries = readJarEntries( file );
+            }
+            return new ArchiveIndex( file, lastModified, length, entries );
+        }
+
+        /**
+         * @return the entries with their offsets, or <code>null</code> for archives which are not plain zip files,
+         *         like zip64 archives or archives with a prefix
+         */
+        private static Map<String, IndexEntry> readCentralDirectory( File file, long length )
+            throws IOException
+        {
+            try (RandomAccessFile archive = new RandomAccessFile( file, "r" ))
+            {
+                int tailLength = (int) Math.min( length, 22 + 0xFFFF );
+                if ( tailLength < 22 )
+                {
+                    return null;
+                }
+                byte[] tail = new byte[tailLength];
+                archive.seek( length - tailLength );
+                archive.readFully( tail );
+
+                int end = -1;
+                for ( int i = tailLength - 22; i >= 0; i-- )
+                {
+                    if ( readInt( tail, i ) == END_OF_CENTRAL_DIRECTORY )
+                    {
+                        end = i;
+                        break;
+                    }
+                }
+                if ( end < 0 )
+                {
+                    return null;
+                }
+
+                int count = readShort( tail, end + 10 );
+                long directorySize = readInt( tail, end + 12 ) & 0xFFFFFFFFL;
+                long directoryOffset = readInt( tail, end + 16 ) & 0xFFFFFFFFL;
+                if ( count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL
+                    || directoryOffset + directorySize > length - tailLength + end )
+                {
+                    return null;
+                }
+
+                byte[] directory = new byte[(int) directorySize];
+                archive.seek( directoryOffset );
+                archive.readFully( directory );
+
+                Map<String, IndexEntry> entries = new LinkedHashMap<>( count * 2 );
+                int position = 0;
+                for ( int i = 0; i < count; i++ )
+                {
+                    if ( position + 46 > directory.length
+                        || readInt( directory, position ) != CENTRAL_DIRECTORY_HEADER )
+                    {
+                        return null;
+                    }
+                    int method = readShort( directory, position + 10 );
+                    long compressedSize = readInt( directory, position + 20 ) & 0xFFFFFFFFL;
+                    int nameLength = readShort( directory, position + 28 );
+                    int extraLength = readShort( directory, position + 30 );
+                    int commentLength = readShort( directory, position + 32 );
+                    long offset = readInt( directory, position + 42 ) & 0xFFFFFFFFL;
+                    if ( position + 46 + nameLength > directory.length )
+                    {
+                        return null;
+                    }
+                    String name = new String( directory, position + 46, nameLength, StandardCharsets.UTF_8 );
+                    // sizes and offsets of zip64 entries are in the extra field, these entries are read with JarFile
+                    boolean zip64 = compressedSize == 0xFFFFFFFFL || offset == 0xFFFFFFFFL;
+                    entries.put( name, new IndexEntry( name, method, zip64 ? -1 : compressedSize,
+                                                       zip64 ? -1 : offset ) );
+                    position += 46 + nameLength + extraLength + commentLength;
+                }
+                return entries;
+            }
+        }
+
+        private static Map<String, IndexEntry> readJarEntries( File file )
+            throws IOException
+        {
+            Map<String, IndexEntry> entries = new LinkedHashMap<>();
+            try (JarFile jarFile = new JarFile( file ))
+            {
+                Enumeration<JarEntry> jarEntries = jarFile.entries();
+                while ( jarEntries.hasMoreElements() )
+                {
+                    JarEntry jarEntry = jarEntries.nextElement();
+                    entries.put( jarEntry.getName(), new IndexEntry( jarEntry.getName(), jarEntry.getMethod(), -1,
+                                                                     -1 ) );
+                }
+            }
+            return entries;
+        }
+
+        private static int readShort( byte[] bytes, int position )
+        {
+            return ( bytes[position] & 0xFF ) | ( bytes[position + 1] & 0xFF ) << 8;
+        }
+
+        private static int readInt( byte[] bytes, int position )
+        {
+            return readShort( bytes, position ) | readShort( bytes, position + 2 ) << 16;
+        }
+    }
+
+    /**
+     * An entry of an archive.
+     */
+    public static class IndexEntry
+    {
+        private final String name;
+
+        private final boolean directory;
+
+        private final int depth;
+
+        private final int method;
+
+        private final long compressedSize;
+
+        private final long offset;
+
+        IndexEntry( String entryName, int method, long compressedSize, long offset )
+        {
+            this.directory = entryName.endsWith( "/" );
+            this.name = directory ? entryName.substring( 0, entryName.length() - 1 ) : entryName;
+            int slashes = 0;
+            for ( int i = name.indexOf( '/' ); i >= 0; i = name.indexOf( '/', i + 1 ) )
+            {
+                slashes++;
+            }
+            this.depth = slashes;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.offset = offset;
+        }
+
+        /**
+         * @return the name of the entry, without the trailing slash of directories
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        public boolean isDirectory()
+        {
+            return directory;
+        }
+
+        /**
+         * @return the number of parent directories of the entry
+         */
+        public int getDepth()
+        {
+            return depth;
+        }
+    }
+}
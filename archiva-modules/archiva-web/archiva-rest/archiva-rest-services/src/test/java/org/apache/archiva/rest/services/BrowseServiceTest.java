@@ -24,6 +24,7 @@
 import org.apache.archiva.redback.rest.api.model.Role;
 import org.apache.archiva.redback.rest.api.services.RedbackServiceException;
 import org.apache.archiva.rest.api.model.ArtifactContentEntry;
+import org.apache.archiva.rest.api.model.ArtifactsPage;
 import org.apache.archiva.rest.api.model.BrowseResult;
 import org.apache.archiva.rest.api.model.BrowseResultEntry;
 import org.apache.archiva.rest.api.model.Entry;
@@ -37,6 +38,7 @@
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.ws.rs.ForbiddenException;
 import javax.ws.rs.core.MediaType;
 import java.io.File;
 import java.io.IOException;
@@ -453,6 +455,50 @@ public void artifactsNumber()
         assertTrue( number > 1 );
     }
 
+    @Test
+    public void artifactsPages()
+        throws Exception
+    {
+        BrowseService browseService = getBrowseService( authorizationHeader, true );
+
+        List<Artifact> artifacts = browseService.getArtifacts( TEST_REPO_ID );
+
+        List<Artifact> pagedArtifacts = new ArrayList<>();
+        String continuationToken = null;
+        do
+        {
+            ArtifactsPage page = browseService.getArtifactsPage( TEST_REPO_ID, 0, 1, continuationToken );
+            assertThat( page.getArtifacts() ).hasSize( 1 );
+            pagedArtifacts.addAll( page.getArtifacts() );
+            continuationToken = page.getContinuationToken();
+        }
+        while ( continuationToken != null );
+
+        assertThat( pagedArtifacts ).hasSize( artifacts.size() ).containsAll( artifacts );
+
+        ArtifactsPage lastPage = browseService.getArtifactsPage( TEST_REPO_ID, artifacts.size() - 1, 10, null );
+        assertThat( lastPage.getArtifacts() ).hasSize( 1 );
+        assertNull( lastPage.getContinuationToken() );
+    }
+
+    @Test( expected = ForbiddenException.class )
+    public void artifactsPageOfNotObservableRepository()
+        throws Exception
+    {
+        BrowseService browseService = getBrowseService( authorizationHeader, true );
+
+        try
+        {
+            browseService.getArtifactsPage( "not-observable", 0, 10, null );
+            fail( "not in exception" );
+        }
+        catch ( ForbiddenException e )
+        {
+            assertEquals( 403, e.getResponse().getStatus() );
+            throw e;
+        }
+    }
+
     @Test
     public void metadatainbatchmode()
         throws Exception
@@ -0,0 +1,227 @@
+package org.apache.archiva.rest.services.utils;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class ArchiveIndexCacheTest
+    extends TestCase
+{
+    private File basedir;
+
+    private File archive;
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        basedir = new File( "target/test-archive-index-cache" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( basedir );
+        assertTrue( basedir.mkdirs() );
+        archive = new File( basedir, "test.jar" );
+        writeArchive( archive, "stored" );
+    }
+
+    @Test
+    public void testListDirectories()
+        throws Exception
+    {
+        ArchiveIndexCache.ArchiveIndex index = new ArchiveIndexCache( 1000 ).getIndex( archive );
+
+        assertEquals( names( "META-INF", "org" ), names( index.list( "" ) ) );
+        assertEquals( names( "org/example/Deflated.txt", "org/example/Stored.txt" ),
+                      names( index.list( "org/example/" ) ) );
+        assertEquals( names( "org/example" ), names( index.list( "org" ) ) );
+        assertTrue( index.list( "com/" ).isEmpty() );
+
+        ArchiveIndexCache.IndexEntry directory = index.list( "org" ).get( 0 );
+        assertTrue( directory.isDirectory() );
+        assertEquals( 1, directory.getDepth() );
+        ArchiveIndexCache.IndexEntry file = index.list( "org/example/" ).get( 0 );
+        assertFalse( file.isDirectory() );
+        assertEquals( 2, file.getDepth() );
+    }
+
+    @Test
+    public void testOpenEntries()
+        throws Exception
+    {
+        ArchiveIndexCache.ArchiveIndex index = new ArchiveIndexCache( 1000 ).getIndex( archive );
+
+        assertEquals( content( "stored" ), read( index.openEntry( "org/example/Stored.txt" ) ) );
+        assertEquals( content( "deflated" ), read( index.openEntry( "org/example/Deflated.txt" ) ) );
+        try
+        {
+            index.openEntry( "org/example/Missing.txt" );
+            fail( "entry should not be found" );
+        }
+        catch ( FileNotFoundException e )
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testOpenEntriesOfJar()
+        throws Exception
+    {
+        File file = new File( System.getProperty( "basedir" ),
+                              "src/test/repo-with-osgi/commons-logging/commons-logging/1.1/commons-logging-1.1.jar" );
+        ArchiveIndexCache.ArchiveIndex index = new ArchiveIndexCache( 1000 ).getIndex( file );
+
+        assertEquals( 16, index.list( "org/apache/commons/logging/impl/" ).size() );
+        try (JarFile jarFile = new JarFile( file ))
+        {
+            for ( String name : new String[]{ "META-INF/MANIFEST.MF", "org/apache/commons/logging/Log.class" } )
+            {
+                try (InputStream expected = jarFile.getInputStream( jarFile.getEntry( name ) ))
+                {
+                    assertTrue( IOUtils.contentEquals( expected, index.openEntry( name ) ) );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testChangedArchiveIsIndexedAgain()
+        throws Exception
+    {
+        ArchiveIndexCache cache = new ArchiveIndexCache( 1000 );
+        ArchiveIndexCache.ArchiveIndex index = cache.getIndex( archive );
+        assertSame( index, cache.getIndex( archive ) );
+
+        writeArchive( archive, "changed content" );
+        assertTrue( archive.setLastModified( archive.lastModified() - 60000 ) );
+
+        ArchiveIndexCache.ArchiveIndex changed = cache.getIndex( archive );
+        assertNotSame( index, changed );
+        assertEquals( content( "changed content" ), read( changed.openEntry( "org/example/Stored.txt" ) ) );
+        assertEquals( 1, cache.size() );
+    }
+
+    @Test
+    public void testCacheIsBoundedByEntries()
+        throws Exception
+    {
+        File other = new File( basedir, "other.jar" );
+        writeArchive( other, "other" );
+
+        // each archive has 6 entries
+        ArchiveIndexCache cache = new ArchiveIndexCache( 10 );
+        cache.getIndex( archive );
+        assertEquals( 1, cache.size() );
+        cache.getIndex( other );
+        assertEquals( 1, cache.size() );
+
+        assertEquals( 6, new ArchiveIndexCache( 5 ).getIndex( archive ).size() );
+    }
+
+    private static void writeArchive( File file, String text )
+        throws Exception
+    {
+        try (ZipOutputStream out = new ZipOutputStream( new FileOutputStream( file ) ))
+        {
+            for ( String directory : new String[]{ "META-INF/", "org/", "org/example/" } )
+            {
+                out.putNextEntry( new ZipEntry( directory ) );
+                out.closeEntry();
+            }
+            out.putNextEntry( new ZipEntry( "META-INF/MANIFEST.MF" ) );
+            out.write( "Manifest-Version: 1.0\n".getBytes( StandardCharsets.UTF_8 ) );
+            out.closeEntry();
+
+            byte[] stored = content( text ).getBytes( StandardCharsets.UTF_8 );
+            ZipEntry storedEntry = new ZipEntry( "org/example/Stored.txt" );
+            storedEntry.setMethod( ZipEntry.STORED );
+            storedEntry.setSize( stored.length );
+            CRC32 crc = new CRC32();
+            crc.update( stored );
+            storedEntry.setCrc( crc.getValue() );
+            out.putNextEntry( storedEntry );
+            out.write( stored );
+            out.closeEntry();
+
+            out.putNextEntry( new ZipEntry( "org/example/Deflated.txt" ) );
+            out.write( content( "deflated" ).getBytes( StandardCharsets.UTF_8 ) );
+            out.closeEntry();
+        }
+    }
+
+    private static String content( String text )
+    {
+        StringBuilder content = new StringBuilder();
+        for ( int i = 0; i < 100; i++ )
+        {
+            content.append( text ).append( ' ' ).append( i ).append( '\n' );
+        }
+        return content.toString();
+    }
+
+    private static String read( InputStream inputStream )
+        throws Exception
+    {
+        try (InputStream in = inputStream)
+        {
+            return IOUtils.toString( in, StandardCharsets.UTF_8 );
+        }
+    }
+
+    private static List<String> names( String... names )
+    {
+        List<String> list = new ArrayList<>();
+        for ( String name : names )
+        {
+            list.add( name );
+        }
+        return list;
+    }
+
+    private static List<String> names( List<ArchiveIndexCache.IndexEntry> entries )
+    {
+        List<String> list = new ArrayList<>();
+        for ( ArchiveIndexCache.IndexEntry entry : entries )
+        {
+            list.add( entry.getName() );
+        }
+        return list;
+    }
+}
@@ -33,7 +33,7 @@ function(jquery,i18n,jqueryTmpl,bootstrap,jqueryValidate,ko) {
 
   ManagedRepository=function(id,name,layout,indexDirectory,location,snapshots,releases,blockRedeployments,cronExpression,
                              scanned,daysOlder,retentionCount,deleteReleasedSnapshots,stageRepoNeeded,description,
-                             skipPackedIndexCreation,feedsUrl,url){
+                             skipPackedIndexCreation,proxyFetchStrategy,scanParallelism,feedsUrl,url){
 
     var self=this;
 
@@ -102,6 +102,14 @@ function(jquery,i18n,jqueryTmpl,bootstrap,jqueryValidate,ko) {
     this.skipPackedIndexCreation=ko.observable(skipPackedIndexCreation?skipPackedIndexCreation:false);
     this.skipPackedIndexCreation.subscribe(function(newValue){self.modified(true)});
 
+    //private String proxyFetchStrategy;
+    this.proxyFetchStrategy=ko.observable(proxyFetchStrategy?proxyFetchStrategy:"sequential");
+    this.proxyFetchStrategy.subscribe(function(newValue){self.modified(true)});
+
+    //private int scanParallelism;
+    this.scanParallelism=ko.observable(scanParallelism?scanParallelism:1);
+    this.scanParallelism.subscribe(function(newValue){self.modified(true)});
+
     this.feedsUrl=feedsUrl;
 
     this.url=url;
@@ -168,7 +176,8 @@ function(jquery,i18n,jqueryTmpl,bootstrap,jqueryValidate,ko) {
                                  ,data.releases,
                                  data.blockRedeployments,data.cronExpression,
                                  data.scanned,data.daysOlder,data.retentionCount,data.deleteReleasedSnapshots,
-                                 data.stageRepoNeeded,data.description,data.skipPackedIndexCreation);
+                                 data.stageRepoNeeded,data.description,data.skipPackedIndexCreation,
+                                 data.proxyFetchStrategy,data.scanParallelism);
   }
 
   mapArchivaRepositoryStatistics=function(data){
@@ -189,6 +198,8 @@ function(jquery,i18n,jqueryTmpl,bootstrap,jqueryValidate,ko) {
 
     this.availableLayouts = window.managedRepositoryTypes;
 
+    this.availableProxyFetchStrategies = ["sequential","parallel"];
+
     showCronExpressionDoc=function(){
       //$.log("showCronExpressionDoc") ;
     }
@@ -692,7 +703,7 @@ function(jquery,i18n,jqueryTmpl,bootstrap,jqueryValidate,ko) {
 
   RemoteRepository=function(id,name,layout,indexDirectory,url,userName,password,timeout,downloadRemoteIndex,remoteIndexUrl,
                             remoteDownloadNetworkProxyId,cronExpression,remoteDownloadTimeout,downloadRemoteIndexOnStartup,
-                            description,extraParametersEntries,extraHeadersEntries,checkPath){
+                            description,extraParametersEntries,extraHeadersEntries,checkPath,negativeCacheTtl){
 
     var self=this;
 
@@ -777,6 +788,10 @@ function(jquery,i18n,jqueryTmpl,bootstrap,jqueryValidate,ko) {
     this.checkPath=ko.observable(checkPath);
     this.checkPath.subscribe(function(newValue){self.modified(true)});
 
+    //private int negativeCacheTtl;
+    this.negativeCacheTtl=ko.observable(negativeCacheTtl?negativeCacheTtl:0);
+    this.negativeCacheTtl.subscribe(function(newValue){self.modified(true)});
+
     this.modified=ko.observable(false);
   }
 
@@ -802,7 +817,7 @@ function(jquery,i18n,jqueryTmpl,bootstrap,jqueryValidate,ko) {
     return new RemoteRepository(data.id,data.name,data.layout,data.indexDirectory,data.url,data.userName,data.password,
                                 data.timeout,data.downloadRemoteIndex,data.remoteIndexUrl,data.remoteDownloadNetworkProxyId,
                                 data.cronExpression,data.remoteDownloadTimeout,data.downloadRemoteIndexOnStartup,data.description,
-                                extraParametersEntries,extraHeadersEntries,data.checkPath);
+                                extraParametersEntries,extraHeadersEntries,data.checkPath,data.negativeCacheTtl);
   }
 
   mapRemoteRepositories=function(data){
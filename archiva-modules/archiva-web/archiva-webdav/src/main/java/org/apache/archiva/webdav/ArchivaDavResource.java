@@ -20,6 +20,9 @@
  */
 
 import org.apache.archiva.admin.model.beans.ManagedRepository;
+import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.checksum.ChecksummedFile;
+import org.apache.archiva.checksum.StreamingChecksum;
 import org.apache.archiva.metadata.model.facets.AuditEvent;
 import org.apache.archiva.repository.events.AuditListener;
 import org.apache.archiva.common.filelock.FileLockException;
@@ -33,7 +36,6 @@
 import org.apache.archiva.webdav.util.IndexWriter;
 import org.apache.archiva.webdav.util.MimeTypes;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.jackrabbit.util.Text;
 import org.apache.jackrabbit.webdav.DavException;
 import org.apache.jackrabbit.webdav.DavResource;
@@ -66,11 +68,18 @@
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  */
@@ -105,6 +114,22 @@
 
     public static final String COMPLIANCE_CLASS = "1, 2";
 
+    private static final int SPOOL_BUFFER_SIZE = 65536;
+
+    private static final Pattern SHA1_PATTERN = Pattern.compile( "[0-9a-fA-F]{40}" );
+
+    private static final Pattern HEX_PATTERN = Pattern.compile( "[0-9a-fA-F]+" );
+
+    private static final ChecksumAlgorithm[] UPLOAD_CHECKSUM_ALGORITHMS =
+        new ChecksumAlgorithm[]{ ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 };
+
+    /**
+     * Prefix of the request headers carrying the expected checksums of an upload, e.g. <code>X-Checksum-Sha1</code>.
+     */
+    public static final String CHECKSUM_HEADER_PREFIX = "X-Checksum-";
+
+    private static final long MAX_CHECKSUM_FILE_LENGTH = 1024;
+
     private final ArchivaTaskScheduler scheduler;
 
     private final FileLockManager fileLockManager;
@@ -187,6 +212,51 @@ public File getLocalResource()
         return localResource;
     }
 
+    public String getLogicalResource()
+    {
+        return logicalResource;
+    }
+
+    /**
+     * @return the managed repository of the resource, <code>null</code> for a resource merged from a group
+     */
+    public ManagedRepository getRepository()
+    {
+        return repository;
+    }
+
+    /**
+     * Returns the entity tag of the file. It is a strong tag built from the sha1 checksum file if there is an up to
+     * date one, else a weak tag built from the length and modification time of the file. The file itself is not read.
+     *
+     * @return the entity tag, or <code>null</code> for a collection or a missing file
+     */
+    public String getETag()
+    {
+        if ( isCollection() || !exists() )
+        {
+            return null;
+        }
+        long lastModified = localResource.lastModified();
+        ChecksummedFile checksummedFile = new ChecksummedFile( localResource );
+        if ( checksummedFile.getChecksumFile( ChecksumAlgorithm.SHA1 ).lastModified() >= lastModified )
+        {
+            try
+            {
+                String sha1 = checksummedFile.readChecksum( ChecksumAlgorithm.SHA1 );
+                if ( sha1 != null && SHA1_PATTERN.matcher( sha1 ).matches() )
+                {
+                    return '"' + sha1.toLowerCase( Locale.ENGLISH ) + '"';
+                }
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Unable to read the checksum of {}: {}", localResource, e.getMessage() );
+            }
+        }
+        return "W/\"" + Long.toHexString( localResource.length() ) + '-' + Long.toHexString( lastModified ) + '"';
+    }
+
     @Override
     public String getResourcePath()
     {
@@ -211,24 +281,45 @@ public void spool( OutputContext outputContext )
     {
         if ( !isCollection() )
         {
-            outputContext.setContentLength( localResource.length() );
-            outputContext.setContentType( mimeTypes.getMimeType( localResource.getName() ) );
+            spool( outputContext, 0, localResource.length() );
+        }
+        else if ( outputContext.hasStream() )
+        {
+            IndexWriter writer = new IndexWriter( this, localResource, logicalResource );
+            writer.write( outputContext );
+        }
+    }
+
+    /**
+     * Spools a part of the file, to answer a http range request.
+     *
+     * @param outputContext the context of the response
+     * @param offset        the position of the first byte to send
+     * @param length        the number of bytes to send
+     * @throws IOException if the file cannot be read or the response cannot be written
+     */
+    public void spool( OutputContext outputContext, long offset, long length )
+        throws IOException
+    {
+        outputContext.setContentLength( length );
+        outputContext.setContentType( mimeTypes.getMimeType( localResource.getName() ) );
+        outputContext.setProperty( "Accept-Ranges", "bytes" );
+
+        if ( !outputContext.hasStream() )
+        {
+            return;
         }
 
         try
         {
-            if ( !isCollection() && outputContext.hasStream() )
+            Lock lock = fileLockManager.readFileLock( localResource );
+            try (FileChannel channel = FileChannel.open( lock.getFile().toPath(), StandardOpenOption.READ ))
             {
-                Lock lock = fileLockManager.readFileLock( localResource );
-                try (InputStream is = Files.newInputStream( lock.getFile().toPath() ))
-                {
-                    IOUtils.copy( is, outputContext.getOutputStream() );
-                }
+                transfer( channel, offset, length, outputContext.getOutputStream() );
             }
-            else if ( outputContext.hasStream() )
+            finally
             {
-                IndexWriter writer = new IndexWriter( this, localResource, logicalResource );
-                writer.write( outputContext );
+                fileLockManager.release( lock );
             }
         }
         catch ( FileLockException e )
@@ -241,6 +332,29 @@ else if ( outputContext.hasStream() )
         }
     }
 
+    private static void transfer( FileChannel channel, long offset, long length, OutputStream outputStream )
+        throws IOException
+    {
+        long position = offset;
+        long end = offset + length;
+        // a heap buffer, the servlet output stream only takes byte arrays
+        byte[] bytes = new byte[(int) Math.max( 1, Math.min( SPOOL_BUFFER_SIZE, length ) )];
+        ByteBuffer buffer = ByteBuffer.wrap( bytes );
+        while ( position < end )
+        {
+            buffer.clear();
+            buffer.limit( (int) Math.min( bytes.length, end - position ) );
+            int read = channel.read( buffer, position );
+            if ( read <= 0 )
+            {
+                // the file was truncated while being sent
+                break;
+            }
+            outputStream.write( bytes, 0, read );
+            position += read;
+        }
+    }
+
     @Override
     public DavPropertyName[] getPropertyNames()
     {
@@ -319,29 +433,32 @@ public void addMember( DavResource resource, InputContext inputContext )
 
         if ( isCollection() && inputContext.hasStream() ) // New File
         {
-            try (OutputStream stream = Files.newOutputStream( localFile.toPath() ))
+            // the upload goes to a temporary file next to the target, so a bad deployment doesn't touch an
+            // existing file and the complete file replaces it with a single rename
+            StreamingChecksum checksum = new StreamingChecksum( UPLOAD_CHECKSUM_ALGORITHMS );
+            File tempFile = null;
+            try
             {
-                IOUtils.copy( inputContext.getInputStream(), stream );
+                tempFile = File.createTempFile( HIDDEN_PATH_PREFIX + resource.getDisplayName() + ".", ".tmp",
+                                                localResource );
+                checksum.copy( inputContext.getInputStream(), tempFile );
+
+                verifyUpload( resource, inputContext, tempFile, checksum );
+
+                commitUpload( tempFile, localFile );
             }
             catch ( IOException e )
             {
+                FileUtils.deleteQuietly( tempFile );
                 throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e );
             }
-
-            // TODO: a bad deployment shouldn't delete an existing file - do we need to write to a temporary location first?
-            long expectedContentLength = inputContext.getContentLength();
-            long actualContentLength = localFile.length();
-            // length of -1 is given for a chunked request or unknown length, in which case we accept what was uploaded
-            if ( expectedContentLength >= 0 && expectedContentLength != actualContentLength )
+            catch ( DavException e )
             {
-                String msg = "Content Header length was " + expectedContentLength + " but was " + actualContentLength;
-                log.debug( "Upload failed: {}", msg );
-
-                FileUtils.deleteQuietly( localFile );
-                throw new DavException( HttpServletResponse.SC_BAD_REQUEST, msg );
+                FileUtils.deleteQuietly( tempFile );
+                throw e;
             }
 
-            queueRepositoryTask( localFile );
+            queueRepositoryTask( localFile, checksum.getChecksums() );
 
             log.debug( "File '{}{}(current user '{}')", resource.getDisplayName(),
                        ( exists ? "' modified " : "' created " ), this.principal );
@@ -365,6 +482,106 @@ else if ( !inputContext.hasStream() && isCollection() ) // New directory
         }
     }
 
+    /**
+     * Checks the uploaded content against the announced length, the checksums sent along as
+     * <code>X-Checksum-*</code> headers and, for an uploaded checksum file, the checksum of the file it refers to.
+     */
+    private void verifyUpload( DavResource resource, InputContext inputContext, File tempFile,
+                               StreamingChecksum checksum )
+        throws DavException, IOException
+    {
+        long expectedContentLength = inputContext.getContentLength();
+        long actualContentLength = checksum.getLength();
+        // length of -1 is given for a chunked request or unknown length, in which case we accept what was uploaded
+        if ( expectedContentLength >= 0 && expectedContentLength != actualContentLength )
+        {
+            String msg = "Content Header length was " + expectedContentLength + " but was " + actualContentLength;
+            log.debug( "Upload failed: {}", msg );
+            throw new DavException( HttpServletResponse.SC_BAD_REQUEST, msg );
+        }
+
+        for ( ChecksumAlgorithm algorithm : UPLOAD_CHECKSUM_ALGORITHMS )
+        {
+            String expected = inputContext.getProperty( CHECKSUM_HEADER_PREFIX + algorithm.getExt() );
+            if ( expected != null && !expected.trim().equalsIgnoreCase( checksum.getChecksum( algorithm ) ) )
+            {
+                String msg = algorithm.getType() + " checksum of the upload was " + checksum.getChecksum( algorithm )
+                    + " but " + expected.trim() + " was expected";
+                log.debug( "Upload failed: {}", msg );
+                throw new DavException( HttpServletResponse.SC_BAD_REQUEST, msg );
+            }
+        }
+
+        String name = resource.getDisplayName();
+        for ( ChecksumAlgorithm algorithm : UPLOAD_CHECKSUM_ALGORITHMS )
+        {
+            if ( name.endsWith( "." + algorithm.getExt() ) && actualContentLength <= MAX_CHECKSUM_FILE_LENGTH )
+            {
+                File referenceFile = new File( localResource, name.substring( 0, name.length()
+                    - algorithm.getExt().length() - 1 ) );
+                verifyChecksumFile( referenceFile, tempFile, algorithm );
+            }
+        }
+    }
+
+    /**
+     * Checks an uploaded checksum file against the file it refers to. Checksum files that cannot be parsed are
+     * accepted as before, as are checksum files uploaded before the file they refer to.
+     */
+    private void verifyChecksumFile( File referenceFile, File checksumFile, ChecksumAlgorithm algorithm )
+        throws DavException, IOException
+    {
+        if ( !referenceFile.isFile() )
+        {
+            return;
+        }
+
+        ChecksummedFile checksummedFile = new ChecksummedFile( referenceFile );
+        String expected;
+        try
+        {
+            expected = checksummedFile.parseChecksum( FileUtils.readFileToString( checksumFile ), algorithm,
+                                                      referenceFile.getName() );
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Unable to parse uploaded checksum file for '{}': {}", referenceFile.getName(),
+                       e.getMessage() );
+            return;
+        }
+
+        if ( !HEX_PATTERN.matcher( expected ).matches() )
+        {
+            return;
+        }
+
+        String actual = checksummedFile.hashChecksum( algorithm );
+        if ( !expected.equalsIgnoreCase( actual ) )
+        {
+            String msg = "Uploaded " + algorithm.getType() + " checksum " + expected + " does not match the "
+                + referenceFile.getName() + " checksum " + actual;
+            log.debug( "Upload failed: {}", msg );
+            throw new DavException( HttpServletResponse.SC_BAD_REQUEST, msg );
+        }
+    }
+
+    /**
+     * Replaces the target file with the uploaded file, atomically where the file system supports it.
+     */
+    private static void commitUpload( File tempFile, File localFile )
+        throws IOException
+    {
+        try
+        {
+            Files.move( tempFile.toPath(), localFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            Files.move( tempFile.toPath(), localFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
     @Override
     public DavResourceIterator getMembers()
     {
@@ -709,8 +926,11 @@ private void triggerAuditEvent( String remoteIP, String repositoryId, String res
         }
     }
 
-    private void queueRepositoryTask( File localFile )
+    private void queueRepositoryTask( File localFile, Map<ChecksumAlgorithm, String> checksums )
     {
+        // the consumers get the checksums computed during the upload instead of reading the file again
+        ChecksummedFile.registerChecksums( localFile, checksums );
+
         RepositoryTask task = new RepositoryTask();
         task.setRepositoryId( repository.getId() );
         task.setResourceFile( localFile );
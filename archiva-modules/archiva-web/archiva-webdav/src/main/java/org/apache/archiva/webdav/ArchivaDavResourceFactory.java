@@ -31,6 +31,8 @@
 import org.apache.archiva.common.utils.PathUtil;
 import org.apache.archiva.common.utils.VersionUtil;
 import org.apache.archiva.configuration.ArchivaConfiguration;
+import org.apache.archiva.configuration.ConfigurationEvent;
+import org.apache.archiva.configuration.ConfigurationListener;
 import org.apache.archiva.configuration.RepositoryGroupConfiguration;
 import org.apache.archiva.indexer.merger.IndexMerger;
 import org.apache.archiva.indexer.merger.IndexMergerException;
@@ -57,6 +59,7 @@
 import org.apache.archiva.redback.system.SecuritySession;
 import org.apache.archiva.redback.users.User;
 import org.apache.archiva.redback.users.UserManager;
+import org.apache.archiva.security.common.ArchivaRoleConstants;
 import org.apache.archiva.repository.ManagedRepositoryContent;
 import org.apache.archiva.repository.RepositoryContentFactory;
 import org.apache.archiva.repository.RepositoryException;
@@ -70,6 +73,7 @@
 import org.apache.archiva.repository.metadata.RepositoryMetadataWriter;
 import org.apache.archiva.scheduler.repository.model.RepositoryArchivaTaskScheduler;
 import org.apache.archiva.security.ServletAuthenticator;
+import org.apache.archiva.webdav.util.MergedMetadataCache;
 import org.apache.archiva.webdav.util.MimeTypes;
 import org.apache.archiva.webdav.util.TemporaryGroupIndexSessionCleaner;
 import org.apache.archiva.webdav.util.WebdavMethodUtil;
@@ -98,32 +102,52 @@
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
  */
 @Service( "davResourceFactory#archiva" )
 public class ArchivaDavResourceFactory
-    implements DavResourceFactory, Auditable
+    implements DavResourceFactory, Auditable, ConfigurationListener
 {
     private static final String PROXIED_SUFFIX = " (proxied)";
 
     private static final String HTTP_PUT_METHOD = "PUT";
 
+    /**
+     * one year, in seconds
+     */
+    private static final int RELEASE_MAX_AGE = 31536000;
+
     private Logger log = LoggerFactory.getLogger( ArchivaDavResourceFactory.class );
 
     @Inject
@@ -162,6 +186,9 @@
     @Inject
     private IndexMerger indexMerger;
 
+    @Inject
+    private MergedMetadataCache mergedMetadataCache;
+
     @Inject
     private RepositorySearch repositorySearch;
 
@@ -186,6 +213,54 @@
 
     private ApplicationContext applicationContext;
 
+    /**
+     * Fetch artifacts requested through a repository group from the proxies of all members at once, the first member
+     * getting the artifact serves it.
+     */
+    private boolean parallelGroupFetch = Boolean.getBoolean( "archiva.webdav.parallelGroupFetch" );
+
+    private int groupRoutesSize = Integer.getInteger( "archiva.webdav.groupRoutesSize", 10000 );
+
+    /**
+     * The member which fetched a path of a repository group from its proxies, by group id and path. Cleared when the
+     * configuration is saved, as the members of the groups may have changed.
+     */
+    private final Map<String, String> groupRoutes =
+        Collections.synchronizedMap( new LinkedHashMap<String, String>( 256, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, String> eldest )
+            {
+                return size() > groupRoutesSize;
+            }
+        } );
+
+    /**
+     * fetches artifacts of repository groups from the proxies of the members, if all threads are busy the fetch runs
+     * in the requesting thread. Fetches are only rejected once the executor is shut down.
+     */
+    private final ExecutorService groupFetchExecutor =
+        new ThreadPoolExecutor( 0, Integer.getInteger( "archiva.webdav.groupFetchThreads", 16 ), 60L, TimeUnit.SECONDS,
+                                new SynchronousQueue<Runnable>(), new ThreadFactory()
+                                {
+                                    private final AtomicInteger count = new AtomicInteger();
+
+                                    @Override
+                                    public Thread newThread( Runnable runnable )
+                                    {
+                                        Thread thread =
+                                            new Thread( runnable, "archiva-group-fetch-" + count.incrementAndGet() );
+                                        thread.setDaemon( true );
+                                        return thread;
+                                    }
+                                }, ( runnable, executor ) -> {
+                                    if ( executor.isShutdown() )
+                                    {
+                                        throw new RejectedExecutionException( "group fetch executor is shut down" );
+                                    }
+                                    runnable.run();
+                                } );
+
     @Inject
     public ArchivaDavResourceFactory( ApplicationContext applicationContext, PlexusSisuBridge plexusSisuBridge,
                                       ArchivaConfiguration archivaConfiguration )
@@ -205,7 +280,13 @@ public ArchivaDavResourceFactory( ApplicationContext applicationContext, PlexusS
     @PostConstruct
     public void initialize()
     {
-        // no op
+        archivaConfiguration.addListener( this );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        groupFetchExecutor.shutdownNow();
     }
 
     @Override
@@ -354,79 +435,38 @@ public DavResource createResource( final DavResourceLocator locator, final DavSe
                 filePath = filePath + "/maven-metadata-" + repoGroupConfig.getId() + ".xml";
 
                 // for MRM-872 handle checksums of the merged metadata files
-                if ( repositoryRequest.isSupportFile( requestedResource ) )
+                boolean supportFile = repositoryRequest.isSupportFile( requestedResource );
+                if ( resourcesInAbsolutePath != null && resourcesInAbsolutePath.size() > 1 )
                 {
-                    File metadataChecksum =
-                        new File( filePath + "." + StringUtils.substringAfterLast( requestedResource, "." ) );
-
-                    if ( metadataChecksum.exists() )
-                    {
-                        LogicalResource logicalResource =
-                            new LogicalResource( getLogicalResource( archivaLocator, null, false ) );
-
-                        resource =
-                            new ArchivaDavResource( metadataChecksum.getAbsolutePath(), logicalResource.getPath(), null,
-                                                    request.getRemoteAddr(), activePrincipal, request.getDavSession(),
-                                                    archivaLocator, this, mimeTypes, auditListeners, scheduler,
-                                                    fileLockManager );
-                    }
-                }
-                else
-                {
-                    if ( resourcesInAbsolutePath != null && resourcesInAbsolutePath.size() > 1 )
+                    // merge the metadata of all repos under group
+                    List<File> metadataFiles = new ArrayList<>( resourcesInAbsolutePath.size() );
+                    for ( String resourceAbsPath : resourcesInAbsolutePath )
                     {
-                        // merge the metadata of all repos under group
-                        ArchivaRepositoryMetadata mergedMetadata = new ArchivaRepositoryMetadata();
-                        for ( String resourceAbsPath : resourcesInAbsolutePath )
-                        {
-                            try
-                            {
-                                File metadataFile = new File( resourceAbsPath );
-                                ArchivaRepositoryMetadata repoMetadata = MavenMetadataReader.read( metadataFile );
-                                mergedMetadata = RepositoryMetadataMerge.merge( mergedMetadata, repoMetadata );
-                            }
-                            catch ( XMLException e )
-                            {
-                                throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                                                        "Error occurred while reading metadata file." );
-                            }
-                            catch ( RepositoryMetadataException r )
-                            {
-                                throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                                                        "Error occurred while merging metadata file." );
-                            }
-                        }
-
-                        try
-                        {
-                            File resourceFile = writeMergedMetadataToFile( mergedMetadata, filePath );
-
-                            LogicalResource logicalResource =
-                                new LogicalResource( getLogicalResource( archivaLocator, null, false ) );
-
-                            resource =
-                                new ArchivaDavResource( resourceFile.getAbsolutePath(), logicalResource.getPath(), null,
-                                                        request.getRemoteAddr(), activePrincipal,
-                                                        request.getDavSession(), archivaLocator, this, mimeTypes,
-                                                        auditListeners, scheduler, fileLockManager );
-                        }
-                        catch ( RepositoryMetadataException r )
-                        {
-                            throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                                                    "Error occurred while writing metadata file." );
-                        }
-                        catch ( IOException ie )
+                        File metadataFile = new File( resourceAbsPath );
+                        if ( metadataFile.exists() )
                         {
-                            throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                                                    "Error occurred while generating checksum files." );
-                        }
-                        catch ( DigesterException de )
-                        {
-                            throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                                                    "Error occurred while generating checksum files."
-                                                        + de.getMessage() );
+                            metadataFiles.add( metadataFile );
                         }
                     }
+                    if ( metadataFiles.size() > 1 )
+                    {
+                        writeMergedMetadata( repoGroupConfig.getId(), metadataFiles, new File( filePath ) );
+                    }
+                }
+
+                File resourceFile = supportFile
+                    ? new File( filePath + "." + StringUtils.substringAfterLast( requestedResource, "." ) )
+                    : new File( filePath );
+                if ( resourceFile.exists() && ( supportFile || resourcesInAbsolutePath.size() > 1 ) )
+                {
+                    LogicalResource logicalResource =
+                        new LogicalResource( getLogicalResource( archivaLocator, null, false ) );
+
+                    resource =
+                        new ArchivaDavResource( resourceFile.getAbsolutePath(), logicalResource.getPath(), null,
+                                                request.getRemoteAddr(), activePrincipal, request.getDavSession(),
+                                                archivaLocator, this, mimeTypes, auditListeners, scheduler,
+                                                fileLockManager );
                 }
             }
         }
@@ -471,6 +511,7 @@ private DavResource processRepositoryGroup( final DavServletRequest request,
         }
         else
         {
+            List<GroupMember> members = new ArrayList<>( repositories.size() );
             for ( String repositoryId : repositories )
             {
                 ManagedRepositoryContent managedRepositoryContent;
@@ -489,32 +530,51 @@ private DavResource processRepositoryGroup( final DavServletRequest request,
 
                 try
                 {
-                    ManagedRepository managedRepository = managedRepositoryAdmin.getManagedRepository( repositoryId );
+                    members.add( new GroupMember( managedRepositoryContent,
+                                                  managedRepositoryAdmin.getManagedRepository( repositoryId ) ) );
+                }
+                catch ( RepositoryAdminException e )
+                {
+                    storedExceptions.add( new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e ) );
+                }
+            }
+
+            String logicalResource = getLogicalResource( archivaLocator, null, false );
+            if ( logicalResource.startsWith( "/" ) )
+            {
+                logicalResource = logicalResource.substring( 1 );
+            }
+
+            if ( StringUtils.substringAfterLast( "/" + logicalResource, "/" ).startsWith( "maven-metadata" ) )
+            {
+                // the metadata of all members is merged, a checksum is computed from the same merged metadata whether
+                // a member has the checksum file or not
+                String metadataResource = repositoryRequest.isSupportFile( logicalResource )
+                    ? StringUtils.substringBeforeLast( logicalResource, "." )
+                    : logicalResource;
+                List<String> memberResources = new ArrayList<>( members.size() );
+                for ( GroupMember member : members )
+                {
                     DavResource updatedResource =
-                        processRepository( request, archivaLocator, activePrincipal, managedRepositoryContent,
-                                           managedRepository );
+                        processGroupMember( request, archivaLocator, activePrincipal, member, logicalResource,
+                                            memberResources, storedExceptions );
                     if ( resource == null )
                     {
                         resource = updatedResource;
                     }
-
-                    String logicalResource = getLogicalResource( archivaLocator, null, false );
-                    if ( logicalResource.endsWith( "/" ) )
+                    File metadataFile = new File( member.content.getRepoRoot(), metadataResource );
+                    if ( metadataFile.exists() && isReadable( request, member.id ) )
                     {
-                        logicalResource = logicalResource.substring( 1 );
+                        resourcesInAbsolutePath.add( metadataFile.getAbsolutePath() );
                     }
-                    resourcesInAbsolutePath.add(
-                        new File( managedRepositoryContent.getRepoRoot(), logicalResource ).getAbsolutePath() );
-                }
-                catch ( DavException e )
-                {
-                    storedExceptions.add( e );
-                }
-                catch ( RepositoryAdminException e )
-                {
-                    storedExceptions.add( new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e ) );
                 }
             }
+            else
+            {
+                resource = processFirstGroupMember( request, archivaLocator, activePrincipal, members,
+                                                    repoGroupConfig.getId(), logicalResource,
+                                                    resourcesInAbsolutePath, storedExceptions );
+            }
         }
         if ( resource == null )
         {
@@ -539,6 +599,186 @@ private DavResource processRepositoryGroup( final DavServletRequest request,
         return resource;
     }
 
+    /**
+     * Serves an artifact from the first group member holding it, in the order of the group, and only then from the
+     * members which can fetch it from their proxies. The member which fetched the path before is asked first.
+     */
+    private DavResource processFirstGroupMember( final DavServletRequest request,
+                                                 ArchivaDavResourceLocator archivaLocator, String activePrincipal,
+                                                 List<GroupMember> members, String groupId, String logicalResource,
+                                                 List<String> resourcesInAbsolutePath,
+                                                 List<DavException> storedExceptions )
+    {
+        String routeKey = groupId + '|' + logicalResource;
+        List<GroupMember> remoteMembers = new ArrayList<>( members.size() );
+        for ( GroupMember member : members )
+        {
+            if ( new File( member.content.getRepoRoot(), logicalResource ).exists() )
+            {
+                DavResource resource =
+                    processGroupMember( request, archivaLocator, activePrincipal, member, logicalResource,
+                                        resourcesInAbsolutePath, storedExceptions );
+                if ( resource != null )
+                {
+                    return resource;
+                }
+            }
+            else
+            {
+                remoteMembers.add( member );
+            }
+        }
+
+        String routedId = groupRoutes.get( routeKey );
+        if ( routedId != null )
+        {
+            for ( int i = 0; i < remoteMembers.size(); i++ )
+            {
+                if ( remoteMembers.get( i ).id.equals( routedId ) )
+                {
+                    remoteMembers.add( 0, remoteMembers.remove( i ) );
+                    break;
+                }
+            }
+        }
+
+        if ( parallelGroupFetch && remoteMembers.size() > 1 )
+        {
+            remoteMembers =
+                fetchFromGroupMembers( request, archivaLocator, activePrincipal, remoteMembers, storedExceptions );
+        }
+
+        for ( GroupMember member : remoteMembers )
+        {
+            DavResource resource =
+                processGroupMember( request, archivaLocator, activePrincipal, member, logicalResource,
+                                    resourcesInAbsolutePath, storedExceptions );
+            if ( resource != null )
+            {
+                groupRoutes.put( routeKey, member.id );
+                return resource;
+            }
+        }
+        groupRoutes.remove( routeKey );
+        return null;
+    }
+
+    /**
+     * Fetches the resource from the proxies of all members at once. Each member that proxied the resource triggers
+     * the same audit event as a member fetching it on its own, also when its fetch completes in the background.
+     *
+     * @return the first member which got the resource, or no member at all
+     */
+    private List<GroupMember> fetchFromGroupMembers( final DavServletRequest request,
+                                                     final ArchivaDavResourceLocator archivaLocator,
+                                                     final String activePrincipal, List<GroupMember> members,
+                                                     List<DavException> storedExceptions )
+    {
+        // the request may be recycled before the background fetches complete
+        final String remoteAddr = request.getRemoteAddr();
+        CompletionService<GroupMember> fetches = new ExecutorCompletionService<>( groupFetchExecutor );
+        int submitted = 0;
+        for ( final GroupMember member : members )
+        {
+            try
+            {
+                if ( !isAuthorized( request, member.id ) )
+                {
+                    continue;
+                }
+                String path = evaluatePathWithVersion( archivaLocator, member.content, request.getContextPath() );
+                final LogicalResource logicalResource = new LogicalResource( StringUtils.removeStart( path, "/" ) );
+                fetches.submit( () -> {
+                    File file = new File( member.content.getRepoRoot(), logicalResource.getPath() );
+                    boolean previouslyExisted = file.exists();
+                    try
+                    {
+                        if ( fetchContentFromProxies( member.content, request, logicalResource ) )
+                        {
+                            log.debug( "Proxied artifact '{}' in repository '{}' (current user '{}')", file.getName(),
+                                       member.id, activePrincipal );
+                            triggerProxiedAuditEvent( remoteAddr, archivaLocator.getRepositoryId(),
+                                                      logicalResource.getPath(), previouslyExisted, activePrincipal );
+                        }
+                    }
+                    catch ( DavException e )
+                    {
+                        log.debug( "Unable to fetch {} for repository {}: {}", logicalResource.getPath(), member.id,
+                                   e.getMessage() );
+                    }
+                    return file.exists() ? member : null;
+                } );
+                submitted++;
+            }
+            catch ( DavException e )
+            {
+                storedExceptions.add( e );
+            }
+            catch ( RejectedExecutionException e )
+            {
+                // a saturated executor runs the fetch in this thread, only a shut down executor rejects it: fetch
+                // from the members one after the other
+                return members;
+            }
+        }
+
+        try
+        {
+            for ( int i = 0; i < submitted; i++ )
+            {
+                try
+                {
+                    GroupMember member = fetches.take().get();
+                    if ( member != null )
+                    {
+                        // the other fetches complete in the background
+                        return Collections.singletonList( member );
+                    }
+                }
+                catch ( ExecutionException e )
+                {
+                    log.debug( "Unable to fetch {}: {}", archivaLocator.getResourcePath(), e.getMessage() );
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        return Collections.emptyList();
+    }
+
+    private boolean isReadable( DavServletRequest request, String repositoryId )
+    {
+        try
+        {
+            return isAuthorized( request, repositoryId );
+        }
+        catch ( DavException e )
+        {
+            return false;
+        }
+    }
+
+    private DavResource processGroupMember( final DavServletRequest request, ArchivaDavResourceLocator archivaLocator,
+                                            String activePrincipal, GroupMember member, String logicalResource,
+                                            List<String> resourcesInAbsolutePath,
+                                            List<DavException> storedExceptions )
+    {
+        try
+        {
+            DavResource resource =
+                processRepository( request, archivaLocator, activePrincipal, member.content, member.repository );
+            resourcesInAbsolutePath.add( new File( member.content.getRepoRoot(), logicalResource ).getAbsolutePath() );
+            return resource;
+        }
+        catch ( DavException e )
+        {
+            storedExceptions.add( e );
+            return null;
+        }
+    }
+
     private String getLogicalResource( ArchivaDavResourceLocator archivaLocator, ManagedRepository managedRepository,
                                        boolean useOrigResourcePath )
     {
@@ -652,14 +892,11 @@ private DavResource processRepository( final DavServletRequest request, ArchivaD
 
                         if ( fromProxy )
                         {
-                            String action = ( previouslyExisted ? AuditEvent.MODIFY_FILE : AuditEvent.CREATE_FILE )
-                                + PROXIED_SUFFIX;
-
                             log.debug( "Proxied artifact '{}' in repository '{}' (current user '{}')",
                                        resourceFile.getName(), managedRepositoryContent.getId(), activePrincipal );
 
-                            triggerAuditEvent( request.getRemoteAddr(), archivaLocator.getRepositoryId(),
-                                               logicalResource.getPath(), action, activePrincipal );
+                            triggerProxiedAuditEvent( request.getRemoteAddr(), archivaLocator.getRepositoryId(),
+                                                      logicalResource.getPath(), previouslyExisted, activePrincipal );
                         }
 
                         if ( !resourceFile.exists() )
@@ -838,6 +1075,13 @@ private boolean fetchContentFromProxies( ManagedRepositoryContent managedReposit
         return false;
     }
 
+    private void triggerProxiedAuditEvent( String remoteIP, String repositoryId, String resource,
+                                           boolean previouslyExisted, String principal )
+    {
+        String action = ( previouslyExisted ? AuditEvent.MODIFY_FILE : AuditEvent.CREATE_FILE ) + PROXIED_SUFFIX;
+        triggerAuditEvent( remoteIP, repositoryId, resource, action, principal );
+    }
+
     // TODO: remove?
 
     private void triggerAuditEvent( String remoteIP, String repositoryId, String resource, String action,
@@ -870,6 +1114,15 @@ public void removeAuditListener( AuditListener listener )
         this.auditListeners.remove( listener );
     }
 
+    @Override
+    public void configurationEvent( ConfigurationEvent event )
+    {
+        if ( event.getType() == ConfigurationEvent.SAVED )
+        {
+            groupRoutes.clear();
+        }
+    }
+
     private void setHeaders( DavServletResponse response, DavResourceLocator locator, DavResource resource,
                              boolean group )
     {
@@ -904,8 +1157,71 @@ else if ( group )
         {
             // We need to specify this so connecting wagons can work correctly
             response.setDateHeader( "Last-Modified", resource.getModificationTime() );
+
+            if ( resource instanceof ArchivaDavResource && resource.exists() && !resource.isCollection() )
+            {
+                ArchivaDavResource archivaDavResource = ArchivaDavResource.class.cast( resource );
+                response.setHeader( "ETag", archivaDavResource.getETag() );
+                if ( isReleaseArtifact( archivaDavResource.getLogicalResource() ) )
+                {
+                    ManagedRepository repository = archivaDavResource.getRepository();
+                    if ( repository != null && repository.isBlockRedeployments() )
+                    {
+                        // a released artifact and its checksums can't change anymore, but shared caches may only
+                        // keep it when anyone can read it
+                        response.setHeader( "Cache-Control",
+                                            ( isGuestReadable( repository.getId() ) ? "public" : "private" )
+                                                + ", max-age=" + RELEASE_MAX_AGE );
+                    }
+                    else
+                    {
+                        // it can be redeployed, the cached copy has to be validated with the entity tag
+                        response.setHeader( "Cache-Control", "no-cache" );
+                    }
+                }
+            }
+        }
+        // [MRM-524] snapshots and other files get no Cache-Control: caches revalidate them with Last-Modified and ETag
+    }
+
+    private boolean isGuestReadable( String repositoryId )
+    {
+        try
+        {
+            return servletAuth.isAuthorized( UserManager.GUEST_USERNAME, repositoryId,
+                                             ArchivaRoleConstants.OPERATION_REPOSITORY_ACCESS );
+        }
+        catch ( UnauthorizedException e )
+        {
+            return false;
+        }
+    }
+
+    private boolean isReleaseArtifact( String logicalResource )
+    {
+        String path = StringUtils.removeStart( logicalResource, "/" );
+        if ( path == null || path.startsWith( ArchivaDavResource.HIDDEN_PATH_PREFIX ) || path.contains(
+            "/" + ArchivaDavResource.HIDDEN_PATH_PREFIX ) )
+        {
+            return false;
+        }
+        if ( repositoryRequest.isSupportFile( path ) )
+        {
+            path = StringUtils.substringBeforeLast( path, "." );
+        }
+        if ( repositoryRequest.isMetadata( path ) || repositoryRequest.isArchetypeCatalog( path ) )
+        {
+            return false;
+        }
+        try
+        {
+            ArtifactReference artifact = repositoryRequest.toArtifactReference( path );
+            return artifact != null && !VersionUtil.isSnapshot( artifact.getVersion() );
+        }
+        catch ( LayoutException e )
+        {
+            return false;
         }
-        // TODO: [MRM-524] determine http caching options for other types of files (artifacts, sha1, md5, snapshots)
     }
 
     private ArchivaDavResourceLocator checkLocatorIsInstanceOfRepositoryLocator( DavResourceLocator locator )
@@ -1259,37 +1575,105 @@ private boolean isAllowedToContinue( DavServletRequest request, List<String> rep
         return allow;
     }
 
-    private File writeMergedMetadataToFile( ArchivaRepositoryMetadata mergedMetadata, String outputFilename )
-        throws RepositoryMetadataException, DigesterException, IOException
+    /**
+     * Merges the metadata files of the group members into the merged metadata file of the group and creates its
+     * checksum files, unless the merged file is still current for the member files.
+     */
+    private void writeMergedMetadata( String groupId, List<File> metadataFiles, File mergedFile )
+        throws DavException
     {
-        File outputFile = new File( outputFilename );
-        if ( outputFile.exists() )
+        synchronized ( mergedMetadataCache.getLock( groupId, mergedFile ) )
         {
-            FileUtils.deleteQuietly( outputFile );
+            if ( mergedMetadataCache.isCurrent( groupId, mergedFile, metadataFiles ) )
+            {
+                log.debug( "merged metadata file '{}' is still current", mergedFile );
+                return;
+            }
+
+            ArchivaRepositoryMetadata mergedMetadata = new ArchivaRepositoryMetadata();
+            for ( File metadataFile : metadataFiles )
+            {
+                try
+                {
+                    ArchivaRepositoryMetadata repoMetadata = MavenMetadataReader.read( metadataFile );
+                    mergedMetadata = RepositoryMetadataMerge.merge( mergedMetadata, repoMetadata );
+                }
+                catch ( XMLException e )
+                {
+                    throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                                            "Error occurred while reading metadata file." );
+                }
+                catch ( RepositoryMetadataException r )
+                {
+                    throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                                            "Error occurred while merging metadata file." );
+                }
+            }
+
+            try
+            {
+                List<File> checksumFiles = writeMergedMetadataToFile( mergedMetadata, mergedFile.getPath() );
+                mergedMetadataCache.put( groupId, mergedFile, metadataFiles, checksumFiles );
+            }
+            catch ( RepositoryMetadataException r )
+            {
+                throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                                        "Error occurred while writing metadata file." );
+            }
+            catch ( IOException ie )
+            {
+                throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                                        "Error occurred while generating checksum files." );
+            }
+            catch ( DigesterException de )
+            {
+                throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                                        "Error occurred while generating checksum files." + de.getMessage() );
+            }
         }
+    }
 
+    private List<File> writeMergedMetadataToFile( ArchivaRepositoryMetadata mergedMetadata, String outputFilename )
+        throws RepositoryMetadataException, DigesterException, IOException
+    {
+        File outputFile = new File( outputFilename );
         outputFile.getParentFile().mkdirs();
-        RepositoryMetadataWriter.write( mergedMetadata, outputFile );
 
-        createChecksumFile( outputFilename, digestSha1 );
-        createChecksumFile( outputFilename, digestMd5 );
+        // replace the merged file at once, other requests may be serving it
+        File tmpFile = new File( outputFilename + ".tmp" );
+        RepositoryMetadataWriter.write( mergedMetadata, tmpFile );
+        try
+        {
+            Files.move( tmpFile.toPath(), outputFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            Files.move( tmpFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+
+        List<File> checksumFiles = new ArrayList<>( 2 );
+        checksumFiles.add( createChecksumFile( outputFilename, digestSha1 ) );
+        checksumFiles.add( createChecksumFile( outputFilename, digestMd5 ) );
 
-        return outputFile;
+        return checksumFiles;
     }
 
-    private void createChecksumFile( String path, Digester digester )
+    private File createChecksumFile( String path, Digester digester )
         throws DigesterException, IOException
     {
         File checksumFile = new File( path + digester.getFilenameExtension() );
-        if ( !checksumFile.exists() )
+        if ( checksumFile.isDirectory() )
         {
-            FileUtils.deleteQuietly( checksumFile );
-            checksum.createChecksum( new File( path ), digester );
+            log.error( "Checksum file is not a file." );
         }
-        else if ( !checksumFile.isFile() )
+        else
         {
-            log.error( "Checksum file is not a file." );
+            // the checksums of a previous merge are outdated
+            FileUtils.deleteQuietly( checksumFile );
+            checksum.createChecksum( new File( path ), digester );
         }
+        return checksumFile;
     }
 
     private boolean isProjectReference( String requestedResource )
@@ -1462,4 +1846,30 @@ public void setManagedRepositoryAdmin( ManagedRepositoryAdmin managedRepositoryA
     {
         this.managedRepositoryAdmin = managedRepositoryAdmin;
     }
+
+    public void setMergedMetadataCache( MergedMetadataCache mergedMetadataCache )
+    {
+        this.mergedMetadataCache = mergedMetadataCache;
+    }
+
+    public void setParallelGroupFetch( boolean parallelGroupFetch )
+    {
+        this.parallelGroupFetch = parallelGroupFetch;
+    }
+
+    private static class GroupMember
+    {
+        private final String id;
+
+        private final ManagedRepositoryContent content;
+
+        private final ManagedRepository repository;
+
+        GroupMember( ManagedRepositoryContent content, ManagedRepository repository )
+        {
+            this.id = content.getId();
+            this.content = content;
+            this.repository = repository;
+        }
+    }
 }
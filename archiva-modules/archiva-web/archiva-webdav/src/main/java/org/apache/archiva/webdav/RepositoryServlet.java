@@ -27,6 +27,8 @@
 import org.apache.archiva.configuration.ConfigurationListener;
 import org.apache.archiva.redback.integration.filter.authentication.HttpAuthenticator;
 import org.apache.archiva.security.ServletAuthenticator;
+import org.apache.archiva.webdav.util.ByteRange;
+import org.apache.commons.lang.StringUtils;
 import org.apache.jackrabbit.webdav.DavException;
 import org.apache.jackrabbit.webdav.DavLocatorFactory;
 import org.apache.jackrabbit.webdav.DavMethods;
@@ -168,6 +170,116 @@ else if ( e.getCause() != null )
         }
     }
 
+    /**
+     * Answers the conditional and range requests of files, other GET requests are handled by jackrabbit.
+     */
+    @Override
+    protected void doGet( WebdavRequest request, WebdavResponse response, DavResource resource )
+        throws IOException, DavException
+    {
+        if ( resource instanceof ArchivaDavResource && resource.exists() && !resource.isCollection()
+            && isNotModified( request, (ArchivaDavResource) resource ) )
+        {
+            // the validators are already set by the resource factory, the file isn't opened
+            response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+            return;
+        }
+
+        String rangeHeader = request.getHeader( "Range" );
+        if ( rangeHeader == null || !( resource instanceof ArchivaDavResource ) || !resource.exists()
+            || resource.isCollection() || !isRangeValid( request, (ArchivaDavResource) resource ) )
+        {
+            super.doGet( request, response, resource );
+            return;
+        }
+
+        ArchivaDavResource archivaDavResource = (ArchivaDavResource) resource;
+        long contentLength = archivaDavResource.getLocalResource().length();
+        ByteRange range = ByteRange.parse( rangeHeader, contentLength );
+        if ( range == null )
+        {
+            super.doGet( request, response, resource );
+            return;
+        }
+
+        response.setHeader( "Content-Range", range.toContentRange( contentLength ) );
+        if ( !range.isSatisfiable() )
+        {
+            response.sendError( HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE );
+            return;
+        }
+
+        response.setStatus( HttpServletResponse.SC_PARTIAL_CONTENT );
+        archivaDavResource.spool( getOutputContext( response, response.getOutputStream() ), range.getOffset(),
+                                  range.getLength() );
+        response.flushBuffer();
+    }
+
+    /**
+     * @return <code>true</code> if the client has the current version of the file, checked with the entity tags of
+     * <code>If-None-Match</code> or else with the date of <code>If-Modified-Since</code>.
+     */
+    private boolean isNotModified( WebdavRequest request, ArchivaDavResource resource )
+    {
+        String ifNoneMatch = request.getHeader( "If-None-Match" );
+        if ( ifNoneMatch != null )
+        {
+            String etag = stripWeakPrefix( resource.getETag() );
+            for ( String tag : StringUtils.split( ifNoneMatch, ',' ) )
+            {
+                tag = tag.trim();
+                // GET requests use the weak comparison
+                if ( "*".equals( tag ) || stripWeakPrefix( tag ).equals( etag ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try
+        {
+            long modifiedSince = request.getDateHeader( "If-Modified-Since" );
+            // http dates have a precision of one second
+            return modifiedSince >= 0 && resource.getModificationTime() / 1000 <= modifiedSince / 1000;
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return false;
+        }
+    }
+
+    private static String stripWeakPrefix( String etag )
+    {
+        return StringUtils.removeStart( etag, "W/" );
+    }
+
+    /**
+     * @return <code>false</code> if the file changed since the client got the first part of it, in this case the
+     * whole file is sent.
+     */
+    private boolean isRangeValid( WebdavRequest request, ArchivaDavResource resource )
+    {
+        String ifRange = request.getHeader( "If-Range" );
+        if ( ifRange == null )
+        {
+            return true;
+        }
+        if ( ifRange.startsWith( "\"" ) || ifRange.startsWith( "W/" ) )
+        {
+            // range requests use the strong comparison, weak tags never match
+            return ifRange.equals( resource.getETag() ) && !ifRange.startsWith( "W/" );
+        }
+        try
+        {
+            // http dates have a precision of one second
+            return resource.getModificationTime() / 1000 <= request.getDateHeader( "If-Range" ) / 1000;
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return false;
+        }
+    }
+
     public synchronized void initServers( ServletConfig servletConfig )
         throws RepositoryAdminException
     {
@@ -0,0 +1,127 @@
+package org.apache.archiva.webdav.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * ByteRange - a single range of bytes requested with the http <code>Range</code> header.
+ *
+ * @since 3.0
+ */
+public class ByteRange
+{
+    private static final String BYTES_UNIT = "bytes=";
+
+    private static final ByteRange UNSATISFIABLE = new ByteRange( 0, 0 );
+
+    private final long offset;
+
+    private final long length;
+
+    private ByteRange( long offset, long length )
+    {
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Parses the value of a <code>Range</code> header.
+     *
+     * @param header        the header value
+     * @param contentLength the length of the requested resource
+     * @return the requested range, or <code>null</code> if the header is invalid or asks for several ranges:
+     * the whole content is sent in that case.
+     */
+    public static ByteRange parse( String header, long contentLength )
+    {
+        if ( header == null || !header.startsWith( BYTES_UNIT ) )
+        {
+            return null;
+        }
+        String spec = header.substring( BYTES_UNIT.length() ).trim();
+        int dash = spec.indexOf( '-' );
+        if ( dash < 0 || spec.indexOf( ',' ) >= 0 )
+        {
+            return null;
+        }
+        String first = spec.substring( 0, dash ).trim();
+        String last = spec.substring( dash + 1 ).trim();
+        try
+        {
+            if ( first.isEmpty() )
+            {
+                // suffix range: the last bytes of the content
+                long suffix = Long.parseLong( last );
+                if ( suffix <= 0 || contentLength == 0 )
+                {
+                    return UNSATISFIABLE;
+                }
+                long start = Math.max( 0, contentLength - suffix );
+                return new ByteRange( start, contentLength - start );
+            }
+
+            long start = Long.parseLong( first );
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong( last );
+            if ( start < 0 || end < start )
+            {
+                return null;
+            }
+            if ( start >= contentLength )
+            {
+                return UNSATISFIABLE;
+            }
+            return new ByteRange( start, Math.min( end, contentLength - 1 ) - start + 1 );
+        }
+        catch ( NumberFormatException e )
+        {
+            return null;
+        }
+    }
+
+    public boolean isSatisfiable()
+    {
+        return length > 0;
+    }
+
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    public long getLength()
+    {
+        return length;
+    }
+
+    /**
+     * @return the value of the <code>Content-Range</code> header of the response
+     */
+    public String toContentRange( long contentLength )
+    {
+        return isSatisfiable()
+            ? "bytes " + offset + "-" + ( offset + length - 1 ) + "/" + contentLength
+            : "bytes */" + contentLength;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ByteRange{offset=" + offset + ", length=" + length + '}';
+    }
+}
@@ -64,7 +64,7 @@ public void write( OutputContext outputContext )
     {
         outputContext.setModificationTime( new Date().getTime() );
         outputContext.setContentType( "text/html" );
-        outputContext.setETag( "" ); // skygo ETag MRM-1127 seems to be fixed
+        // the listing is generated for each request, it has no entity tag
         if ( outputContext.hasStream() )
         {
             PrintWriter writer = new PrintWriter( outputContext.getOutputStream() );
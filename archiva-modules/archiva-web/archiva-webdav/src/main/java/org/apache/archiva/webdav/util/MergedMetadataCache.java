@@ -0,0 +1,239 @@
+package org.apache.archiva.webdav.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.metadata.model.facets.AuditEvent;
+import org.apache.archiva.repository.events.AuditListener;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MergedMetadataCache - remembers the <code>maven-metadata-&lt;group&gt;.xml</code> files merged for repository groups
+ * and their checksum files, so that the metadata of the group members is only read and merged again once one of them
+ * changed. An entry is only used as long as the member metadata files, the merged file and its checksum files keep
+ * their modification time and length. Deployments and proxied downloads of a metadata file drop the entries of its
+ * directory at once.
+ *
+ * @since 3.0
+ */
+@Service( "mergedMetadataCache#default" )
+public class MergedMetadataCache
+    implements AuditListener
+{
+    private static final String PROXIED_SUFFIX = " (proxied)";
+
+    private static final int LOCK_COUNT = 64;
+
+    private int maxEntries = Integer.getInteger( "archiva.webdav.mergedMetadataCacheSize", 5000 );
+
+    private final Map<String, Entry> entries;
+
+    private final Object[] locks = new Object[LOCK_COUNT];
+
+    public MergedMetadataCache()
+    {
+        this.entries = Collections.synchronizedMap( new LinkedHashMap<String, Entry>( 256, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest )
+            {
+                return size() > maxEntries;
+            }
+        } );
+        for ( int i = 0; i < LOCK_COUNT; i++ )
+        {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @param groupId     the repository group
+     * @param mergedFile  the merged metadata file of the group
+     * @param memberFiles the metadata files of the group members, in the order of the group
+     * @return <code>true</code> if the merged file and its checksum files are still current for the member files
+     */
+    public boolean isCurrent( String groupId, File mergedFile, List<File> memberFiles )
+    {
+        String key = key( groupId, mergedFile );
+        Entry entry = entries.get( key );
+        if ( entry == null )
+        {
+            return false;
+        }
+        if ( !entry.isCurrent( memberFiles ) )
+        {
+            entries.remove( key );
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records a merged metadata file, which must have been written together with its checksum files.
+     */
+    public void put( String groupId, File mergedFile, List<File> memberFiles, List<File> checksumFiles )
+    {
+        List<FileStamp> stamps = new ArrayList<>( memberFiles.size() + checksumFiles.size() + 1 );
+        for ( File memberFile : memberFiles )
+        {
+            stamps.add( new FileStamp( memberFile ) );
+        }
+        List<FileStamp> outputStamps = new ArrayList<>( checksumFiles.size() + 1 );
+        outputStamps.add( new FileStamp( mergedFile ) );
+        for ( File checksumFile : checksumFiles )
+        {
+            outputStamps.add( new FileStamp( checksumFile ) );
+        }
+        entries.put( key( groupId, mergedFile ), new Entry( stamps, outputStamps ) );
+    }
+
+    /**
+     * @return the lock to hold while checking and writing the merged metadata file, so that concurrent requests do
+     *         not write the same file at once
+     */
+    public Object getLock( String groupId, File mergedFile )
+    {
+        return locks[( key( groupId, mergedFile ).hashCode() & 0x7fffffff ) % LOCK_COUNT];
+    }
+
+    /**
+     * Drops the merged metadata files of all groups for the directory of a metadata file.
+     *
+     * @param resource the path of the metadata file in its repository
+     */
+    public void invalidate( String resource )
+    {
+        String directory = StringUtils.substringBeforeLast( StringUtils.removeStart( resource, "/" ), "/" );
+        if ( StringUtils.isEmpty( directory ) )
+        {
+            return;
+        }
+        String suffix = "/" + directory;
+        synchronized ( entries )
+        {
+            for ( Iterator<String> keys = entries.keySet().iterator(); keys.hasNext(); )
+            {
+                String key = keys.next();
+                if ( StringUtils.substringBeforeLast( key, "/" ).endsWith( suffix ) )
+                {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    @Override
+    public void auditEvent( AuditEvent event )
+    {
+        String resource = StringUtils.removeEnd( event.getResource(), PROXIED_SUFFIX );
+        if ( resource != null && StringUtils.substringAfterLast( "/" + resource, "/" ).startsWith(
+            "maven-metadata" ) )
+        {
+            invalidate( resource );
+        }
+    }
+
+    public void setMaxEntries( int maxEntries )
+    {
+        this.maxEntries = maxEntries;
+    }
+
+    private static String key( String groupId, File mergedFile )
+    {
+        return groupId + '|' + mergedFile.getAbsolutePath().replace( '\\', '/' );
+    }
+
+    private static class Entry
+    {
+        private final List<FileStamp> memberStamps;
+
+        private final List<FileStamp> outputStamps;
+
+        Entry( List<FileStamp> memberStamps, List<FileStamp> outputStamps )
+        {
+            this.memberStamps = memberStamps;
+            this.outputStamps = outputStamps;
+        }
+
+        boolean isCurrent( List<File> memberFiles )
+        {
+            // the group members or the members holding the metadata changed
+            if ( memberFiles.size() != memberStamps.size() )
+            {
+                return false;
+            }
+            for ( int i = 0; i < memberFiles.size(); i++ )
+            {
+                FileStamp stamp = memberStamps.get( i );
+                if ( !stamp.file.equals( memberFiles.get( i ) ) || !stamp.isCurrent() )
+                {
+                    return false;
+                }
+            }
+            for ( FileStamp stamp : outputStamps )
+            {
+                if ( !stamp.isCurrent() )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class FileStamp
+    {
+        private final File file;
+
+        private final long lastModified;
+
+        private final long length;
+
+        FileStamp( File file )
+        {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        boolean isCurrent()
+        {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+    }
+}
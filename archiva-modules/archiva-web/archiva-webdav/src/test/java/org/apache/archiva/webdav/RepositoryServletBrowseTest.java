@@ -63,6 +63,7 @@ public void testBrowse()
         WebRequest request = new GetMethodWebRequest( "http://machine.com/repository/internal/" );
         WebResponse response = getServletUnitClient().getResponse( request );
         assertEquals( "Response", HttpServletResponse.SC_OK, response.getStatusCode() );
+        assertNull( response.getResponseHeaderValue( "ETag" ) );
 
         // dumpResponse( response );
 
@@ -0,0 +1,143 @@
+package org.apache.archiva.webdav;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.configuration.ManagedRepositoryConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+
+/**
+ * RepositoryServletChecksumDeployTest - uploads are verified against the announced checksums before they replace
+ * the file in the repository.
+ */
+public class RepositoryServletChecksumDeployTest
+    extends AbstractRepositoryServletTestCase
+{
+    private static final String PATH = "path/to/artifact/1.0.0/artifact-1.0.0.jar";
+
+    private static final String CONTENT = "artifact.jar\n";
+
+    private static final String SHA1 = "99a8679a33a4e9f01e593a7551cb67a3061b0f73";
+
+    private static final String MD5 = "8879256180e1a093f2df23fc5475dae0";
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        ManagedRepositoryConfiguration managedRepo =
+            archivaConfiguration.getConfiguration().findManagedRepositoryById( REPOID_INTERNAL );
+        managedRepo.setBlockRedeployments( false );
+        saveConfiguration( archivaConfiguration );
+        startRepository();
+        setupCleanRepo( repoRootInternal );
+    }
+
+    private MockHttpServletResponse put( String path, String content, String... headers )
+        throws Exception
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI( "/repository/internal/" + path );
+        request.addHeader( "User-Agent", "Apache Archiva unit test" );
+        request.setMethod( "PUT" );
+        request.setContentType( "application/octet-stream" );
+        request.setContent( content.getBytes( "UTF-8" ) );
+        for ( int i = 0; i < headers.length; i += 2 )
+        {
+            request.addHeader( headers[i], headers[i + 1] );
+        }
+        return execute( request );
+    }
+
+    private void assertNoTemporaryFiles()
+    {
+        File dir = new File( repoRootInternal, PATH ).getParentFile();
+        String[] names = dir.list();
+        if ( names != null )
+        {
+            for ( String name : names )
+            {
+                assertFalse( "Temporary upload left over: " + name, name.endsWith( ".tmp" ) );
+            }
+        }
+    }
+
+    @Test
+    public void testPutWithMatchingChecksumHeaders()
+        throws Exception
+    {
+        MockHttpServletResponse response =
+            put( PATH, CONTENT, "X-Checksum-Sha1", SHA1, "X-Checksum-Md5", MD5.toUpperCase() );
+
+        assertEquals( HttpServletResponse.SC_CREATED, response.getStatus() );
+        assertFileContents( CONTENT, repoRootInternal, PATH );
+        assertNoTemporaryFiles();
+    }
+
+    @Test
+    public void testPutWithChecksumHeaderMismatch()
+        throws Exception
+    {
+        MockHttpServletResponse response = put( PATH, CONTENT, "X-Checksum-Sha1", SHA1.replace( '9', '8' ) );
+
+        assertEquals( HttpServletResponse.SC_BAD_REQUEST, response.getStatus() );
+        assertFalse( new File( repoRootInternal, PATH ).exists() );
+        assertNoTemporaryFiles();
+    }
+
+    @Test
+    public void testFailedRedeploymentKeepsExistingFile()
+        throws Exception
+    {
+        assertEquals( HttpServletResponse.SC_CREATED, put( PATH, CONTENT ).getStatus() );
+
+        MockHttpServletResponse response = put( PATH, "corrupted\n", "X-Checksum-Sha1", SHA1 );
+
+        assertEquals( HttpServletResponse.SC_BAD_REQUEST, response.getStatus() );
+        assertFileContents( CONTENT, repoRootInternal, PATH );
+        assertNoTemporaryFiles();
+    }
+
+    @Test
+    public void testPutChecksumFileVerifiedAgainstArtifact()
+        throws Exception
+    {
+        assertEquals( HttpServletResponse.SC_CREATED, put( PATH, CONTENT ).getStatus() );
+
+        MockHttpServletResponse response = put( PATH + ".sha1", SHA1.replace( '9', '8' ) );
+        assertEquals( HttpServletResponse.SC_BAD_REQUEST, response.getStatus() );
+        assertFalse( new File( repoRootInternal, PATH + ".sha1" ).exists() );
+
+        response = put( PATH + ".sha1", SHA1 + "  artifact-1.0.0.jar" );
+        assertEquals( HttpServletResponse.SC_CREATED, response.getStatus() );
+
+        response = put( PATH + ".md5", MD5 );
+        assertEquals( HttpServletResponse.SC_CREATED, response.getStatus() );
+        assertNoTemporaryFiles();
+    }
+}
@@ -0,0 +1,188 @@
+package org.apache.archiva.webdav;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.archiva.configuration.ProxyConnectorConfiguration;
+import org.apache.archiva.redback.users.UserManager;
+import org.apache.archiva.security.ServletAuthenticator;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/**
+ * RepositoryServletConditionalGetTest - validators and caching headers of repository files.
+ */
+public class RepositoryServletConditionalGetTest
+    extends AbstractRepositoryServletTestCase
+{
+    private static final String RELEASE_PATH = "org/apache/archiva/test/1.0/test-1.0.jar";
+
+    private static final String SNAPSHOT_PATH = "org/apache/archiva/test/1.1-SNAPSHOT/test-1.1-SNAPSHOT.jar";
+
+    private static final String SHA1 = "2bb14b388973351b0a4dfe11d171965f59cc61a1";
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        archivaConfiguration.getConfiguration().setProxyConnectors( new ArrayList<ProxyConnectorConfiguration>() );
+        startRepository();
+
+        File release = new File( repoRootInternal, RELEASE_PATH );
+        release.getParentFile().mkdirs();
+        FileUtils.writeStringToFile( release, "release content", Charset.defaultCharset() );
+        FileUtils.writeStringToFile( new File( release.getPath() + ".sha1" ), SHA1 + "  test-1.0.jar",
+                                     Charset.defaultCharset() );
+
+        File snapshot = new File( repoRootInternal, SNAPSHOT_PATH );
+        snapshot.getParentFile().mkdirs();
+        FileUtils.writeStringToFile( snapshot, "snapshot content", Charset.defaultCharset() );
+    }
+
+    private MockHttpServletResponse get( String path, String header, String value )
+        throws Exception
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI( "/repository/internal/" + path );
+        request.addHeader( "User-Agent", "Apache Archiva unit test" );
+        request.setMethod( "GET" );
+        if ( header != null )
+        {
+            request.addHeader( header, value );
+        }
+        return execute( request );
+    }
+
+    @Test
+    public void testReleaseHeaders()
+        throws Exception
+    {
+        MockHttpServletResponse response = get( RELEASE_PATH, null, null );
+
+        assertEquals( HttpServletResponse.SC_OK, response.getStatus() );
+        assertEquals( '"' + SHA1 + '"', response.getHeader( "ETag" ) );
+        assertNotNull( response.getHeader( "Last-Modified" ) );
+        assertTrue( response.getHeader( "Cache-Control" ).startsWith( "public, max-age=" ) );
+        assertEquals( "release content", response.getContentAsString() );
+    }
+
+    @Test
+    public void testPrivateReleaseHeaders()
+        throws Exception
+    {
+        ArchivaDavResourceFactory resourceFactory =
+            (ArchivaDavResourceFactory) unauthenticatedRepositoryServlet.getResourceFactory();
+        resourceFactory.setServletAuth( new MockServletAuthenticator()
+        {
+            @Override
+            public boolean isAuthorized( String principal, String repoId, String permission )
+            {
+                return !UserManager.GUEST_USERNAME.equals( principal );
+            }
+        } );
+        try
+        {
+            MockHttpServletResponse response = get( RELEASE_PATH, null, null );
+
+            assertEquals( HttpServletResponse.SC_OK, response.getStatus() );
+            assertTrue( response.getHeader( "Cache-Control" ).startsWith( "private, max-age=" ) );
+        }
+        finally
+        {
+            resourceFactory.setServletAuth( applicationContext.getBean( ServletAuthenticator.class ) );
+        }
+    }
+
+    @Test
+    public void testRedeployableReleaseHeaders()
+        throws Exception
+    {
+        archivaConfiguration.getConfiguration().findManagedRepositoryById( REPOID_INTERNAL ).setBlockRedeployments(
+            false );
+
+        MockHttpServletResponse response = get( RELEASE_PATH, null, null );
+
+        assertEquals( HttpServletResponse.SC_OK, response.getStatus() );
+        assertEquals( '"' + SHA1 + '"', response.getHeader( "ETag" ) );
+        assertEquals( "no-cache", response.getHeader( "Cache-Control" ) );
+    }
+
+    @Test
+    public void testSnapshotHeaders()
+        throws Exception
+    {
+        MockHttpServletResponse response = get( SNAPSHOT_PATH, null, null );
+
+        assertEquals( HttpServletResponse.SC_OK, response.getStatus() );
+        // no checksum file: weak tag from the file attributes
+        assertTrue( response.getHeader( "ETag" ).startsWith( "W/\"" ) );
+        assertNull( response.getHeader( "Cache-Control" ) );
+    }
+
+    @Test
+    public void testIfNoneMatch()
+        throws Exception
+    {
+        MockHttpServletResponse response = get( RELEASE_PATH, "If-None-Match", "\"other\", \"" + SHA1 + "\"" );
+
+        assertEquals( HttpServletResponse.SC_NOT_MODIFIED, response.getStatus() );
+        assertEquals( 0, response.getContentAsByteArray().length );
+
+        response = get( RELEASE_PATH, "If-None-Match", "\"other\"" );
+        assertEquals( HttpServletResponse.SC_OK, response.getStatus() );
+        assertEquals( "release content", response.getContentAsString() );
+    }
+
+    @Test
+    public void testIfNoneMatchWeakTag()
+        throws Exception
+    {
+        String etag = get( SNAPSHOT_PATH, null, null ).getHeader( "ETag" );
+
+        MockHttpServletResponse response = get( SNAPSHOT_PATH, "If-None-Match", etag );
+
+        assertEquals( HttpServletResponse.SC_NOT_MODIFIED, response.getStatus() );
+    }
+
+    @Test
+    public void testRangeWithEntityTag()
+        throws Exception
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI( "/repository/internal/" + RELEASE_PATH );
+        request.setMethod( "GET" );
+        request.addHeader( "Range", "bytes=8-" );
+        request.addHeader( "If-Range", '"' + SHA1 + '"' );
+        MockHttpServletResponse response = execute( request );
+
+        assertEquals( HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus() );
+        assertEquals( "content", response.getContentAsString() );
+    }
+}
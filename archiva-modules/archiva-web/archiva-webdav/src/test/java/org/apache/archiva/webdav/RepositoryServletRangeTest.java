@@ -0,0 +1,135 @@
+package org.apache.archiva.webdav;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.archiva.configuration.ProxyConnectorConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * RepositoryServletRangeTest - partial downloads of files with http range requests.
+ */
+public class RepositoryServletRangeTest
+    extends AbstractRepositoryServletTestCase
+{
+    private static final String PATH = "org/apache/archiva/test/1.0/test-1.0.zip";
+
+    private byte[] content;
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        archivaConfiguration.getConfiguration().setProxyConnectors( new ArrayList<ProxyConnectorConfiguration>() );
+        startRepository();
+
+        // larger than the spool buffer
+        content = new byte[200000];
+        for ( int i = 0; i < content.length; i++ )
+        {
+            content[i] = (byte) ( i % 251 );
+        }
+        File file = new File( repoRootInternal, PATH );
+        file.getParentFile().mkdirs();
+        FileUtils.writeByteArrayToFile( file, content );
+    }
+
+    private MockHttpServletResponse get( String range, String ifRange )
+        throws Exception
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI( "/repository/internal/" + PATH );
+        request.addHeader( "User-Agent", "Apache Archiva unit test" );
+        request.setMethod( "GET" );
+        if ( range != null )
+        {
+            request.addHeader( "Range", range );
+        }
+        if ( ifRange != null )
+        {
+            request.addHeader( "If-Range", ifRange );
+        }
+        return execute( request );
+    }
+
+    @Test
+    public void testGetWholeFile()
+        throws Exception
+    {
+        MockHttpServletResponse response = get( null, null );
+
+        assertEquals( HttpServletResponse.SC_OK, response.getStatus() );
+        assertEquals( "bytes", response.getHeader( "Accept-Ranges" ) );
+        assertTrue( Arrays.equals( content, response.getContentAsByteArray() ) );
+    }
+
+    @Test
+    public void testGetRange()
+        throws Exception
+    {
+        MockHttpServletResponse response = get( "bytes=70000-139999", null );
+
+        assertEquals( HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus() );
+        assertEquals( "bytes 70000-139999/200000", response.getHeader( "Content-Range" ) );
+        assertTrue( Arrays.equals( Arrays.copyOfRange( content, 70000, 140000 ), response.getContentAsByteArray() ) );
+    }
+
+    @Test
+    public void testGetSuffixRange()
+        throws Exception
+    {
+        MockHttpServletResponse response = get( "bytes=-100", null );
+
+        assertEquals( HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus() );
+        assertEquals( "bytes 199900-199999/200000", response.getHeader( "Content-Range" ) );
+        assertTrue( Arrays.equals( Arrays.copyOfRange( content, 199900, 200000 ), response.getContentAsByteArray() ) );
+    }
+
+    @Test
+    public void testGetUnsatisfiableRange()
+        throws Exception
+    {
+        MockHttpServletResponse response = get( "bytes=200000-", null );
+
+        assertEquals( HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus() );
+        assertEquals( "bytes */200000", response.getHeader( "Content-Range" ) );
+    }
+
+    @Test
+    public void testGetRangeOfChangedFile()
+        throws Exception
+    {
+        MockHttpServletResponse response = get( "bytes=0-99", "Thu, 01 Jan 1970 00:00:01 GMT" );
+
+        assertEquals( HttpServletResponse.SC_OK, response.getStatus() );
+        assertTrue( Arrays.equals( content, response.getContentAsByteArray() ) );
+    }
+}
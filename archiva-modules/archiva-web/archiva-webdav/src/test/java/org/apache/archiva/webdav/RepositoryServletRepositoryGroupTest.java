@@ -182,6 +182,34 @@ public void testGetFromLastManagedRepositoryReturnOk()
         assertThat( response.getContentAsString() ).isEqualTo( "last" );
     }
 
+    @Test
+    public void testGetFromFirstManagedRepositoryAfterLastServedIt()
+        throws Exception
+    {
+        String resourceName = "dummy/dummy-routed-resource/1.0/dummy-routed-resource-1.0.txt";
+
+        File dummyReleasesResourceFile = new File( repoRootLast, resourceName );
+        dummyReleasesResourceFile.getParentFile().mkdirs();
+        FileUtils.writeStringToFile( dummyReleasesResourceFile, "last", Charset.defaultCharset() );
+
+        WebRequest request = new GetMethodWebRequest(
+            "http://machine.com/repository/" + REPO_GROUP_WITH_VALID_REPOS + "/" + resourceName );
+        WebResponse response = getServletUnitClient().getResponse( request );
+
+        assertResponseOK( response );
+        assertThat( response.getContentAsString() ).isEqualTo( "last" );
+
+        // the order of the group still applies to the members holding the path
+        File dummyInternalResourceFile = new File( repoRootFirst, resourceName );
+        dummyInternalResourceFile.getParentFile().mkdirs();
+        FileUtils.writeStringToFile( dummyInternalResourceFile, "first", Charset.defaultCharset() );
+
+        response = getServletUnitClient().getResponse( request );
+
+        assertResponseOK( response );
+        assertThat( response.getContentAsString() ).isEqualTo( "first" );
+    }
+
     /*
     * Test Case 3.b
     */
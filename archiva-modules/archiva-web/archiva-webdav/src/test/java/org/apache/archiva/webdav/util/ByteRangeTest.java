@@ -0,0 +1,84 @@
+package org.apache.archiva.webdav.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class ByteRangeTest
+    extends TestCase
+{
+    @Test
+    public void testRange()
+    {
+        ByteRange range = ByteRange.parse( "bytes=10-19", 100 );
+        assertEquals( 10, range.getOffset() );
+        assertEquals( 10, range.getLength() );
+        assertEquals( "bytes 10-19/100", range.toContentRange( 100 ) );
+    }
+
+    @Test
+    public void testOpenRange()
+    {
+        ByteRange range = ByteRange.parse( "bytes=90-", 100 );
+        assertEquals( 90, range.getOffset() );
+        assertEquals( 10, range.getLength() );
+
+        // end after the content is limited to the content
+        range = ByteRange.parse( "bytes=90-500", 100 );
+        assertEquals( "bytes 90-99/100", range.toContentRange( 100 ) );
+    }
+
+    @Test
+    public void testSuffixRange()
+    {
+        ByteRange range = ByteRange.parse( "bytes=-30", 100 );
+        assertEquals( 70, range.getOffset() );
+        assertEquals( 30, range.getLength() );
+
+        range = ByteRange.parse( "bytes=-300", 100 );
+        assertEquals( 0, range.getOffset() );
+        assertEquals( 100, range.getLength() );
+    }
+
+    @Test
+    public void testUnsatisfiable()
+    {
+        assertFalse( ByteRange.parse( "bytes=100-", 100 ).isSatisfiable() );
+        assertFalse( ByteRange.parse( "bytes=-0", 100 ).isSatisfiable() );
+        assertFalse( ByteRange.parse( "bytes=-10", 0 ).isSatisfiable() );
+        assertEquals( "bytes */100", ByteRange.parse( "bytes=200-300", 100 ).toContentRange( 100 ) );
+    }
+
+    @Test
+    public void testIgnored()
+    {
+        assertNull( ByteRange.parse( null, 100 ) );
+        assertNull( ByteRange.parse( "items=1-2", 100 ) );
+        assertNull( ByteRange.parse( "bytes=1-2,5-6", 100 ) );
+        assertNull( ByteRange.parse( "bytes=5-2", 100 ) );
+        assertNull( ByteRange.parse( "bytes=a-b", 100 ) );
+    }
+}
@@ -0,0 +1,119 @@
+package org.apache.archiva.webdav.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.metadata.model.facets.AuditEvent;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class MergedMetadataCacheTest
+    extends TestCase
+{
+    private static final String PROJECT_PATH = "org/example/project";
+
+    private MergedMetadataCache cache;
+
+    private File mergedFile;
+
+    private File checksumFile;
+
+    private List<File> memberFiles;
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        File basedir = new File( "target/test-merged-metadata-cache" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( basedir );
+
+        memberFiles = Arrays.asList( write( new File( basedir, "first/" + PROJECT_PATH + "/maven-metadata.xml" ) ),
+                                     write( new File( basedir, "second/" + PROJECT_PATH + "/maven-metadata.xml" ) ) );
+        mergedFile = write( new File( basedir, "first/" + PROJECT_PATH + "/maven-metadata-group.xml" ) );
+        checksumFile = write( new File( basedir, "first/" + PROJECT_PATH + "/maven-metadata-group.xml.sha1" ) );
+
+        cache = new MergedMetadataCache();
+        cache.put( "group", mergedFile, memberFiles, Collections.singletonList( checksumFile ) );
+    }
+
+    @Test
+    public void testUnchangedMembersAreCurrent()
+    {
+        assertTrue( cache.isCurrent( "group", mergedFile, memberFiles ) );
+        assertFalse( cache.isCurrent( "other-group", mergedFile, memberFiles ) );
+    }
+
+    @Test
+    public void testChangedMemberIsNotCurrent()
+    {
+        File memberFile = memberFiles.get( 1 );
+        assertTrue( memberFile.setLastModified( memberFile.lastModified() - 60000 ) );
+
+        assertFalse( cache.isCurrent( "group", mergedFile, memberFiles ) );
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void testChangedMembershipIsNotCurrent()
+    {
+        assertFalse( cache.isCurrent( "group", mergedFile, memberFiles.subList( 0, 1 ) ) );
+    }
+
+    @Test
+    public void testRemovedChecksumIsNotCurrent()
+    {
+        assertTrue( checksumFile.delete() );
+
+        assertFalse( cache.isCurrent( "group", mergedFile, memberFiles ) );
+    }
+
+    @Test
+    public void testDeployedMetadataInvalidates()
+    {
+        cache.auditEvent( new AuditEvent( "second", "user", PROJECT_PATH + "/1.0/project-1.0.jar",
+                                          AuditEvent.UPLOAD_FILE ) );
+        assertEquals( 1, cache.size() );
+
+        cache.auditEvent( new AuditEvent( "second", "user", PROJECT_PATH + "/maven-metadata.xml (proxied)",
+                                          AuditEvent.MODIFY_FILE + " (proxied)" ) );
+        assertEquals( 0, cache.size() );
+    }
+
+    private static File write( File file )
+        throws Exception
+    {
+        FileUtils.writeStringToFile( file, file.getName(), Charset.defaultCharset() );
+        return file;
+    }
+}
@@ -19,6 +19,7 @@
 * under the License.
 */
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -188,6 +189,18 @@ public List<ArtifactMetadata> getArtifacts( String repositoryId )
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public ArtifactMetadataPage getArtifacts( String repositoryId, String continuationToken, int pageSize )
+        throws MetadataRepositoryException
+    {
+        // the continuation token is the offset of the page
+        List<ArtifactMetadata> artifacts = getArtifacts( repositoryId );
+        int offset = continuationToken == null ? 0 : Integer.parseInt( continuationToken );
+        int end = Math.min( artifacts.size(), offset + pageSize );
+        return new ArtifactMetadataPage( new ArrayList<>( artifacts.subList( Math.min( offset, end ), end ) ),
+                                         end < artifacts.size() ? Integer.toString( end ) : null );
+    }
+
     @Override
     public ProjectMetadata getProject( String repoId, String namespace, String projectId )
         throws MetadataResolutionException
@@ -189,6 +189,20 @@ void removeNamespace( String repositoryId, String namespace )
     List<ArtifactMetadata> getArtifacts( String repositoryId )
         throws MetadataRepositoryException;
 
+    /**
+     * Returns the artifacts of a repository one page at a time, so that callers walking a whole repository never hold
+     * all of its artifacts at once. Artifacts added or removed while walking the pages may be missed.
+     *
+     * @param repositoryId      the repository
+     * @param continuationToken the token of the previous page, <code>null</code> to get the first page
+     * @param pageSize          the maximum number of artifacts of the page
+     * @return the page, with the token to get the next one
+     * @throws MetadataRepositoryException
+     * @since 3.0
+     */
+    ArtifactMetadataPage getArtifacts( String repositoryId, String continuationToken, int pageSize )
+        throws MetadataRepositoryException;
+
     /**
      * basically just checking it exists not complete data returned
      *
@@ -54,6 +54,7 @@
 import org.apache.archiva.metadata.model.Scm;
 import org.apache.archiva.test.utils.ArchivaSpringJUnit4ClassRunner;
 import org.assertj.core.util.Sets;
+import org.junit.Assume;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
@@ -993,6 +994,46 @@ public void testGetArtifactsByRepoId()
         assertEquals( Collections.singletonList( artifact ), artifacts );
     }
 
+    @Test
+    public void testGetArtifactsByRepoIdPaged()
+        throws Exception
+    {
+        List<ArtifactMetadata> expected = new ArrayList<>();
+        for ( String project : new String[]{ TEST_PROJECT, "other-project" } )
+        {
+            for ( String version : new String[]{ TEST_PROJECT_VERSION, TEST_PROJECT_VERSION_2_0 } )
+            {
+                for ( String type : new String[]{ "jar", "pom" } )
+                {
+                    ArtifactMetadata artifact = createArtifact( project, version, type );
+                    repository.updateArtifact( TEST_REPO_ID, TEST_NAMESPACE, project, version, artifact );
+                    expected.add( artifact );
+                }
+            }
+        }
+        ArtifactMetadata otherArtifact = createArtifact();
+        otherArtifact.setRepositoryId( OTHER_REPO_ID );
+        repository.updateArtifact( OTHER_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION, otherArtifact );
+        repository.save();
+
+        List<ArtifactMetadata> artifacts = new ArrayList<>();
+        String continuationToken = null;
+        int pages = 0;
+        do
+        {
+            ArtifactMetadataPage page = repository.getArtifacts( TEST_REPO_ID, continuationToken, 3 );
+            assertThat( page.getArtifacts().size() ).isLessThanOrEqualTo( 3 );
+            artifacts.addAll( page.getArtifacts() );
+            continuationToken = page.getContinuationToken();
+            pages++;
+        }
+        while ( continuationToken != null && pages < 10 );
+
+        assertNull( continuationToken );
+        assertThat( artifacts ).hasSize( expected.size() ).containsAll( expected );
+        assertThat( pages ).isGreaterThanOrEqualTo( 3 );
+    }
+
     @Test
     public void testGetArtifactsByRepoIdMultipleCopies()
         throws Exception
@@ -1573,15 +1614,87 @@ public void testSearchArtifactsFullTextByFacet()
         assertThat( artifactsByProperty ).isNotNull().isNotEmpty();
     }
 
+    /**
+     * Compares storing artifacts like a repository scan does: saving after every artifact, updating its version and
+     * project each time, against saving batches of artifacts grouped by project version. It is a benchmark and only
+     * runs with <code>-Dmetadata.benchmark.versions=2000</code> (or another number of versions).
+     */
+    @Test
+    public void testBatchedArtifactUpdates()
+        throws Exception
+    {
+        Integer benchmarkVersions = Integer.getInteger( "metadata.benchmark.versions" );
+        Assume.assumeNotNull( benchmarkVersions );
+        int versions = benchmarkVersions;
+        String[] types = new String[]{ "jar", "pom", "sources.jar" };
+        int batchSize = 100;
+
+        long start = System.currentTimeMillis();
+        for ( int v = 0; v < versions; v++ )
+        {
+            for ( String type : types )
+            {
+                ArtifactMetadata artifact = createArtifact( "single", "1." + v, type );
+                repository.updateArtifact( TEST_REPO_ID, TEST_NAMESPACE, "single", artifact.getVersion(), artifact );
+                repository.updateProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, "single",
+                                                 createProjectVersion( artifact.getVersion() ) );
+                repository.updateProject( TEST_REPO_ID, createProject( TEST_NAMESPACE, "single" ) );
+                repository.save();
+            }
+        }
+        long single = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        int pending = 0;
+        for ( int v = 0; v < versions; v++ )
+        {
+            String version = "1." + v;
+            for ( String type : types )
+            {
+                ArtifactMetadata artifact = createArtifact( "batched", version, type );
+                repository.updateArtifact( TEST_REPO_ID, TEST_NAMESPACE, "batched", version, artifact );
+            }
+            repository.updateProjectVersion( TEST_REPO_ID, TEST_NAMESPACE, "batched",
+                                             createProjectVersion( version ) );
+            repository.updateProject( TEST_REPO_ID, createProject( TEST_NAMESPACE, "batched" ) );
+            pending += types.length;
+            if ( pending >= batchSize )
+            {
+                repository.save();
+                pending = 0;
+            }
+        }
+        repository.save();
+        long batched = System.currentTimeMillis() - start;
+
+        int artifacts = versions * types.length;
+        log.info( "Stored {} artifacts with {}: {} artifacts/s saving each, {} artifacts/s in batches of {}",
+                  artifacts, repository.getClass().getSimpleName(), artifacts * 1000L / Math.max( 1, single ),
+                  artifacts * 1000L / Math.max( 1, batched ), batchSize );
+
+        for ( String project : new String[]{ "single", "batched" } )
+        {
+            assertEquals( versions,
+                          repository.getProjectVersions( TEST_REPO_ID, TEST_NAMESPACE, project ).size() );
+            assertEquals( types.length,
+                          repository.getArtifacts( TEST_REPO_ID, TEST_NAMESPACE, project, "1.0" ).size() );
+        }
+    }
+
     private static ProjectMetadata createProject()
     {
         return createProject( TEST_NAMESPACE );
     }
 
     private static ProjectMetadata createProject( String ns )
+    {
+        return createProject( ns, TEST_PROJECT );
+    }
+
+    private static ProjectMetadata createProject( String ns, String id )
     {
         ProjectMetadata project = new ProjectMetadata();
-        project.setId( TEST_PROJECT );
+        project.setId( id );
         project.setNamespace( ns );
         return project;
     }
@@ -1675,6 +1788,23 @@ private static ArtifactMetadata createArtifact( String type )
         return artifact;
     }
 
+    private static ArtifactMetadata createArtifact( String project, String version, String type )
+    {
+        ArtifactMetadata artifact = createArtifact( type );
+        artifact.setId( project + "-" + version + "." + type );
+        artifact.setProject( project );
+        artifact.setVersion( version );
+        artifact.setProjectVersion( version );
+        return artifact;
+    }
+
+    private static ProjectVersionMetadata createProjectVersion( String version )
+    {
+        ProjectVersionMetadata metadata = new ProjectVersionMetadata();
+        metadata.setId( version );
+        return metadata;
+    }
+
     private static class ArtifactMetadataComparator
         implements Comparator<ArtifactMetadata>
     {
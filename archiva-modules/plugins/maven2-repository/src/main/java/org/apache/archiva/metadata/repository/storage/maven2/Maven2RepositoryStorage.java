@@ -31,6 +31,9 @@
 import org.apache.archiva.checksum.ChecksumAlgorithm;
 import org.apache.archiva.checksum.ChecksummedFile;
 import org.apache.archiva.common.utils.VersionUtil;
+import org.apache.archiva.configuration.ArchivaConfiguration;
+import org.apache.archiva.configuration.ConfigurationEvent;
+import org.apache.archiva.configuration.ConfigurationListener;
 import org.apache.archiva.maven2.metadata.MavenMetadataReader;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
 import org.apache.archiva.metadata.model.ProjectMetadata;
@@ -97,6 +100,8 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <p>
@@ -111,13 +116,29 @@
  */
 @Service( "repositoryStorage#maven2" )
 public class Maven2RepositoryStorage
-    implements RepositoryStorage
+    implements RepositoryStorage, ConfigurationListener
 {
 
     private static final Logger LOGGER = LoggerFactory.getLogger( Maven2RepositoryStorage.class );
 
     private ModelBuilder builder;
 
+    /**
+     * Raw parent and imported POMs and effective models, shared by all model builds.
+     */
+    private final RepositoryModelCache modelCache =
+        new RepositoryModelCache( Integer.getInteger( "archiva.maven2.modelCacheSize", 2000 ) );
+
+    /**
+     * Remote repositories and network proxies used to resolve the models of a managed repository, keyed by the
+     * managed repository ID and whether it is a browsing request. Cleared when the configuration changes.
+     */
+    private volatile ConcurrentMap<String, ResolverConfiguration> resolverConfigurations = new ConcurrentHashMap<>();
+
+    @Inject
+    @Named( "archivaConfiguration#default" )
+    private ArchivaConfiguration archivaConfiguration;
+
     @Inject
     private RemoteRepositoryAdmin remoteRepositoryAdmin;
 
@@ -153,12 +174,29 @@
 
     private static final MavenXpp3Reader MAVEN_XPP_3_READER = new MavenXpp3Reader();
 
+    private static final ChecksumAlgorithm[] ARTIFACT_CHECKSUMS =
+        new ChecksumAlgorithm[]{ ChecksumAlgorithm.MD5, ChecksumAlgorithm.SHA1 };
+
+    /**
+     * Whether the checksums of artifacts are always calculated, rather than taken from checksum files that are not
+     * older than the artifact.
+     */
+    private boolean verifyChecksumFiles = Boolean.getBoolean( "archiva.metadata.verifyChecksumFiles" );
+
 
     @PostConstruct
     public void initialize()
     {
         builder = new DefaultModelBuilderFactory().newInstance();
+        archivaConfiguration.addListener( this );
+    }
 
+    @Override
+    public void configurationEvent( ConfigurationEvent event )
+    {
+        // repositories, proxy connectors or network proxies may have changed, and with them the resolved parents
+        resolverConfigurations = new ConcurrentHashMap<>();
+        modelCache.clear();
     }
 
     @Override
@@ -239,107 +277,84 @@ public ProjectVersionMetadata readProjectVersionMetadata( ReadMetadataRequest re
                     "The artifact's POM file '" + file.getAbsolutePath() + "' was missing" );
             }
 
-            // TODO: this is a workaround until we can properly resolve using proxies as well - this doesn't cache
-            //       anything locally!
-            List<RemoteRepository> remoteRepositories = new ArrayList<>();
-            Map<String, NetworkProxy> networkProxies = new HashMap<>();
-
-            Map<String, List<ProxyConnector>> proxyConnectorsMap = proxyConnectorAdmin.getProxyConnectorAsMap();
-            List<ProxyConnector> proxyConnectors = proxyConnectorsMap.get( readMetadataRequest.getRepositoryId() );
-            if ( proxyConnectors != null )
+            boolean browsing = readMetadataRequest.isBrowsingRequest();
+            Model model = modelCache.getEffectiveModel( basedir, file, browsing );
+            if ( model == null )
             {
-                for ( ProxyConnector proxyConnector : proxyConnectors )
+                ResolverConfiguration resolverConfiguration =
+                    getResolverConfiguration( readMetadataRequest.getRepositoryId(), browsing );
+                RepositoryModelCache.RepositoryView modelCacheView =
+                    modelCache.forRepository( basedir, pathTranslator );
+
+                ModelBuildingRequest req =
+                    new DefaultModelBuildingRequest().setProcessPlugins( false ).setPomFile(
+                        file ).setTwoPhaseBuilding( false ).setValidationLevel(
+                        ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL );
+
+                //MRM-1607. olamy this will resolve jdk profiles on the current running archiva jvm
+                req.setSystemProperties( System.getProperties() );
+
+                // MRM-1411
+                req.setModelResolver(
+                    new RepositoryModelResolver( managedRepository, pathTranslator, wagonFactory,
+                                                 resolverConfiguration.remoteRepositories,
+                                                 resolverConfiguration.networkProxies, managedRepository ) );
+                req.setModelCache( modelCacheView );
+
+                try
+                {
+                    model = builder.build( req ).getEffectiveModel();
+                }
+                catch ( ModelBuildingException e )
                 {
-                    RemoteRepository remoteRepoConfig =
-                        remoteRepositoryAdmin.getRemoteRepository( proxyConnector.getTargetRepoId() );
+                    String msg = "The artifact's POM file '" + file + "' was invalid: " + e.getMessage();
 
-                    if ( remoteRepoConfig != null )
+                    List<ModelProblem> modelProblems = e.getProblems();
+                    for ( ModelProblem problem : modelProblems )
                     {
-                        remoteRepositories.add( remoteRepoConfig );
-
-                        NetworkProxy networkProxyConfig =
-                            networkProxyAdmin.getNetworkProxy( proxyConnector.getProxyId() );
-
-                        if ( networkProxyConfig != null )
+                        // MRM-1411, related to MRM-1335
+                        // this means that the problem was that the parent wasn't resolved!
+                        // olamy really hackhish but fail with java profile so use error message
+                        // || ( StringUtils.startsWith( problem.getMessage(), "Failed to determine Java version for profile" ) )
+                        // but setTwoPhaseBuilding(true) fix that
+                        if ( ( problem.getException() instanceof FileNotFoundException && e.getModelId() != null &&
+                            !e.getModelId().equals( problem.getModelId() ) ) )
                         {
-                            // key/value: remote repo ID/proxy info
-                            networkProxies.put( proxyConnector.getTargetRepoId(), networkProxyConfig );
+                            LOGGER.warn( "The artifact's parent POM file '{}' cannot be resolved. "
+                                             + "Using defaults for project version metadata..", file );
+
+                            ProjectVersionMetadata metadata = new ProjectVersionMetadata();
+                            metadata.setId( readMetadataRequest.getProjectVersion() );
+
+                            MavenProjectFacet facet = new MavenProjectFacet();
+                            facet.setGroupId( readMetadataRequest.getNamespace() );
+                            facet.setArtifactId( readMetadataRequest.getProjectId() );
+                            facet.setPackaging( "jar" );
+                            metadata.addFacet( facet );
+
+                            String errMsg =
+                                "Error in resolving artifact's parent POM file. " + ( problem.getException() == null
+                                    ? problem.getMessage()
+                                    : problem.getException().getMessage() );
+                            RepositoryProblemFacet repoProblemFacet = new RepositoryProblemFacet();
+                            repoProblemFacet.setRepositoryId( readMetadataRequest.getRepositoryId() );
+                            repoProblemFacet.setId( readMetadataRequest.getRepositoryId() );
+                            repoProblemFacet.setMessage( errMsg );
+                            repoProblemFacet.setProblem( errMsg );
+                            repoProblemFacet.setProject( readMetadataRequest.getProjectId() );
+                            repoProblemFacet.setVersion( readMetadataRequest.getProjectVersion() );
+                            repoProblemFacet.setNamespace( readMetadataRequest.getNamespace() );
+
+                            metadata.addFacet( repoProblemFacet );
+
+                            return metadata;
                         }
                     }
-                }
-            }
-
-            // That's a browsing request so we can a mix of SNAPSHOT and release artifacts (especially with snapshots which
-            // can have released parent pom
-            if ( readMetadataRequest.isBrowsingRequest() )
-            {
-                remoteRepositories.addAll( remoteRepositoryAdmin.getRemoteRepositories() );
-            }
-
-            ModelBuildingRequest req =
-                new DefaultModelBuildingRequest().setProcessPlugins( false ).setPomFile( file ).setTwoPhaseBuilding(
-                    false ).setValidationLevel( ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL );
-
-            //MRM-1607. olamy this will resolve jdk profiles on the current running archiva jvm
-            req.setSystemProperties( System.getProperties() );
-
-            // MRM-1411
-            req.setModelResolver(
-                new RepositoryModelResolver( managedRepository, pathTranslator, wagonFactory, remoteRepositories,
-                                             networkProxies, managedRepository ) );
 
-            Model model;
-            try
-            {
-                model = builder.build( req ).getEffectiveModel();
-            }
-            catch ( ModelBuildingException e )
-            {
-                String msg = "The artifact's POM file '" + file + "' was invalid: " + e.getMessage();
-
-                List<ModelProblem> modelProblems = e.getProblems();
-                for ( ModelProblem problem : modelProblems )
-                {
-                    // MRM-1411, related to MRM-1335
-                    // this means that the problem was that the parent wasn't resolved!
-                    // olamy really hackhish but fail with java profile so use error message
-                    // || ( StringUtils.startsWith( problem.getMessage(), "Failed to determine Java version for profile" ) )
-                    // but setTwoPhaseBuilding(true) fix that
-                    if ( ( problem.getException() instanceof FileNotFoundException && e.getModelId() != null &&
-                        !e.getModelId().equals( problem.getModelId() ) ) )
-                    {
-                        LOGGER.warn( "The artifact's parent POM file '{}' cannot be resolved. "
-                                         + "Using defaults for project version metadata..", file );
-
-                        ProjectVersionMetadata metadata = new ProjectVersionMetadata();
-                        metadata.setId( readMetadataRequest.getProjectVersion() );
-
-                        MavenProjectFacet facet = new MavenProjectFacet();
-                        facet.setGroupId( readMetadataRequest.getNamespace() );
-                        facet.setArtifactId( readMetadataRequest.getProjectId() );
-                        facet.setPackaging( "jar" );
-                        metadata.addFacet( facet );
-
-                        String errMsg =
-                            "Error in resolving artifact's parent POM file. " + ( problem.getException() == null
-                                ? problem.getMessage()
-                                : problem.getException().getMessage() );
-                        RepositoryProblemFacet repoProblemFacet = new RepositoryProblemFacet();
-                        repoProblemFacet.setRepositoryId( readMetadataRequest.getRepositoryId() );
-                        repoProblemFacet.setId( readMetadataRequest.getRepositoryId() );
-                        repoProblemFacet.setMessage( errMsg );
-                        repoProblemFacet.setProblem( errMsg );
-                        repoProblemFacet.setProject( readMetadataRequest.getProjectId() );
-                        repoProblemFacet.setVersion( readMetadataRequest.getProjectVersion() );
-                        repoProblemFacet.setNamespace( readMetadataRequest.getNamespace() );
-
-                        metadata.addFacet( repoProblemFacet );
-
-                        return metadata;
-                    }
+                    throw new RepositoryStorageMetadataInvalidException( "invalid-pom", msg, e );
                 }
 
-                throw new RepositoryStorageMetadataInvalidException( "invalid-pom", msg, e );
+                modelCache.putEffectiveModel( modelCacheView, file, browsing, model );
             }
 
             // Check if the POM is in the correct location
@@ -406,6 +421,69 @@ public void setWagonFactory( WagonFactory wagonFactory )
         this.wagonFactory = wagonFactory;
     }
 
+    public void setVerifyChecksumFiles( boolean verifyChecksumFiles )
+    {
+        this.verifyChecksumFiles = verifyChecksumFiles;
+    }
+
+    /**
+     * Collects the remote repositories and network proxies to resolve the parents of the POMs of a managed
+     * repository. These only change with the configuration, so they are looked up once per repository.
+     */
+    private ResolverConfiguration getResolverConfiguration( String repositoryId, boolean browsing )
+        throws RepositoryAdminException
+    {
+        // a configuration change replaces the map, so a configuration looked up meanwhile is not cached
+        ConcurrentMap<String, ResolverConfiguration> configurations = resolverConfigurations;
+        String key = repositoryId + ( browsing ? "|browse" : "" );
+        ResolverConfiguration resolverConfiguration = configurations.get( key );
+        if ( resolverConfiguration != null )
+        {
+            return resolverConfiguration;
+        }
+
+        // TODO: this is a workaround until we can properly resolve using proxies as well - this doesn't cache
+        //       anything locally!
+        List<RemoteRepository> remoteRepositories = new ArrayList<>();
+        Map<String, NetworkProxy> networkProxies = new HashMap<>();
+
+        Map<String, List<ProxyConnector>> proxyConnectorsMap = proxyConnectorAdmin.getProxyConnectorAsMap();
+        List<ProxyConnector> proxyConnectors = proxyConnectorsMap.get( repositoryId );
+        if ( proxyConnectors != null )
+        {
+            for ( ProxyConnector proxyConnector : proxyConnectors )
+            {
+                RemoteRepository remoteRepoConfig =
+                    remoteRepositoryAdmin.getRemoteRepository( proxyConnector.getTargetRepoId() );
+
+                if ( remoteRepoConfig != null )
+                {
+                    remoteRepositories.add( remoteRepoConfig );
+
+                    NetworkProxy networkProxyConfig = networkProxyAdmin.getNetworkProxy( proxyConnector.getProxyId() );
+
+                    if ( networkProxyConfig != null )
+                    {
+                        // key/value: remote repo ID/proxy info
+                        networkProxies.put( proxyConnector.getTargetRepoId(), networkProxyConfig );
+                    }
+                }
+            }
+        }
+
+        // That's a browsing request so we can a mix of SNAPSHOT and release artifacts (especially with snapshots which
+        // can have released parent pom
+        if ( browsing )
+        {
+            remoteRepositories.addAll( remoteRepositoryAdmin.getRemoteRepositories() );
+        }
+
+        resolverConfiguration = new ResolverConfiguration( Collections.unmodifiableList( remoteRepositories ),
+                                                           Collections.unmodifiableMap( networkProxies ) );
+        configurations.put( key, resolverConfiguration );
+        return resolverConfiguration;
+    }
+
     private List<org.apache.archiva.metadata.model.Dependency> convertDependencies( List<Dependency> dependencies )
     {
         List<org.apache.archiva.metadata.model.Dependency> l = new ArrayList<>();
@@ -878,28 +956,23 @@ private static String removePrefix( final String href )
         return joinedString;
     }
 
-    private static void populateArtifactMetadataFromFile( ArtifactMetadata metadata, File file )
+    private void populateArtifactMetadataFromFile( ArtifactMetadata metadata, File file )
     {
         metadata.setWhenGathered( new Date() );
         metadata.setFileLastModified( file.lastModified() );
+        metadata.setSize( file.length() );
         ChecksummedFile checksummedFile = new ChecksummedFile( file );
         try
         {
-            metadata.setMd5( checksummedFile.calculateChecksum( ChecksumAlgorithm.MD5 ) );
-        }
-        catch ( IOException e )
-        {
-            LOGGER.error( "Unable to checksum file {}: {},MD5", file, e.getMessage() );
-        }
-        try
-        {
-            metadata.setSha1( checksummedFile.calculateChecksum( ChecksumAlgorithm.SHA1 ) );
+            Map<ChecksumAlgorithm, String> checksums =
+                checksummedFile.getChecksums( ARTIFACT_CHECKSUMS, !verifyChecksumFiles );
+            metadata.setMd5( checksums.get( ChecksumAlgorithm.MD5 ) );
+            metadata.setSha1( checksums.get( ChecksumAlgorithm.SHA1 ) );
         }
         catch ( IOException e )
         {
-            LOGGER.error( "Unable to checksum file {}: {},SHA1", file, e.getMessage() );
+            LOGGER.error( "Unable to checksum file {}: {}", file, e.getMessage() );
         }
-        metadata.setSize( file.length() );
     }
 
     private boolean isProject( File dir, Filter<String> filter )
@@ -1106,4 +1179,17 @@ public void setPathParser( PathParser pathParser )
     {
         this.pathParser = pathParser;
     }
+
+    private static class ResolverConfiguration
+    {
+        private final List<RemoteRepository> remoteRepositories;
+
+        private final Map<String, NetworkProxy> networkProxies;
+
+        ResolverConfiguration( List<RemoteRepository> remoteRepositories, Map<String, NetworkProxy> networkProxies )
+        {
+            this.remoteRepositories = remoteRepositories;
+            this.networkProxies = networkProxies;
+        }
+    }
 }
@@ -0,0 +1,250 @@
+package org.apache.archiva.metadata.repository.storage.maven2;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.common.utils.VersionUtil;
+import org.apache.archiva.metadata.repository.storage.RepositoryPathTranslator;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.building.ModelCache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RepositoryModelCache - keeps the raw models of parent and imported POMs and the effective models of project
+ * versions, so that POMs shared by many projects, like corporate parents or BOMs, are not parsed and interpolated
+ * again for every child. Models are cached per managed repository and an entry is only used as long as the POM files
+ * it was built from keep their modification time and length.
+ */
+public class RepositoryModelCache
+{
+    private final int maxEntries;
+
+    private final Map<String, CacheEntry> entries;
+
+    public RepositoryModelCache( final int maxEntries )
+    {
+        this.maxEntries = maxEntries;
+        this.entries = Collections.synchronizedMap( new LinkedHashMap<String, CacheEntry>( 256, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, CacheEntry> eldest )
+            {
+                return size() > RepositoryModelCache.this.maxEntries;
+            }
+        } );
+    }
+
+    /**
+     * Creates the model cache to use for building one model of the repository. It shares the cached parent and
+     * imported POMs with all other builds of the repository and remembers the ones used by this build.
+     *
+     * @param basedir        the directory of the managed repository
+     * @param pathTranslator the translator to locate the POM files in the repository
+     * @return the model cache to set on the model building request
+     */
+    public RepositoryView forRepository( File basedir, RepositoryPathTranslator pathTranslator )
+    {
+        return new RepositoryView( basedir, pathTranslator );
+    }
+
+    /**
+     * @return the effective model built from the POM file, or <code>null</code> if it is not cached or one of the
+     *         POM files it was built from changed since. The model is shared and must not be modified.
+     */
+    public Model getEffectiveModel( File basedir, File pomFile, boolean browsing )
+    {
+        Object data = get( effectiveKey( basedir, pomFile, browsing ) );
+        return data instanceof Model ? (Model) data : null;
+    }
+
+    /**
+     * Caches the effective model of a POM file.
+     *
+     * @param view  the view the model was built with, to know the parent and imported POMs it depends on
+     * @param model the effective model, which must not be modified anymore
+     */
+    public void putEffectiveModel( RepositoryView view, File pomFile, boolean browsing, Model model )
+    {
+        List<FileStamp> stamps = new ArrayList<>();
+        stamps.add( new FileStamp( pomFile ) );
+        for ( String[] coordinates : view.getUsedModels() )
+        {
+            stamps.addAll( view.stamp( coordinates[0], coordinates[1], coordinates[2] ) );
+        }
+        entries.put( effectiveKey( view.basedir, pomFile, browsing ), new CacheEntry( model, stamps ) );
+    }
+
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    private Object get( String key )
+    {
+        CacheEntry entry = entries.get( key );
+        if ( entry == null )
+        {
+            return null;
+        }
+        if ( !entry.isCurrent() )
+        {
+            entries.remove( key );
+            return null;
+        }
+        return entry.data;
+    }
+
+    private static String effectiveKey( File basedir, File pomFile, boolean browsing )
+    {
+        return basedir.getAbsolutePath() + ( browsing ? "|effective-browse|" : "|effective|" )
+            + pomFile.getAbsolutePath();
+    }
+
+    /**
+     * The model cache handed to the Maven model builder for the models of one repository.
+     */
+    public class RepositoryView
+        implements ModelCache
+    {
+        private final File basedir;
+
+        private final RepositoryPathTranslator pathTranslator;
+
+        private final Set<String> used = Collections.synchronizedSet( new LinkedHashSet<String>() );
+
+        RepositoryView( File basedir, RepositoryPathTranslator pathTranslator )
+        {
+            this.basedir = basedir;
+            this.pathTranslator = pathTranslator;
+        }
+
+        @Override
+        public void put( String groupId, String artifactId, String version, String tag, Object data )
+        {
+            used.add( groupId + ':' + artifactId + ':' + version );
+            entries.put( key( groupId, artifactId, version, tag ),
+                         new CacheEntry( data, stamp( groupId, artifactId, version ) ) );
+        }
+
+        @Override
+        public Object get( String groupId, String artifactId, String version, String tag )
+        {
+            Object data = RepositoryModelCache.this.get( key( groupId, artifactId, version, tag ) );
+            if ( data != null )
+            {
+                used.add( groupId + ':' + artifactId + ':' + version );
+            }
+            return data;
+        }
+
+        List<String[]> getUsedModels()
+        {
+            List<String[]> models = new ArrayList<>();
+            synchronized ( used )
+            {
+                for ( String id : used )
+                {
+                    models.add( id.split( ":", 3 ) );
+                }
+            }
+            return models;
+        }
+
+        /**
+         * Stamps the POM file a parent or imported model is resolved from. Snapshots can be resolved to the latest
+         * timestamped POM, so the version directory is stamped as well to notice new deployments.
+         */
+        List<FileStamp> stamp( String groupId, String artifactId, String version )
+        {
+            File pomFile =
+                pathTranslator.toFile( basedir, groupId, artifactId, version, artifactId + "-" + version + ".pom" );
+            List<FileStamp> stamps = new ArrayList<>( 2 );
+            stamps.add( new FileStamp( pomFile ) );
+            if ( VersionUtil.isSnapshot( version ) )
+            {
+                stamps.add( new FileStamp( pomFile.getParentFile() ) );
+            }
+            return stamps;
+        }
+
+        private String key( String groupId, String artifactId, String version, String tag )
+        {
+            return basedir.getAbsolutePath() + '|' + tag + '|' + groupId + ':' + artifactId + ':' + version;
+        }
+    }
+
+    private static class CacheEntry
+    {
+        private final Object data;
+
+        private final List<FileStamp> stamps;
+
+        CacheEntry( Object data, List<FileStamp> stamps )
+        {
+            this.data = data;
+            this.stamps = stamps;
+        }
+
+        boolean isCurrent()
+        {
+            for ( FileStamp stamp : stamps )
+            {
+                if ( !stamp.isCurrent() )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class FileStamp
+    {
+        private final File file;
+
+        private final long lastModified;
+
+        private final long length;
+
+        FileStamp( File file )
+        {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.length = file.isDirectory() ? 0 : file.length();
+        }
+
+        boolean isCurrent()
+        {
+            return file.lastModified() == lastModified && ( file.isDirectory() ? 0 : file.length() ) == length;
+        }
+    }
+}
@@ -4,6 +4,9 @@
 import org.apache.archiva.redback.components.registry.RegistryListener;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /*
  * Licensed to the Apache Software Foundation (ASF) under one
  * or more contributor license agreements.  See the NOTICE file
@@ -29,6 +32,8 @@
 {
     private Configuration configuration;
 
+    private final List<ConfigurationListener> listeners = new CopyOnWriteArrayList<>();
+
     @Override
     public Configuration getConfiguration()
     {
@@ -40,6 +45,10 @@ public void save( Configuration configuration )
         throws RegistryException, IndeterminateConfigurationException
     {
         this.configuration = configuration;
+        for ( ConfigurationListener listener : listeners )
+        {
+            listener.configurationEvent( new ConfigurationEvent( ConfigurationEvent.SAVED ) );
+        }
     }
 
     @Override
@@ -51,13 +60,13 @@ public boolean isDefaulted()
     @Override
     public void addListener( ConfigurationListener listener )
     {
-        // no op
+        listeners.add( listener );
     }
 
     @Override
     public void removeListener( ConfigurationListener listener )
     {
-        // no op
+        listeners.remove( listener );
     }
 
     @Override
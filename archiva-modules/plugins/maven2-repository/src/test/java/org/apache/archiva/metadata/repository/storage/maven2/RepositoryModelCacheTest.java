@@ -0,0 +1,212 @@
+package org.apache.archiva.metadata.repository.storage.maven2;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.metadata.repository.storage.RepositoryPathTranslator;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Repository;
+import org.apache.maven.model.building.DefaultModelBuilderFactory;
+import org.apache.maven.model.building.DefaultModelBuildingRequest;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.model.building.ModelSource;
+import org.apache.maven.model.resolution.ModelResolver;
+import org.apache.maven.model.resolution.UnresolvableModelException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RepositoryModelCacheTest
+ */
+public class RepositoryModelCacheTest
+    extends TestCase
+{
+    private File basedir;
+
+    private RepositoryPathTranslator pathTranslator;
+
+    private RepositoryModelCache cache;
+
+    private ModelBuilder builder;
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        basedir = new File( "target/test-model-cache-repository" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( basedir );
+        pathTranslator =
+            new Maven2RepositoryPathTranslator( Collections.<ArtifactMappingProvider>emptyList() );
+        cache = new RepositoryModelCache( 100 );
+        builder = new DefaultModelBuilderFactory().newInstance();
+
+        writePom( "parent", "<packaging>pom</packaging><description>parent description</description>", null );
+        writePom( "child-a", "", "parent" );
+        writePom( "child-b", "", "parent" );
+    }
+
+    @Test
+    public void testParentIsResolvedOnce()
+        throws Exception
+    {
+        AtomicInteger resolved = new AtomicInteger();
+
+        Model a = build( "child-a", resolved );
+        Model b = build( "child-b", resolved );
+
+        assertEquals( "parent description", a.getDescription() );
+        assertEquals( "parent description", b.getDescription() );
+        assertEquals( 1, resolved.get() );
+    }
+
+    @Test
+    public void testEffectiveModelIsCached()
+        throws Exception
+    {
+        build( "child-a", new AtomicInteger() );
+
+        Model model = cache.getEffectiveModel( basedir, pom( "child-a" ), false );
+        assertNotNull( model );
+        assertEquals( "child-a", model.getArtifactId() );
+        // browsing requests resolve with other remote repositories
+        assertNull( cache.getEffectiveModel( basedir, pom( "child-a" ), true ) );
+    }
+
+    @Test
+    public void testChangedPomIsBuiltAgain()
+        throws Exception
+    {
+        build( "child-a", new AtomicInteger() );
+
+        File childPom = pom( "child-a" );
+        assertTrue( childPom.setLastModified( childPom.lastModified() - 60000 ) );
+
+        assertNull( cache.getEffectiveModel( basedir, childPom, false ) );
+    }
+
+    @Test
+    public void testChangedParentIsResolvedAgain()
+        throws Exception
+    {
+        AtomicInteger resolved = new AtomicInteger();
+        build( "child-a", resolved );
+
+        writePom( "parent", "<packaging>pom</packaging><description>changed description</description>", null );
+        File parentPom = pom( "parent" );
+        assertTrue( parentPom.setLastModified( parentPom.lastModified() - 60000 ) );
+
+        assertNull( cache.getEffectiveModel( basedir, pom( "child-a" ), false ) );
+
+        Model b = build( "child-b", resolved );
+        assertEquals( "changed description", b.getDescription() );
+        assertEquals( 2, resolved.get() );
+    }
+
+    @Test
+    public void testClear()
+        throws Exception
+    {
+        build( "child-a", new AtomicInteger() );
+        assertTrue( cache.size() > 0 );
+
+        cache.clear();
+
+        assertEquals( 0, cache.size() );
+        assertNull( cache.getEffectiveModel( basedir, pom( "child-a" ), false ) );
+    }
+
+    private Model build( String artifactId, final AtomicInteger resolved )
+        throws Exception
+    {
+        File pomFile = pom( artifactId );
+        RepositoryModelCache.RepositoryView view = cache.forRepository( basedir, pathTranslator );
+
+        ModelBuildingRequest req =
+            new DefaultModelBuildingRequest().setProcessPlugins( false ).setPomFile( pomFile ).setTwoPhaseBuilding(
+                false ).setValidationLevel( ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL );
+        req.setModelResolver( new CountingModelResolver( resolved ) );
+        req.setModelCache( view );
+
+        Model model = builder.build( req ).getEffectiveModel();
+        cache.putEffectiveModel( view, pomFile, false, model );
+        return model;
+    }
+
+    private File pom( String artifactId )
+    {
+        return pathTranslator.toFile( basedir, "org.example", artifactId, "1.0", artifactId + "-1.0.pom" );
+    }
+
+    private void writePom( String artifactId, String content, String parent )
+        throws IOException
+    {
+        StringBuilder pom = new StringBuilder( "<project><modelVersion>4.0.0</modelVersion>" );
+        if ( parent != null )
+        {
+            pom.append( "<parent><groupId>org.example</groupId><artifactId>" ).append( parent ).append(
+                "</artifactId><version>1.0</version></parent>" );
+        }
+        pom.append( "<groupId>org.example</groupId><artifactId>" ).append( artifactId ).append(
+            "</artifactId><version>1.0</version>" ).append( content ).append( "</project>" );
+        FileUtils.writeStringToFile( pom( artifactId ), pom.toString() );
+    }
+
+    private class CountingModelResolver
+        implements ModelResolver
+    {
+        private final AtomicInteger resolved;
+
+        CountingModelResolver( AtomicInteger resolved )
+        {
+            this.resolved = resolved;
+        }
+
+        @Override
+        public ModelSource resolveModel( String groupId, String artifactId, String version )
+            throws UnresolvableModelException
+        {
+            resolved.incrementAndGet();
+            return new FileModelSource(
+                pathTranslator.toFile( basedir, groupId, artifactId, version, artifactId + "-" + version + ".pom" ) );
+        }
+
+        @Override
+        public void addRepository( Repository repository )
+        {
+            // ignore
+        }
+
+        @Override
+        public ModelResolver newCopy()
+        {
+            return this;
+        }
+    }
+}
@@ -54,6 +54,7 @@
 import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.model.ProjectVersionReference;
 import org.apache.archiva.metadata.model.Scm;
+import org.apache.archiva.metadata.repository.ArtifactMetadataPage;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
 import org.apache.archiva.metadata.repository.MetadataResolutionException;
@@ -2030,6 +2031,43 @@ public List<ArtifactMetadata> getArtifacts( final String repositoryId )
     }
 
 
+    @Override
+    public ArtifactMetadataPage getArtifacts( final String repositoryId, final String continuationToken,
+                                              final int pageSize )
+        throws MetadataRepositoryException
+    {
+        // the continuation token is the key of the last row of the page, the next range starts with it
+        RangeSlicesQuery<String, String, String> query = HFactory //
+            .createRangeSlicesQuery( keyspace, ss, ss, ss ) //
+            .setColumnFamily( cassandraArchivaManager.getArtifactMetadataFamilyName() ) //
+            .setColumnNames( ArtifactMetadataModel.COLUMNS ) //
+            .setKeys( continuationToken == null ? "" : continuationToken, "" ) //
+            .setRowCount( continuationToken == null ? pageSize + 1 : pageSize + 2 );
+
+        query = query.addEqualsExpression( REPOSITORY_NAME.toString(), repositoryId );
+
+        QueryResult<OrderedRows<String, String, String>> result = query.execute();
+
+        List<ArtifactMetadata> artifactMetadatas = new ArrayList<>( pageSize );
+        String lastKey = null;
+
+        for ( Row<String, String, String> row : result.get() )
+        {
+            if ( row.getKey().equals( continuationToken ) )
+            {
+                continue;
+            }
+            if ( artifactMetadatas.size() == pageSize )
+            {
+                return new ArtifactMetadataPage( artifactMetadatas, lastKey );
+            }
+            artifactMetadatas.add( mapArtifactMetadataStringColumnSlice( row.getColumnSlice() ) );
+            lastKey = row.getKey();
+        }
+
+        return new ArtifactMetadataPage( artifactMetadatas, null );
+    }
+
     @Override
     public Collection<ProjectVersionReference> getProjectReferences( String repoId, String namespace, String projectId,
                                                                      String projectVersion )
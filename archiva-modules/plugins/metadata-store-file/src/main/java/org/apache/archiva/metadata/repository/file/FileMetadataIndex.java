@@ -0,0 +1,946 @@
+package org.apache.archiva.metadata.repository.file;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Secondary index of the file metadata repository of one managed repository. It maps the checksums, gathering dates,
+ * properties and words of the project versions and of their artifacts to the project versions holding them, so that
+ * queries only read the metadata of the matching project versions instead of walking the whole repository.
+ * <p>
+ * The indexed properties of each project version are kept in memory and persisted in an append-only log, which is
+ * written again in path order once most of its records are outdated. An update only appends the properties which
+ * changed, e.g. those of the one artifact just added to the project version. The records appended to the log by
+ * another index of the same repository are read from the end of the last record read, a last line without line feed
+ * being a record still written. Updates, appends and compactions of the log lock a file next to it, so indexes of
+ * other processes wait for them. The index is built again from the content of the repository when the log is missing
+ * or can't be read. Project versions are identified by their path <code>namespace/project/version</code> below the
+ * content directory.
+ * <p>
+ * The whole index is held in memory: the checksums and gathering date of every artifact with their terms take about
+ * 1.5 KB per artifact, e.g. 1.5 GB for a million artifacts, plus the descriptive properties of the project versions
+ * and the properties of the facets.
+ *
+ * @since 3.0
+ */
+class FileMetadataIndex
+{
+    private static final String HEADER = "#archiva-metadata-index 1";
+
+    private static final String UPDATE = "U";
+
+    private static final String PATCH = "P";
+
+    private static final String SET = "+";
+
+    private static final String UNSET = "-";
+
+    private static final String DELETE = "D";
+
+    private static final String CLEAR = "C";
+
+    private static final String CHECKSUM = "c\t";
+
+    private static final String PROPERTY = "p\t";
+
+    private static final String ARTIFACT_PROPERTY = "a\t";
+
+    private static final String VALUE = "v\t";
+
+    private static final String TOKEN = "t\t";
+
+    private static final String ARTIFACT_PREFIX = "artifact:";
+
+    private static final String ARTIFACT_FACET_PREFIX = "artifact:facet:";
+
+    /**
+     * locks of the logs within this process, which can't lock the same file twice
+     */
+    private static final ConcurrentMap<String, ReentrantLock> LOG_LOCKS = new ConcurrentHashMap<>();
+
+    private Logger log = LoggerFactory.getLogger( FileMetadataIndex.class );
+
+    private final File logFile;
+
+    private final File lockFile;
+
+    private final File contentDirectory;
+
+    private final String propertiesFileName;
+
+    /**
+     * indexed properties by project version
+     */
+    private final Map<String, Map<String, String>> entries = new HashMap<>();
+
+    /**
+     * project versions by term
+     */
+    private final Map<String, Set<String>> terms = new HashMap<>();
+
+    /**
+     * project versions by gathering date of their artifacts
+     */
+    private final TreeMap<Long, Set<String>> whenGathered = new TreeMap<>();
+
+    private int records;
+
+    private long logLength = -1;
+
+    /**
+     * identity of the log file read, which changes when another index compacts it
+     */
+    private Object logFileKey;
+
+    FileMetadataIndex( File logFile, File contentDirectory, String propertiesFileName )
+    {
+        this.logFile = logFile;
+        this.lockFile = new File( logFile.getParentFile(), logFile.getName() + ".lock" );
+        this.contentDirectory = contentDirectory;
+        this.propertiesFileName = propertiesFileName;
+    }
+
+    /**
+     * Indexes the properties of a project version, as they were just written.
+     */
+    public synchronized void update( String versionPath, Properties properties )
+        throws IOException
+    {
+        try (LogLock lock = lockLog())
+        {
+            load();
+            Map<String, String> entry = getIndexedProperties( properties );
+            Map<String, String> previous = entries.get( versionPath );
+            put( versionPath, entry );
+
+            List<String> record = new ArrayList<>();
+            if ( previous == null )
+            {
+                record.add( UPDATE );
+                record.add( versionPath );
+                for ( Map.Entry<String, String> property : entry.entrySet() )
+                {
+                    record.add( property.getKey() );
+                    record.add( property.getValue() );
+                }
+            }
+            else
+            {
+                // only the changes, the rest of the project version is already in the log
+                record.add( PATCH );
+                record.add( versionPath );
+                for ( Map.Entry<String, String> property : entry.entrySet() )
+                {
+                    if ( !property.getValue().equals( previous.get( property.getKey() ) ) )
+                    {
+                        record.add( SET + property.getKey() );
+                        record.add( property.getValue() );
+                    }
+                }
+                for ( String key : previous.keySet() )
+                {
+                    if ( !entry.containsKey( key ) )
+                    {
+                        record.add( UNSET + key );
+                        record.add( "" );
+                    }
+                }
+                if ( record.size() == 2 )
+                {
+                    return;
+                }
+            }
+            append( record );
+        }
+    }
+
+    /**
+     * Drops a namespace, a project or a project version from the index.
+     *
+     * @param path <code>namespace</code>, <code>namespace/project</code> or <code>namespace/project/version</code>
+     */
+    public synchronized void remove( String path )
+        throws IOException
+    {
+        try (LogLock lock = lockLog())
+        {
+            load();
+            removeAll( path );
+            append( Collections.singletonList( DELETE + "\t" + escape( path ) ) );
+        }
+    }
+
+    public synchronized void clear()
+        throws IOException
+    {
+        try (LogLock lock = lockLog())
+        {
+            load();
+            clearAll();
+            append( Collections.singletonList( CLEAR ) );
+        }
+    }
+
+    /**
+     * @return the project versions with an artifact of that md5 or sha1 checksum
+     */
+    public synchronized Set<String> getVersionsByChecksum( String checksum )
+        throws IOException
+    {
+        load();
+        return copy( terms.get( CHECKSUM + checksum ) );
+    }
+
+    /**
+     * @return the project versions with an artifact gathered strictly between the dates, which are optional
+     */
+    public synchronized Set<String> getVersionsByWhenGathered( Date startTime, Date endTime )
+        throws IOException
+    {
+        load();
+        NavigableMap<Long, Set<String>> range = whenGathered;
+        if ( startTime != null )
+        {
+            range = range.tailMap( startTime.getTime(), false );
+        }
+        if ( endTime != null )
+        {
+            range = range.headMap( endTime.getTime(), false );
+        }
+        Set<String> versions = new LinkedHashSet<>();
+        for ( Set<String> dateVersions : range.values() )
+        {
+            versions.addAll( dateVersions );
+        }
+        return versions;
+    }
+
+    /**
+     * @param key   a property of the project version, like <code>url</code>, or the property of one of its facets
+     * @param value the value of the property
+     * @return the project versions with a property of that value
+     */
+    public synchronized Set<String> getVersionsByProperty( String key, String value )
+        throws IOException
+    {
+        load();
+        return copy( terms.get( PROPERTY + key + "=" + value ) );
+    }
+
+    /**
+     * @param key   the property of an artifact facet
+     * @param value the value of the property
+     * @return the ids of the artifacts with a facet property of that value, by project version
+     */
+    public synchronized Map<String, Set<String>> getArtifactsByFacetProperty( String key, String value )
+        throws IOException
+    {
+        load();
+        Map<String, Set<String>> artifacts = new HashMap<>();
+        for ( String versionPath : copy( terms.get( ARTIFACT_PROPERTY + key + "=" + value ) ) )
+        {
+            for ( Map.Entry<String, String> property : entries.get( versionPath ).entrySet() )
+            {
+                String[] artifactFacet = splitArtifactFacet( property.getKey() );
+                if ( artifactFacet != null && artifactFacet[2].equals( key ) && property.getValue().equals( value ) )
+                {
+                    addArtifact( artifacts, versionPath, artifactFacet[0] );
+                }
+            }
+        }
+        return artifacts;
+    }
+
+    /**
+     * Searches the properties of the project versions and of the facets of their artifacts.
+     *
+     * @param key   the property to search, <code>null</code> to search all properties
+     * @param text  the value of the property when exact, else words contained in the property
+     * @param exact whether the property must be equal to the text
+     * @return the matching artifact ids by project version, a project version matching itself being mapped to
+     *         <code>null</code> as all of its artifacts match
+     */
+    public synchronized Map<String, Set<String>> search( String key, String text, boolean exact )
+        throws IOException
+    {
+        load();
+        Set<String> tokens = tokenize( text );
+        Set<String> candidates;
+        if ( exact )
+        {
+            candidates = copy( terms.get( VALUE + text ) );
+        }
+        else if ( tokens.isEmpty() )
+        {
+            candidates = Collections.emptySet();
+        }
+        else
+        {
+            candidates = null;
+            for ( String token : tokens )
+            {
+                Set<String> versions = terms.get( TOKEN + token );
+                if ( versions == null )
+                {
+                    return Collections.emptyMap();
+                }
+                if ( candidates == null )
+                {
+                    candidates = new HashSet<>( versions );
+                }
+                else
+                {
+                    candidates.retainAll( versions );
+                }
+            }
+        }
+
+        Map<String, Set<String>> artifacts = new HashMap<>();
+        for ( String versionPath : candidates )
+        {
+            for ( Map.Entry<String, String> property : entries.get( versionPath ).entrySet() )
+            {
+                String value = property.getValue();
+                if ( exact ? !value.equals( text ) : !tokenize( value ).containsAll( tokens ) )
+                {
+                    continue;
+                }
+                String[] artifactFacet = splitArtifactFacet( property.getKey() );
+                if ( artifactFacet != null )
+                {
+                    if ( key == null || artifactFacet[2].equals( key ) )
+                    {
+                        addArtifact( artifacts, versionPath, artifactFacet[0] );
+                    }
+                }
+                else if ( !property.getKey().startsWith( ARTIFACT_PREFIX ) && ( key == null || property.getKey().equals(
+                    key ) || property.getKey().endsWith( ":" + key ) ) )
+                {
+                    artifacts.put( versionPath, null );
+                    break;
+                }
+            }
+        }
+        return artifacts;
+    }
+
+    private static void addArtifact( Map<String, Set<String>> artifacts, String versionPath, String id )
+    {
+        if ( !artifacts.containsKey( versionPath ) )
+        {
+            artifacts.put( versionPath, new HashSet<String>() );
+        }
+        Set<String> ids = artifacts.get( versionPath );
+        // null when the whole project version matches
+        if ( ids != null )
+        {
+            ids.add( id );
+        }
+    }
+
+    private static Set<String> copy( Set<String> versions )
+    {
+        return versions == null ? Collections.<String>emptySet() : new LinkedHashSet<>( versions );
+    }
+
+    /**
+     * @return the artifact id, the facet id and the property of an artifact facet property, or <code>null</code>
+     */
+    private static String[] splitArtifactFacet( String key )
+    {
+        if ( !key.startsWith( ARTIFACT_FACET_PREFIX ) )
+        {
+            return null;
+        }
+        String[] artifactFacet = key.substring( ARTIFACT_FACET_PREFIX.length() ).split( ":", 3 );
+        return artifactFacet.length == 3 ? artifactFacet : null;
+    }
+
+    /**
+     * @return the properties of a project version which are indexed: the checksums, the gathering dates and the facets
+     *         of its artifacts, and its own descriptive properties and facets
+     */
+    private static Map<String, String> getIndexedProperties( Properties properties )
+    {
+        Map<String, String> entry = new TreeMap<>();
+        for ( String name : properties.stringPropertyNames() )
+        {
+            if ( name.startsWith( ARTIFACT_PREFIX ) )
+            {
+                if ( name.startsWith( ARTIFACT_FACET_PREFIX ) || name.startsWith( "artifact:md5:" ) || name.startsWith(
+                    "artifact:sha1:" ) || name.startsWith( "artifact:whenGathered:" ) )
+                {
+                    entry.put( name, properties.getProperty( name ) );
+                }
+            }
+            else if ( !name.startsWith( "ref:" ) && !name.startsWith( "dependency." ) && !name.equals( "id" )
+                && !name.equals( "facetIds" ) && !name.equals( "incomplete" ) )
+            {
+                entry.put( name, properties.getProperty( name ) );
+            }
+        }
+        return entry;
+    }
+
+    private void put( String versionPath, Map<String, String> entry )
+    {
+        removeVersion( versionPath );
+        entries.put( versionPath, entry );
+        for ( Map.Entry<String, String> property : entry.entrySet() )
+        {
+            for ( String term : getTerms( property.getKey(), property.getValue() ) )
+            {
+                Set<String> versions = terms.get( term );
+                if ( versions == null )
+                {
+                    versions = new HashSet<>( 1 );
+                    terms.put( term, versions );
+                }
+                versions.add( versionPath );
+            }
+            Long time = getWhenGathered( property.getKey(), property.getValue() );
+            if ( time != null )
+            {
+                Set<String> versions = whenGathered.get( time );
+                if ( versions == null )
+                {
+                    versions = new HashSet<>( 1 );
+                    whenGathered.put( time, versions );
+                }
+                versions.add( versionPath );
+            }
+        }
+    }
+
+    private void removeVersion( String versionPath )
+    {
+        Map<String, String> entry = entries.remove( versionPath );
+        if ( entry == null )
+        {
+            return;
+        }
+        for ( Map.Entry<String, String> property : entry.entrySet() )
+        {
+            for ( String term : getTerms( property.getKey(), property.getValue() ) )
+            {
+                Set<String> versions = terms.get( term );
+                if ( versions != null && versions.remove( versionPath ) && versions.isEmpty() )
+                {
+                    terms.remove( term );
+                }
+            }
+            Long time = getWhenGathered( property.getKey(), property.getValue() );
+            if ( time != null )
+            {
+                Set<String> versions = whenGathered.get( time );
+                if ( versions != null && versions.remove( versionPath ) && versions.isEmpty() )
+                {
+                    whenGathered.remove( time );
+                }
+            }
+        }
+    }
+
+    private void removeAll( String path )
+    {
+        for ( String versionPath : new ArrayList<>( entries.keySet() ) )
+        {
+            if ( versionPath.equals( path ) || versionPath.startsWith( path + "/" ) )
+            {
+                removeVersion( versionPath );
+            }
+        }
+    }
+
+    private void clearAll()
+    {
+        entries.clear();
+        terms.clear();
+        whenGathered.clear();
+    }
+
+    private static Set<String> getTerms( String key, String value )
+    {
+        Set<String> propertyTerms = new HashSet<>();
+        if ( key.startsWith( "artifact:md5:" ) || key.startsWith( "artifact:sha1:" ) )
+        {
+            propertyTerms.add( CHECKSUM + value );
+        }
+        else if ( key.startsWith( ARTIFACT_FACET_PREFIX ) )
+        {
+            String[] artifactFacet = splitArtifactFacet( key );
+            if ( artifactFacet != null )
+            {
+                propertyTerms.add( ARTIFACT_PROPERTY + artifactFacet[2] + "=" + value );
+                addValueTerms( propertyTerms, value );
+            }
+        }
+        else if ( !key.startsWith( ARTIFACT_PREFIX ) )
+        {
+            propertyTerms.add( PROPERTY + key + "=" + value );
+            int separator = key.indexOf( ':' );
+            if ( separator >= 0 )
+            {
+                // facet properties are also found by their name only
+                propertyTerms.add( PROPERTY + key.substring( separator + 1 ) + "=" + value );
+            }
+            addValueTerms( propertyTerms, value );
+        }
+        return propertyTerms;
+    }
+
+    private static void addValueTerms( Set<String> propertyTerms, String value )
+    {
+        propertyTerms.add( VALUE + value );
+        for ( String token : tokenize( value ) )
+        {
+            propertyTerms.add( TOKEN + token );
+        }
+    }
+
+    private static Long getWhenGathered( String key, String value )
+    {
+        if ( key.startsWith( "artifact:whenGathered:" ) )
+        {
+            try
+            {
+                return Long.valueOf( value );
+            }
+            catch ( NumberFormatException e )
+            {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the lower cased words of a text
+     */
+    static Set<String> tokenize( String text )
+    {
+        Set<String> tokens = new LinkedHashSet<>();
+        int start = -1;
+        for ( int i = 0; i <= text.length(); i++ )
+        {
+            boolean letterOrDigit = i < text.length() && Character.isLetterOrDigit( text.charAt( i ) );
+            if ( letterOrDigit && start < 0 )
+            {
+                start = i;
+            }
+            else if ( !letterOrDigit && start >= 0 )
+            {
+                tokens.add( text.substring( start, i ).toLowerCase() );
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Reads the records appended to the log by another index of the same repository, the whole log again when that
+     * index compacted it, or builds the index when there is no log yet.
+     */
+    private void load()
+        throws IOException
+    {
+        long length = logFile.length();
+        Object key = getLogFileKey();
+        if ( logLength >= 0 && key != null && key.equals( logFileKey ) )
+        {
+            if ( length == logLength || length > logLength && read( logLength ) )
+            {
+                return;
+            }
+        }
+        clearAll();
+        records = 0;
+        if ( !logFile.exists() || !read( 0 ) )
+        {
+            try (LogLock lock = lockLog())
+            {
+                clearAll();
+                rebuild();
+            }
+        }
+        logFileKey = getLogFileKey();
+    }
+
+    /**
+     * Reads the records up to the last line feed: a last line without line feed is a record another index is still
+     * writing, it is read with the next records.
+     *
+     * @param offset the end of the last record read, 0 to read the whole log
+     * @return <code>false</code> when the log can't be read
+     */
+    private boolean read( long offset )
+        throws IOException
+    {
+        try (FileChannel channel = FileChannel.open( logFile.toPath(), StandardOpenOption.READ ))
+        {
+            channel.position( offset );
+            InputStream in = new BufferedInputStream( Channels.newInputStream( channel ), 65536 );
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream( 1024 );
+            long position = offset;
+            boolean header = offset == 0;
+            int b;
+            while ( ( b = in.read() ) >= 0 )
+            {
+                if ( b != '\n' )
+                {
+                    bytes.write( b );
+                    continue;
+                }
+                String line = new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+                position += bytes.size() + 1;
+                bytes.reset();
+                if ( header )
+                {
+                    if ( !HEADER.equals( line ) )
+                    {
+                        return false;
+                    }
+                    header = false;
+                    continue;
+                }
+
+                String[] fields = line.split( "\t", -1 );
+                if ( UPDATE.equals( fields[0] ) && fields.length % 2 == 0 )
+                {
+                    Map<String, String> entry = new TreeMap<>();
+                    for ( int i = 2; i < fields.length; i += 2 )
+                    {
+                        entry.put( unescape( fields[i] ), unescape( fields[i + 1] ) );
+                    }
+                    put( unescape( fields[1] ), entry );
+                }
+                else if ( PATCH.equals( fields[0] ) && fields.length % 2 == 0 )
+                {
+                    String versionPath = unescape( fields[1] );
+                    Map<String, String> entry = entries.containsKey( versionPath )
+                        ? new TreeMap<>( entries.get( versionPath ) )
+                        : new TreeMap<String, String>();
+                    for ( int i = 2; i < fields.length; i += 2 )
+                    {
+                        String key = unescape( fields[i] );
+                        if ( key.startsWith( SET ) )
+                        {
+                            entry.put( key.substring( SET.length() ), unescape( fields[i + 1] ) );
+                        }
+                        else
+                        {
+                            entry.remove( key.substring( UNSET.length() ) );
+                        }
+                    }
+                    put( versionPath, entry );
+                }
+                else if ( DELETE.equals( fields[0] ) && fields.length == 2 )
+                {
+                    removeAll( unescape( fields[1] ) );
+                }
+                else if ( CLEAR.equals( fields[0] ) )
+                {
+                    clearAll();
+                }
+                else
+                {
+                    log.warn( "Unreadable record in metadata index {}, rebuilding it", logFile );
+                    return false;
+                }
+                records++;
+            }
+            if ( header )
+            {
+                return false;
+            }
+            logLength = position;
+        }
+        return true;
+    }
+
+    private Object getLogFileKey()
+        throws IOException
+    {
+        if ( !logFile.exists() )
+        {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes( logFile.toPath(), BasicFileAttributes.class );
+        // without file keys, compare the creation times
+        return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+    }
+
+    private void rebuild()
+        throws IOException
+    {
+        File[] namespaces = contentDirectory.listFiles();
+        if ( namespaces != null )
+        {
+            log.info( "Building metadata index {}", logFile );
+            for ( File namespace : namespaces )
+            {
+                File[] projects = namespace.listFiles();
+                for ( int i = 0; projects != null && i < projects.length; i++ )
+                {
+                    File[] versions = projects[i].listFiles();
+                    for ( int j = 0; versions != null && j < versions.length; j++ )
+                    {
+                        File propertiesFile = new File( versions[j], propertiesFileName );
+                        if ( propertiesFile.isFile() )
+                        {
+                            Properties properties = new Properties();
+                            try (InputStream in = Files.newInputStream( propertiesFile.toPath() ))
+                            {
+                                properties.load( in );
+                            }
+                            put( namespace.getName() + "/" + projects[i].getName() + "/" + versions[j].getName(),
+                                 getIndexedProperties( properties ) );
+                        }
+                    }
+                }
+            }
+        }
+        compact();
+    }
+
+    /**
+     * Writes the log again with one record per project version.
+     */
+    private void compact()
+        throws IOException
+    {
+        logFile.getParentFile().mkdirs();
+        File tmpFile = new File( logFile.getParentFile(), logFile.getName() + ".tmp" );
+        try (Writer writer = Files.newBufferedWriter( tmpFile.toPath(), StandardCharsets.UTF_8 ))
+        {
+            writer.write( HEADER );
+            writer.write( '\n' );
+            for ( Map.Entry<String, Map<String, String>> entry : new TreeMap<>( entries ).entrySet() )
+            {
+                StringBuilder record = new StringBuilder( UPDATE ).append( '\t' ).append( escape( entry.getKey() ) );
+                for ( Map.Entry<String, String> property : entry.getValue().entrySet() )
+                {
+                    record.append( '\t' ).append( escape( property.getKey() ) );
+                    record.append( '\t' ).append( escape( property.getValue() ) );
+                }
+                writer.write( record.append( '\n' ).toString() );
+            }
+        }
+        Files.move( tmpFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        records = entries.size();
+        logLength = logFile.length();
+        logFileKey = getLogFileKey();
+    }
+
+    private void append( List<String> record )
+        throws IOException
+    {
+        if ( records > 2 * entries.size() + 1000 )
+        {
+            compact();
+            return;
+        }
+        StringBuilder line = new StringBuilder();
+        for ( Iterator<String> fields = record.iterator(); fields.hasNext(); )
+        {
+            String field = fields.next();
+            // the delete record is written escaped already
+            line.append( record.size() == 1 ? field : escape( field ) );
+            if ( fields.hasNext() )
+            {
+                line.append( '\t' );
+            }
+        }
+        line.append( '\n' );
+        try (FileChannel channel = FileChannel.open( logFile.toPath(), StandardOpenOption.CREATE,
+                                                     StandardOpenOption.WRITE ))
+        {
+            // the log is locked and read up to its last line feed, anything after is a record an interrupted index
+            // didn't finish
+            if ( channel.size() > logLength )
+            {
+                channel.truncate( logLength );
+            }
+            channel.position( logLength );
+            ByteBuffer buffer = ByteBuffer.wrap( line.toString().getBytes( StandardCharsets.UTF_8 ) );
+            while ( buffer.hasRemaining() )
+            {
+                channel.write( buffer );
+            }
+            logLength = channel.position();
+        }
+        records++;
+    }
+
+    /**
+     * Locks the log against updates of other indexes, in this process and in others.
+     *
+     * @return the lock, released when closed
+     */
+    private LogLock lockLog()
+        throws IOException
+    {
+        ReentrantLock lock = LOG_LOCKS.get( logFile.getAbsolutePath() );
+        if ( lock == null )
+        {
+            LOG_LOCKS.putIfAbsent( logFile.getAbsolutePath(), new ReentrantLock() );
+            lock = LOG_LOCKS.get( logFile.getAbsolutePath() );
+        }
+        lock.lock();
+        if ( lock.getHoldCount() > 1 )
+        {
+            // the file is already locked by this thread
+            return new LogLock( lock, null );
+        }
+        FileChannel channel = null;
+        try
+        {
+            lockFile.getParentFile().mkdirs();
+            channel = FileChannel.open( lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+            channel.lock();
+            return new LogLock( lock, channel );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            if ( channel != null )
+            {
+                channel.close();
+            }
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    private static class LogLock
+        implements Closeable
+    {
+        private final ReentrantLock lock;
+
+        private final FileChannel channel;
+
+        LogLock( ReentrantLock lock, FileChannel channel )
+        {
+            this.lock = lock;
+            this.channel = channel;
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            try
+            {
+                if ( channel != null )
+                {
+                    // closing the channel releases the file lock
+                    channel.close();
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static String escape( String value )
+    {
+        StringBuilder escaped = new StringBuilder( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            switch ( c )
+            {
+                case '\\':
+                    escaped.append( "\\\\" );
+                    break;
+                case '\t':
+                    escaped.append( "\\t" );
+                    break;
+                case '\n':
+                    escaped.append( "\\n" );
+                    break;
+                case '\r':
+                    escaped.append( "\\r" );
+                    break;
+                default:
+                    escaped.append( c );
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String unescape( String value )
+    {
+        if ( value.indexOf( '\\' ) < 0 )
+        {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( c == '\\' && i + 1 < value.length() )
+            {
+                char next = value.charAt( ++i );
+                unescaped.append( next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next );
+            }
+            else
+            {
+                unescaped.append( c );
+            }
+        }
+        return unescaped.toString();
+    }
+}
@@ -34,6 +34,7 @@
 import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.model.ProjectVersionReference;
 import org.apache.archiva.metadata.model.Scm;
+import org.apache.archiva.metadata.repository.ArtifactMetadataPage;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
 import org.apache.archiva.metadata.repository.MetadataResolutionException;
@@ -62,6 +63,8 @@
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class FileMetadataRepository
     implements MetadataRepository
@@ -70,6 +73,11 @@
 
     private final ArchivaConfiguration configuration;
 
+    /**
+     * indexes of the repositories, by path of their log
+     */
+    private final ConcurrentMap<String, FileMetadataIndex> indexes;
+
     private Logger log = LoggerFactory.getLogger( FileMetadataRepository.class );
 
     private static final String PROJECT_METADATA_KEY = "project-metadata";
@@ -80,11 +88,30 @@
 
     private static final String METADATA_KEY = "metadata";
 
+    private static final Comparator<ArtifactMetadata> ARTIFACT_ID_COMPARATOR = new Comparator<ArtifactMetadata>()
+    {
+        @Override
+        public int compare( ArtifactMetadata artifact1, ArtifactMetadata artifact2 )
+        {
+            return artifact1.getId().compareTo( artifact2.getId() );
+        }
+    };
+
     public FileMetadataRepository( Map<String, MetadataFacetFactory> metadataFacetFactories,
                                    ArchivaConfiguration configuration )
+    {
+        this( metadataFacetFactories, configuration, new ConcurrentHashMap<String, FileMetadataIndex>() );
+    }
+
+    /**
+     * @param indexes the indexes of the repositories, shared by the sessions so that they are only loaded once
+     */
+    FileMetadataRepository( Map<String, MetadataFacetFactory> metadataFacetFactories,
+                            ArchivaConfiguration configuration, ConcurrentMap<String, FileMetadataIndex> indexes )
     {
         this.metadataFacetFactories = metadataFacetFactories;
         this.configuration = configuration;
+        this.indexes = indexes;
     }
 
     private File getBaseDirectory( String repoId )
@@ -107,6 +134,43 @@ private File getDirectory( String repoId )
         return new File( getBaseDirectory( repoId ), "content" );
     }
 
+    /**
+     * @return the index of the repository, <code>null</code> if the repository isn't configured
+     */
+    private FileMetadataIndex getIndex( String repoId )
+    {
+        ManagedRepositoryConfiguration managedRepositoryConfiguration =
+            configuration.getConfiguration().getManagedRepositoriesAsMap().get( repoId );
+        if ( managedRepositoryConfiguration == null )
+        {
+            return null;
+        }
+        File baseDirectory = new File( managedRepositoryConfiguration.getLocation(), ".archiva" );
+        File logFile = new File( baseDirectory, "metadata-index.log" );
+        FileMetadataIndex index = indexes.get( logFile.getAbsolutePath() );
+        if ( index == null )
+        {
+            index = new FileMetadataIndex( logFile, new File( baseDirectory, "content" ),
+                                           PROJECT_VERSION_METADATA_KEY + ".properties" );
+            FileMetadataIndex existing = indexes.putIfAbsent( logFile.getAbsolutePath(), index );
+            if ( existing != null )
+            {
+                index = existing;
+            }
+        }
+        return index;
+    }
+
+    private void removeFromIndex( String repoId, String path )
+        throws IOException
+    {
+        FileMetadataIndex index = getIndex( repoId );
+        if ( index != null )
+        {
+            index.remove( path );
+        }
+    }
+
     @Override
     public void updateProject( String repoId, ProjectMetadata project )
     {
@@ -231,7 +295,8 @@ public void updateProjectVersion( String repoId, String namespace, String projec
 
             updateProjectVersionFacets( versionMetadata, properties );
 
-            writeProperties( properties, directory, PROJECT_VERSION_METADATA_KEY );
+            writeProjectVersionProperties( repoId, directory,
+                                           namespace + "/" + projectId + "/" + versionMetadata.getId(), properties );
         }
         catch ( IOException e )
         {
@@ -288,7 +353,8 @@ private void updateProjectReference( String repoId, String namespace, String pro
             setProperty( properties, "ref:reference." + i + ".projectVersion", reference.getProjectVersion() );
             setProperty( properties, "ref:reference." + i + ".referenceType", reference.getReferenceType().toString() );
 
-            writeProperties( properties, directory, PROJECT_VERSION_METADATA_KEY );
+            writeProjectVersionProperties( repoId, directory, namespace + "/" + projectId + "/" + projectVersion,
+                                           properties );
         }
         catch ( IOException e )
         {
@@ -449,39 +515,13 @@ public List<ArtifactMetadata> getArtifactsByDateRange( String repoId, Date start
     {
         try
         {
-            // TODO: this is quite slow - if we are to persist with this repository implementation we should build an index
-            //  of this information (eg. in Lucene, as before)
-
             List<ArtifactMetadata> artifacts = new ArrayList<>();
-            for ( String ns : getRootNamespaces( repoId ) )
-            {
-                getArtifactsByDateRange( artifacts, repoId, ns, startTime, endTime );
-            }
-            Collections.sort( artifacts, new ArtifactComparator() );
-            return artifacts;
-        }
-        catch ( MetadataResolutionException e )
-        {
-            throw new MetadataRepositoryException( e.getMessage(), e );
-        }
-    }
-
-    private void getArtifactsByDateRange( List<ArtifactMetadata> artifacts, String repoId, String ns, Date startTime,
-                                          Date endTime )
-        throws MetadataRepositoryException
-    {
-        try
-        {
-            for ( String namespace : getNamespaces( repoId, ns ) )
+            FileMetadataIndex index = getIndex( repoId );
+            if ( index != null )
             {
-                getArtifactsByDateRange( artifacts, repoId, ns + "." + namespace, startTime, endTime );
-            }
-
-            for ( String project : getProjects( repoId, ns ) )
-            {
-                for ( String version : getProjectVersions( repoId, ns, project ) )
+                for ( String versionPath : index.getVersionsByWhenGathered( startTime, endTime ) )
                 {
-                    for ( ArtifactMetadata artifact : getArtifacts( repoId, ns, project, version ) )
+                    for ( ArtifactMetadata artifact : getArtifacts( repoId, versionPath ) )
                     {
                         if ( startTime == null || startTime.before( artifact.getWhenGathered() ) )
                         {
@@ -493,13 +533,49 @@ private void getArtifactsByDateRange( List<ArtifactMetadata> artifacts, String r
                     }
                 }
             }
+            Collections.sort( artifacts, new ArtifactComparator() );
+            return artifacts;
         }
-        catch ( MetadataResolutionException e )
+        catch ( IOException | MetadataResolutionException e )
         {
             throw new MetadataRepositoryException( e.getMessage(), e );
         }
     }
 
+    /**
+     * @param versionPath <code>namespace/project/version</code> of a project version found in the index
+     */
+    private Collection<ArtifactMetadata> getArtifacts( String repoId, String versionPath )
+        throws MetadataResolutionException
+    {
+        String[] path = versionPath.split( "/" );
+        return getArtifacts( repoId, path[0], path[1], path[2] );
+    }
+
+    /**
+     * @param artifactIds the ids of the artifacts by project version, all the artifacts of a project version mapped
+     *                    to <code>null</code>
+     */
+    private void getArtifacts( List<ArtifactMetadata> artifacts, String repoId, Map<String, Set<String>> artifactIds )
+        throws MetadataResolutionException
+    {
+        for ( Map.Entry<String, Set<String>> entry : artifactIds.entrySet() )
+        {
+            for ( ArtifactMetadata artifact : getArtifacts( repoId, entry.getKey() ) )
+            {
+                if ( entry.getValue() == null || entry.getValue().contains( artifact.getId() ) )
+                {
+                    artifacts.add( artifact );
+                }
+            }
+        }
+    }
+
+    private Collection<String> getRepositories( String repositoryId )
+    {
+        return repositoryId == null ? getRepositories() : Collections.singletonList( repositoryId );
+    }
+
     @Override
     public Collection<ArtifactMetadata> getArtifacts( String repoId, String namespace, String projectId,
                                                       String projectVersion )
@@ -665,19 +741,24 @@ public List<ArtifactMetadata> getArtifactsByChecksum( String repositoryId, Strin
     {
         try
         {
-            // TODO: this is quite slow - if we are to persist with this repository implementation we should build an index
-            //  of this information (eg. in Lucene, as before)
-            // alternatively, we could build a referential tree in the content repository, however it would need some levels
-            // of depth to avoid being too broad to be useful (eg. /repository/checksums/a/ab/abcdef1234567)
-
             List<ArtifactMetadata> artifacts = new ArrayList<>();
-            for ( String ns : getRootNamespaces( repositoryId ) )
+            FileMetadataIndex index = getIndex( repositoryId );
+            if ( index != null )
             {
-                getArtifactsByChecksum( artifacts, repositoryId, ns, checksum );
+                for ( String versionPath : index.getVersionsByChecksum( checksum ) )
+                {
+                    for ( ArtifactMetadata artifact : getArtifacts( repositoryId, versionPath ) )
+                    {
+                        if ( checksum.equals( artifact.getMd5() ) || checksum.equals( artifact.getSha1() ) )
+                        {
+                            artifacts.add( artifact );
+                        }
+                    }
+                }
             }
             return artifacts;
         }
-        catch ( MetadataResolutionException e )
+        catch ( IOException | MetadataResolutionException e )
         {
             throw new MetadataRepositoryException( e.getMessage(), e );
         }
@@ -691,6 +772,7 @@ public void removeNamespace( String repositoryId, String project )
         {
             File namespaceDirectory = new File( getDirectory( repositoryId ), project );
             FileUtils.deleteDirectory( namespaceDirectory );
+            removeFromIndex( repositoryId, project );
             //Properties properties = new Properties();
             //properties.setProperty( "namespace", namespace );
             //writeProperties( properties, namespaceDirectory, NAMESPACE_METADATA_KEY );
@@ -735,7 +817,9 @@ public void removeArtifact( ArtifactMetadata artifactMetadata, String baseVersio
                 }
             }
 
-            writeProperties( properties, directory, PROJECT_VERSION_METADATA_KEY );
+            writeProjectVersionProperties( artifactMetadata.getRepositoryId(), directory,
+                                           artifactMetadata.getNamespace() + "/" + artifactMetadata.getProject()
+                                               + "/" + baseVersion, properties );
         }
         catch ( IOException e )
         {
@@ -773,6 +857,7 @@ public void removeArtifact( String repoId, String namespace, String project, Str
             }
 
             FileUtils.deleteDirectory( directory );
+            removeFromIndex( repoId, namespace + "/" + project + "/" + version );
             //writeProperties( properties, directory, PROJECT_VERSION_METADATA_KEY );
         }
         catch ( IOException e )
@@ -807,6 +892,11 @@ public void removeRepository( String repoId )
         {
             File dir = getDirectory( repoId );
             FileUtils.deleteDirectory( dir );
+            FileMetadataIndex index = getIndex( repoId );
+            if ( index != null )
+            {
+                index.clear();
+            }
         }
         catch ( IOException e )
         {
@@ -814,56 +904,61 @@ public void removeRepository( String repoId )
         }
     }
 
-    private void getArtifactsByChecksum( List<ArtifactMetadata> artifacts, String repositoryId, String ns,
-                                         String checksum )
+    @Override
+    public List<ArtifactMetadata> getArtifactsByProjectVersionMetadata( String key, String value, String repositoryId )
+        throws MetadataRepositoryException
+    {
+        // the index holds the facet properties of the project versions with their other properties
+        return getArtifactsByProperty( key, value, repositoryId );
+    }
+
+    @Override
+    public List<ArtifactMetadata> getArtifactsByMetadata( String key, String value, String repositoryId )
         throws MetadataRepositoryException
     {
         try
         {
-            for ( String namespace : getNamespaces( repositoryId, ns ) )
-            {
-                getArtifactsByChecksum( artifacts, repositoryId, ns + "." + namespace, checksum );
-            }
-
-            for ( String project : getProjects( repositoryId, ns ) )
+            List<ArtifactMetadata> artifacts = new ArrayList<>();
+            for ( String repoId : getRepositories( repositoryId ) )
             {
-                for ( String version : getProjectVersions( repositoryId, ns, project ) )
+                FileMetadataIndex index = getIndex( repoId );
+                if ( index != null )
                 {
-                    for ( ArtifactMetadata artifact : getArtifacts( repositoryId, ns, project, version ) )
-                    {
-                        if ( checksum.equals( artifact.getMd5() ) || checksum.equals( artifact.getSha1() ) )
-                        {
-                            artifacts.add( artifact );
-                        }
-                    }
+                    getArtifacts( artifacts, repoId, index.getArtifactsByFacetProperty( key, value ) );
                 }
             }
+            return artifacts;
         }
-        catch ( MetadataResolutionException e )
+        catch ( IOException | MetadataResolutionException e )
         {
             throw new MetadataRepositoryException( e.getMessage(), e );
         }
     }
 
-    @Override
-    public List<ArtifactMetadata> getArtifactsByProjectVersionMetadata( String key, String value, String repositoryId )
-        throws MetadataRepositoryException
-    {
-        throw new UnsupportedOperationException( "not yet implemented in File backend" );
-    }
-
-    @Override
-    public List<ArtifactMetadata> getArtifactsByMetadata( String key, String value, String repositoryId )
-        throws MetadataRepositoryException
-    {
-        throw new UnsupportedOperationException( "not yet implemented in File backend" );
-    }
-
     @Override
     public List<ArtifactMetadata> getArtifactsByProperty( String key, String value, String repositoryId )
         throws MetadataRepositoryException
     {
-        throw new UnsupportedOperationException( "getArtifactsByProperty not yet implemented in File backend" );
+        try
+        {
+            List<ArtifactMetadata> artifacts = new ArrayList<>();
+            for ( String repoId : getRepositories( repositoryId ) )
+            {
+                FileMetadataIndex index = getIndex( repoId );
+                if ( index != null )
+                {
+                    for ( String versionPath : index.getVersionsByProperty( key, value ) )
+                    {
+                        artifacts.addAll( getArtifacts( repoId, versionPath ) );
+                    }
+                }
+            }
+            return artifacts;
+        }
+        catch ( IOException | MetadataResolutionException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
     }
 
     private File getMetadataDirectory( String repoId, String facetId )
@@ -935,7 +1030,8 @@ public void updateArtifact( String repoId, String namespace, String projectId, S
 
             updateArtifactFacets( artifact, properties );
 
-            writeProperties( properties, directory, PROJECT_VERSION_METADATA_KEY );
+            writeProjectVersionProperties( repoId, directory, namespace + "/" + projectId + "/" + projectVersion,
+                                           properties );
         }
         catch ( IOException e )
         {
@@ -1357,6 +1453,7 @@ public void removeProject( String repositoryId, String namespace, String project
         {
             File directory = new File( getDirectory( repositoryId ), namespace + "/" + projectId );
             FileUtils.deleteDirectory( directory );
+            removeFromIndex( repositoryId, namespace + "/" + projectId );
         }
         catch ( IOException e )
         {
@@ -1372,6 +1469,7 @@ public void removeProjectVersion( String repoId, String namespace, String projec
         {
             File directory = new File( getDirectory( repoId ), namespace + "/" + projectId + "/" + projectVersion );
             FileUtils.deleteDirectory( directory );
+            removeFromIndex( repoId, namespace + "/" + projectId + "/" + projectVersion );
         }
         catch ( IOException e )
         {
@@ -1390,6 +1488,23 @@ private void writeProperties( Properties properties, File directory, String prop
         }
     }
 
+    /**
+     * Writes the properties of a project version and indexes them.
+     *
+     * @param versionPath <code>namespace/project/version</code>
+     */
+    private void writeProjectVersionProperties( String repoId, File directory, String versionPath,
+                                                Properties properties )
+        throws IOException
+    {
+        writeProperties( properties, directory, PROJECT_VERSION_METADATA_KEY );
+        FileMetadataIndex index = getIndex( repoId );
+        if ( index != null )
+        {
+            index.update( versionPath, properties );
+        }
+    }
+
     private static class ArtifactComparator
         implements Comparator<ArtifactMetadata>
     {
@@ -1431,6 +1546,90 @@ public List<ArtifactMetadata> getArtifacts( String repoId )
         }
     }
 
+    @Override
+    public ArtifactMetadataPage getArtifacts( String repoId, String continuationToken, int pageSize )
+        throws MetadataRepositoryException
+    {
+        // the continuation token is the path of the last artifact of the page, the artifacts are walked in path order
+        // so that the walk can start again after it
+        String[] last = continuationToken == null ? null : continuationToken.split( "/", 4 );
+        try
+        {
+            List<String> namespaces = new ArrayList<>();
+            for ( String ns : getRootNamespaces( repoId ) )
+            {
+                getNamespaces( namespaces, repoId, ns );
+            }
+            Collections.sort( namespaces );
+
+            List<ArtifactMetadata> artifacts = new ArrayList<>();
+            for ( String ns : namespaces )
+            {
+                int namespaceOrder = last == null ? 1 : ns.compareTo( last[0] );
+                if ( namespaceOrder < 0 )
+                {
+                    continue;
+                }
+                for ( String project : sorted( getProjects( repoId, ns ) ) )
+                {
+                    int projectOrder = namespaceOrder > 0 ? 1 : project.compareTo( last[1] );
+                    if ( projectOrder < 0 )
+                    {
+                        continue;
+                    }
+                    for ( String version : sorted( getProjectVersions( repoId, ns, project ) ) )
+                    {
+                        int versionOrder = projectOrder > 0 ? 1 : version.compareTo( last[2] );
+                        if ( versionOrder < 0 )
+                        {
+                            continue;
+                        }
+                        List<ArtifactMetadata> versionArtifacts =
+                            new ArrayList<>( getArtifacts( repoId, ns, project, version ) );
+                        Collections.sort( versionArtifacts, ARTIFACT_ID_COMPARATOR );
+                        for ( ArtifactMetadata artifact : versionArtifacts )
+                        {
+                            if ( versionOrder == 0 && artifact.getId().compareTo( last[3] ) <= 0 )
+                            {
+                                continue;
+                            }
+                            if ( artifacts.size() == pageSize )
+                            {
+                                ArtifactMetadata lastArtifact = artifacts.get( pageSize - 1 );
+                                return new ArtifactMetadataPage( artifacts, lastArtifact.getNamespace() + "/"
+                                    + lastArtifact.getProject() + "/" + lastArtifact.getProjectVersion() + "/"
+                                    + lastArtifact.getId() );
+                            }
+                            artifacts.add( artifact );
+                        }
+                    }
+                }
+            }
+            return new ArtifactMetadataPage( artifacts, null );
+        }
+        catch ( MetadataResolutionException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+    }
+
+    private void getNamespaces( List<String> namespaces, String repoId, String ns )
+        throws MetadataResolutionException
+    {
+        namespaces.add( ns );
+        for ( String namespace : getNamespaces( repoId, ns ) )
+        {
+            getNamespaces( namespaces, repoId, ns + "." + namespace );
+        }
+    }
+
+    private static List<String> sorted( Collection<String> names )
+    {
+        List<String> sorted = new ArrayList<>( names );
+        Collections.sort( sorted );
+        return sorted;
+    }
+
     private void getArtifacts( List<ArtifactMetadata> artifacts, String repoId, String ns )
         throws MetadataResolutionException
     {
@@ -1455,13 +1654,29 @@ private void getArtifacts( List<ArtifactMetadata> artifacts, String repoId, Stri
     public List<ArtifactMetadata> searchArtifacts( String text, String repositoryId, boolean exact )
         throws MetadataRepositoryException
     {
-        throw new UnsupportedOperationException( "searchArtifacts not yet implemented in File backend" );
+        return searchArtifacts( null, text, repositoryId, exact );
     }
 
     @Override
     public List<ArtifactMetadata> searchArtifacts( String key, String text, String repositoryId, boolean exact )
         throws MetadataRepositoryException
     {
-        throw new UnsupportedOperationException( "searchArtifacts not yet implemented in File backend" );
+        try
+        {
+            List<ArtifactMetadata> artifacts = new ArrayList<>();
+            for ( String repoId : getRepositories( repositoryId ) )
+            {
+                FileMetadataIndex index = getIndex( repoId );
+                if ( index != null )
+                {
+                    getArtifacts( artifacts, repoId, index.search( key, text, exact ) );
+                }
+            }
+            return artifacts;
+        }
+        catch ( IOException | MetadataResolutionException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
     }
 }
@@ -34,6 +34,8 @@
 import javax.inject.Named;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  *
@@ -63,6 +65,11 @@
     @Inject
     private ApplicationContext applicationContext;
 
+    /**
+     * indexes of the repositories, kept between sessions
+     */
+    private final ConcurrentMap<String, FileMetadataIndex> indexes = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void initialize()
     {
@@ -83,7 +90,7 @@ public void initialize()
     @Override
     public RepositorySession createSession()
     {
-        MetadataRepository metadataRepository = new FileMetadataRepository( metadataFacetFactories, configuration );
+        MetadataRepository metadataRepository = new FileMetadataRepository( metadataFacetFactories, configuration, indexes );
 
         return new RepositorySession( metadataRepository, metadataResolver );
     }
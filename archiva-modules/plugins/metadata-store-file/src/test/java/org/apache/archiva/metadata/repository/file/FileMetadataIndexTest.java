@@ -0,0 +1,145 @@
+package org.apache.archiva.metadata.repository.file;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+public class FileMetadataIndexTest
+    extends TestCase
+{
+    private static final String VERSION_PATH = "org.example/example/1.0";
+
+    private static final String SHA1 = "2e5daf0201ddeb068a62d5e08da18657ab2c6be9";
+
+    private static final String OTHER_SHA1 = "edf5938e646956f445c6ecb719d44579cdeed974";
+
+    @Test
+    public void testUpdateAppendsOnlyTheChanges()
+        throws Exception
+    {
+        File directory = createDirectory( "target/metadata-index-delta" );
+        File logFile = new File( directory, ".archiva/metadata-index.log" );
+        FileMetadataIndex index = new FileMetadataIndex( logFile, new File( directory, "content" ), "metadata" );
+
+        Properties properties = new Properties();
+        properties.setProperty( "url", "http://example.org" );
+        properties.setProperty( "artifact:sha1:example-1.0.jar", SHA1 );
+        index.update( VERSION_PATH, properties );
+
+        properties.setProperty( "artifact:sha1:example-1.0-sources.jar", OTHER_SHA1 );
+        index.update( VERSION_PATH, properties );
+
+        List<String> lines = Files.readAllLines( logFile.toPath(), StandardCharsets.UTF_8 );
+        assertEquals( "P\t" + VERSION_PATH + "\t+artifact:sha1:example-1.0-sources.jar\t" + OTHER_SHA1,
+                      lines.get( lines.size() - 1 ) );
+
+        // unchanged properties append nothing
+        long length = logFile.length();
+        index.update( VERSION_PATH, properties );
+        assertEquals( length, logFile.length() );
+
+        properties.remove( "artifact:sha1:example-1.0.jar" );
+        index.update( VERSION_PATH, properties );
+
+        FileMetadataIndex reloaded = new FileMetadataIndex( logFile, new File( directory, "content" ), "metadata" );
+        assertTrue( reloaded.getVersionsByChecksum( SHA1 ).isEmpty() );
+        assertEquals( Collections.singleton( VERSION_PATH ), reloaded.getVersionsByChecksum( OTHER_SHA1 ) );
+        assertEquals( Collections.singleton( VERSION_PATH ),
+                      reloaded.getVersionsByProperty( "url", "http://example.org" ) );
+    }
+
+    @Test
+    public void testReadRecordsAppendedByAnotherIndex()
+        throws Exception
+    {
+        File directory = createDirectory( "target/metadata-index-tail" );
+        File logFile = new File( directory, ".archiva/metadata-index.log" );
+        FileMetadataIndex index = new FileMetadataIndex( logFile, new File( directory, "content" ), "metadata" );
+        FileMetadataIndex other = new FileMetadataIndex( logFile, new File( directory, "content" ), "metadata" );
+        assertTrue( other.getVersionsByChecksum( SHA1 ).isEmpty() );
+
+        Properties properties = new Properties();
+        properties.setProperty( "artifact:sha1:example-1.0.jar", SHA1 );
+        index.update( VERSION_PATH, properties );
+        assertEquals( Collections.singleton( VERSION_PATH ), other.getVersionsByChecksum( SHA1 ) );
+
+        index.remove( "org.example/example" );
+        assertTrue( other.getVersionsByChecksum( SHA1 ).isEmpty() );
+    }
+
+    @Test
+    public void testPartlyWrittenRecordIsReadOnceComplete()
+        throws Exception
+    {
+        File directory = createDirectory( "target/metadata-index-partial" );
+        File logFile = new File( directory, ".archiva/metadata-index.log" );
+        FileMetadataIndex index = new FileMetadataIndex( logFile, new File( directory, "content" ), "metadata" );
+        assertTrue( index.getVersionsByChecksum( SHA1 ).isEmpty() );
+
+        String record = "U\t" + VERSION_PATH + "\tartifact:sha1:example-1.0.jar\t" + SHA1 + "\n";
+        Files.write( logFile.toPath(), record.substring( 0, 20 ).getBytes( StandardCharsets.UTF_8 ),
+                     StandardOpenOption.APPEND );
+        assertTrue( index.getVersionsByChecksum( SHA1 ).isEmpty() );
+
+        Files.write( logFile.toPath(), record.substring( 20 ).getBytes( StandardCharsets.UTF_8 ),
+                     StandardOpenOption.APPEND );
+        assertEquals( Collections.singleton( VERSION_PATH ), index.getVersionsByChecksum( SHA1 ) );
+    }
+
+    @Test
+    public void testUpdateDropsRecordOfInterruptedIndex()
+        throws Exception
+    {
+        File directory = createDirectory( "target/metadata-index-interrupted" );
+        File logFile = new File( directory, ".archiva/metadata-index.log" );
+        FileMetadataIndex index = new FileMetadataIndex( logFile, new File( directory, "content" ), "metadata" );
+        assertTrue( index.getVersionsByChecksum( SHA1 ).isEmpty() );
+        Files.write( logFile.toPath(), "U\torg.example/broken".getBytes( StandardCharsets.UTF_8 ),
+                     StandardOpenOption.APPEND );
+
+        Properties properties = new Properties();
+        properties.setProperty( "artifact:sha1:example-1.0.jar", SHA1 );
+        index.update( VERSION_PATH, properties );
+
+        FileMetadataIndex reloaded = new FileMetadataIndex( logFile, new File( directory, "content" ), "metadata" );
+        assertEquals( Collections.singleton( VERSION_PATH ), reloaded.getVersionsByChecksum( SHA1 ) );
+        assertFalse( new String( Files.readAllBytes( logFile.toPath() ), StandardCharsets.UTF_8 ).contains(
+            "broken" ) );
+    }
+
+    private static File createDirectory( String path )
+        throws Exception
+    {
+        File directory = new File( path );
+        FileUtils.deleteDirectory( directory );
+        new File( directory, "content" ).mkdirs();
+        return directory;
+    }
+}
@@ -33,6 +33,7 @@
 import org.apache.archiva.metadata.model.ProjectVersionReference;
 import org.apache.archiva.metadata.model.Scm;
 import org.apache.archiva.metadata.model.maven2.MavenArtifactFacet;
+import org.apache.archiva.metadata.repository.ArtifactMetadataPage;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
 import org.apache.archiva.metadata.repository.MetadataResolutionException;
@@ -70,6 +71,7 @@
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -848,6 +850,112 @@ public List<ArtifactMetadata> getArtifacts( String repositoryId )
         return artifacts;
     }
 
+    /**
+     * Walks the artifact nodes in the order of their path, the continuation token being the path of the last artifact
+     * of the previous page relative to the repository content: a page starts right after it without reading the
+     * artifacts of the previous pages. The nodes are walked rather than queried as Jackrabbit queries can neither
+     * sort nor filter on node paths. Only the children of the nodes on the way are held at once.
+     */
+    @Override
+    public ArtifactMetadataPage getArtifacts( String repositoryId, String continuationToken, int pageSize )
+        throws MetadataRepositoryException
+    {
+        try
+        {
+            Node root = getJcrSession().getRootNode();
+            String path = getRepositoryContentPath( repositoryId );
+            if ( !root.hasNode( path ) )
+            {
+                return new ArtifactMetadataPage( Collections.<ArtifactMetadata>emptyList(), null );
+            }
+            Node contentNode = root.getNode( path );
+
+            // one more node to know whether there is a next page
+            List<Node> artifactNodes = new ArrayList<>( pageSize + 1 );
+            String[] after = continuationToken == null ? null : continuationToken.split( "/" );
+            collectArtifactNodes( contentNode, after, 0, pageSize + 1, artifactNodes );
+
+            List<ArtifactMetadata> artifacts = new ArrayList<>( pageSize );
+            for ( Node n : artifactNodes.subList( 0, Math.min( pageSize, artifactNodes.size() ) ) )
+            {
+                artifacts.add( getArtifactFromNode( repositoryId, n ) );
+            }
+            if ( artifactNodes.size() > pageSize )
+            {
+                String lastPath = artifactNodes.get( pageSize - 1 ).getPath();
+                return new ArtifactMetadataPage( artifacts,
+                                                 lastPath.substring( contentNode.getPath().length() + 1 ) );
+            }
+            return new ArtifactMetadataPage( artifacts, null );
+        }
+        catch ( RepositoryException e )
+        {
+            throw new MetadataRepositoryException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Collects the artifact nodes under a node in the order of their path, skipping the nodes up to the path of the
+     * previous page.
+     *
+     * @param node  the node to walk
+     * @param after the names of the path of the last artifact of the previous page, <code>null</code> when the whole
+     *              node is walked
+     * @param depth the depth of the children of the node in that path
+     * @param limit the number of artifact nodes to collect
+     * @param found the collected artifact nodes
+     */
+    private static void collectArtifactNodes( Node node, String[] after, int depth, int limit, List<Node> found )
+        throws RepositoryException
+    {
+        List<Node> children = new ArrayList<>();
+        for ( Node n : JcrUtils.getChildNodes( node ) )
+        {
+            children.add( n );
+        }
+        Collections.sort( children, new Comparator<Node>()
+        {
+            @Override
+            public int compare( Node o1, Node o2 )
+            {
+                try
+                {
+                    return o1.getName().compareTo( o2.getName() );
+                }
+                catch ( RepositoryException e )
+                {
+                    throw new IllegalStateException( e.getMessage(), e );
+                }
+            }
+        } );
+
+        for ( Node child : children )
+        {
+            if ( found.size() >= limit )
+            {
+                return;
+            }
+            int comparison = after == null || depth >= after.length ? 1 : child.getName().compareTo( after[depth] );
+            if ( comparison < 0 )
+            {
+                continue;
+            }
+            // still on the path of the previous page, else past it
+            String[] childAfter = comparison == 0 ? after : null;
+            if ( child.isNodeType( ARTIFACT_NODE_TYPE ) )
+            {
+                if ( childAfter == null )
+                {
+                    found.add( child );
+                }
+            }
+            else
+            {
+                collectArtifactNodes( child, childAfter, depth + 1, limit, found );
+            }
+        }
+    }
+
     private static String getArtifactQuery( String repositoryId )
     {
         return "SELECT * FROM [" + ARTIFACT_NODE_TYPE + "] AS artifact WHERE ISDESCENDANTNODE(artifact,'/" +
@@ -19,8 +19,10 @@
  * under the License.
  */
 
+import org.apache.archiva.metadata.model.ArtifactMetadata;
 import org.apache.archiva.metadata.model.MetadataFacetFactory;
 import org.apache.archiva.metadata.repository.AbstractMetadataRepositoryTest;
+import org.apache.archiva.metadata.repository.ArtifactMetadataPage;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -28,6 +30,9 @@
 import org.springframework.context.ApplicationContext;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import javax.inject.Inject;
 import javax.jcr.Repository;
@@ -90,5 +95,51 @@ public void tearDown()
         super.tearDown();
     }
 
+    @Test
+    public void testGetArtifactsPagedInPathOrder()
+        throws Exception
+    {
+        List<ArtifactMetadata> artifacts = new ArrayList<>();
+        for ( String project : new String[]{ "b-project", "a-project" } )
+        {
+            for ( String version : new String[]{ "2.0", "1.0" } )
+            {
+                ArtifactMetadata artifact = new ArtifactMetadata();
+                artifact.setId( project + "-" + version + ".jar" );
+                artifact.setNamespace( TEST_NAMESPACE );
+                artifact.setProject( project );
+                artifact.setVersion( version );
+                artifact.setProjectVersion( version );
+                artifact.setRepositoryId( TEST_REPO_ID );
+                repository.updateArtifact( TEST_REPO_ID, TEST_NAMESPACE, project, version, artifact );
+                artifacts.add( artifact );
+            }
+        }
+        repository.save();
+
+        ArtifactMetadataPage page = repository.getArtifacts( TEST_REPO_ID, null, 2 );
+        assertEquals( Arrays.asList( "a-project-1.0.jar", "a-project-2.0.jar" ), getIds( page ) );
+        assertEquals( TEST_NAMESPACE + "/a-project/2.0/a-project-2.0.jar", page.getContinuationToken() );
+
+        // the next page starts after the last artifact even when the previous ones are gone
+        repository.removeArtifact( TEST_REPO_ID, TEST_NAMESPACE, "a-project", "1.0", "a-project-1.0.jar" );
+        repository.removeArtifact( TEST_REPO_ID, TEST_NAMESPACE, "a-project", "2.0", "a-project-2.0.jar" );
+        repository.save();
+
+        page = repository.getArtifacts( TEST_REPO_ID, page.getContinuationToken(), 2 );
+        assertEquals( Arrays.asList( "b-project-1.0.jar", "b-project-2.0.jar" ), getIds( page ) );
+        assertNull( page.getContinuationToken() );
+    }
+
+    private static List<String> getIds( ArtifactMetadataPage page )
+    {
+        List<String> ids = new ArrayList<>();
+        for ( ArtifactMetadata artifact : page.getArtifacts() )
+        {
+            ids.add( artifact.getId() );
+        }
+        return ids;
+    }
+
 
 }
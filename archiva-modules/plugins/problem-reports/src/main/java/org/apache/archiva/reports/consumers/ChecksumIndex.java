@@ -0,0 +1,160 @@
+package org.apache.archiva.reports.consumers;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact map of SHA-1 checksums to the paths of the artifacts having them, kept for the duration of a repository
+ * scan. The 160 bits of each checksum are held in primitive arrays and found through an open addressing table on their
+ * first 64 bits, the other bits being compared to tell colliding checksums apart.
+ * <p>
+ * Not thread safe.
+ *
+ * @since 3.0
+ */
+class ChecksumIndex
+{
+    private long[] high = new long[1024];
+
+    private long[] middle = new long[1024];
+
+    private int[] low = new int[1024];
+
+    private String[] paths = new String[1024];
+
+    private int size;
+
+    /**
+     * indexes of the entries plus one, 0 for free slots
+     */
+    private int[] table = new int[2048];
+
+    /**
+     * @param sha1 the checksum, ignored when it isn't a SHA-1 checksum
+     * @param path the path of the artifact
+     */
+    public void add( String sha1, String path )
+    {
+        if ( !isSha1( sha1 ) )
+        {
+            return;
+        }
+        if ( size == paths.length )
+        {
+            int capacity = size * 2;
+            high = Arrays.copyOf( high, capacity );
+            middle = Arrays.copyOf( middle, capacity );
+            low = Arrays.copyOf( low, capacity );
+            paths = Arrays.copyOf( paths, capacity );
+            rehash( capacity * 2 );
+        }
+        high[size] = parseLong( sha1, 0 );
+        middle[size] = parseLong( sha1, 16 );
+        low[size] = (int) Long.parseLong( sha1.substring( 32, 40 ), 16 );
+        paths[size] = path;
+        insert( size );
+        size++;
+    }
+
+    /**
+     * @return the paths of the artifacts having the checksum
+     */
+    public List<String> get( String sha1 )
+    {
+        if ( !isSha1( sha1 ) )
+        {
+            return Collections.emptyList();
+        }
+        long h = parseLong( sha1, 0 );
+        long m = parseLong( sha1, 16 );
+        int l = (int) Long.parseLong( sha1.substring( 32, 40 ), 16 );
+
+        List<String> found = new ArrayList<>( 1 );
+        int mask = table.length - 1;
+        // entries with the same checksum are all on the probe sequence of their first 64 bits
+        for ( int slot = hash( h ) & mask; table[slot] != 0; slot = ( slot + 1 ) & mask )
+        {
+            int entry = table[slot] - 1;
+            if ( high[entry] == h && middle[entry] == m && low[entry] == l )
+            {
+                found.add( paths[entry] );
+            }
+        }
+        return found;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    private void insert( int entry )
+    {
+        int mask = table.length - 1;
+        int slot = hash( high[entry] ) & mask;
+        while ( table[slot] != 0 )
+        {
+            slot = ( slot + 1 ) & mask;
+        }
+        table[slot] = entry + 1;
+    }
+
+    private void rehash( int capacity )
+    {
+        table = new int[capacity];
+        for ( int entry = 0; entry < size; entry++ )
+        {
+            insert( entry );
+        }
+    }
+
+    private static int hash( long value )
+    {
+        // the bits of a checksum are already evenly spread
+        return (int) ( value ^ ( value >>> 32 ) );
+    }
+
+    private static long parseLong( String hex, int start )
+    {
+        // two halves as Long.parseLong doesn't take unsigned values
+        return ( Long.parseLong( hex.substring( start, start + 8 ), 16 ) << 32 ) | Long.parseLong(
+            hex.substring( start + 8, start + 16 ), 16 );
+    }
+
+    private static boolean isSha1( String checksum )
+    {
+        if ( checksum == null || checksum.length() != 40 )
+        {
+            return false;
+        }
+        for ( int i = 0; i < checksum.length(); i++ )
+        {
+            if ( Character.digit( checksum.charAt( i ), 16 ) < 0 )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -29,6 +29,7 @@
 import org.apache.archiva.consumers.ConsumerException;
 import org.apache.archiva.consumers.KnownRepositoryContentConsumer;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.repository.ArtifactMetadataPage;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
 import org.apache.archiva.metadata.repository.RepositorySession;
@@ -98,6 +99,28 @@
 
     private RepositorySession repositorySession;
 
+    /**
+     * number of artifacts read at once when indexing their checksums
+     */
+    private int pageSize = Integer.getInteger( "archiva.duplicateArtifacts.pageSize", 1000 );
+
+    /**
+     * number of files looked up one by one in the metadata repository before indexing the checksums of all the
+     * artifacts of the repository, so that scans of a few changed files don't read the whole repository
+     */
+    private int indexThreshold = Integer.getInteger( "archiva.duplicateArtifacts.indexThreshold", 1000 );
+
+    private int processedFiles;
+
+    /**
+     * checksums of the artifacts of the repository when scanning all of it, <code>null</code> until
+     * {@link #indexThreshold} files are processed or when only looking at some files, which are then looked up one by
+     * one in the metadata repository
+     */
+    private ChecksumIndex checksumIndex;
+
+    private boolean executeOnEntireRepo;
+
     @Override
     public String getId()
     {
@@ -129,6 +152,9 @@ public void beginScan( ManagedRepository repo, Date whenGathered )
         repoId = repo.getId();
         this.repositoryDir = new File( repo.getLocation() );
         repositorySession = repositorySessionFactory.createSession();
+        checksumIndex = null;
+        processedFiles = 0;
+        executeOnEntireRepo = false;
     }
 
     @Override
@@ -136,6 +162,17 @@ public void beginScan( ManagedRepository repo, Date whenGathered, boolean execut
         throws ConsumerException
     {
         beginScan( repo, whenGathered );
+        this.executeOnEntireRepo = executeOnEntireRepo;
+    }
+
+    public void setPageSize( int pageSize )
+    {
+        this.pageSize = pageSize;
+    }
+
+    public void setIndexThreshold( int indexThreshold )
+    {
+        this.indexThreshold = indexThreshold;
     }
 
     @Override
@@ -164,7 +201,7 @@ public void processFile( String path )
         Collection<ArtifactMetadata> results;
         try
         {
-            results = metadataRepository.getArtifactsByChecksum( repoId, checksumSha1 );
+            results = getArtifactsByChecksum( metadataRepository, checksumSha1 );
         }
         catch ( MetadataRepositoryException e )
         {
@@ -172,7 +209,8 @@ public void processFile( String path )
             throw new ConsumerException( e.getMessage(), e );
         }
 
-        if ( CollectionUtils.isNotEmpty( results ) )
+        boolean indexed = false;
+        if ( CollectionUtils.isNotEmpty( results ) || checksumIndex != null )
         {
             ArtifactMetadata originalArtifact;
             try
@@ -181,13 +219,16 @@ public void processFile( String path )
             }
             catch ( Exception e )
             {
-                log.warn( "Not reporting problem for invalid artifact in checksum check: {}", e.getMessage() );
+                if ( CollectionUtils.isNotEmpty( results ) )
+                {
+                    log.warn( "Not reporting problem for invalid artifact in checksum check: {}", e.getMessage() );
+                }
                 return;
             }
 
+            String id = path.substring( path.lastIndexOf( '/' ) + 1 );
             for ( ArtifactMetadata dupArtifact : results )
             {
-                String id = path.substring( path.lastIndexOf( '/' ) + 1 );
                 if ( dupArtifact.getId().equals( id ) && dupArtifact.getNamespace().equals(
                     originalArtifact.getNamespace() ) && dupArtifact.getProject().equals(
                     originalArtifact.getProject() ) && dupArtifact.getVersion().equals(
@@ -197,6 +238,8 @@ public void processFile( String path )
 
                     log.debug( "Not counting duplicate for artifact {} for path {}", dupArtifact, path );
 
+                    indexed = true;
+
                     continue;
                 }
 
@@ -223,7 +266,65 @@ public void processFile( String path )
                     throw new ConsumerException( e.getMessage(), e );
                 }
             }
+
+            if ( checksumIndex != null && !indexed )
+            {
+                // the artifact may not be in the metadata repository yet, the files scanned after it are still
+                // checked against it
+                checksumIndex.add( checksumSha1, getCoordinates( originalArtifact.getNamespace(),
+                                                                 originalArtifact.getProject(),
+                                                                 originalArtifact.getVersion(), id ) );
+            }
+        }
+    }
+
+    private Collection<ArtifactMetadata> getArtifactsByChecksum( MetadataRepository metadataRepository,
+                                                                 String checksumSha1 )
+        throws MetadataRepositoryException
+    {
+        if ( checksumIndex == null )
+        {
+            if ( !executeOnEntireRepo || processedFiles++ < indexThreshold )
+            {
+                return metadataRepository.getArtifactsByChecksum( repoId, checksumSha1 );
+            }
+
+            // one pass over the artifacts of the repository rather than one query per file
+            checksumIndex = new ChecksumIndex();
+            String continuationToken = null;
+            do
+            {
+                ArtifactMetadataPage page = metadataRepository.getArtifacts( repoId, continuationToken, pageSize );
+                for ( ArtifactMetadata artifact : page.getArtifacts() )
+                {
+                    checksumIndex.add( artifact.getSha1(),
+                                       getCoordinates( artifact.getNamespace(), artifact.getProject(),
+                                                       artifact.getVersion(), artifact.getId() ) );
+                }
+                continuationToken = page.getContinuationToken();
+            }
+            while ( continuationToken != null );
+            log.debug( "Indexed the checksums of {} artifacts of {}", checksumIndex.size(), repoId );
+        }
+
+        List<ArtifactMetadata> artifacts = new ArrayList<>();
+        for ( String coordinates : checksumIndex.get( checksumSha1 ) )
+        {
+            String[] parts = coordinates.split( "/", 4 );
+            ArtifactMetadata artifact = new ArtifactMetadata();
+            artifact.setRepositoryId( repoId );
+            artifact.setNamespace( parts[0] );
+            artifact.setProject( parts[1] );
+            artifact.setVersion( parts[2] );
+            artifact.setId( parts[3] );
+            artifacts.add( artifact );
         }
+        return artifacts;
+    }
+
+    private static String getCoordinates( String namespace, String project, String version, String id )
+    {
+        return namespace + "/" + project + "/" + version + "/" + id;
     }
 
     @Override
@@ -236,6 +337,7 @@ public void processFile( String path, boolean executeOnEntireRepo )
     @Override
     public void completeScan()
     {
+        checksumIndex = null;
         repositorySession.close();
     }
 
@@ -0,0 +1,68 @@
+package org.apache.archiva.reports.consumers;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ChecksumIndexTest
+    extends TestCase
+{
+    private static final String SHA1 = "edf5938e646956f445c6ecb719d44579cdeed974";
+
+    // same first 64 bits as SHA1
+    private static final String COLLIDING_SHA1 = "edf5938e646956f4ffffffffffffffffffffffff";
+
+    @Test
+    public void testGetByChecksum()
+    {
+        ChecksumIndex index = new ChecksumIndex();
+        index.add( SHA1, "a" );
+        index.add( COLLIDING_SHA1, "b" );
+        index.add( SHA1.toUpperCase(), "c" );
+        index.add( null, "d" );
+        index.add( "not a checksum", "e" );
+
+        assertEquals( Arrays.asList( "a", "c" ), index.get( SHA1 ) );
+        assertEquals( Collections.singletonList( "b" ), index.get( COLLIDING_SHA1 ) );
+        assertTrue( index.get( "0000000000000000000000000000000000000000" ).isEmpty() );
+        assertTrue( index.get( null ).isEmpty() );
+        assertEquals( 3, index.size() );
+    }
+
+    @Test
+    public void testGrow()
+    {
+        ChecksumIndex index = new ChecksumIndex();
+        for ( int i = 0; i < 10000; i++ )
+        {
+            index.add( String.format( "%040x", i ), Integer.toString( i ) );
+        }
+        assertEquals( 10000, index.size() );
+        for ( int i = 0; i < 10000; i++ )
+        {
+            assertEquals( Collections.singletonList( Integer.toString( i ) ),
+                          index.get( String.format( "%040x", i ) ) );
+        }
+    }
+}
@@ -24,6 +24,7 @@
 import org.apache.archiva.consumers.ConsumerException;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
 import org.apache.archiva.metadata.model.MetadataFacet;
+import org.apache.archiva.metadata.repository.ArtifactMetadataPage;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.RepositorySession;
 import org.apache.archiva.metadata.repository.RepositorySessionFactory;
@@ -173,6 +174,49 @@ public void testConsumerArtifactDuplicatedButSelfNotInMetadataRepository()
         assertProblem( problem );
     }
 
+    @Test
+    public void testConsumerArtifactDuplicatedOnEntireRepository()
+        throws Exception
+    {
+        ArtifactMetadata self = createMetadata( TEST_VERSION );
+        self.setSha1( TEST_CHECKSUM );
+        ArtifactMetadata duplicate = createMetadata( "1.0" );
+        duplicate.setSha1( TEST_CHECKSUM );
+        ArtifactMetadata other = createMetadata( "2.0" );
+        other.setSha1( "0000000000000000000000000000000000000000" );
+        when( metadataRepository.getArtifacts( eq( TEST_REPO ), (String) isNull(), anyInt() ) ).thenReturn(
+            new ArtifactMetadataPage( Arrays.asList( self, duplicate, other ), null ) );
+
+        consumer.setIndexThreshold( 0 );
+        consumer.beginScan( config, new Date(), true );
+        consumer.processFile( TEST_FILE, true );
+        consumer.completeScan( true );
+
+        ArgumentCaptor<RepositoryProblemFacet> argument = ArgumentCaptor.forClass( RepositoryProblemFacet.class );
+        verify( metadataRepository ).addMetadataFacet( eq( TEST_REPO ), argument.capture() );
+        RepositoryProblemFacet problem = argument.getValue();
+        assertProblem( problem );
+        verify( metadataRepository, never() ).getArtifactsByChecksum( anyString(), anyString() );
+    }
+
+    @Test
+    public void testConsumerFewArtifactsOnEntireRepositoryNotIndexed()
+        throws Exception
+    {
+        when( metadataRepository.getArtifactsByChecksum( TEST_REPO, TEST_CHECKSUM ) ).thenReturn(
+            Arrays.asList( TEST_METADATA, createMetadata( "1.0" ) ) );
+
+        consumer.setIndexThreshold( 10 );
+        consumer.beginScan( config, new Date(), true );
+        consumer.processFile( TEST_FILE, true );
+        consumer.completeScan( true );
+
+        ArgumentCaptor<RepositoryProblemFacet> argument = ArgumentCaptor.forClass( RepositoryProblemFacet.class );
+        verify( metadataRepository ).addMetadataFacet( eq( TEST_REPO ), argument.capture() );
+        assertProblem( argument.getValue() );
+        verify( metadataRepository, never() ).getArtifacts( anyString(), anyString(), anyInt() );
+    }
+
     @Test
     public void testConsumerArtifactFileNotExist()
         throws Exception
@@ -23,11 +23,13 @@
 import org.apache.archiva.common.utils.VersionUtil;
 import org.apache.archiva.configuration.ArchivaConfiguration;
 import org.apache.archiva.configuration.Configuration;
-import org.apache.archiva.configuration.ManagedRepositoryConfiguration;
 import org.apache.archiva.maven2.metadata.MavenMetadataReader;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.repository.ArtifactMetadataPage;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
+import org.apache.archiva.metadata.repository.MetadataResolutionException;
+import org.apache.archiva.metadata.repository.filter.AllFilter;
 import org.apache.archiva.metadata.repository.filter.Filter;
 import org.apache.archiva.metadata.repository.storage.RepositoryPathTranslator;
 import org.apache.archiva.model.ArchivaRepositoryMetadata;
@@ -44,15 +46,25 @@
 import javax.inject.Named;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  *
@@ -76,6 +88,21 @@
 
     private static final String METADATA_FILENAME = "maven-metadata.xml";
 
+    /**
+     * number of artifacts of the source repository read at once
+     */
+    private int pageSize = Integer.getInteger( "archiva.merge.pageSize", 1000 );
+
+    /**
+     * number of artifacts copied at once
+     */
+    private int threads = Integer.getInteger( "archiva.merge.threads", 4 );
+
+    /**
+     * whether artifacts are hard linked into the target repository when both repositories are on the same file system
+     */
+    private boolean hardLinks = !Boolean.getBoolean( "archiva.merge.noHardLinks" );
+
     @Inject
     public Maven2RepositoryMerger(
         @Named (value = "archivaConfiguration#default") ArchivaConfiguration archivaConfiguration,
@@ -90,18 +117,90 @@ public void setConfiguration( ArchivaConfiguration configuration )
         this.configuration = configuration;
     }
 
+    public void setPageSize( int pageSize )
+    {
+        this.pageSize = pageSize;
+    }
+
+    public void setThreads( int threads )
+    {
+        this.threads = threads;
+    }
+
+    public void setHardLinks( boolean hardLinks )
+    {
+        this.hardLinks = hardLinks;
+    }
+
     @Override
     public void merge( MetadataRepository metadataRepository, String sourceRepoId, String targetRepoId )
         throws RepositoryMergerException
     {
+        merge( metadataRepository, sourceRepoId, targetRepoId, new AllFilter<ArtifactMetadata>() );
+    }
 
+    // TODO when UI needs a subset to merge
+    @Override
+    public void merge( MetadataRepository metadataRepository, String sourceRepoId, String targetRepoId,
+                       Filter<ArtifactMetadata> filter )
+        throws RepositoryMergerException
+    {
         try
         {
-            List<ArtifactMetadata> artifactsInSourceRepo = metadataRepository.getArtifacts( sourceRepoId );
-            for ( ArtifactMetadata artifactMetadata : artifactsInSourceRepo )
+            Configuration config = configuration.getConfiguration();
+            File sourceRepo = new File( config.findManagedRepositoryById( sourceRepoId ).getLocation() );
+            File targetRepo = new File( config.findManagedRepositoryById( targetRepoId ).getLocation() );
+
+            // plan the merge up front: the artifacts to copy, by project for the metadata updates
+            Map<String, List<ArtifactMetadata>> projects = new LinkedHashMap<>();
+            String continuationToken = null;
+            do
+            {
+                ArtifactMetadataPage page =
+                    metadataRepository.getArtifacts( sourceRepoId, continuationToken, pageSize );
+                for ( ArtifactMetadata metadata : page.getArtifacts() )
+                {
+                    if ( filter.accept( metadata ) )
+                    {
+                        String projectKey = metadata.getNamespace() + ":" + metadata.getProject();
+                        List<ArtifactMetadata> projectArtifacts = projects.get( projectKey );
+                        if ( projectArtifacts == null )
+                        {
+                            projectArtifacts = new ArrayList<>();
+                            projects.put( projectKey, projectArtifacts );
+                        }
+                        projectArtifacts.add( metadata );
+                    }
+                }
+                continuationToken = page.getContinuationToken();
+            }
+            while ( continuationToken != null );
+
+            File journalFile = getJournalFile( targetRepo, sourceRepoId );
+            journalFile.getParentFile().mkdirs();
+            MergeJournal journal = new MergeJournal( journalFile );
+            try
+            {
+                copyArtifacts( sourceRepo, targetRepo, projects.values(), journal );
+
+                // explicitly update only if metadata-updater consumer is not enabled!
+                if ( !config.getRepositoryScanning().getKnownContentConsumers().contains( "metadata-updater" ) )
+                {
+                    Date lastUpdatedTimestamp = Calendar.getInstance().getTime();
+                    DateFormat fmt = new SimpleDateFormat( "yyyyMMdd.HHmmss" );
+                    fmt.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
+                    String timestamp = fmt.format( lastUpdatedTimestamp );
+
+                    for ( List<ArtifactMetadata> projectArtifacts : projects.values() )
+                    {
+                        updateMetadata( sourceRepo, targetRepo, projectArtifacts, lastUpdatedTimestamp, timestamp );
+                    }
+                }
+                journal.complete();
+            }
+            finally
             {
-                artifactMetadata.setRepositoryId( targetRepoId );
-                createFolderStructure( sourceRepoId, targetRepoId, artifactMetadata );
+                journal.close();
             }
         }
         catch ( MetadataRepositoryException e )
@@ -118,123 +217,136 @@ public void merge( MetadataRepository metadataRepository, String sourceRepoId, S
         }
     }
 
-    // TODO when UI needs a subset to merge
-    @Override
-    public void merge( MetadataRepository metadataRepository, String sourceRepoId, String targetRepoId,
-                       Filter<ArtifactMetadata> filter )
-        throws RepositoryMergerException
+    /**
+     * @return the journal of a merge, in the hidden <code>.archiva</code> directory of the target repository which the
+     * repository scanning ignores by default
+     */
+    static File getJournalFile( File targetRepo, String sourceRepoId )
+    {
+        return new File( new File( targetRepo, ".archiva" ), "merge-" + sourceRepoId + ".journal" );
+    }
+
+    /**
+     * Copies the artifacts and their POM on a pool of {@link #threads} threads, skipping the artifacts which the
+     * journal records as merged by an interrupted run.
+     */
+    private void copyArtifacts( final File sourceRepo, final File targetRepo,
+                                Collection<List<ArtifactMetadata>> projects, final MergeJournal journal )
+        throws IOException, RepositoryMergerException
     {
+        ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, threads ) );
         try
         {
-            List<ArtifactMetadata> sourceArtifacts = metadataRepository.getArtifacts( sourceRepoId );
-            for ( ArtifactMetadata metadata : sourceArtifacts )
+            List<Future<Void>> copies = new ArrayList<>();
+            for ( List<ArtifactMetadata> projectArtifacts : projects )
             {
-                if ( filter.accept( metadata ) )
+                for ( final ArtifactMetadata artifactMetadata : projectArtifacts )
                 {
-                    createFolderStructure( sourceRepoId, targetRepoId, metadata );
+                    copies.add( executor.submit( new Callable<Void>()
+                    {
+                        @Override
+                        public Void call()
+                            throws IOException
+                        {
+                            copyArtifact( sourceRepo, targetRepo, artifactMetadata, journal );
+                            return null;
+                        }
+                    } ) );
                 }
             }
+            for ( Future<Void> copy : copies )
+            {
+                copy.get();
+            }
         }
-        catch ( MetadataRepositoryException e )
+        catch ( ExecutionException e )
         {
-            throw new RepositoryMergerException( e.getMessage(), e );
+            if ( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RepositoryMergerException( e.getCause().getMessage(), e );
         }
-        catch ( IOException e )
+        catch ( InterruptedException e )
         {
-            throw new RepositoryMergerException( e.getMessage(), e );
+            Thread.currentThread().interrupt();
+            throw new RepositoryMergerException( "Interrupted while merging " + sourceRepo, e );
         }
-        catch ( RepositoryException e )
+        finally
         {
-            throw new RepositoryMergerException( e.getMessage(), e );
+            executor.shutdownNow();
         }
     }
 
-    private void createFolderStructure( String sourceRepoId, String targetRepoId, ArtifactMetadata artifactMetadata )
-        throws IOException, RepositoryException
+    private void copyArtifact( File sourceRepo, File targetRepo, ArtifactMetadata artifactMetadata,
+                               MergeJournal journal )
+        throws IOException
     {
-        Configuration config = configuration.getConfiguration();
-
-        ManagedRepositoryConfiguration targetRepoConfig = config.findManagedRepositoryById( targetRepoId );
-
-        ManagedRepositoryConfiguration sourceRepoConfig = config.findManagedRepositoryById( sourceRepoId );
-
-        Date lastUpdatedTimestamp = Calendar.getInstance().getTime();
-
-        TimeZone timezone = TimeZone.getTimeZone( "UTC" );
-
-        DateFormat fmt = new SimpleDateFormat( "yyyyMMdd.HHmmss" );
-
-        fmt.setTimeZone( timezone );
-
-        String timestamp = fmt.format( lastUpdatedTimestamp );
-
-        String targetRepoPath = targetRepoConfig.getLocation();
-
-        String sourceRepoPath = sourceRepoConfig.getLocation();
-
         String artifactPath = pathTranslator.toPath( artifactMetadata.getNamespace(), artifactMetadata.getProject(),
                                                      artifactMetadata.getProjectVersion(), artifactMetadata.getId() );
 
-        File sourceArtifactFile = new File( sourceRepoPath, artifactPath );
-
-        File targetArtifactFile = new File( targetRepoPath, artifactPath );
-
-        log.debug( "artifactPath {}", artifactPath );
-
-        int lastIndex = artifactPath.lastIndexOf( RepositoryPathTranslator.PATH_SEPARATOR );
+        File sourceArtifactFile = new File( sourceRepo, artifactPath );
 
-        File targetFile = new File( targetRepoPath, artifactPath.substring( 0, lastIndex ) );
+        File targetArtifactFile = new File( targetRepo, artifactPath );
 
-        if ( !targetFile.exists() )
+        if ( journal.isMerged( artifactPath ) && targetArtifactFile.length() == sourceArtifactFile.length() )
         {
-            // create the folder structure when it does not exist
-            targetFile.mkdirs();
+            log.debug( "artifactPath {} already merged", artifactPath );
+            return;
         }
+
+        log.debug( "artifactPath {}", artifactPath );
+
         // artifact copying
-        copyFile( sourceArtifactFile, targetArtifactFile );
-
-        // pom file copying
-        // TODO need to use path translator to get the pom file path
-//        String fileName = artifactMetadata.getProject() + "-" + artifactMetadata.getVersion() + ".pom";
-//
-//        File sourcePomFile =
-//            pathTranslator.toFile( new File( sourceRepoPath ), artifactMetadata.getId(), artifactMetadata.getProject(),
-//                                   artifactMetadata.getVersion(), fileName );
-//
-//        String relativePathToPomFile = sourcePomFile.getAbsolutePath().split( sourceRepoPath )[1];
-//        File targetPomFile = new File( targetRepoPath, relativePathToPomFile );
+        linkOrCopyFile( sourceArtifactFile, targetArtifactFile );
 
         //pom file copying  (file path is taken with out using path translator)
-
-        String index = artifactPath.substring( lastIndex + 1 );
-        int last = index.lastIndexOf( '.' );
-        File sourcePomFile = new File( sourceRepoPath,
-                                       artifactPath.substring( 0, lastIndex ) + "/" + artifactPath.substring(
-                                           lastIndex + 1 ).substring( 0, last ) + ".pom" );
-        File targetPomFile = new File( targetRepoPath,
-                                       artifactPath.substring( 0, lastIndex ) + "/" + artifactPath.substring(
-                                           lastIndex + 1 ).substring( 0, last ) + ".pom" );
+        int lastIndex = artifactPath.lastIndexOf( RepositoryPathTranslator.PATH_SEPARATOR );
+        String fileName = artifactPath.substring( lastIndex + 1 );
+        String pomPath = artifactPath.substring( 0, lastIndex ) + "/" + fileName.substring( 0, fileName.lastIndexOf(
+            '.' ) ) + ".pom";
+        File sourcePomFile = new File( sourceRepo, pomPath );
+        File targetPomFile = new File( targetRepo, pomPath );
 
         if ( !targetPomFile.exists() && sourcePomFile.exists() )
         {
-            copyFile( sourcePomFile, targetPomFile );
+            linkOrCopyFile( sourcePomFile, targetPomFile );
         }
 
-        // explicitly update only if metadata-updater consumer is not enabled!
-        if ( !config.getRepositoryScanning().getKnownContentConsumers().contains( "metadata-updater" ) )
+        journal.merged( artifactPath );
+    }
+
+    /**
+     * Updates the metadata files of a project and of its versions once for all the merged artifacts of the project.
+     */
+    void updateMetadata( File sourceRepo, File targetRepo, List<ArtifactMetadata> projectArtifacts,
+                         Date lastUpdatedTimestamp, String timestamp )
+        throws IOException, RepositoryMetadataException
+    {
+        Map<String, ArtifactMetadata> versions = new LinkedHashMap<>();
+        for ( ArtifactMetadata artifactMetadata : projectArtifacts )
         {
+            if ( !versions.containsKey( artifactMetadata.getVersion() ) )
+            {
+                versions.put( artifactMetadata.getVersion(), artifactMetadata );
+            }
+        }
 
-            // updating version metadata files
-            File versionMetaDataFileInSourceRepo =
-                pathTranslator.toFile( new File( sourceRepoPath ), artifactMetadata.getNamespace(),
-                                       artifactMetadata.getProject(), artifactMetadata.getVersion(),
-                                       METADATA_FILENAME );
+        // updating version metadata files
+        for ( ArtifactMetadata artifactMetadata : versions.values() )
+        {
+            String versionMetadataPath =
+                pathTranslator.toPath( artifactMetadata.getNamespace(), artifactMetadata.getProject(),
+                                       artifactMetadata.getVersion(), METADATA_FILENAME );
+            File versionMetaDataFileInSourceRepo = new File( sourceRepo, versionMetadataPath );
 
             if ( versionMetaDataFileInSourceRepo.exists() )
-            {//Pattern quote for windows path
-                String relativePathToVersionMetadataFile =
-                    versionMetaDataFileInSourceRepo.getAbsolutePath().split( Pattern.quote( sourceRepoPath ) )[1];
-                File versionMetaDataFileInTargetRepo = new File( targetRepoPath, relativePathToVersionMetadataFile );
+            {
+                File versionMetaDataFileInTargetRepo = new File( targetRepo, versionMetadataPath );
 
                 if ( !versionMetaDataFileInTargetRepo.exists() )
                 {
@@ -243,33 +355,60 @@ private void createFolderStructure( String sourceRepoId, String targetRepoId, Ar
                 else
                 {
                     updateVersionMetadata( versionMetaDataFileInTargetRepo, artifactMetadata, lastUpdatedTimestamp );
-
                 }
             }
+        }
 
-            // updating project meta data file
-            String projectDirectoryInSourceRepo = new File( versionMetaDataFileInSourceRepo.getParent() ).getParent();
-            File projectMetadataFileInSourceRepo = new File( projectDirectoryInSourceRepo, METADATA_FILENAME );
+        // updating project meta data file
+        ArtifactMetadata projectArtifact = projectArtifacts.get( 0 );
+        String projectMetadataPath =
+            pathTranslator.toPath( projectArtifact.getNamespace(), projectArtifact.getProject() ) + METADATA_FILENAME;
+        File projectMetadataFileInSourceRepo = new File( sourceRepo, projectMetadataPath );
 
-            if ( projectMetadataFileInSourceRepo.exists() )
-            {
-                String relativePathToProjectMetadataFile =
-                    projectMetadataFileInSourceRepo.getAbsolutePath().split( Pattern.quote( sourceRepoPath ) )[1];
-                File projectMetadataFileInTargetRepo = new File( targetRepoPath, relativePathToProjectMetadataFile );
+        if ( projectMetadataFileInSourceRepo.exists() )
+        {
+            File projectMetadataFileInTargetRepo = new File( targetRepo, projectMetadataPath );
 
-                if ( !projectMetadataFileInTargetRepo.exists() )
-                {
+            if ( !projectMetadataFileInTargetRepo.exists() )
+            {
+                copyFile( projectMetadataFileInSourceRepo, projectMetadataFileInTargetRepo );
+            }
+            else
+            {
+                updateProjectMetadata( projectMetadataFileInTargetRepo, versions.values(), lastUpdatedTimestamp,
+                                       timestamp );
+            }
+        }
+    }
 
-                    copyFile( projectMetadataFileInSourceRepo, projectMetadataFileInTargetRepo );
-                }
-                else
-                {
-                    updateProjectMetadata( projectMetadataFileInTargetRepo, artifactMetadata, lastUpdatedTimestamp,
-                                           timestamp );
-                }
+    /**
+     * Hard links the file into the target repository, which only works on the same file system, else copies it. Only
+     * used for artifacts and POMs, which are never written again in place, unlike metadata files.
+     */
+    private void linkOrCopyFile( File sourceFile, File targetFile )
+        throws IOException
+    {
+        if ( hardLinks )
+        {
+            targetFile.getParentFile().mkdirs();
+            try
+            {
+                Files.deleteIfExists( targetFile.toPath() );
+                createLink( targetFile.toPath(), sourceFile.toPath() );
+                return;
+            }
+            catch ( IOException | UnsupportedOperationException e )
+            {
+                log.debug( "Can't link {} to {}, copying it: {}", targetFile, sourceFile, e.getMessage() );
             }
         }
+        copyFile( sourceFile, targetFile );
+    }
 
+    void createLink( Path link, Path existing )
+        throws IOException
+    {
+        Files.createLink( link, existing );
     }
 
     private void copyFile( File sourceFile, File targetFile )
@@ -280,35 +419,30 @@ private void copyFile( File sourceFile, File targetFile )
 
     }
 
-    private void updateProjectMetadata( File projectMetaDataFileIntargetRepo, ArtifactMetadata artifactMetadata,
-                                        Date lastUpdatedTimestamp, String timestamp )
+    private void updateProjectMetadata( File projectMetaDataFileIntargetRepo,
+                                        Collection<ArtifactMetadata> artifactMetadatas, Date lastUpdatedTimestamp,
+                                        String timestamp )
         throws RepositoryMetadataException
     {
-        ArrayList<String> availableVersions = new ArrayList<>();
-        String latestVersion = artifactMetadata.getProjectVersion();
-
         ArchivaRepositoryMetadata projectMetadata = getMetadata( projectMetaDataFileIntargetRepo );
 
-        if ( projectMetaDataFileIntargetRepo.exists() )
+        List<String> availableVersions = new ArrayList<>( projectMetadata.getAvailableVersions() );
+        boolean released = false;
+        for ( ArtifactMetadata artifactMetadata : artifactMetadatas )
         {
-            availableVersions = (ArrayList<String>) projectMetadata.getAvailableVersions();
-
-            Collections.sort( availableVersions, VersionComparator.getInstance() );
-
             if ( !availableVersions.contains( artifactMetadata.getVersion() ) )
             {
                 availableVersions.add( artifactMetadata.getVersion() );
             }
-
-            latestVersion = availableVersions.get( availableVersions.size() - 1 );
-        }
-        else
-        {
-            availableVersions.add( artifactMetadata.getProjectVersion() );
-            projectMetadata.setGroupId( artifactMetadata.getNamespace() );
-            projectMetadata.setArtifactId( artifactMetadata.getProject() );
+            released |= !VersionUtil.isSnapshot( artifactMetadata.getVersion() );
         }
 
+        Collections.sort( availableVersions, VersionComparator.getInstance() );
+
+        String latestVersion = availableVersions.get( availableVersions.size() - 1 );
+
+        ArtifactMetadata artifactMetadata = artifactMetadatas.iterator().next();
+
         if ( projectMetadata.getGroupId() == null )
         {
             projectMetadata.setGroupId( artifactMetadata.getNamespace() );
@@ -324,7 +458,7 @@ private void updateProjectMetadata( File projectMetaDataFileIntargetRepo, Artifa
         projectMetadata.setLastUpdated( timestamp );
         projectMetadata.setLastUpdatedTimestamp( lastUpdatedTimestamp );
 
-        if ( !VersionUtil.isSnapshot( artifactMetadata.getVersion() ) )
+        if ( released )
         {
             projectMetadata.setReleasedVersion( latestVersion );
         }
@@ -374,25 +508,47 @@ public List<ArtifactMetadata> getConflictingArtifacts( MetadataRepository metada
     {
         try
         {
-            List<ArtifactMetadata> targetArtifacts = metadataRepository.getArtifacts( targetRepo );
-            List<ArtifactMetadata> sourceArtifacts = metadataRepository.getArtifacts( sourceRepo );
             List<ArtifactMetadata> conflictsArtifacts = new ArrayList<>();
-
-            for ( ArtifactMetadata targetArtifact : targetArtifacts )
+            String continuationToken = null;
+            do
             {
-                for ( ArtifactMetadata sourceArtifact : sourceArtifacts )
+                ArtifactMetadataPage page = metadataRepository.getArtifacts( sourceRepo, continuationToken, pageSize );
+
+                // hash the artifacts of the page by project version and id, then only look up these project versions
+                // in the target repository rather than reading all of its artifacts
+                Map<String, Map<String, ArtifactMetadata>> sourceArtifacts = new LinkedHashMap<>();
+                for ( ArtifactMetadata sourceArtifact : page.getArtifacts() )
+                {
+                    String projectVersionKey =
+                        sourceArtifact.getNamespace() + "/" + sourceArtifact.getProject() + "/"
+                            + sourceArtifact.getProjectVersion();
+                    Map<String, ArtifactMetadata> versionArtifacts = sourceArtifacts.get( projectVersionKey );
+                    if ( versionArtifacts == null )
+                    {
+                        versionArtifacts = new HashMap<>();
+                        sourceArtifacts.put( projectVersionKey, versionArtifacts );
+                    }
+                    versionArtifacts.put( sourceArtifact.getId(), sourceArtifact );
+                }
+
+                for ( Map<String, ArtifactMetadata> versionArtifacts : sourceArtifacts.values() )
                 {
-                    if ( isEquals( targetArtifact, sourceArtifact ) )
+                    ArtifactMetadata artifact = versionArtifacts.values().iterator().next();
+                    Collection<ArtifactMetadata> targetArtifacts =
+                        metadataRepository.getArtifacts( targetRepo, artifact.getNamespace(), artifact.getProject(),
+                                                         artifact.getProjectVersion() );
+                    for ( ArtifactMetadata targetArtifact : targetArtifacts )
                     {
-                        if ( !conflictsArtifacts.contains( sourceArtifact ) )
+                        ArtifactMetadata sourceArtifact = versionArtifacts.remove( targetArtifact.getId() );
+                        if ( sourceArtifact != null )
                         {
                             conflictsArtifacts.add( sourceArtifact );
                         }
                     }
                 }
+                continuationToken = page.getContinuationToken();
             }
-
-            sourceArtifacts.removeAll( conflictsArtifacts );
+            while ( continuationToken != null );
 
             return conflictsArtifacts;
         }
@@ -400,22 +556,9 @@ public List<ArtifactMetadata> getConflictingArtifacts( MetadataRepository metada
         {
             throw new RepositoryMergerException( e.getMessage(), e );
         }
-    }
-
-    private boolean isEquals( ArtifactMetadata sourceArtifact, ArtifactMetadata targetArtifact )
-    {
-        boolean isSame = false;
-
-        if ( ( sourceArtifact.getNamespace().equals( targetArtifact.getNamespace() ) )
-            && ( sourceArtifact.getProject().equals( targetArtifact.getProject() ) ) && ( sourceArtifact.getId().equals(
-            targetArtifact.getId() ) ) && ( sourceArtifact.getProjectVersion().equals(
-            targetArtifact.getProjectVersion() ) ) )
-
+        catch ( MetadataResolutionException e )
         {
-            isSame = true;
-
+            throw new RepositoryMergerException( e.getMessage(), e );
         }
-
-        return isSame;
     }
 }
@@ -0,0 +1,93 @@
+package org.apache.archiva.stagerepository.merge;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Journal of the artifacts merged into a repository, so that an interrupted merge resumes where it stopped rather than
+ * copying everything again. It holds the path of one merged artifact per line and is removed once the merge completes.
+ *
+ * @since 3.0
+ */
+class MergeJournal
+    implements Closeable
+{
+    private final File file;
+
+    private final Set<String> merged = new HashSet<>();
+
+    private final Writer writer;
+
+    MergeJournal( File file )
+        throws IOException
+    {
+        this.file = file;
+        if ( file.exists() )
+        {
+            // a line cut by a crash doesn't match any artifact, which is then merged again
+            merged.addAll( Files.readAllLines( file.toPath(), StandardCharsets.UTF_8 ) );
+        }
+        this.writer = Files.newBufferedWriter( file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                                               StandardOpenOption.APPEND );
+    }
+
+    /**
+     * @return whether a previous run of the merge already merged the artifact
+     */
+    public synchronized boolean isMerged( String artifactPath )
+    {
+        return merged.contains( artifactPath );
+    }
+
+    public synchronized void merged( String artifactPath )
+        throws IOException
+    {
+        writer.write( artifactPath );
+        writer.write( '\n' );
+        writer.flush();
+        merged.add( artifactPath );
+    }
+
+    /**
+     * Removes the journal once all the artifacts are merged.
+     */
+    public void complete()
+        throws IOException
+    {
+        close();
+        Files.deleteIfExists( file.toPath() );
+    }
+
+    @Override
+    public synchronized void close()
+        throws IOException
+    {
+        writer.close();
+    }
+}
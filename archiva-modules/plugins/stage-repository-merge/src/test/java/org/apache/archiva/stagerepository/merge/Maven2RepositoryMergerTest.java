@@ -25,18 +25,35 @@
 import org.apache.archiva.configuration.ManagedRepositoryConfiguration;
 import org.apache.archiva.configuration.RepositoryScanningConfiguration;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.repository.ArtifactMetadataPage;
 import org.apache.archiva.metadata.repository.MetadataRepository;
+import org.apache.archiva.metadata.repository.storage.RepositoryPathTranslator;
 import org.apache.archiva.test.utils.ArchivaSpringJUnit4ClassRunner;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.test.context.ContextConfiguration;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.Mockito.*;
 
@@ -48,12 +65,22 @@
 
     private static final String TEST_REPO_ID = "test";
 
+    private static final String MERGE_SOURCE_ID = "merge-source";
+
+    private static final String MERGE_TARGET_ID = "merge-target";
+
+    private Logger log = LoggerFactory.getLogger( getClass() );
+
     @Inject
     private Maven2RepositoryMerger repositoryMerger;
 
     @Inject
     ArchivaConfiguration configuration;
 
+    @Inject
+    @Named (value = "repositoryPathTranslator#maven2")
+    private RepositoryPathTranslator pathTranslator;
+
     private MetadataRepository metadataRepository;
 
     @Before
@@ -114,9 +141,10 @@ public void testMerge()
         c.addManagedRepository( targetRepo );
         configuration.save( c );
 
-        when( metadataRepository.getArtifacts( TEST_REPO_ID ) ).thenReturn( getArtifacts() );
+        when( metadataRepository.getArtifacts( eq( TEST_REPO_ID ), (String) isNull(), anyInt() ) ).thenReturn(
+            new ArtifactMetadataPage( getArtifacts(), null ) );
         repositoryMerger.merge( metadataRepository, TEST_REPO_ID, "target-rep" );
-        verify( metadataRepository ).getArtifacts( TEST_REPO_ID );
+        verify( metadataRepository ).getArtifacts( eq( TEST_REPO_ID ), (String) isNull(), anyInt() );
         assertTrue( mergedArtifact.exists() );
         assertTrue( mavenMetadata.exists() );
         assertTrue( pom.exists() );
@@ -164,12 +192,238 @@ public void testMergeWithOutConflictArtifacts()
             "/target/test-repository/com/example/test/test-artifact/1.0-SNAPSHOT/test-artifact-1.0-20100308.230825-1.jar" );
         targetRepoFile.setReadOnly();
 
-        when( metadataRepository.getArtifacts( sourceRepoId ) ).thenReturn( sourceRepoArtifactsList );
-        when( metadataRepository.getArtifacts( TEST_REPO_ID ) ).thenReturn( targetRepoArtifactsList );
+        when( metadataRepository.getArtifacts( eq( sourceRepoId ), (String) isNull(), anyInt() ) ).thenReturn(
+            new ArtifactMetadataPage( sourceRepoArtifactsList, null ) );
+        when( metadataRepository.getArtifacts( TEST_REPO_ID, "com.example.test", "test-artifact",
+                                               "1.0-SNAPSHOT" ) ).thenReturn( targetRepoArtifactsList );
 
         assertEquals( 1, repositoryMerger.getConflictingArtifacts( metadataRepository, sourceRepoId,
                                                                    TEST_REPO_ID ).size() );
-        verify( metadataRepository ).getArtifacts( TEST_REPO_ID );
+        verify( metadataRepository ).getArtifacts( TEST_REPO_ID, "com.example.test", "test-artifact",
+                                                   "1.0-SNAPSHOT" );
+        verify( metadataRepository, never() ).getArtifacts( TEST_REPO_ID );
+    }
+
+    /**
+     * Conflicts are looked up by project version in the target repository, so the time taken depends on the size of
+     * the source repository only. Run with <code>-Dmerge.benchmark.artifacts=10000</code> for meaningful numbers.
+     */
+    @Test
+    public void testGetConflictingArtifactsScaling()
+        throws Exception
+    {
+        int artifacts = Integer.getInteger( "merge.benchmark.artifacts", 1000 );
+
+        List<ArtifactMetadata> sourceArtifacts = new ArrayList<>();
+        for ( int i = 0; i < artifacts; i++ )
+        {
+            sourceArtifacts.add( createArtifact( "source-repo", "1." + i ) );
+        }
+
+        long previous = 0;
+        for ( int factor = 1; factor <= 100; factor *= 10 )
+        {
+            // the target holds every other version of the source and many more
+            final Map<String, List<ArtifactMetadata>> targetArtifacts = new HashMap<>();
+            for ( int i = 0; i < artifacts * factor; i++ )
+            {
+                if ( i >= artifacts || i % 2 == 0 )
+                {
+                    String version = "1." + i;
+                    targetArtifacts.put( version, Collections.singletonList( createArtifact( TEST_REPO_ID, version ) ) );
+                }
+            }
+
+            MetadataRepository repository = mock( MetadataRepository.class );
+            when( repository.getArtifacts( eq( "source-repo" ), (String) isNull(), anyInt() ) ).thenReturn(
+                new ArtifactMetadataPage( sourceArtifacts, null ) );
+            when( repository.getArtifacts( eq( TEST_REPO_ID ), anyString(), anyString(), anyString() ) ).thenAnswer(
+                new Answer<Collection<ArtifactMetadata>>()
+                {
+                    @Override
+                    public Collection<ArtifactMetadata> answer( InvocationOnMock invocation )
+                    {
+                        List<ArtifactMetadata> versionArtifacts =
+                            targetArtifacts.get( (String) invocation.getArguments()[3] );
+                        return versionArtifacts == null ? Collections.<ArtifactMetadata>emptyList() : versionArtifacts;
+                    }
+                } );
+
+            long start = System.currentTimeMillis();
+            List<ArtifactMetadata> conflicts =
+                repositoryMerger.getConflictingArtifacts( repository, "source-repo", TEST_REPO_ID );
+            long time = System.currentTimeMillis() - start;
+
+            assertEquals( ( artifacts + 1 ) / 2, conflicts.size() );
+            verify( repository, never() ).getArtifacts( TEST_REPO_ID );
+            log.info( "Found conflicts of {} artifacts against {} artifacts in {} ms (previous size: {} ms)", artifacts,
+                      targetArtifacts.size(), time, previous );
+            previous = time;
+        }
+    }
+
+    @Test
+    public void testMergeInParallel()
+        throws Exception
+    {
+        File sourceRepo = new File( "target/merge-parallel-source" );
+        File targetRepo = new File( "target/merge-parallel-target" );
+        saveMergeConfiguration( sourceRepo, targetRepo );
+
+        List<ArtifactMetadata> firstArtifacts = new ArrayList<>();
+        List<ArtifactMetadata> secondArtifacts = new ArrayList<>();
+        for ( int i = 0; i < 10; i++ )
+        {
+            firstArtifacts.add( createSourceArtifact( sourceRepo, "first", "1." + i ) );
+            secondArtifacts.add( createSourceArtifact( sourceRepo, "second", "2." + i ) );
+        }
+        List<ArtifactMetadata> sourceArtifacts = new ArrayList<>( firstArtifacts );
+        sourceArtifacts.addAll( secondArtifacts );
+        when( metadataRepository.getArtifacts( eq( MERGE_SOURCE_ID ), (String) isNull(), anyInt() ) ).thenReturn(
+            new ArtifactMetadataPage( sourceArtifacts, null ) );
+
+        Maven2RepositoryMerger merger = spy( new Maven2RepositoryMerger( configuration, pathTranslator ) );
+        merger.setThreads( 4 );
+        merger.merge( metadataRepository, MERGE_SOURCE_ID, MERGE_TARGET_ID );
+
+        for ( ArtifactMetadata artifact : sourceArtifacts )
+        {
+            String path = toPath( artifact );
+            assertEquals( artifact.getId(), FileUtils.readFileToString( new File( targetRepo, path ) ) );
+            assertTrue( new File( targetRepo, path.replace( ".jar", ".pom" ) ).exists() );
+        }
+        // the metadata of a project is updated once for all its artifacts
+        verify( merger ).updateMetadata( any( File.class ), any( File.class ), eq( firstArtifacts ),
+                                         any( Date.class ), anyString() );
+        verify( merger ).updateMetadata( any( File.class ), any( File.class ), eq( secondArtifacts ),
+                                         any( Date.class ), anyString() );
+        assertFalse( Maven2RepositoryMerger.getJournalFile( targetRepo, MERGE_SOURCE_ID ).exists() );
+    }
+
+    @Test
+    public void testLinkOrCopyArtifacts()
+        throws Exception
+    {
+        File sourceRepo = new File( "target/merge-link-source" );
+        File targetRepo = new File( "target/merge-link-target" );
+        saveMergeConfiguration( sourceRepo, targetRepo );
+
+        ArtifactMetadata artifact = createSourceArtifact( sourceRepo, "linked", "1.0" );
+        when( metadataRepository.getArtifacts( eq( MERGE_SOURCE_ID ), (String) isNull(), anyInt() ) ).thenReturn(
+            new ArtifactMetadataPage( Collections.singletonList( artifact ), null ) );
+        Path sourceFile = new File( sourceRepo, toPath( artifact ) ).toPath();
+        Path targetFile = new File( targetRepo, toPath( artifact ) ).toPath();
+
+        new Maven2RepositoryMerger( configuration, pathTranslator ).merge( metadataRepository, MERGE_SOURCE_ID,
+                                                                           MERGE_TARGET_ID );
+        assertTrue( Files.isSameFile( sourceFile, targetFile ) );
+
+        // no hard links on the file system
+        FileUtils.deleteDirectory( targetRepo );
+        Maven2RepositoryMerger merger = spy( new Maven2RepositoryMerger( configuration, pathTranslator ) );
+        doThrow( new IOException( "hard links not supported" ) ).when( merger ).createLink( any( Path.class ),
+                                                                                           any( Path.class ) );
+        merger.merge( metadataRepository, MERGE_SOURCE_ID, MERGE_TARGET_ID );
+        assertFalse( Files.isSameFile( sourceFile, targetFile ) );
+        assertEquals( artifact.getId(), FileUtils.readFileToString( targetFile.toFile() ) );
+
+        // hard links disabled
+        FileUtils.deleteDirectory( targetRepo );
+        merger = new Maven2RepositoryMerger( configuration, pathTranslator );
+        merger.setHardLinks( false );
+        merger.merge( metadataRepository, MERGE_SOURCE_ID, MERGE_TARGET_ID );
+        assertFalse( Files.isSameFile( sourceFile, targetFile ) );
+        assertEquals( artifact.getId(), FileUtils.readFileToString( targetFile.toFile() ) );
+    }
+
+    @Test
+    public void testResumeInterruptedMerge()
+        throws Exception
+    {
+        File sourceRepo = new File( "target/merge-resume-source" );
+        File targetRepo = new File( "target/merge-resume-target" );
+        saveMergeConfiguration( sourceRepo, targetRepo );
+
+        ArtifactMetadata merged = createSourceArtifact( sourceRepo, "resumed", "1.0" );
+        ArtifactMetadata notMerged = createSourceArtifact( sourceRepo, "resumed", "1.1" );
+        when( metadataRepository.getArtifacts( eq( MERGE_SOURCE_ID ), (String) isNull(), anyInt() ) ).thenReturn(
+            new ArtifactMetadataPage( Arrays.asList( merged, notMerged ), null ) );
+
+        // the first run stopped after merging the first artifact
+        File mergedFile = new File( targetRepo, toPath( merged ) );
+        FileUtils.writeStringToFile( mergedFile, merged.getId().toUpperCase() );
+        File journalFile = Maven2RepositoryMerger.getJournalFile( targetRepo, MERGE_SOURCE_ID );
+        FileUtils.writeStringToFile( journalFile, toPath( merged ) + "\n" );
+
+        Maven2RepositoryMerger merger = new Maven2RepositoryMerger( configuration, pathTranslator );
+        merger.setHardLinks( false );
+        merger.merge( metadataRepository, MERGE_SOURCE_ID, MERGE_TARGET_ID );
+
+        // not copied again
+        assertEquals( merged.getId().toUpperCase(), FileUtils.readFileToString( mergedFile ) );
+        assertEquals( notMerged.getId(), FileUtils.readFileToString( new File( targetRepo, toPath( notMerged ) ) ) );
+        assertFalse( journalFile.exists() );
+    }
+
+    private void saveMergeConfiguration( File sourceRepo, File targetRepo )
+        throws Exception
+    {
+        FileUtils.deleteDirectory( sourceRepo );
+        FileUtils.deleteDirectory( targetRepo );
+
+        Configuration c = new Configuration();
+        ManagedRepositoryConfiguration source = new ManagedRepositoryConfiguration();
+        source.setId( MERGE_SOURCE_ID );
+        source.setLocation( sourceRepo.getPath() );
+        c.addManagedRepository( source );
+        ManagedRepositoryConfiguration target = new ManagedRepositoryConfiguration();
+        target.setId( MERGE_TARGET_ID );
+        target.setLocation( targetRepo.getPath() );
+        c.addManagedRepository( target );
+
+        // no metadata-updater consumer, the merge updates the metadata
+        RepositoryScanningConfiguration repoScanConfig = new RepositoryScanningConfiguration();
+        repoScanConfig.setKnownContentConsumers( new ArrayList<String>() );
+        c.setRepositoryScanning( repoScanConfig );
+        configuration.save( c );
+    }
+
+    /**
+     * Creates an artifact and its POM in the source repository, the content of the artifact is its file name.
+     */
+    private ArtifactMetadata createSourceArtifact( File sourceRepo, String project, String version )
+        throws IOException
+    {
+        ArtifactMetadata artifact = new ArtifactMetadata();
+        artifact.setNamespace( "org.example" );
+        artifact.setProject( project );
+        artifact.setVersion( version );
+        artifact.setProjectVersion( version );
+        artifact.setId( project + "-" + version + ".jar" );
+        artifact.setRepositoryId( MERGE_SOURCE_ID );
+
+        String path = toPath( artifact );
+        FileUtils.writeStringToFile( new File( sourceRepo, path ), artifact.getId() );
+        FileUtils.writeStringToFile( new File( sourceRepo, path.replace( ".jar", ".pom" ) ), "<project/>" );
+        return artifact;
+    }
+
+    private String toPath( ArtifactMetadata artifact )
+    {
+        return pathTranslator.toPath( artifact.getNamespace(), artifact.getProject(), artifact.getProjectVersion(),
+                                      artifact.getId() );
+    }
+
+    private static ArtifactMetadata createArtifact( String repositoryId, String version )
+    {
+        ArtifactMetadata artifact = new ArtifactMetadata();
+        artifact.setNamespace( "org.example" );
+        artifact.setProject( "example" );
+        artifact.setVersion( version );
+        artifact.setProjectVersion( version );
+        artifact.setId( "example-" + version + ".jar" );
+        artifact.setRepositoryId( repositoryId );
+        return artifact;
     }
 
 }
\ No newline at end of file
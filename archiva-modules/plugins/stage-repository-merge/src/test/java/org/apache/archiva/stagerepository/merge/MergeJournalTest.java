@@ -0,0 +1,56 @@
+package org.apache.archiva.stagerepository.merge;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.File;
+
+public class MergeJournalTest
+    extends TestCase
+{
+    @Test
+    public void testResumeInterruptedMerge()
+        throws Exception
+    {
+        File file = new File( "target/merge-journal/.archiva-merge-source" );
+        file.getParentFile().mkdirs();
+        file.delete();
+
+        MergeJournal journal = new MergeJournal( file );
+        assertFalse( journal.isMerged( "org/example/example/1.0/example-1.0.jar" ) );
+        journal.merged( "org/example/example/1.0/example-1.0.jar" );
+        assertTrue( journal.isMerged( "org/example/example/1.0/example-1.0.jar" ) );
+        // interrupted merge
+        journal.close();
+
+        journal = new MergeJournal( file );
+        assertTrue( journal.isMerged( "org/example/example/1.0/example-1.0.jar" ) );
+        assertFalse( journal.isMerged( "org/example/example/1.1/example-1.1.jar" ) );
+        journal.merged( "org/example/example/1.1/example-1.1.jar" );
+        journal.complete();
+        assertFalse( file.exists() );
+
+        journal = new MergeJournal( file );
+        assertFalse( journal.isMerged( "org/example/example/1.0/example-1.0.jar" ) );
+        journal.complete();
+    }
+}